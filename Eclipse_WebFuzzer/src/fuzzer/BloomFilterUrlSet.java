@@ -0,0 +1,118 @@
+package fuzzer;
+
+/**
+ * Approximate visited URL set backed by a Bloom filter alone, for crawls with
+ * so many links that even a fingerprint per URL is too much. The filter is
+ * sized for an expected number of URLs and a false positive rate (1% by
+ * default, which costs roughly 1.2 bytes per URL against the 8 or more of a
+ * FingerprintUrlSet). A false positive means that a URL which has never been
+ * seen is reported as visited, so about that fraction of pages may be
+ * skipped; URLs which have been seen are never reported as unvisited.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class BloomFilterUrlSet implements VisitedUrlSet
+{
+	public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+	/* Guarded by this set */
+	private final long[] bits;
+	private final long bitCount;
+	private final int hashCount;
+	private long size;
+
+	public BloomFilterUrlSet(long expectedUrls)
+	{
+		this(expectedUrls, DEFAULT_FALSE_POSITIVE_RATE);
+	}
+
+	/**
+	 * Creates a filter sized for the given number of URLs and false positive
+	 * rate. The rate climbs steadily once more URLs than that have been added.
+	 */
+	public BloomFilterUrlSet(long expectedUrls, double falsePositiveRate)
+	{
+		if(falsePositiveRate <= 0 || falsePositiveRate >= 1)
+		{
+			throw new IllegalArgumentException("The false positive rate must be between 0 and 1: " + falsePositiveRate);
+		}
+
+		long expected = Math.max(1, expectedUrls);
+		double ln2 = Math.log(2);
+
+		long optimalBits = (long) Math.ceil(-expected * Math.log(falsePositiveRate) / (ln2 * ln2));
+		this.bits = new long[(int) Math.max(1, (optimalBits + 63) / 64)];
+		this.bitCount = bits.length * 64L;
+		this.hashCount = (int) Math.max(1, Math.round((double) bitCount / expected * ln2));
+		this.size = 0;
+	}
+
+	/**
+	 * Sets the filter bits for the given URL. Returns true if any of them was
+	 * not set already, in which case the URL is certainly new; a URL whose
+	 * bits were all set by others is a false positive and is not claimed.
+	 */
+	public synchronized boolean add(String canonicalUrl)
+	{
+		long fingerprint = UrlCanonicalizer.fingerprint(canonicalUrl);
+		boolean added = false;
+
+		for(int i = 0; i < hashCount; i++)
+		{
+			long bit = bitIndex(fingerprint, i);
+			long mask = 1L << (bit & 63);
+			int word = (int) (bit >>> 6);
+
+			if((bits[word] & mask) == 0)
+			{
+				bits[word] |= mask;
+				added = true;
+			}
+		}
+
+		if(added)
+		{
+			size++;
+		}
+
+		return added;
+	}
+
+	public synchronized boolean contains(String canonicalUrl)
+	{
+		long fingerprint = UrlCanonicalizer.fingerprint(canonicalUrl);
+
+		for(int i = 0; i < hashCount; i++)
+		{
+			long bit = bitIndex(fingerprint, i);
+			if((bits[(int) (bit >>> 6)] & (1L << (bit & 63))) == 0)
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns the number of URLs which have been claimed, which does not
+	 * include the ones lost to false positives.
+	 */
+	public synchronized long size()
+	{
+		return size;
+	}
+
+	/**
+	 * Derives the index of the i-th bit for a fingerprint by double hashing
+	 * the two halves of the fingerprint.
+	 */
+	private long bitIndex(long fingerprint, int i)
+	{
+		long first = fingerprint >>> 32;
+		long second = (fingerprint & 0xffffffffL) | 1;
+		return ((first + i * second) & Long.MAX_VALUE) % bitCount;
+	}
+}
@@ -0,0 +1,75 @@
+package fuzzer;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Read-only view of several lists one after another, used for data file
+ * sections which mix inline entries with external wordlist files. Elements
+ * are looked up in the underlying lists rather than copied.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class ConcatenatedList<E> extends AbstractList<E> implements RandomAccess
+{
+	private final List<List<E>> parts;
+	private final int[] partStarts;
+	private final int size;
+
+	public ConcatenatedList(List<List<E>> parts)
+	{
+		this.parts = parts;
+		this.partStarts = new int[parts.size()];
+
+		long total = 0;
+		for(int i = 0; i < parts.size(); i++)
+		{
+			partStarts[i] = (int) total;
+			total += parts.get(i).size();
+		}
+
+		if(total > Integer.MAX_VALUE)
+		{
+			throw new IllegalArgumentException("Too many elements: " + total);
+		}
+
+		this.size = (int) total;
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public E get(int index)
+	{
+		if(index < 0 || index >= size)
+		{
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+
+		// Finds the last part which starts at or before the index (empty
+		// parts share their start with the part after them)
+		int low = 0;
+		int high = partStarts.length - 1;
+		while(low < high)
+		{
+			int middle = (low + high + 1) >>> 1;
+			if(partStarts[middle] <= index)
+			{
+				low = middle;
+			}
+			else
+			{
+				high = middle - 1;
+			}
+		}
+
+		return parts.get(low).get(index - partStarts[low]);
+	}
+}
@@ -0,0 +1,173 @@
+package fuzzer;
+
+import java.util.Arrays;
+
+/**
+ * AIMD (additive increase, multiplicative decrease) controller for the number
+ * of requests in flight to a single host. The limit grows by roughly one
+ * request per round of healthy responses and is cut back sharply as soon as
+ * the host shows signs of strain: a timeout or other connection failure, a
+ * 5xx response, or a 90th percentile response latency well above the best
+ * that the host has managed so far. Requests block in acquire() while the
+ * host is at its limit.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class ConcurrencyController
+{
+	private static final double DECREASE_FACTOR = 0.7;
+
+	/*
+	 * The latency percentile which is watched, and how far above its best
+	 * observed value it may rise before the host is considered overloaded.
+	 */
+	private static final double LATENCY_PERCENTILE = 0.9;
+	private static final double LATENCY_TOLERANCE = 2.0;
+	private static final int LATENCY_WINDOW = 32;
+	private static final double BASELINE_DRIFT = 1.01;
+
+	private final int minLimit;
+	private final int maxLimit;
+
+	private double limit;
+	private int inFlight;
+
+	private final long[] latencies;
+	private int latencyCount;
+	private double baselineLatencyNanos;
+
+	/*
+	 * Used to ignore congestion signals from requests which were already in
+	 * flight when the limit was last decreased, so that a single overload
+	 * does not collapse the limit several times over.
+	 */
+	private long completions;
+	private long recoveryCompletions;
+
+	public ConcurrencyController(int initialLimit, int maxLimit)
+	{
+		this.minLimit = 1;
+		this.maxLimit = Math.max(minLimit, maxLimit);
+		this.limit = Math.max(minLimit, Math.min(initialLimit, this.maxLimit));
+		this.inFlight = 0;
+		this.latencies = new long[LATENCY_WINDOW];
+		this.latencyCount = 0;
+		this.baselineLatencyNanos = Double.MAX_VALUE;
+		this.completions = 0;
+		this.recoveryCompletions = 0;
+	}
+
+	/**
+	 * Blocks until fewer than the current limit of requests are in flight and
+	 * then claims a slot for one more.
+	 */
+	public synchronized void acquire()
+		throws InterruptedException
+	{
+		while(inFlight >= (int) limit)
+		{
+			wait();
+		}
+
+		inFlight++;
+	}
+
+	/**
+	 * Releases a slot claimed by acquire(), recording how the request went.
+	 */
+	public synchronized void release(RequestOutcome outcome, long latencyNanos)
+	{
+		inFlight--;
+		completions++;
+
+		if(outcome == RequestOutcome.SUCCESS)
+		{
+			recordLatency(latencyNanos);
+		}
+		else if(outcome == RequestOutcome.OVERLOADED)
+		{
+			decrease();
+		}
+
+		notifyAll();
+	}
+
+	public synchronized int getLimit()
+	{
+		return (int) limit;
+	}
+
+	public synchronized int getInFlight()
+	{
+		return inFlight;
+	}
+
+	private void recordLatency(long latencyNanos)
+	{
+		latencies[latencyCount++] = latencyNanos;
+
+		if(latencyCount < latencies.length)
+		{
+			// Additive increase of one request per limit's worth of responses
+			limit = Math.min(maxLimit, limit + 1.0 / limit);
+			return;
+		}
+
+		long[] sortedLatencies = latencies.clone();
+		Arrays.sort(sortedLatencies);
+		long percentileLatency = sortedLatencies[(int) (LATENCY_PERCENTILE * (sortedLatencies.length - 1))];
+		latencyCount = 0;
+
+		boolean overloaded = percentileLatency > baselineLatencyNanos * LATENCY_TOLERANCE;
+
+		// The baseline follows improvements immediately but only drifts slowly
+		// upwards, so that one unusually fast window does not make every later
+		// one look overloaded while a host which has become slower for good is
+		// eventually accepted as such
+		baselineLatencyNanos = Math.min(percentileLatency, baselineLatencyNanos * BASELINE_DRIFT);
+
+		if(overloaded)
+		{
+			decrease();
+		}
+		else
+		{
+			limit = Math.min(maxLimit, limit + 1.0 / limit);
+		}
+	}
+
+	private void decrease()
+	{
+		if(completions < recoveryCompletions)
+		{
+			return;
+		}
+
+		limit = Math.max(minLimit, limit * DECREASE_FACTOR);
+		recoveryCompletions = completions + inFlight;
+	}
+
+	/**
+	 * How a request which held a slot turned out.
+	 */
+	public enum RequestOutcome
+	{
+		/**
+		 * A response was received which says nothing about the host's load.
+		 */
+		SUCCESS,
+
+		/**
+		 * The request timed out, the connection failed, or the host answered
+		 * with a 5xx or 429 (Too Many Requests) status.
+		 */
+		OVERLOADED,
+
+		/**
+		 * The request was abandoned for reasons unrelated to the host.
+		 */
+		UNKNOWN
+	}
+}
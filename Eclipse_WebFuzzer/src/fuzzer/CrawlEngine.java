@@ -0,0 +1,367 @@
+package fuzzer;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Concurrent work-queue crawler used for attack surface discovery. URLs are
+ * canonicalized and claimed in a thread-safe visited set the first time they
+ * are submitted (so that /a, /a#x and /a/ are only crawled once) and are then
+ * placed on a shared frontier queue which is drained by a fixed number of
+ * worker threads. Each worker hands the URLs it takes off of the
+ * frontier to a PageVisitor, which is free to submit any new links it finds
+ * back to the engine. Once the crawl's deadline (if it has one) has passed,
+ * the URLs left on the frontier are taken off without being visited.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class CrawlEngine
+{
+	/**
+	 * Callback which performs discovery on a single URL taken from the frontier.
+	 */
+	public interface PageVisitor
+	{
+		void visit(CrawlEngine engine, String url) throws IOException;
+	}
+
+	/**
+	 * Receives every change to the crawl's progress, so that it can be
+	 * recorded and the crawl resumed later on. Implementations must be
+	 * thread-safe.
+	 */
+	public interface CrawlLog
+	{
+		/**
+		 * Called when the given URL has been claimed, either by being placed
+		 * on the frontier or by being marked as visited.
+		 */
+		void claimed(String url);
+
+		/**
+		 * Called once discovery has been completely performed on the given
+		 * claimed URL.
+		 */
+		void finished(String url);
+	}
+
+	private static final long POLL_INTERVAL_MILLIS = 100;
+
+	private final PageVisitor visitor;
+	private final VisitedUrlSet visitedUrls;
+	private final BlockingQueue<String> frontier;
+	private final int workerCount;
+	private final long deadlineMillis;
+	private volatile CrawlLog crawlLog;
+
+	/*
+	 * The number of URLs which have been submitted but which have not yet been
+	 * completely visited. The crawl is quiescent once this reaches zero.
+	 */
+	private final AtomicInteger pending;
+	private final AtomicReference<Throwable> failure;
+	private final Object quiescenceLock;
+
+	private ExecutorService workers;
+	private volatile boolean running;
+
+	/**
+	 * Creates a crawl engine which records the canonical form of the URLs it
+	 * has claimed in the given visited set and which will use the given number
+	 * of worker threads once started.
+	 */
+	public CrawlEngine(PageVisitor visitor, VisitedUrlSet visitedUrls, int workerCount)
+	{
+		this(visitor, visitedUrls, workerCount, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Creates a crawl engine as above which visits no more URLs once the given
+	 * deadline (in milliseconds since the epoch) has passed.
+	 */
+	public CrawlEngine(PageVisitor visitor, VisitedUrlSet visitedUrls, int workerCount, long deadlineMillis)
+	{
+		this.visitor = visitor;
+		this.visitedUrls = visitedUrls;
+		this.frontier = new LinkedBlockingQueue<String>();
+		this.workerCount = Math.max(1, workerCount);
+		this.deadlineMillis = deadlineMillis;
+		this.pending = new AtomicInteger(0);
+		this.failure = new AtomicReference<Throwable>();
+		this.quiescenceLock = new Object();
+		this.running = false;
+	}
+
+	/**
+	 * Starts the worker threads. URLs may be submitted before or after the
+	 * engine has been started.
+	 */
+	public synchronized void start()
+	{
+		if(running)
+		{
+			return;
+		}
+
+		running = true;
+		workers = Executors.newFixedThreadPool(workerCount, new ThreadFactory()
+		{
+			private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, "crawler-" + threadNumber.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		for(int i = 0; i < workerCount; i++)
+		{
+			workers.execute(new Runnable()
+			{
+				public void run()
+				{
+					drainFrontier();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Sets the log which is told about every URL claimed and finished from
+	 * now on (or removes it, if given null).
+	 */
+	public void setCrawlLog(CrawlLog crawlLog)
+	{
+		this.crawlLog = crawlLog;
+	}
+
+	/**
+	 * Restores a URL claimed by an earlier, interrupted crawl. If the URL was
+	 * never finished then it is placed back on the frontier, otherwise it is
+	 * only marked as visited. Nothing is logged for restored URLs.
+	 */
+	public void restore(String url, boolean finished)
+	{
+		String canonicalUrl = UrlCanonicalizer.canonicalize(url);
+		if(canonicalUrl == null || !visitedUrls.add(canonicalUrl) || finished)
+		{
+			return;
+		}
+
+		pending.incrementAndGet();
+		frontier.add(UrlCanonicalizer.stripFragment(url));
+	}
+
+	/**
+	 * Claims the given URL and places it on the frontier if it has not already
+	 * been visited. Returns true if the URL was newly claimed by this call. The
+	 * URL is visited as it was first submitted (less any fragment) since some
+	 * canonicalizations, such as dropping a trailing slash, change how relative
+	 * links on the page resolve.
+	 */
+	public boolean submit(String url)
+	{
+		if(failure.get() != null || !claim(url))
+		{
+			return false;
+		}
+
+		pending.incrementAndGet();
+		frontier.add(UrlCanonicalizer.stripFragment(url));
+		return true;
+	}
+
+	/**
+	 * Records the given URL as visited without placing it on the frontier (used
+	 * for pages which have already been fetched by some other means). Returns
+	 * true if the URL had not already been visited.
+	 */
+	public boolean markVisited(String url)
+	{
+		return claim(url);
+	}
+
+	/**
+	 * Records that discovery has been completely performed on a page claimed
+	 * with markVisited(). Pages taken off of the frontier are recorded as
+	 * finished automatically.
+	 */
+	public void finished(String url)
+	{
+		CrawlLog log = crawlLog;
+		if(log != null)
+		{
+			log.finished(url);
+		}
+	}
+
+	public boolean isVisited(String url)
+	{
+		String canonicalUrl = UrlCanonicalizer.canonicalize(url);
+		return canonicalUrl != null && visitedUrls.contains(canonicalUrl);
+	}
+
+	/**
+	 * Returns the number of distinct URLs which have been claimed.
+	 */
+	public long getVisitedCount()
+	{
+		return visitedUrls.size();
+	}
+
+	/**
+	 * Records the canonical form of the given URL in the visited set. URLs
+	 * which cannot be canonicalized (i.e. are not valid HTTP(S) URLs) are
+	 * never claimed.
+	 */
+	private boolean claim(String url)
+	{
+		String canonicalUrl = UrlCanonicalizer.canonicalize(url);
+		if(canonicalUrl == null || !visitedUrls.add(canonicalUrl))
+		{
+			return false;
+		}
+
+		CrawlLog log = crawlLog;
+		if(log != null)
+		{
+			log.claimed(UrlCanonicalizer.stripFragment(url));
+		}
+
+		return true;
+	}
+
+	/**
+	 * Blocks until the frontier is empty and no worker is still visiting a
+	 * page. If any worker failed then the first failure encountered is
+	 * rethrown here (the remainder of the frontier is abandoned in that case).
+	 */
+	public void awaitQuiescence()
+		throws IOException
+	{
+		synchronized(quiescenceLock)
+		{
+			while(pending.get() > 0)
+			{
+				try
+				{
+					quiescenceLock.wait(POLL_INTERVAL_MILLIS);
+				}
+				catch(InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while waiting for the crawl to finish", e);
+				}
+			}
+		}
+
+		Throwable cause = failure.get();
+		if(cause instanceof IOException)
+		{
+			throw (IOException) cause;
+		}
+		else if(cause instanceof RuntimeException)
+		{
+			throw (RuntimeException) cause;
+		}
+		else if(cause instanceof Error)
+		{
+			throw (Error) cause;
+		}
+	}
+
+	/**
+	 * Returns true if the crawl's deadline has passed.
+	 */
+	public boolean isPastDeadline()
+	{
+		return System.currentTimeMillis() >= deadlineMillis;
+	}
+
+	/**
+	 * Stops the worker threads. Should always be called once the crawl is
+	 * finished.
+	 */
+	public synchronized void shutdown()
+	{
+		running = false;
+
+		if(workers != null)
+		{
+			workers.shutdownNow();
+			workers = null;
+		}
+	}
+
+	private void drainFrontier()
+	{
+		while(running)
+		{
+			String url;
+			try
+			{
+				url = frontier.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+			}
+			catch(InterruptedException e)
+			{
+				return;
+			}
+
+			if(url == null)
+			{
+				continue;
+			}
+
+			try
+			{
+				if(failure.get() == null && !isPastDeadline())
+				{
+					visitor.visit(this, url);
+
+					// A visit which ran into the deadline may have been cut
+					// short, so it is left unfinished to be redone on resume
+					if(!isPastDeadline())
+					{
+						finished(url);
+					}
+				}
+			}
+			catch(Throwable t)
+			{
+				if(failure.compareAndSet(null, t))
+				{
+					// Abandons the rest of the crawl, matching the behavior of
+					// an exception propagating out of a recursive walk
+					int abandoned = 0;
+					while(frontier.poll() != null)
+					{
+						abandoned++;
+					}
+
+					pending.addAndGet(-abandoned);
+				}
+			}
+			finally
+			{
+				if(pending.decrementAndGet() == 0)
+				{
+					synchronized(quiescenceLock)
+					{
+						quiescenceLock.notifyAll();
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,439 @@
+package fuzzer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.gargoylesoftware.htmlunit.FailingHttpStatusCodeException;
+import com.gargoylesoftware.htmlunit.Page;
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.WebResponse;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+
+/**
+ * Guesses the password for a login form by trying the words of a dictionary
+ * concurrently. Each worker thread leases its own WebClient for the whole
+ * guessing run, so every worker has its own session and cookie jar, and
+ * repeatedly takes the next untried word off of the shared dictionary. Every
+ * attempt reloads the login page with a fresh session, so attempts never see
+ * each other's state. All of the workers stop as soon as one of them has
+ * authenticated successfully.
+ *
+ * If the site responds to an attempt with signs of an account lockout or
+ * throttling (a 429 or 503 status or a Retry-After header, or if configured,
+ * a page containing one of the given lockout markers) then every worker
+ * pauses for a backoff period, which doubles with each consecutive lockout
+ * and is at least as long as the site asked for, and the attempt is retried.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class CredentialGuesser
+{
+	private static final long INITIAL_BACKOFF_MILLIS = 1000;
+	private static final long MAX_BACKOFF_MILLIS = 60000;
+	private static final int MAX_LOCKOUT_RETRIES = 6;
+
+	private static final int TOO_MANY_REQUESTS = 429;
+	private static final int SERVICE_UNAVAILABLE = 503;
+
+	/**
+	 * Receives the outcome of every completed authentication attempt.
+	 * Implementations must be thread-safe. The result page (which is null if
+	 * the attempt did not end on an HTML page) may only be used until the
+	 * listener returns, after which its client is reused.
+	 */
+	public interface AttemptListener
+	{
+		void attempted(String password, HtmlPage resultPage, boolean authenticated)
+			throws IOException;
+	}
+
+	private final int threads;
+	private final String authenticationSuccessString;
+	private final List<String> lockoutMarkers;
+	private final WebClientPool clientPool;
+
+	/**
+	 * Creates a guesser which tries at most the given number of passwords at
+	 * the same time, sending every request through the given governor, and
+	 * which considers an attempt successful if the resulting page contains
+	 * the given string. A page containing any of the given lockout markers
+	 * (ignoring case) is treated as a lockout.
+	 */
+	public CredentialGuesser(int threads, RequestGovernor governor, String authenticationSuccessString,
+			List<String> lockoutMarkers)
+	{
+		this.threads = Math.max(1, threads);
+		this.authenticationSuccessString = authenticationSuccessString;
+		this.lockoutMarkers = new ArrayList<String>(lockoutMarkers.size());
+		for(String marker: lockoutMarkers)
+		{
+			this.lockoutMarkers.add(marker.toLowerCase(Locale.ENGLISH));
+		}
+
+		this.clientPool = new WebClientPool(this.threads, governor);
+	}
+
+	/**
+	 * Tries the given passwords for the given username against the login form
+	 * at the given index (among the forms which require authentication) on
+	 * the page at the given URL, and blocks until either a password has been
+	 * found, every password has been tried or the given deadline (in
+	 * milliseconds since the epoch) has passed. Returns true if a password was
+	 * found.
+	 */
+	public boolean guess(final String pageUrl, final int formIndex, final String username,
+			final List<String> passwords, final long deadlineMillis, final AttemptListener listener)
+		throws InterruptedException
+	{
+		if(passwords.isEmpty())
+		{
+			return false;
+		}
+
+		int workerCount = Math.min(threads, passwords.size());
+		ExecutorService workers = Executors.newFixedThreadPool(workerCount, new ThreadFactory()
+		{
+			private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, "credential-guesser-" + threadNumber.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		final AtomicInteger nextPassword = new AtomicInteger(0);
+		final AtomicBoolean finished = new AtomicBoolean(false);
+		final AtomicBoolean found = new AtomicBoolean(false);
+		final Backoff backoff = new Backoff(pageUrl, deadlineMillis);
+
+		try
+		{
+			List<Future<?>> results = new ArrayList<Future<?>>(workerCount);
+			for(int i = 0; i < workerCount; i++)
+			{
+				results.add(workers.submit(new Runnable()
+				{
+					public void run()
+					{
+						WebClient client = null;
+						try
+						{
+							client = clientPool.lease();
+
+							int index;
+							while(!finished.get() && !backoff.isPastDeadline() &&
+								  !Thread.currentThread().isInterrupted() &&
+								  (index = nextPassword.getAndIncrement()) < passwords.size())
+							{
+								String password = passwords.get(index);
+								Boolean authenticated = attempt(client, pageUrl, formIndex, username,
+										password, backoff, finished, listener);
+
+								if(authenticated == null)
+								{
+									// The login form is gone, so no other
+									// password can be tried either
+									finished.set(true);
+								}
+								else if(authenticated.booleanValue())
+								{
+									found.set(true);
+									finished.set(true);
+								}
+							}
+						}
+						catch(InterruptedException e)
+						{
+							Thread.currentThread().interrupt();
+						}
+						catch(IOException e)
+						{
+							System.out.println("Password guessing failed on page: " + pageUrl);
+							e.printStackTrace();
+						}
+						finally
+						{
+							clientPool.release(client);
+						}
+					}
+				}));
+			}
+
+			for(Future<?> result: results)
+			{
+				try
+				{
+					result.get();
+				}
+				catch(ExecutionException e)
+				{
+					e.getCause().printStackTrace();
+				}
+			}
+		}
+		finally
+		{
+			workers.shutdownNow();
+		}
+
+		return found.get();
+	}
+
+	/**
+	 * Closes every client used for guessing. Should only be called once no
+	 * more guessing is being done.
+	 */
+	public void close()
+	{
+		clientPool.close();
+	}
+
+	/**
+	 * Returns true if the given page is the result of a successful
+	 * authentication attempt, i.e. if it contains the given string.
+	 */
+	public static boolean isAuthenticated(Page page, String authenticationSuccessString)
+	{
+		if(!(page instanceof HtmlPage) || authenticationSuccessString == null)
+		{
+			return false;
+		}
+
+		String text = ((HtmlPage) page).asText();
+		return text != null && text.contains(authenticationSuccessString);
+	}
+
+	/**
+	 * Makes a single authentication attempt (retrying it after lockouts) and
+	 * reports its outcome to the listener. Returns whether authentication was
+	 * successful, or null if the login form could not be found.
+	 */
+	private Boolean attempt(WebClient client, String pageUrl, int formIndex, String username,
+			String password, Backoff backoff, AtomicBoolean finished, AttemptListener listener)
+		throws InterruptedException
+	{
+		for(int retries = 0; retries <= MAX_LOCKOUT_RETRIES; retries++)
+		{
+			backoff.await();
+			if(finished.get() || backoff.isPastDeadline())
+			{
+				return Boolean.FALSE;
+			}
+
+			// Each attempt starts a new session, so that nothing left behind
+			// by an earlier attempt (e.g. a failed login counter) carries over
+			client.getCookieManager().clearCookies();
+
+			Page result;
+			try
+			{
+				Page loginPage = client.getPage(pageUrl);
+				long lockoutMillis = getLockoutMillis(loginPage.getWebResponse());
+				if(lockoutMillis >= 0)
+				{
+					backoff.lockedOut(lockoutMillis);
+					continue;
+				}
+				if(!(loginPage instanceof HtmlPage))
+				{
+					return null;
+				}
+
+				List<WebForm> forms = new WebPage((HtmlPage) loginPage).getFormsWithAuthentication();
+				if(formIndex >= forms.size())
+				{
+					return null;
+				}
+
+				result = forms.get(formIndex).submitAuthentication(username, password);
+			}
+			catch(FailingHttpStatusCodeException e)
+			{
+				long lockoutMillis = getLockoutMillis(e.getResponse());
+				if(lockoutMillis >= 0)
+				{
+					backoff.lockedOut(lockoutMillis);
+					continue;
+				}
+
+				// Any other error status means that the password was rejected
+				result = null;
+			}
+			catch(IOException e)
+			{
+				System.out.println("Authentication attempt failed on page: " + pageUrl);
+				e.printStackTrace();
+				return Boolean.FALSE;
+			}
+
+			boolean authenticated = isAuthenticated(result, authenticationSuccessString);
+			if(!authenticated && result != null)
+			{
+				long lockoutMillis = getLockoutMillis(result.getWebResponse());
+				if(lockoutMillis >= 0)
+				{
+					backoff.lockedOut(lockoutMillis);
+					continue;
+				}
+			}
+
+			backoff.reset();
+			try
+			{
+				listener.attempted(password, result instanceof HtmlPage ? (HtmlPage) result : null,
+						authenticated);
+			}
+			catch(IOException e)
+			{
+				e.printStackTrace();
+			}
+
+			return Boolean.valueOf(authenticated);
+		}
+
+		System.out.println("Skipped password guess \"" + password + "\" on page " + pageUrl +
+				" after " + MAX_LOCKOUT_RETRIES + " lockouts");
+		return Boolean.FALSE;
+	}
+
+	/**
+	 * Returns how long the given response asks for guessing to pause (in
+	 * milliseconds, or 0 if it does not say) if it reports a lockout, or -1 if
+	 * it does not.
+	 */
+	private long getLockoutMillis(WebResponse response)
+	{
+		if(response == null)
+		{
+			return -1;
+		}
+
+		String retryAfter = response.getResponseHeaderValue("Retry-After");
+		if(retryAfter != null)
+		{
+			try
+			{
+				return TimeUnit.SECONDS.toMillis(Math.max(0, Long.parseLong(retryAfter.trim())));
+			}
+			catch(NumberFormatException e)
+			{
+				// An HTTP date, which is left to the usual backoff
+				return 0;
+			}
+		}
+
+		int status = response.getStatusCode();
+		if(status == TOO_MANY_REQUESTS || status == SERVICE_UNAVAILABLE)
+		{
+			return 0;
+		}
+
+		if(lockoutMarkers.isEmpty())
+		{
+			return -1;
+		}
+
+		String content = response.getContentAsString();
+		if(content == null)
+		{
+			return -1;
+		}
+
+		content = content.toLowerCase(Locale.ENGLISH);
+		for(String marker: lockoutMarkers)
+		{
+			if(content.contains(marker))
+			{
+				return 0;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * The pause shared by every worker guessing against the same form, which
+	 * never lasts past the guessing deadline.
+	 */
+	private static class Backoff
+	{
+		private final String pageUrl;
+		private final long deadlineMillis;
+		private long delayMillis;
+		private long pausedUntilNanos;
+
+		Backoff(String pageUrl, long deadlineMillis)
+		{
+			this.pageUrl = pageUrl;
+			this.deadlineMillis = deadlineMillis;
+			this.delayMillis = 0;
+			this.pausedUntilNanos = System.nanoTime();
+		}
+
+		/**
+		 * Blocks until the current pause (if any) is over.
+		 */
+		void await()
+			throws InterruptedException
+		{
+			long waitNanos;
+			while((waitNanos = remainingNanos()) > 0 && !isPastDeadline())
+			{
+				TimeUnit.NANOSECONDS.sleep(Math.min(waitNanos,
+						TimeUnit.MILLISECONDS.toNanos(deadlineMillis - System.currentTimeMillis())));
+			}
+		}
+
+		boolean isPastDeadline()
+		{
+			return System.currentTimeMillis() >= deadlineMillis;
+		}
+
+		/**
+		 * Starts a pause after a lockout, lasting at least the given number of
+		 * milliseconds (up to the longest backoff).
+		 */
+		synchronized void lockedOut(long requestedMillis)
+		{
+			long now = System.nanoTime();
+
+			// Lockouts reported by attempts which were already in flight when
+			// the current pause began do not lengthen it any further
+			if(now < pausedUntilNanos)
+			{
+				return;
+			}
+
+			delayMillis = delayMillis == 0 ? INITIAL_BACKOFF_MILLIS :
+				Math.min(MAX_BACKOFF_MILLIS, delayMillis * 2);
+			delayMillis = Math.max(delayMillis, Math.min(MAX_BACKOFF_MILLIS, requestedMillis));
+			pausedUntilNanos = now + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+			System.out.println("Lockout detected on page " + pageUrl +
+					", pausing password guessing for " + delayMillis + " ms");
+		}
+
+		synchronized void reset()
+		{
+			delayMillis = 0;
+		}
+
+		private synchronized long remainingNanos()
+		{
+			return pausedUntilNanos - System.nanoTime();
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package fuzzer;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What StreamingHtmlExtractor found on a page: its attack surface, the
+ * absolute URLs it links to, and whether it has to be rendered by HtmlUnit
+ * after all for discovery to be complete.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class ExtractedPage
+{
+	private final PageSurface surface;
+	private final List<String> links;
+	private final boolean scriptDependent;
+	private final boolean authenticationRequired;
+
+	/*
+	 * Only kept for pages which need rendering, so that they can be rendered
+	 * without being fetched again.
+	 */
+	private final byte[] content;
+	private final String contentType;
+
+	public ExtractedPage(PageSurface surface, List<String> links, boolean scriptDependent,
+			boolean authenticationRequired)
+	{
+		this(surface, links, scriptDependent, authenticationRequired, null, null);
+	}
+
+	private ExtractedPage(PageSurface surface, List<String> links, boolean scriptDependent,
+			boolean authenticationRequired, byte[] content, String contentType)
+	{
+		this.surface = surface;
+		this.links = Collections.unmodifiableList(links);
+		this.scriptDependent = scriptDependent;
+		this.authenticationRequired = authenticationRequired;
+		this.content = content;
+		this.contentType = contentType;
+	}
+
+	/**
+	 * Returns a copy of this page which keeps the content (and the value of
+	 * the Content-Type header, which may be null) it was extracted from.
+	 */
+	public ExtractedPage withContent(byte[] content, String contentType)
+	{
+		return new ExtractedPage(surface, links, scriptDependent, authenticationRequired, content, contentType);
+	}
+
+	/**
+	 * Returns the content the page was extracted from, or null if it was not
+	 * kept.
+	 */
+	public byte[] getContent()
+	{
+		return content;
+	}
+
+	public String getContentType()
+	{
+		return contentType;
+	}
+
+	public PageSurface getSurface()
+	{
+		return surface;
+	}
+
+	public List<String> getLinks()
+	{
+		return links;
+	}
+
+	/**
+	 * Returns true if the page has scripts which may change its links and
+	 * forms once it is rendered.
+	 */
+	public boolean isScriptDependent()
+	{
+		return scriptDependent;
+	}
+
+	/**
+	 * Returns true if the page has a password input, which is treated as a
+	 * login form.
+	 */
+	public boolean requiresAuthentication()
+	{
+		return authenticationRequired;
+	}
+
+	/**
+	 * Returns true if the page must be rendered by HtmlUnit, either because it
+	 * depends on scripts or because logging in through it needs a browser.
+	 */
+	public boolean needsRendering()
+	{
+		return scriptDependent || authenticationRequired;
+	}
+}
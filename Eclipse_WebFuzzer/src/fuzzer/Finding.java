@@ -0,0 +1,192 @@
+package fuzzer;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A single structured result recorded during a scan (a potential vulnerability
+ * or a noteworthy discovery event). A finding is a kind plus a flat, ordered
+ * set of string fields, which is what gets written to the findings stream as
+ * one JSON object per line.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class Finding
+{
+	public enum Kind
+	{
+		SENSITIVE_DATA,
+		UNSANITIZED_INPUT,
+		AUTHENTICATION_SUCCESS,
+		AUTHENTICATION_FAILURE,
+		UNLINKED_PAGE,
+		NEW_LINK,
+		RESPONSE_ANOMALY
+	}
+
+	private final Kind kind;
+	private final Map<String, String> fields;
+
+	private Finding(Kind kind, Map<String, String> fields)
+	{
+		this.kind = kind;
+		this.fields = Collections.unmodifiableMap(fields);
+	}
+
+	public Kind getKind()
+	{
+		return kind;
+	}
+
+	/**
+	 * Returns the value of the given field, or null if the finding does not
+	 * have that field.
+	 */
+	public String get(String field)
+	{
+		return fields.get(field);
+	}
+
+	public Map<String, String> getFields()
+	{
+		return fields;
+	}
+
+	/**
+	 * Encodes this finding as a single line of JSON.
+	 */
+	public String toJson()
+	{
+		Map<String, Object> record = new LinkedHashMap<String, Object>();
+		record.put("kind", kind.name());
+		record.putAll(fields);
+		return Json.toJson(record);
+	}
+
+	/**
+	 * Renders this finding the way it appears in the human-readable report.
+	 */
+	public String render()
+	{
+		switch(kind)
+		{
+			case SENSITIVE_DATA:
+				return describeInput() + "	Sensitive Data Found: " + get("evidence") + "\n";
+			case UNSANITIZED_INPUT:
+				return describeInput() + "	Unsanitized Inputs Found: " + get("payload") +
+						(get("evidence") == null ? "" : " (" + get("evidence") + ")") + "\n";
+			case AUTHENTICATION_SUCCESS:
+				return "Successful authentication with username \"" + get("username") +
+						"\" and password \"" + get("password") + "\" on page at " + get("page") + "\n\n";
+			case AUTHENTICATION_FAILURE:
+				return "Unable to authenticate with username \"" + get("username") +
+						"\" and password \"" + get("password") + "\" on page at " + get("page") + "\n\n";
+			case UNLINKED_PAGE:
+				return "Page guessing found an unlinked page at " + get("page") + "\n";
+			case NEW_LINK:
+				return "New link found: " + get("page") + "\n\n";
+			case RESPONSE_ANOMALY:
+				return describeInput() + "	Response Anomaly Found: " + get("payload") + 
+						" (differs from the form's baseline response in " + get("distance") + 
+						" of 64 SimHash bits)\n";
+			default:
+				return toJson() + "\n";
+		}
+	}
+
+	private String describeInput()
+	{
+		return "Page: " + get("page") + "| Form: " + get("form") + " | Input: " + get("input") + "\n";
+	}
+
+	/**
+	 * Decodes a finding from a line of JSON written by toJson().
+	 *
+	 * @throws IllegalArgumentException if the line is not a valid finding
+	 */
+	public static Finding fromJson(String line)
+	{
+		Map<String, Object> record = Json.parseObject(line);
+		Kind kind = Kind.valueOf(String.valueOf(record.remove("kind")));
+
+		Map<String, String> fields = new LinkedHashMap<String, String>();
+		for(Map.Entry<String, Object> entry: record.entrySet())
+		{
+			fields.put(entry.getKey(), entry.getValue() == null ? null : entry.getValue().toString());
+		}
+
+		return new Finding(kind, fields);
+	}
+
+	public static Finding sensitiveData(String page, String form, String input, String payload,
+			String evidence)
+	{
+		Map<String, String> fields = inputFields(page, form, input, payload);
+		fields.put("evidence", evidence);
+		return new Finding(Kind.SENSITIVE_DATA, fields);
+	}
+
+	/**
+	 * Records an unsanitized input. The evidence describes where the input was
+	 * found unchanged, or is null if it was found in the resulting URL.
+	 */
+	public static Finding unsanitizedInput(String page, String form, String input, String payload,
+			String evidence)
+	{
+		Map<String, String> fields = inputFields(page, form, input, payload);
+		if(evidence != null)
+		{
+			fields.put("evidence", evidence);
+		}
+		return new Finding(Kind.UNSANITIZED_INPUT, fields);
+	}
+
+	public static Finding authentication(boolean successful, String page, String username,
+			String password)
+	{
+		Map<String, String> fields = new LinkedHashMap<String, String>();
+		fields.put("page", page);
+		fields.put("username", username);
+		fields.put("password", password);
+		return new Finding(successful ? Kind.AUTHENTICATION_SUCCESS : Kind.AUTHENTICATION_FAILURE, fields);
+	}
+
+	/**
+	 * Records a response which is unusually different from the response to
+	 * submitting the form unchanged, by the given SimHash distance.
+	 */
+	public static Finding responseAnomaly(String page, String form, String input, String payload,
+			int distance)
+	{
+		Map<String, String> fields = inputFields(page, form, input, payload);
+		fields.put("distance", Integer.toString(distance));
+		return new Finding(Kind.RESPONSE_ANOMALY, fields);
+	}
+
+	public static Finding unlinkedPage(String page)
+	{
+		Map<String, String> fields = new LinkedHashMap<String, String>();
+		fields.put("page", page);
+		return new Finding(Kind.UNLINKED_PAGE, fields);
+	}
+
+	public static Finding newLink(String page)
+	{
+		Map<String, String> fields = new LinkedHashMap<String, String>();
+		fields.put("page", page);
+		return new Finding(Kind.NEW_LINK, fields);
+	}
+
+	private static Map<String, String> inputFields(String page, String form, String input, String payload)
+	{
+		Map<String, String> fields = new LinkedHashMap<String, String>();
+		fields.put("page", page);
+		fields.put("form", form);
+		fields.put("input", input);
+		fields.put("payload", payload);
+		return fields;
+	}
+}
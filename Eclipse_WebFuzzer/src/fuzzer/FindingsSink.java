@@ -0,0 +1,265 @@
+package fuzzer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams findings to a JSON Lines file (one finding per line) while a scan is
+ * running. Recording a finding only places it on a queue; a background thread
+ * writes the queued findings through a buffered writer and flushes whenever
+ * the queue runs dry, so findings reach the disk shortly after they are made
+ * and survive the scan crashing. Nothing is retained in memory once written.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class FindingsSink
+{
+	private static final String CHARSET = "UTF-8";
+	private static final long POLL_INTERVAL_MILLIS = 100;
+
+	private final File file;
+	private final BlockingQueue<Finding> queue;
+	private final Writer writer;
+	private final Thread writerThread;
+	private final Object progressLock;
+
+	private long recordedCount;
+	private long writtenCount;
+	private volatile boolean closed;
+	private volatile IOException writeFailure;
+
+	/**
+	 * Opens a sink writing to the given file. If append is false any existing
+	 * contents of the file are discarded.
+	 */
+	public FindingsSink(File file, boolean append)
+		throws IOException
+	{
+		this.file = file;
+		this.queue = new LinkedBlockingQueue<Finding>();
+		boolean partialLine = append && endsWithPartialLine(file);
+		this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, append), CHARSET));
+		if(partialLine)
+		{
+			// Keeps a finding cut off by a crash from swallowing the next one
+			writer.write('\n');
+		}
+		this.progressLock = new Object();
+		this.recordedCount = 0;
+		this.writtenCount = 0;
+		this.closed = false;
+
+		this.writerThread = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				writeQueuedFindings();
+			}
+		}, "findings-writer");
+		this.writerThread.setDaemon(true);
+		this.writerThread.start();
+	}
+
+	public File getFile()
+	{
+		return file;
+	}
+
+	/**
+	 * Queues the given finding to be written. Never blocks on disk I/O.
+	 */
+	public void record(Finding finding)
+	{
+		if(closed)
+		{
+			throw new IllegalStateException("The findings sink has been closed");
+		}
+
+		synchronized(progressLock)
+		{
+			recordedCount++;
+		}
+
+		queue.add(finding);
+	}
+
+	/**
+	 * Blocks until every finding recorded so far has been written and flushed.
+	 */
+	public void flush()
+		throws IOException
+	{
+		synchronized(progressLock)
+		{
+			while(writtenCount < recordedCount && writeFailure == null && writerThread.isAlive())
+			{
+				try
+				{
+					progressLock.wait(POLL_INTERVAL_MILLIS);
+				}
+				catch(InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while flushing findings", e);
+				}
+			}
+		}
+
+		if(writeFailure != null)
+		{
+			throw writeFailure;
+		}
+	}
+
+	/**
+	 * Writes any remaining findings and closes the file.
+	 */
+	public void close()
+		throws IOException
+	{
+		if(closed)
+		{
+			return;
+		}
+
+		flush();
+		closed = true;
+
+		try
+		{
+			writerThread.join();
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		writer.close();
+	}
+
+	private void writeQueuedFindings()
+	{
+		List<Finding> batch = new ArrayList<Finding>();
+
+		while(!closed || !queue.isEmpty())
+		{
+			try
+			{
+				Finding finding = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+				if(finding == null)
+				{
+					continue;
+				}
+
+				batch.add(finding);
+				queue.drainTo(batch);
+
+				for(Finding queued: batch)
+				{
+					writer.write(queued.toJson());
+					writer.write('\n');
+				}
+
+				// Only flushes once the queue has run dry, so a burst of
+				// findings is written with a single flush
+				writer.flush();
+			}
+			catch(InterruptedException e)
+			{
+				return;
+			}
+			catch(IOException e)
+			{
+				writeFailure = e;
+				return;
+			}
+			finally
+			{
+				synchronized(progressLock)
+				{
+					writtenCount += batch.size();
+					progressLock.notifyAll();
+				}
+
+				batch.clear();
+			}
+		}
+	}
+
+	/**
+	 * Returns true if the given file is not empty and does not end with a line
+	 * terminator (i.e. writing to it was cut off part way through a line).
+	 */
+	static boolean endsWithPartialLine(File file)
+		throws IOException
+	{
+		if(!file.exists() || file.length() == 0)
+		{
+			return false;
+		}
+
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try
+		{
+			randomAccessFile.seek(randomAccessFile.length() - 1);
+			return randomAccessFile.read() != '\n';
+		}
+		finally
+		{
+			randomAccessFile.close();
+		}
+	}
+
+	/**
+	 * Renders the findings stored in the given JSON Lines file as the
+	 * human-readable fuzzing results, one finding at a time. Lines which cannot
+	 * be decoded (e.g. a line truncated by a crash) are skipped.
+	 */
+	public static void render(File findingsFile, PrintStream outputStream)
+		throws IOException
+	{
+		BufferedReader reader = new BufferedReader(
+				new InputStreamReader(new FileInputStream(findingsFile), CHARSET));
+
+		try
+		{
+			String line;
+			while((line = reader.readLine()) != null)
+			{
+				if(line.trim().length() == 0)
+				{
+					continue;
+				}
+
+				try
+				{
+					outputStream.print(Finding.fromJson(line).render());
+				}
+				catch(IllegalArgumentException e)
+				{
+					System.out.println("Skipping malformed finding: " + line);
+				}
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+}
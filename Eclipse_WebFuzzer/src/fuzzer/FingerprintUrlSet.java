@@ -0,0 +1,101 @@
+package fuzzer;
+
+/**
+ * Exact visited URL set which stores a 64-bit fingerprint of each URL in an
+ * open addressing hash table of primitive longs (16 to 32 bytes per URL rather
+ * than the hundreds taken up by a String in a HashSet). Two distinct URLs are
+ * only ever confused if their fingerprints collide, which is vanishingly
+ * unlikely for any realistic number of URLs.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class FingerprintUrlSet implements VisitedUrlSet
+{
+	private static final int INITIAL_CAPACITY = 1024;
+
+	/*
+	 * Zero marks an empty slot, so a fingerprint of zero is stored as one.
+	 */
+	private static final long EMPTY = 0;
+
+	private long[] table;
+	private int size;
+
+	public FingerprintUrlSet()
+	{
+		this.table = new long[INITIAL_CAPACITY];
+		this.size = 0;
+	}
+
+	public synchronized boolean add(String canonicalUrl)
+	{
+		long fingerprint = toStoredFingerprint(canonicalUrl);
+		int slot = findSlot(table, fingerprint);
+
+		if(table[slot] == fingerprint)
+		{
+			return false;
+		}
+
+		table[slot] = fingerprint;
+		size++;
+
+		// Keeps the table at most half full so that probe sequences stay short
+		if(size * 2 > table.length)
+		{
+			resize();
+		}
+
+		return true;
+	}
+
+	public synchronized boolean contains(String canonicalUrl)
+	{
+		long fingerprint = toStoredFingerprint(canonicalUrl);
+		return table[findSlot(table, fingerprint)] == fingerprint;
+	}
+
+	public synchronized long size()
+	{
+		return size;
+	}
+
+	private void resize()
+	{
+		long[] resizedTable = new long[table.length * 2];
+		for(long fingerprint: table)
+		{
+			if(fingerprint != EMPTY)
+			{
+				resizedTable[findSlot(resizedTable, fingerprint)] = fingerprint;
+			}
+		}
+
+		table = resizedTable;
+	}
+
+	/**
+	 * Returns the slot holding the given fingerprint, or the empty slot where
+	 * it belongs if it is not in the table (linear probing).
+	 */
+	private static int findSlot(long[] table, long fingerprint)
+	{
+		int mask = table.length - 1;
+		int slot = (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+
+		while(table[slot] != EMPTY && table[slot] != fingerprint)
+		{
+			slot = (slot + 1) & mask;
+		}
+
+		return slot;
+	}
+
+	private static long toStoredFingerprint(String canonicalUrl)
+	{
+		long fingerprint = UrlCanonicalizer.fingerprint(canonicalUrl);
+		return fingerprint == EMPTY ? 1 : fingerprint;
+	}
+}
@@ -0,0 +1,138 @@
+package fuzzer;
+
+/**
+ * Wraps a detector so that it is only run once per distinct response. The
+ * response body is fingerprinted as it is read and held back from the
+ * detector (up to a fixed number of characters) until the whole body has been
+ * seen. If the cache already holds the result of running the same kind of
+ * detector over an identical response then that result is used and the
+ * buffered body is simply dropped; otherwise the buffered body is fed to the
+ * detector and its result is cached. Bodies too long to buffer are fed to the
+ * detector as they are read, like an unwrapped detector, and are not cached.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class FingerprintingDetector<D extends ResponseDetector> implements ResponseDetector
+{
+	private static final int MAX_BUFFERED_CHARS = 1 << 18;
+	private static final int REPLAY_CHUNK_SIZE = 8192;
+
+	private final D detector;
+	private final String detectorKey;
+	private final ResponseCache cache;
+	private final ResponseFingerprint.Builder fingerprintBuilder;
+	private StringBuilder buffer;
+	private ResponseFingerprint fingerprint;
+	private boolean cached;
+
+	/**
+	 * Wraps the given detector. Detectors given the same key must be of the
+	 * same type and must give the same result for identical responses.
+	 */
+	public FingerprintingDetector(D detector, String detectorKey, ResponseCache cache)
+	{
+		this.detector = detector;
+		this.detectorKey = detectorKey;
+		this.cache = cache;
+		this.fingerprintBuilder = new ResponseFingerprint.Builder();
+		this.buffer = new StringBuilder();
+		this.fingerprint = null;
+		this.cached = false;
+	}
+
+	public void feed(char[] chunk, int offset, int length)
+	{
+		fingerprintBuilder.feed(chunk, offset, length);
+
+		if(buffer != null)
+		{
+			if(buffer.length() + length <= MAX_BUFFERED_CHARS)
+			{
+				buffer.append(chunk, offset, length);
+				return;
+			}
+
+			// Too long to cache, so the detector catches up on what has been
+			// held back and sees the rest of the body as it is read
+			replayBuffer();
+		}
+
+		if(!detector.isSatisfied())
+		{
+			detector.feed(chunk, offset, length);
+		}
+	}
+
+	/**
+	 * Nothing is known until the whole body has been fingerprinted, unless
+	 * the body is too long to be cached.
+	 */
+	public boolean isSatisfied()
+	{
+		return buffer == null && detector.isSatisfied();
+	}
+
+	/**
+	 * Finishes the analysis once the body has been read and returns the
+	 * detector holding its result, which is the cached detector if an
+	 * identical response has already been analyzed.
+	 */
+	@SuppressWarnings("unchecked")
+	public D finish()
+	{
+		if(buffer == null)
+		{
+			// Reading may have stopped early once the detector was satisfied,
+			// in which case the fingerprint would be incomplete
+			fingerprint = detector.isSatisfied() ? null : fingerprintBuilder.build();
+			return detector;
+		}
+
+		fingerprint = fingerprintBuilder.build();
+
+		ResponseDetector cachedDetector = cache.get(detectorKey, fingerprint);
+		if(cachedDetector != null)
+		{
+			buffer = null;
+			cached = true;
+			return (D) cachedDetector;
+		}
+
+		replayBuffer();
+		cache.put(detectorKey, fingerprint, detector);
+		return detector;
+	}
+
+	/**
+	 * Returns the fingerprint of the response, or null if the whole body was
+	 * not read. Only valid once finish() has been called.
+	 */
+	public ResponseFingerprint getFingerprint()
+	{
+		return fingerprint;
+	}
+
+	/**
+	 * Returns true if a cached result was used for the response.
+	 */
+	public boolean wasCached()
+	{
+		return cached;
+	}
+
+	private void replayBuffer()
+	{
+		char[] chunk = new char[REPLAY_CHUNK_SIZE];
+
+		for(int start = 0; start < buffer.length() && !detector.isSatisfied(); start += chunk.length)
+		{
+			int end = Math.min(buffer.length(), start + chunk.length);
+			buffer.getChars(start, end, chunk, 0);
+			detector.feed(chunk, 0, end - start);
+		}
+
+		buffer = null;
+	}
+}
@@ -0,0 +1,135 @@
+package fuzzer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the attack surface of a single form taken at
+ * discovery time: its position on the page, id, action, method, inputs and
+ * (if it can be submitted) the request template compiled from it.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class FormSurface
+{
+	private final int index;
+	private final String id;
+	private final String action;
+	private final String method;
+	private final boolean submittable;
+	private final boolean authenticationRequired;
+	private final List<InputSurface> inputs;
+	private final RequestTemplate requestTemplate;
+
+	public FormSurface(int index, String id, String action, String method, boolean submittable,
+			boolean authenticationRequired, List<InputSurface> inputs, RequestTemplate requestTemplate)
+	{
+		this.index = index;
+		this.id = id;
+		this.action = action;
+		this.method = method;
+		this.submittable = submittable;
+		this.authenticationRequired = authenticationRequired;
+		this.inputs = Collections.unmodifiableList(new ArrayList<InputSurface>(inputs));
+		this.requestTemplate = requestTemplate;
+	}
+
+	/**
+	 * Returns the position of this form among the forms on its page.
+	 */
+	public int getIndex()
+	{
+		return index;
+	}
+
+	public String getId()
+	{
+		return id;
+	}
+
+	public String getAction()
+	{
+		return action;
+	}
+
+	public String getMethod()
+	{
+		return method;
+	}
+
+	/**
+	 * Returns true if the form has a submit input it can be submitted with.
+	 */
+	public boolean isSubmittable()
+	{
+		return submittable;
+	}
+
+	public boolean requiresAuthentication()
+	{
+		return authenticationRequired;
+	}
+
+	public List<InputSurface> getInputs()
+	{
+		return inputs;
+	}
+
+	/**
+	 * Returns the request template compiled from this form, or null if the form
+	 * could not be compiled (e.g. it has no submit input).
+	 */
+	public RequestTemplate getRequestTemplate()
+	{
+		return requestTemplate;
+	}
+
+	/**
+	 * Returns this form as a record which can be encoded as JSON.
+	 */
+	public Map<String, Object> toRecord()
+	{
+		List<Map<String, Object>> inputRecords = new ArrayList<Map<String, Object>>(inputs.size());
+		for(InputSurface input: inputs)
+		{
+			inputRecords.add(input.toRecord());
+		}
+
+		Map<String, Object> record = new LinkedHashMap<String, Object>();
+		record.put("index", index);
+		record.put("id", id);
+		record.put("action", action);
+		record.put("method", method);
+		record.put("submittable", submittable);
+		record.put("authenticationRequired", authenticationRequired);
+		record.put("inputs", inputRecords);
+		record.put("requestTemplate", requestTemplate == null ? null : requestTemplate.toRecord());
+		return record;
+	}
+
+	/**
+	 * Recreates a form from a record made by toRecord().
+	 */
+	@SuppressWarnings("unchecked")
+	public static FormSurface fromRecord(Map<String, Object> record)
+	{
+		List<InputSurface> inputs = new ArrayList<InputSurface>();
+		for(Object inputRecord: (List<Object>) record.get("inputs"))
+		{
+			inputs.add(InputSurface.fromRecord((Map<String, Object>) inputRecord));
+		}
+
+		Map<String, Object> templateRecord = (Map<String, Object>) record.get("requestTemplate");
+
+		return new FormSurface(((Number) record.get("index")).intValue(), (String) record.get("id"),
+				(String) record.get("action"), (String) record.get("method"),
+				Boolean.TRUE.equals(record.get("submittable")),
+				Boolean.TRUE.equals(record.get("authenticationRequired")), inputs,
+				templateRecord == null ? null : RequestTemplate.fromRecord(templateRecord));
+	}
+}
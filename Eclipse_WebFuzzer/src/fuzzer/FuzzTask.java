@@ -0,0 +1,189 @@
+package fuzzer;
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * A single, independent unit of fuzzing work: submitting one payload through
+ * one input of one form on one page. Tasks identify their form and input by
+ * position so that they can be replayed against a freshly loaded copy of the
+ * page, which gives every task its own isolated form state.
+ *
+ * A task's payload can be a line of a (possibly memory-mapped) vector list,
+ * in which case it is only decoded when the task is used. The tasks for an
+ * input are created as they are needed from a view of the vector list (see
+ * forPayloads()), so a scan never holds a copy of the list per input.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class FuzzTask
+{
+	/**
+	 * The kind of check which is performed on the response to the submission.
+	 */
+	public enum Kind
+	{
+		SENSITIVE_DATA,
+		SANITIZATION
+	}
+
+	/**
+	 * What running the task turned up. A finding outweighs a response anomaly
+	 * if the same response produced both.
+	 */
+	public enum Result
+	{
+		NOT_SUBMITTED,
+		NOTHING_FOUND,
+		ANOMALY,
+		FINDING
+	}
+
+	private final String pageUrl;
+	private final int formIndex;
+	private final int inputIndex;
+	private final List<String> payloads;
+	private final int payloadIndex;
+	private final Kind kind;
+
+	/*
+	 * Decoded from the payload list on first use. Strings are immutable, so
+	 * threads which race to decode it just do the work twice.
+	 */
+	private String payload;
+
+	public FuzzTask(String pageUrl, int formIndex, int inputIndex, String payload, Kind kind)
+	{
+		this(pageUrl, formIndex, inputIndex, Collections.singletonList(payload), 0, kind);
+		this.payload = payload;
+	}
+
+	/**
+	 * Creates a task whose payload is the given line of the given list.
+	 */
+	public FuzzTask(String pageUrl, int formIndex, int inputIndex, List<String> payloads, int payloadIndex, 
+			Kind kind)
+	{
+		this.pageUrl = pageUrl;
+		this.formIndex = formIndex;
+		this.inputIndex = inputIndex;
+		this.payloads = payloads;
+		this.payloadIndex = payloadIndex;
+		this.kind = kind;
+	}
+
+	/**
+	 * Returns a read-only view of a task for each of the given payloads,
+	 * submitted through the given input. The tasks are created as they are
+	 * read, so the view costs nothing per payload.
+	 */
+	public static List<FuzzTask> forPayloads(String pageUrl, int formIndex, int inputIndex, 
+			List<String> payloads, Kind kind)
+	{
+		return new PayloadTasks(pageUrl, formIndex, inputIndex, payloads, kind);
+	}
+
+	public String getPageUrl()
+	{
+		return pageUrl;
+	}
+
+	public int getFormIndex()
+	{
+		return formIndex;
+	}
+
+	public int getInputIndex()
+	{
+		return inputIndex;
+	}
+
+	public String getPayload()
+	{
+		if(payload == null)
+		{
+			payload = payloads.get(payloadIndex);
+		}
+
+		return payload;
+	}
+
+	public Kind getKind()
+	{
+		return kind;
+	}
+
+	/**
+	 * Returns this task as a record which can be encoded as JSON.
+	 */
+	public Map<String, Object> toRecord()
+	{
+		Map<String, Object> record = new LinkedHashMap<String, Object>();
+		record.put("page", pageUrl);
+		record.put("form", formIndex);
+		record.put("input", inputIndex);
+		record.put("kind", kind.name());
+		record.put("payload", getPayload());
+		return record;
+	}
+
+	/**
+	 * Recreates a task from a record made by toRecord().
+	 */
+	public static FuzzTask fromRecord(Map<String, Object> record)
+	{
+		return new FuzzTask((String) record.get("page"), ((Number) record.get("form")).intValue(),
+				((Number) record.get("input")).intValue(), (String) record.get("payload"),
+				Kind.valueOf((String) record.get("kind")));
+	}
+
+	@Override
+	public String toString()
+	{
+		return kind + " " + pageUrl + " form " + formIndex + " input " + inputIndex + ": " + getPayload();
+	}
+
+	/**
+	 * The tasks submitting each of a list of payloads through one input.
+	 */
+	private static class PayloadTasks extends AbstractList<FuzzTask> implements RandomAccess
+	{
+		private final String pageUrl;
+		private final int formIndex;
+		private final int inputIndex;
+		private final List<String> payloads;
+		private final Kind kind;
+
+		public PayloadTasks(String pageUrl, int formIndex, int inputIndex, List<String> payloads, Kind kind)
+		{
+			this.pageUrl = pageUrl;
+			this.formIndex = formIndex;
+			this.inputIndex = inputIndex;
+			this.payloads = payloads;
+			this.kind = kind;
+		}
+
+		@Override
+		public int size()
+		{
+			return payloads.size();
+		}
+
+		@Override
+		public FuzzTask get(int index)
+		{
+			if(index < 0 || index >= payloads.size())
+			{
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + payloads.size());
+			}
+
+			return new FuzzTask(pageUrl, formIndex, inputIndex, payloads, index, kind);
+		}
+	}
+}
@@ -0,0 +1,268 @@
+package fuzzer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Chooses which fuzz tasks a scan runs, and in what order, when it is not to
+ * run all of them in the order they were created (see the completeness,
+ * request_budget and time_budget options).
+ *
+ * Tasks are sampled separately for every form, so that every form is tested:
+ * each one gets its share of the sample and, whatever the share, at least one
+ * task for each of its inputs. Within a form the inputs take turns, and each
+ * input's payloads are shuffled with a random number generator seeded from
+ * the sampling seed and the form, so the same seed always picks the same
+ * tasks (which lets a sampled scan be resumed or repeated).
+ *
+ * The sampler only keeps the positions of the tasks, and the sample is a view
+ * of the given tasks, so sampling never copies a scan's tasks (or decodes
+ * their payloads).
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class FuzzTaskSampler
+{
+	private final long seed;
+
+	public FuzzTaskSampler(long seed)
+	{
+		this.seed = seed;
+	}
+
+	/**
+	 * Returns the given percentage of the given tasks (which must be grouped
+	 * by page and form). If interleaveForms is true then the forms take turns,
+	 * one task for each of a form's inputs at a time, so that a scan which is
+	 * cut short has still spread its requests across every form; otherwise
+	 * the tasks for each form are kept together.
+	 */
+	public List<FuzzTask> sample(List<FuzzTask> tasks, int completeness, boolean interleaveForms)
+	{
+		if(completeness >= 100 && !interleaveForms)
+		{
+			return tasks;
+		}
+
+		List<FormTasks> forms = groupByForm(tasks);
+
+		int sampleSize = (int) Math.ceil(tasks.size() * (Math.min(completeness, 100) / 100.0));
+		allocate(forms, sampleSize);
+
+		int quotaTotal = 0;
+		for(FormTasks form: forms)
+		{
+			quotaTotal += form.quota;
+		}
+
+		int[] sample = new int[quotaTotal];
+		int sampled = 0;
+		if(!interleaveForms)
+		{
+			for(FormTasks form: forms)
+			{
+				System.arraycopy(form.ordered, 0, sample, sampled, form.quota);
+				sampled += form.quota;
+			}
+
+			return new IndexedList<FuzzTask>(tasks, sample, sampled);
+		}
+
+		boolean added = true;
+		for(int round = 0; added; round++)
+		{
+			added = false;
+			for(FormTasks form: forms)
+			{
+				int start = round * form.inputCount;
+				int end = Math.min(start + form.inputCount, form.quota);
+				if(start < end)
+				{
+					System.arraycopy(form.ordered, start, sample, sampled, end - start);
+					sampled += end - start;
+					added = true;
+				}
+			}
+		}
+
+		return new IndexedList<FuzzTask>(tasks, sample, sampled);
+	}
+
+	/**
+	 * Splits the positions of the given tasks by form, in the order the forms
+	 * first appear, and puts each form's tasks in the order they are sampled
+	 * in.
+	 */
+	private List<FormTasks> groupByForm(List<FuzzTask> tasks)
+	{
+		Map<String, Map<Integer, InputTasks>> tasksByForm = new LinkedHashMap<String, Map<Integer, InputTasks>>();
+
+		for(int index = 0; index < tasks.size(); index++)
+		{
+			FuzzTask task = tasks.get(index);
+			String form = task.getPageUrl() + "#" + task.getFormIndex();
+			Map<Integer, InputTasks> tasksByInput = tasksByForm.get(form);
+			if(tasksByInput == null)
+			{
+				tasksByInput = new LinkedHashMap<Integer, InputTasks>();
+				tasksByForm.put(form, tasksByInput);
+			}
+
+			InputTasks inputTasks = tasksByInput.get(task.getInputIndex());
+			if(inputTasks == null)
+			{
+				inputTasks = new InputTasks();
+				tasksByInput.put(task.getInputIndex(), inputTasks);
+			}
+
+			inputTasks.add(index);
+		}
+
+		List<FormTasks> forms = new ArrayList<FormTasks>(tasksByForm.size());
+		for(Map.Entry<String, Map<Integer, InputTasks>> entry: tasksByForm.entrySet())
+		{
+			// Seeded by the form rather than its position, so that a form is
+			// sampled the same way however many others were discovered
+			Random random = new Random(seed * 31 + entry.getKey().hashCode());
+
+			List<InputTasks> inputs = new ArrayList<InputTasks>(entry.getValue().values());
+			for(InputTasks inputTasks: inputs)
+			{
+				inputTasks.shuffle(random);
+			}
+
+			forms.add(new FormTasks(interleave(inputs), inputs.size()));
+		}
+
+		return forms;
+	}
+
+	/**
+	 * Returns the tasks of the given inputs taking turns: the first task of
+	 * each input, then the second, and so on.
+	 */
+	private static int[] interleave(List<InputTasks> inputs)
+	{
+		int taskCount = 0;
+		for(InputTasks inputTasks: inputs)
+		{
+			taskCount += inputTasks.size;
+		}
+
+		int[] ordered = new int[taskCount];
+		int added = 0;
+		for(int i = 0; added < taskCount; i++)
+		{
+			for(InputTasks inputTasks: inputs)
+			{
+				if(i < inputTasks.size)
+				{
+					ordered[added++] = inputTasks.indexes[i];
+				}
+			}
+		}
+
+		return ordered;
+	}
+
+	/**
+	 * Sets how many tasks are sampled from each form: one for each of its
+	 * inputs, and then the rest of the sample in proportion to the number of
+	 * tasks each form has left. The guaranteed tasks are sampled even if they
+	 * alone add up to more than the sample size.
+	 */
+	private static void allocate(List<FormTasks> forms, int sampleSize)
+	{
+		int remaining = sampleSize;
+		int available = 0;
+		for(FormTasks form: forms)
+		{
+			form.quota = Math.min(form.inputCount, form.ordered.length);
+			remaining -= form.quota;
+			available += form.ordered.length - form.quota;
+		}
+
+		if(remaining <= 0 || available == 0)
+		{
+			return;
+		}
+
+		int allocated = 0;
+		for(FormTasks form: forms)
+		{
+			int share = (int) ((long) remaining * (form.ordered.length - form.quota) / available);
+			form.quota += share;
+			allocated += share;
+		}
+
+		// The shares are rounded down, so a few tasks are left to hand out
+		for(int i = 0; allocated < remaining; i = (i + 1) % forms.size())
+		{
+			FormTasks form = forms.get(i);
+			if(form.quota < form.ordered.length)
+			{
+				form.quota++;
+				allocated++;
+			}
+		}
+	}
+
+	/**
+	 * The positions of the tasks for a single input.
+	 */
+	private static class InputTasks
+	{
+		private int[] indexes = new int[16];
+		private int size;
+
+		public void add(int index)
+		{
+			if(size == indexes.length)
+			{
+				indexes = Arrays.copyOf(indexes, size * 2);
+			}
+
+			indexes[size++] = index;
+		}
+
+		/**
+		 * Shuffles the positions exactly as Collections.shuffle() would, so
+		 * that a seed picks the same tasks as it did when the tasks were
+		 * shuffled as a list.
+		 */
+		public void shuffle(Random random)
+		{
+			for(int i = size; i > 1; i--)
+			{
+				int swap = random.nextInt(i);
+				int index = indexes[i - 1];
+				indexes[i - 1] = indexes[swap];
+				indexes[swap] = index;
+			}
+		}
+	}
+
+	/**
+	 * The positions of the tasks for a single form, in the order they are
+	 * sampled in.
+	 */
+	private static class FormTasks
+	{
+		private final int[] ordered;
+		private final int inputCount;
+		private int quota;
+
+		public FormTasks(int[] ordered, int inputCount)
+		{
+			this.ordered = ordered;
+			this.inputCount = inputCount;
+			this.quota = ordered.length;
+		}
+	}
+}
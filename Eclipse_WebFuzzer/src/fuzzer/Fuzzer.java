@@ -3,8 +3,19 @@
  */
 package fuzzer;
 
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.gargoylesoftware.htmlunit.FailingHttpStatusCodeException;
 
@@ -18,28 +29,112 @@ import com.gargoylesoftware.htmlunit.FailingHttpStatusCodeException;
  */
 public class Fuzzer
 {
+	/*
+	 * Picks each scan up from its checkpoint instead of starting it over.
+	 */
+	private static final String RESUME_FLAG = "--resume";
+	
+	/*
+	 * Runs fuzz tasks for the coordinator at the given host:port instead of
+	 * scanning a site.
+	 */
+	private static final String WORKER_FLAG = "--worker";
+	
+	/*
+	 * Scans up to the given number of configuration files at once, each with
+	 * its own SiteInformationManager and report file, instead of one after
+	 * another. The requests of every scan can be capped as a whole with the
+	 * two flags which follow.
+	 */
+	private static final String PARALLEL_FLAG = "--parallel";
+	private static final String MAX_IN_FLIGHT_FLAG = "--max-in-flight";
+	private static final String MAX_RATE_FLAG = "--max-rate";
+	
 	public static void main(String[] args)
 	{
-		if(args.length == 0)
+		// Resuming applies to every configuration file given
+		boolean resume = false;
+		String coordinatorAddress = null;
+		int parallelTargets = 0;
+		int maxInFlight = 0;
+		double maxRate = 0;
+		List<String> configurationFileNames = new ArrayList<String>();
+		try
+		{
+			for(int i = 0; i < args.length; i++)
+			{
+				String arg = args[i];
+				if(arg.equals(RESUME_FLAG))
+				{
+					resume = true;
+				}
+				else if(arg.equals(WORKER_FLAG) && i + 1 < args.length)
+				{
+					coordinatorAddress = args[++i];
+				}
+				else if(arg.equals(PARALLEL_FLAG) && i + 1 < args.length)
+				{
+					parallelTargets = Integer.parseInt(args[++i]);
+				}
+				else if(arg.equals(MAX_IN_FLIGHT_FLAG) && i + 1 < args.length)
+				{
+					maxInFlight = Integer.parseInt(args[++i]);
+				}
+				else if(arg.equals(MAX_RATE_FLAG) && i + 1 < args.length)
+				{
+					maxRate = Double.parseDouble(args[++i]);
+				}
+				else
+				{
+					configurationFileNames.add(arg);
+				}
+			}
+		}
+		catch(NumberFormatException e)
+		{
+			System.out.println("Invalid number given: " + e.getMessage());
+			configurationFileNames.clear();
+		}
+		
+		if(coordinatorAddress != null)
+		{
+			runWorker(coordinatorAddress);
+			return;
+		}
+		
+		if(configurationFileNames.isEmpty())
+		{
+			System.out.println("Usage: java Fuzzer [" + RESUME_FLAG + "] [" + PARALLEL_FLAG + " <targets> [" + 
+				MAX_IN_FLIGHT_FLAG + " <requests>] [" + MAX_RATE_FLAG + " <requests per second>]] " +
+				"<the name of one or more configuration files separated by spaces>");
+			System.out.println("       java Fuzzer " + WORKER_FLAG + " <coordinator host>:<port>");
+			return;
+		}
+		
+		// Lets the progress of the scan be watched while it runs
+		ScanMetrics.registerMBeans();
+		
+		if(parallelTargets > 0)
 		{
-			System.out.println("Usage: java Fuzzer <the name of one or more " +
-				"configuration files separated by spaces>");
+			runTargets(configurationFileNames, resume, parallelTargets, 
+					new RequestBudget(maxInFlight, maxRate, 1));
+			ScanMetrics.writeSummary(System.out);
 			return;
 		}
 		
+		SiteInformationManager informationManager = null;
 		try
 		{
-			SiteInformationManager informationManager = null;
-			
 			int index = 0;
-			while(informationManager == null && index < args.length)
+			while(informationManager == null && index < configurationFileNames.size())
 			{
-				informationManager = 
-						SiteInformationManager.loadConfigurationAndFuzz(args[index]);
+				informationManager = SiteInformationManager.loadConfigurationAndFuzz(
+						configurationFileNames.get(index), resume);
 				
 				if(informationManager == null)
 				{
-					System.out.println("Unable to load configuration file at " + args[index]);
+					System.out.println("Unable to load configuration file at " + 
+							configurationFileNames.get(index));
 					return;
 				}
 			}
@@ -51,16 +146,18 @@ public class Fuzzer
 				return;
 			}
 			
-			for(int i = 1; i < args.length; i++)
+			for(int i = 1; i < configurationFileNames.size(); i++)
 			{
-				if(!informationManager.reconfigureAndFuzz(args[i]))
+				if(!informationManager.reconfigureAndFuzz(configurationFileNames.get(i)))
 				{
-					System.out.println("Unable to load configuration file at " + args[i]);
+					System.out.println("Unable to load configuration file at " + 
+							configurationFileNames.get(i));
 					continue;
 				}
 			}
 			
 			informationManager.writeReport(System.out);
+			ScanMetrics.writeSummary(System.out);
 		}
 		catch (FailingHttpStatusCodeException e)
 		{
@@ -79,5 +176,144 @@ public class Fuzzer
 			// Catches unexpected and undeclared exceptions
 			e.printStackTrace();
 		}
+		finally
+		{
+			if(informationManager != null)
+			{
+				informationManager.shutdown();
+			}
+		}
+	}
+	
+	/**
+	 * Scans every given configuration file, up to the given number at once,
+	 * with a separate SiteInformationManager for each so that a slow site
+	 * only holds up its own scan. Every scan's requests count against the
+	 * given budget. The report for each configuration file is written next 
+	 * to it, to <configuration file>.report.txt.
+	 */
+	private static void runTargets(List<String> configurationFileNames, final boolean resume, 
+			int parallelTargets, final RequestBudget budget)
+	{
+		final AtomicInteger threadCount = new AtomicInteger();
+		ExecutorService targetPool = Executors.newFixedThreadPool(
+				Math.min(parallelTargets, configurationFileNames.size()), new ThreadFactory()
+		{
+			public Thread newThread(Runnable runnable)
+			{
+				return new Thread(runnable, "target-" + threadCount.incrementAndGet());
+			}
+		});
+		
+		List<Future<String>> scans = new ArrayList<Future<String>>();
+		for(final String configurationFileName: configurationFileNames)
+		{
+			scans.add(targetPool.submit(new Callable<String>()
+			{
+				public String call() throws Exception
+				{
+					return scanTarget(configurationFileName, resume, budget);
+				}
+			}));
+		}
+		
+		targetPool.shutdown();
+		
+		int scanned = 0;
+		for(int i = 0; i < scans.size(); i++)
+		{
+			String configurationFileName = configurationFileNames.get(i);
+			try
+			{
+				String reportFileName = scans.get(i).get();
+				if(reportFileName == null)
+				{
+					System.out.println("Unable to load configuration file at " + configurationFileName);
+				}
+				else
+				{
+					System.out.println("Report for " + configurationFileName + " written to " + reportFileName);
+					scanned++;
+				}
+			}
+			catch(ExecutionException e)
+			{
+				System.out.println("Scan of " + configurationFileName + " failed");
+				e.getCause().printStackTrace();
+			}
+			catch(InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				targetPool.shutdownNow();
+				return;
+			}
+		}
+		
+		System.out.println("Scanned " + scanned + " of " + configurationFileNames.size() + " targets");
+	}
+	
+	/**
+	 * Scans the site of the given configuration file and writes its report,
+	 * returning the name of the report file, or null if the configuration 
+	 * could not be loaded.
+	 */
+	private static String scanTarget(String configurationFileName, boolean resume, RequestBudget budget)
+		throws IOException
+	{
+		SiteInformationManager informationManager = SiteInformationManager.loadConfigurationAndFuzz(
+				configurationFileName, resume, budget);
+		
+		if(informationManager == null)
+		{
+			return null;
+		}
+		
+		String reportFileName = configurationFileName + ".report.txt";
+		try
+		{
+			PrintStream reportStream = new PrintStream(new FileOutputStream(reportFileName), false, "UTF-8");
+			try
+			{
+				informationManager.writeReport(reportStream);
+			}
+			finally
+			{
+				reportStream.close();
+			}
+		}
+		finally
+		{
+			informationManager.shutdown();
+		}
+		
+		return reportFileName;
+	}
+	
+	private static void runWorker(String coordinatorAddress)
+	{
+		int separator = coordinatorAddress.lastIndexOf(':');
+		if(separator < 0)
+		{
+			System.out.println("Expected the coordinator as <host>:<port> but was given " + coordinatorAddress);
+			return;
+		}
+		
+		ScanMetrics.registerMBeans();
+		
+		try
+		{
+			new ScanWorker(coordinatorAddress.substring(0, separator), 
+					Integer.parseInt(coordinatorAddress.substring(separator + 1))).run();
+		}
+		catch(NumberFormatException e)
+		{
+			System.out.println("Invalid coordinator port in " + coordinatorAddress);
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		
+		ScanMetrics.writeSummary(System.out);
 	}
 }
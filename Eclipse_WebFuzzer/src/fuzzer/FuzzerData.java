@@ -1,5 +1,8 @@
 package fuzzer;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * POJO (plain old Java object) representation of fuzzer application settings. 
  * 
@@ -12,9 +15,36 @@ public class FuzzerData {
 	private static FuzzerData self;
 	
 	private boolean passwordGuessing = false;
+	private boolean rawHttpFuzzing = false;
+	private boolean fastDiscovery = false;
+	private boolean bloomFilterVisitedSet = false;
+	private long expectedUrlCount = 1000000;
+	private double falsePositiveRate = BloomFilterUrlSet.DEFAULT_FALSE_POSITIVE_RATE;
 	private long TIME_GAP = 0; 
-	private int SEARCH_COMPLETE;
+	private double requestsPerSecond = -1;
+	private int burstSize = 1;
+	private boolean adaptiveConcurrency = true;
+	private int maxConcurrency = 16;
+	private int SEARCH_COMPLETE = 100;
+	private long samplingSeed = 0;
+	private long requestBudget = 0;
+	private long timeBudgetSeconds = 0;
+	private boolean vectorPrioritization = false;
+	private String vectorStatisticsFileName;
+	private int discoveryThreads = 4;
+	private int fuzzingThreads = 4;
+	private int guessingConcurrency = 16;
+	private int passwordGuessingThreads = 4;
+	private int clientPoolSize = 0;
+	private int anomalyDistance = 12;
+	private int coordinatorPort = 0;
+	private int leaseSize = 50;
+	private long workerTimeoutMillis = 30000;
 	private String username, password, dataFileName, authenticationSuccessString; 
+	private List<String> lockoutMarkers = new ArrayList<String>();
+	private String findingsFileName;
+	private String checkpointFileName;
+	private long checkpointIntervalMillis = 5000;
 	
 	public FuzzerData(){
 		
@@ -40,15 +70,255 @@ public class FuzzerData {
 		return TIME_GAP;
 	}
 	
+	public void setRateLimit(double requestsPerSecond, int burstSize){
+		this.requestsPerSecond = Math.max(0, requestsPerSecond);
+		this.burstSize = Math.max(1, burstSize);
+	}
+	
+	/**
+	 * Returns the maximum number of requests per second sent to each host, or
+	 * zero if requests are unlimited. Unless a rate limit has been set, a time
+	 * gap of N milliseconds allows 1000/N requests per second.
+	 */
+	public double requestsPerSecond(){
+		if(requestsPerSecond >= 0){
+			return requestsPerSecond;
+		}
+		
+		return TIME_GAP > 0 ? 1000.0 / TIME_GAP : 0;
+	}
+	
+	public int burstSize(){
+		return burstSize;
+	}
+	
+	/**
+	 * Returns true if the number of requests in flight to each host is
+	 * adjusted to the host's latency and error rate.
+	 */
+	public boolean adaptiveConcurrencyIsOn(){
+		return adaptiveConcurrency;
+	}
+	
+	public void setAdaptiveConcurrency(boolean adaptiveConcurrency){
+		this.adaptiveConcurrency = adaptiveConcurrency;
+	}
+	
+	public void setMaxConcurrency(int concurrency){
+		maxConcurrency = Math.max(1, concurrency);
+	}
+	
+	/**
+	 * Returns the most requests which adaptive concurrency control will allow
+	 * in flight to a single host.
+	 */
+	public int maxConcurrency(){
+		return maxConcurrency;
+	}
+	
+	/**
+	 * Returns the number of requests in flight to each host which adaptive
+	 * concurrency control starts out allowing.
+	 */
+	public int initialConcurrency(){
+		return Math.min(maxConcurrency, Math.max(discoveryThreads, fuzzingThreads));
+	}
+	
 	public int completeness(){
 		return SEARCH_COMPLETE;
 	}
 	
+	public void setSamplingSeed(long seed){
+		samplingSeed = seed;
+	}
+	
+	/**
+	 * Returns the seed fuzz tasks are sampled with, so that a scan with the
+	 * same seed samples the same tasks.
+	 */
+	public long samplingSeed(){
+		return samplingSeed;
+	}
+	
+	public void setRequestBudget(long budget){
+		requestBudget = Math.max(0, budget);
+	}
+	
+	/**
+	 * Returns the number of requests after which a scan stops starting fuzz
+	 * tasks, or zero if there is no limit. The tasks already running are
+	 * finished, so a few more requests than this may be sent.
+	 */
+	public long requestBudget(){
+		return requestBudget;
+	}
+	
+	public void setTimeBudgetSeconds(long budget){
+		timeBudgetSeconds = Math.max(0, budget);
+	}
+	
+	/**
+	 * Returns how many seconds after its configuration is loaded a scan stops
+	 * starting fuzz tasks, or zero if there is no limit.
+	 */
+	public long timeBudgetSeconds(){
+		return timeBudgetSeconds;
+	}
+	
+	public void setVectorPrioritization(boolean prioritization){
+		vectorPrioritization = prioritization;
+	}
+	
+	/**
+	 * Returns true if fuzz vectors are tried in order of how likely they are 
+	 * to turn something up (see PrioritizedTaskQueue) rather than in the 
+	 * order they were given in.
+	 */
+	public boolean vectorPrioritizationIsOn(){
+		return vectorPrioritization;
+	}
+	
+	public void setVectorStatisticsFileName(String fileName){
+		vectorStatisticsFileName = fileName;
+	}
+	
+	public String getVectorStatisticsFileName(){
+		return vectorStatisticsFileName;
+	}
+	
+	/**
+	 * Returns true if a scan may stop before it has run every fuzz task it
+	 * sampled.
+	 */
+	public boolean hasBudget(){
+		return requestBudget > 0 || timeBudgetSeconds > 0;
+	}
+	
+	public void setDiscoveryThreads(int threads){
+		discoveryThreads = Math.max(1, threads);
+	}
+	
+	public int discoveryThreads(){
+		return discoveryThreads;
+	}
+	
+	public void setFuzzingThreads(int threads){
+		fuzzingThreads = Math.max(1, threads);
+	}
+	
+	public int fuzzingThreads(){
+		return fuzzingThreads;
+	}
+	
+	public void setGuessingConcurrency(int concurrency){
+		guessingConcurrency = Math.max(1, concurrency);
+	}
+	
+	/**
+	 * Returns the maximum number of page guesses which may be in flight at
+	 * once.
+	 */
+	public int guessingConcurrency(){
+		return guessingConcurrency;
+	}
+	
+	public void setPasswordGuessingThreads(int threads){
+		passwordGuessingThreads = Math.max(1, threads);
+	}
+	
+	/**
+	 * Returns the number of passwords which may be tried against a login form
+	 * at once, each with its own session.
+	 */
+	public int passwordGuessingThreads(){
+		return passwordGuessingThreads;
+	}
+	
+	public void setAnomalyDistance(int distance){
+		anomalyDistance = Math.max(0, Math.min(64, distance));
+	}
+	
+	/**
+	 * Returns the number of SimHash bits (out of 64) in which a response must
+	 * differ from its form's baseline response to be reported as an anomaly,
+	 * or zero if anomalies are not checked for (and no baselines are fetched).
+	 */
+	public int anomalyDistance(){
+		return anomalyDistance;
+	}
+	
+	public void setCoordinatorPort(int port){
+		coordinatorPort = Math.max(0, port);
+	}
+	
+	/**
+	 * Returns the port on which fuzz tasks are handed out to worker processes,
+	 * or zero if fuzzing is performed in this process.
+	 */
+	public int coordinatorPort(){
+		return coordinatorPort;
+	}
+	
+	public void setLeaseSize(int size){
+		leaseSize = Math.max(1, size);
+	}
+	
+	/**
+	 * Returns the largest number of fuzz tasks handed to a worker at once.
+	 */
+	public int leaseSize(){
+		return leaseSize;
+	}
+	
+	public void setWorkerTimeoutMillis(long timeout){
+		workerTimeoutMillis = Math.max(1000, timeout);
+	}
+	
+	/**
+	 * Returns how long a worker may go without being heard from before it is
+	 * considered dead and its lease is handed to another worker.
+	 */
+	public long workerTimeoutMillis(){
+		return workerTimeoutMillis;
+	}
+	
+	public void setClientPoolSize(int size){
+		clientPoolSize = size;
+	}
+	
+	/**
+	 * Returns the maximum number of pooled WebClients, which defaults to one
+	 * per discovery or fuzzing thread (whichever there are more of).
+	 */
+	public int clientPoolSize(){
+		return clientPoolSize > 0 ? clientPoolSize : Math.max(discoveryThreads, fuzzingThreads);
+	}
+	
 	public String toString(){
 		String result = "CURRENT SYSTEM OPTIONS:\n";
 		String complete = SEARCH_COMPLETE + "%";
-		result += "\tSearch Completeness => " + complete + "\n";
+		result += "\tSearch Completeness => " + complete + " (seed " + samplingSeed + ")\n";
+		result += "\tBudget => " + (requestBudget > 0 ? requestBudget + " requests" : "unlimited requests") + 
+				", " + (timeBudgetSeconds > 0 ? timeBudgetSeconds + " s" : "unlimited time") + "\n";
 		result += "\tTime Gap => " + this.TIME_GAP + "\n";
+		result += "\tRate Limit => " + (requestsPerSecond() > 0 ? 
+				requestsPerSecond() + " requests/s (burst " + burstSize + ")" : "none") + "\n";
+		result += "\tConcurrency => " + (adaptiveConcurrency ? 
+				"adaptive (max " + maxConcurrency + ")" : "fixed") + "\n";
+		result += "\tDiscovery Threads => " + this.discoveryThreads + "\n";
+		result += "\tDiscovery Mode => " + (fastDiscovery ? "fast" : "browser") + "\n";
+		result += "\tFuzzing Threads => " + this.fuzzingThreads + "\n";
+		result += "\tVector Order => " + (vectorPrioritization ? "prioritized" : "as given") + "\n";
+		result += "\tPage Guessing Concurrency => " + this.guessingConcurrency + "\n";
+		result += "\tPassword Guessing Threads => " + this.passwordGuessingThreads + "\n";
+		result += "\tAnomaly Distance => " + (anomalyDistance > 0 ? anomalyDistance + " bits" : "off") + "\n";
+		result += "\tClient Pool Size => " + clientPoolSize() + "\n";
+		result += "\tFuzzing => " + (coordinatorPort > 0 ? "distributed from port " + coordinatorPort + 
+				" (leases of " + leaseSize + " tasks, " + workerTimeoutMillis + " ms worker timeout)" : "local") + "\n";
+		result += "\tCheckpoint Interval => " + this.checkpointIntervalMillis + " ms\n";
+		result += "\tVisited Set => " + (bloomFilterVisitedSet ? 
+				"bloom filter (" + expectedUrlCount + " URLs, " + falsePositiveRate + 
+				" false positive rate)" : "exact") + "\n";
 		return result;
 		
 	}
@@ -77,6 +347,41 @@ public class FuzzerData {
 		this.dataFileName = dataFileName;
 	}
 
+	/**
+	 * Returns the name of the JSON Lines file findings are streamed to, or null
+	 * if the default (derived from the configuration file name) should be used.
+	 */
+	public String getFindingsFileName() {
+		return findingsFileName;
+	}
+
+	public void setFindingsFileName(String findingsFileName) {
+		this.findingsFileName = findingsFileName;
+	}
+
+	/**
+	 * Returns the name of the file the scan's checkpoint is written to, or null
+	 * if the default (derived from the configuration file name) should be used.
+	 */
+	public String getCheckpointFileName() {
+		return checkpointFileName;
+	}
+
+	public void setCheckpointFileName(String checkpointFileName) {
+		this.checkpointFileName = checkpointFileName;
+	}
+
+	/**
+	 * Returns how often (in milliseconds) the checkpoint is written to disk.
+	 */
+	public long checkpointIntervalMillis() {
+		return checkpointIntervalMillis;
+	}
+
+	public void setCheckpointIntervalMillis(long checkpointIntervalMillis) {
+		this.checkpointIntervalMillis = Math.max(1, checkpointIntervalMillis);
+	}
+
 	public boolean passwordGuessingIsOn() {
 		return passwordGuessing;
 	}
@@ -85,6 +390,67 @@ public class FuzzerData {
 		this.passwordGuessing = passwordGuessing;
 	}
 
+	/**
+	 * Returns true if fuzz vectors are submitted directly over HTTP from
+	 * compiled request templates instead of through HtmlUnit form clicks.
+	 */
+	public boolean rawHttpFuzzingIsOn() {
+		return rawHttpFuzzing;
+	}
+
+	public void setRawHttpFuzzing(boolean rawHttpFuzzing) {
+		this.rawHttpFuzzing = rawHttpFuzzing;
+	}
+
+	/**
+	 * Returns true if pages are discovered by streaming their raw HTML through
+	 * a lightweight extractor, rendering with HtmlUnit only those pages which
+	 * depend on scripts or need authentication.
+	 */
+	public boolean fastDiscoveryIsOn() {
+		return fastDiscovery;
+	}
+
+	public void setFastDiscovery(boolean fastDiscovery) {
+		this.fastDiscovery = fastDiscovery;
+	}
+
+	/**
+	 * Returns true if crawled URLs are recorded in a Bloom filter instead of
+	 * an exact set, which saves memory at the cost of skipping the pages
+	 * lost to false positives.
+	 */
+	public boolean bloomFilterVisitedSetIsOn() {
+		return bloomFilterVisitedSet;
+	}
+
+	public void setBloomFilterVisitedSet(boolean bloomFilterVisitedSet) {
+		this.bloomFilterVisitedSet = bloomFilterVisitedSet;
+	}
+
+	/**
+	 * Returns the number of distinct URLs the Bloom filter is sized for.
+	 */
+	public long expectedUrlCount() {
+		return expectedUrlCount;
+	}
+
+	public void setExpectedUrlCount(long expectedUrlCount) {
+		this.expectedUrlCount = Math.max(1, expectedUrlCount);
+	}
+
+	/**
+	 * Returns the share of unvisited URLs the Bloom filter may wrongly report
+	 * as visited (and so skip) once expectedUrlCount URLs have been added.
+	 */
+	public double falsePositiveRate() {
+		return falsePositiveRate;
+	}
+
+	public void setFalsePositiveRate(double falsePositiveRate) {
+		this.falsePositiveRate = falsePositiveRate;
+	}
+
 	public String getAuthenticationSuccessString() {
 		return authenticationSuccessString;
 	}
@@ -93,4 +459,17 @@ public class FuzzerData {
 			String authenticationSuccessString) {
 		this.authenticationSuccessString = authenticationSuccessString;
 	}
+
+	/**
+	 * Returns the phrases which mark a page as reporting an account lockout
+	 * during password guessing, in addition to a 429 or 503 status or a
+	 * Retry-After header. There are none unless some are configured.
+	 */
+	public List<String> getLockoutMarkers() {
+		return lockoutMarkers;
+	}
+
+	public void addLockoutMarker(String lockoutMarker) {
+		lockoutMarkers.add(lockoutMarker);
+	}
 }
@@ -0,0 +1,147 @@
+package fuzzer;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs independent FuzzTasks concurrently on a fixed pool of worker threads.
+ * The project targets Java 6, so a fixed thread pool is used rather than
+ * virtual threads; each worker blocks on its own form submission, so the pool
+ * size bounds the number of submissions in flight.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class FuzzingExecutor
+{
+	/**
+	 * Performs a single fuzz task. Implementations must be thread-safe and must
+	 * record their findings in a thread-safe manner.
+	 */
+	public interface TaskRunner
+	{
+		void run(FuzzTask task) throws Exception;
+	}
+
+	/**
+	 * Hands out tasks one at a time, so that which task runs next can depend
+	 * on how the earlier ones turned out. Must be thread-safe.
+	 */
+	public interface TaskQueue
+	{
+		/**
+		 * Returns the next task to run, or null if there are none left.
+		 */
+		FuzzTask next();
+	}
+
+	private final int threadCount;
+
+	public FuzzingExecutor(int threadCount)
+	{
+		this.threadCount = Math.max(1, threadCount);
+	}
+
+	/**
+	 * Runs the tasks handed out by the given queue until it has none left,
+	 * and blocks until they have all finished. A task which fails is reported
+	 * and does not prevent the remaining tasks from running.
+	 */
+	public void execute(final TaskQueue queue, final TaskRunner runner)
+		throws InterruptedException
+	{
+		ExecutorService workers = newWorkerPool(threadCount);
+		try
+		{
+			List<Future<?>> results = new ArrayList<Future<?>>(threadCount);
+			for(int i = 0; i < threadCount; i++)
+			{
+				results.add(workers.submit(new Runnable()
+				{
+					public void run()
+					{
+						FuzzTask task;
+						while(!Thread.currentThread().isInterrupted() && (task = queue.next()) != null)
+						{
+							runTask(runner, task);
+						}
+					}
+				}));
+			}
+
+			waitFor(results);
+		}
+		finally
+		{
+			workers.shutdownNow();
+		}
+	}
+
+	/**
+	 * Returns a queue which hands out the given tasks in order.
+	 */
+	public static TaskQueue queueOf(List<FuzzTask> tasks)
+	{
+		final Iterator<FuzzTask> iterator = tasks.iterator();
+		return new TaskQueue()
+		{
+			public synchronized FuzzTask next()
+			{
+				return iterator.hasNext() ? iterator.next() : null;
+			}
+		};
+	}
+
+	private static ExecutorService newWorkerPool(int size)
+	{
+		return Executors.newFixedThreadPool(size, new ThreadFactory()
+		{
+			private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, "fuzzer-" + threadNumber.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	private static void runTask(TaskRunner runner, FuzzTask task)
+	{
+		try
+		{
+			runner.run(task);
+		}
+		catch(Exception e)
+		{
+			// Catches unexpected and undeclared exceptions
+			System.out.println("Fuzz task failed: " + task);
+			e.printStackTrace();
+		}
+	}
+
+	private static void waitFor(List<Future<?>> results)
+		throws InterruptedException
+	{
+		for(Future<?> result: results)
+		{
+			try
+			{
+				result.get();
+			}
+			catch(ExecutionException e)
+			{
+				e.getCause().printStackTrace();
+			}
+		}
+	}
+}
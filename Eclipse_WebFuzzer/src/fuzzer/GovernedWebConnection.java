@@ -0,0 +1,55 @@
+package fuzzer;
+
+import java.io.IOException;
+
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.WebResponse;
+import com.gargoylesoftware.htmlunit.util.WebConnectionWrapper;
+
+/**
+ * Routes every request a WebClient makes (pages, redirects, form submissions
+ * and the scripts and frames loaded along with them) through a
+ * RequestGovernor, so that HtmlUnit traffic is rate limited and drives the
+ * adaptive concurrency limits the same way as any other request.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class GovernedWebConnection extends WebConnectionWrapper
+{
+	private final RequestGovernor governor;
+
+	/**
+	 * Wraps the given client's current connection and installs the wrapper as
+	 * the client's connection.
+	 */
+	public GovernedWebConnection(WebClient client, RequestGovernor governor)
+	{
+		super(client);
+		this.governor = governor;
+	}
+
+	@Override
+	public WebResponse getResponse(WebRequest request)
+		throws IOException
+	{
+		RequestGovernor.Permit permit = governor.begin(request.getUrl().toString());
+		try
+		{
+			WebResponse response = super.getResponse(request);
+			permit.received(response.getStatusCode());
+			return response;
+		}
+		catch(IOException e)
+		{
+			permit.failed();
+			throw e;
+		}
+		finally
+		{
+			permit.release();
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package fuzzer;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Read-only view of the elements of a list at the given positions, in the
+ * given order, used to pick (and reorder) some of the fuzz tasks of a scan
+ * without copying them. Elements are looked up in the underlying list rather
+ * than copied, so the view costs an int per element.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class IndexedList<E> extends AbstractList<E> implements RandomAccess
+{
+	private final List<E> list;
+	private final int[] indexes;
+	private final int size;
+
+	/**
+	 * Creates a view of the elements of the given list at the first size of
+	 * the given positions. The positions are not copied.
+	 */
+	public IndexedList(List<E> list, int[] indexes, int size)
+	{
+		this.list = list;
+		this.indexes = indexes;
+		this.size = size;
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public E get(int index)
+	{
+		if(index < 0 || index >= size)
+		{
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+
+		return list.get(indexes[index]);
+	}
+}
@@ -0,0 +1,73 @@
+package fuzzer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of a single form input taken at discovery time.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class InputSurface
+{
+	private final String name;
+	private final String id;
+	private final String type;
+	private final String xml;
+
+	/**
+	 * Creates an input snapshot. Missing attributes are given as null and the
+	 * xml is the markup of the input as it appears in the report.
+	 */
+	public InputSurface(String name, String id, String type, String xml)
+	{
+		this.name = name;
+		this.id = id;
+		this.type = type;
+		this.xml = xml;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public String getId()
+	{
+		return id;
+	}
+
+	public String getType()
+	{
+		return type;
+	}
+
+	public String getXml()
+	{
+		return xml;
+	}
+
+	/**
+	 * Returns this input as a record which can be encoded as JSON.
+	 */
+	public Map<String, Object> toRecord()
+	{
+		Map<String, Object> record = new LinkedHashMap<String, Object>();
+		record.put("name", name);
+		record.put("id", id);
+		record.put("type", type);
+		record.put("xml", xml);
+		return record;
+	}
+
+	/**
+	 * Recreates an input from a record made by toRecord().
+	 */
+	public static InputSurface fromRecord(Map<String, Object> record)
+	{
+		return new InputSurface((String) record.get("name"), (String) record.get("id"),
+				(String) record.get("type"), (String) record.get("xml"));
+	}
+}
@@ -0,0 +1,397 @@
+package fuzzer;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal JSON encoding and decoding for the records the fuzzer writes to
+ * disk. Objects are represented as Maps (with insertion ordered keys), arrays
+ * as Lists, and strings, numbers, booleans and null as their Java equivalents
+ * (numbers are always decoded as Longs or Doubles).
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class Json
+{
+	private final String text;
+	private int position;
+
+	private Json(String text)
+	{
+		this.text = text;
+		this.position = 0;
+	}
+
+	/**
+	 * Encodes the given value (a Map, Iterable, String, Number, Boolean or null)
+	 * as a single line of JSON.
+	 */
+	public static String toJson(Object value)
+	{
+		StringBuilder json = new StringBuilder();
+		append(json, value);
+		return json.toString();
+	}
+
+	/**
+	 * Decodes the given JSON text.
+	 *
+	 * @throws IllegalArgumentException if the text is not valid JSON
+	 */
+	public static Object parse(String text)
+	{
+		Json parser = new Json(text);
+		parser.skipWhitespace();
+		Object value = parser.readValue();
+		parser.skipWhitespace();
+
+		if(parser.position != text.length())
+		{
+			throw parser.error("Unexpected trailing characters");
+		}
+
+		return value;
+	}
+
+	/**
+	 * Decodes the given JSON text, which must contain an object.
+	 */
+	@SuppressWarnings("unchecked")
+	public static Map<String, Object> parseObject(String text)
+	{
+		Object value = parse(text);
+		if(!(value instanceof Map))
+		{
+			throw new IllegalArgumentException("Expected a JSON object: " + text);
+		}
+
+		return (Map<String, Object>) value;
+	}
+
+	private static void append(StringBuilder json, Object value)
+	{
+		if(value == null)
+		{
+			json.append("null");
+		}
+		else if(value instanceof String)
+		{
+			appendString(json, (String) value);
+		}
+		else if(value instanceof Number || value instanceof Boolean)
+		{
+			json.append(value.toString());
+		}
+		else if(value instanceof Map)
+		{
+			json.append('{');
+
+			Iterator<? extends Map.Entry<?, ?>> entries = ((Map<?, ?>) value).entrySet().iterator();
+			while(entries.hasNext())
+			{
+				Map.Entry<?, ?> entry = entries.next();
+				appendString(json, String.valueOf(entry.getKey()));
+				json.append(':');
+				append(json, entry.getValue());
+
+				if(entries.hasNext())
+				{
+					json.append(',');
+				}
+			}
+
+			json.append('}');
+		}
+		else if(value instanceof Iterable)
+		{
+			json.append('[');
+
+			Iterator<?> elements = ((Iterable<?>) value).iterator();
+			while(elements.hasNext())
+			{
+				append(json, elements.next());
+
+				if(elements.hasNext())
+				{
+					json.append(',');
+				}
+			}
+
+			json.append(']');
+		}
+		else
+		{
+			appendString(json, value.toString());
+		}
+	}
+
+	private static void appendString(StringBuilder json, String value)
+	{
+		json.append('"');
+
+		for(int i = 0; i < value.length(); i++)
+		{
+			char c = value.charAt(i);
+			switch(c)
+			{
+				case '"':
+					json.append("\\\"");
+					break;
+				case '\\':
+					json.append("\\\\");
+					break;
+				case '\n':
+					json.append("\\n");
+					break;
+				case '\r':
+					json.append("\\r");
+					break;
+				case '\t':
+					json.append("\\t");
+					break;
+				default:
+					if(c < 0x20 || c == 0x2028 || c == 0x2029)
+					{
+						json.append(String.format("\\u%04x", (int) c));
+					}
+					else
+					{
+						json.append(c);
+					}
+			}
+		}
+
+		json.append('"');
+	}
+
+	private Object readValue()
+	{
+		if(position >= text.length())
+		{
+			throw error("Unexpected end of input");
+		}
+
+		char c = text.charAt(position);
+		if(c == '{')
+		{
+			return readObject();
+		}
+		else if(c == '[')
+		{
+			return readArray();
+		}
+		else if(c == '"')
+		{
+			return readString();
+		}
+		else if(text.startsWith("true", position))
+		{
+			position += 4;
+			return Boolean.TRUE;
+		}
+		else if(text.startsWith("false", position))
+		{
+			position += 5;
+			return Boolean.FALSE;
+		}
+		else if(text.startsWith("null", position))
+		{
+			position += 4;
+			return null;
+		}
+
+		return readNumber();
+	}
+
+	private Map<String, Object> readObject()
+	{
+		Map<String, Object> object = new LinkedHashMap<String, Object>();
+		expect('{');
+		skipWhitespace();
+
+		if(peek() == '}')
+		{
+			position++;
+			return object;
+		}
+
+		while(true)
+		{
+			skipWhitespace();
+			String key = readString();
+			skipWhitespace();
+			expect(':');
+			skipWhitespace();
+			object.put(key, readValue());
+			skipWhitespace();
+
+			if(peek() == ',')
+			{
+				position++;
+			}
+			else
+			{
+				expect('}');
+				return object;
+			}
+		}
+	}
+
+	private List<Object> readArray()
+	{
+		List<Object> array = new ArrayList<Object>();
+		expect('[');
+		skipWhitespace();
+
+		if(peek() == ']')
+		{
+			position++;
+			return array;
+		}
+
+		while(true)
+		{
+			skipWhitespace();
+			array.add(readValue());
+			skipWhitespace();
+
+			if(peek() == ',')
+			{
+				position++;
+			}
+			else
+			{
+				expect(']');
+				return array;
+			}
+		}
+	}
+
+	private String readString()
+	{
+		expect('"');
+		StringBuilder value = new StringBuilder();
+
+		while(true)
+		{
+			if(position >= text.length())
+			{
+				throw error("Unterminated string");
+			}
+
+			char c = text.charAt(position++);
+			if(c == '"')
+			{
+				return value.toString();
+			}
+			else if(c != '\\')
+			{
+				value.append(c);
+				continue;
+			}
+
+			if(position >= text.length())
+			{
+				throw error("Unterminated escape sequence");
+			}
+
+			char escaped = text.charAt(position++);
+			switch(escaped)
+			{
+				case 'n':
+					value.append('\n');
+					break;
+				case 'r':
+					value.append('\r');
+					break;
+				case 't':
+					value.append('\t');
+					break;
+				case 'b':
+					value.append('\b');
+					break;
+				case 'f':
+					value.append('\f');
+					break;
+				case 'u':
+					if(position + 4 > text.length())
+					{
+						throw error("Invalid unicode escape");
+					}
+
+					value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+					position += 4;
+					break;
+				default:
+					value.append(escaped);
+			}
+		}
+	}
+
+	private Number readNumber()
+	{
+		int start = position;
+		while(position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) != -1)
+		{
+			position++;
+		}
+
+		String number = text.substring(start, position);
+		if(number.length() == 0)
+		{
+			throw error("Unexpected character");
+		}
+
+		try
+		{
+			if(number.indexOf('.') == -1 && number.indexOf('e') == -1 && number.indexOf('E') == -1)
+			{
+				return Long.parseLong(number);
+			}
+
+			return Double.parseDouble(number);
+		}
+		catch(NumberFormatException e)
+		{
+			throw error("Invalid number");
+		}
+	}
+
+	private char peek()
+	{
+		if(position >= text.length())
+		{
+			throw error("Unexpected end of input");
+		}
+
+		return text.charAt(position);
+	}
+
+	private void expect(char expected)
+	{
+		if(peek() != expected)
+		{
+			throw error("Expected '" + expected + "'");
+		}
+
+		position++;
+	}
+
+	private void skipWhitespace()
+	{
+		while(position < text.length() && Character.isWhitespace(text.charAt(position)))
+		{
+			position++;
+		}
+	}
+
+	private IllegalArgumentException error(String message)
+	{
+		return new IllegalArgumentException(message + " at position " + position + " of JSON text");
+	}
+}
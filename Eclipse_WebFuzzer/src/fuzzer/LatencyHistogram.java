@@ -0,0 +1,107 @@
+package fuzzer;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies in microseconds. Latencies under 16
+ * microseconds get a bucket each; above that every power of two is split
+ * into 8 buckets, so a percentile read from the histogram is within 12.5% of
+ * the true value no matter how large the latencies are. Recording a latency
+ * is a single atomic increment.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class LatencyHistogram
+{
+	private static final int LINEAR_BUCKETS = 16;
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/*
+	 * 16 is 2^4, so the exponents from 4 up to 62 are split into sub-buckets
+	 */
+	private static final int BUCKET_COUNT = LINEAR_BUCKETS + (63 - 4) * SUB_BUCKETS;
+
+	private final AtomicLongArray buckets;
+
+	public LatencyHistogram()
+	{
+		this.buckets = new AtomicLongArray(BUCKET_COUNT);
+	}
+
+	public void record(long micros)
+	{
+		buckets.incrementAndGet(bucketOf(Math.max(0, micros)));
+	}
+
+	/**
+	 * Returns the latency (in microseconds) below which the given fraction of
+	 * the recorded latencies fall, or 0 if nothing has been recorded.
+	 */
+	public long getPercentile(double fraction)
+	{
+		long[] counts = new long[BUCKET_COUNT];
+		long total = 0;
+		for(int i = 0; i < BUCKET_COUNT; i++)
+		{
+			counts[i] = buckets.get(i);
+			total += counts[i];
+		}
+
+		if(total == 0)
+		{
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(fraction * total));
+		long seen = 0;
+		for(int i = 0; i < BUCKET_COUNT; i++)
+		{
+			seen += counts[i];
+			if(seen >= rank)
+			{
+				return upperBoundOf(i);
+			}
+		}
+
+		return upperBoundOf(BUCKET_COUNT - 1);
+	}
+
+	public void reset()
+	{
+		for(int i = 0; i < BUCKET_COUNT; i++)
+		{
+			buckets.set(i, 0);
+		}
+	}
+
+	private static int bucketOf(long micros)
+	{
+		if(micros < LINEAR_BUCKETS)
+		{
+			return (int) micros;
+		}
+
+		int exponent = 63 - Long.numberOfLeadingZeros(micros);
+		int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return LINEAR_BUCKETS + (exponent - 4) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * Returns the largest latency which falls in the given bucket.
+	 */
+	private static long upperBoundOf(int bucket)
+	{
+		if(bucket < LINEAR_BUCKETS)
+		{
+			return bucket;
+		}
+
+		int exponent = 4 + (bucket - LINEAR_BUCKETS) / SUB_BUCKETS;
+		long subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+		long width = 1L << (exponent - SUB_BUCKET_BITS);
+		return (1L << exponent) + (subBucket + 1) * width - 1;
+	}
+}
@@ -0,0 +1,177 @@
+package fuzzer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Read-only list of the lines of a (possibly multi-gigabyte) wordlist file,
+ * which is memory-mapped rather than read into the heap. The file is scanned
+ * once when the list is created to build a sparse index holding the offset of
+ * every INDEX_INTERVAL-th line, so the list costs about 500 bytes per thousand
+ * lines of heap and any line can be read by jumping to the nearest indexed
+ * line and scanning forward from there. Lines are only decoded into Strings
+ * when they are read, so iterating over the list (or any slice of it, as
+ * returned by subList()) never holds more than the current line in memory.
+ * Lines are decoded with the platform's default charset, like the rest of the
+ * data file.
+ *
+ * Reads are thread-safe, so workers can share a single list and each take
+ * their own slice of it.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class MappedWordlist extends AbstractList<String> implements RandomAccess
+{
+	private static final int INDEX_INTERVAL = 16;
+
+	/*
+	 * Files larger than a single MappedByteBuffer can address are mapped in
+	 * chunks of this size.
+	 */
+	private static final int CHUNK_SHIFT = 30;
+	private static final long CHUNK_SIZE = 1L << CHUNK_SHIFT;
+	private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+	private final File file;
+	private final long length;
+	private final MappedByteBuffer[] chunks;
+	private final long[] lineIndex;
+	private final int lineCount;
+
+	/**
+	 * Maps the given file and indexes its lines.
+	 */
+	public MappedWordlist(File file)
+		throws IOException
+	{
+		this.file = file;
+
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try
+		{
+			FileChannel channel = randomAccessFile.getChannel();
+			this.length = channel.size();
+			this.chunks = new MappedByteBuffer[(int) ((length + CHUNK_SIZE - 1) >>> CHUNK_SHIFT)];
+
+			for(int i = 0; i < chunks.length; i++)
+			{
+				long position = (long) i << CHUNK_SHIFT;
+				chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position,
+						Math.min(CHUNK_SIZE, length - position));
+			}
+		}
+		finally
+		{
+			// The mapping stays valid after the file has been closed
+			randomAccessFile.close();
+		}
+
+		long[] index = new long[16];
+		long lines = 0;
+		boolean atLineStart = true;
+
+		for(int chunk = 0; chunk < chunks.length; chunk++)
+		{
+			MappedByteBuffer buffer = chunks[chunk];
+			long chunkStart = (long) chunk << CHUNK_SHIFT;
+			int limit = buffer.limit();
+
+			for(int i = 0; i < limit; i++)
+			{
+				if(atLineStart)
+				{
+					if(lines % INDEX_INTERVAL == 0)
+					{
+						int slot = (int) (lines / INDEX_INTERVAL);
+						if(slot == index.length)
+						{
+							index = Arrays.copyOf(index, index.length * 2);
+						}
+						index[slot] = chunkStart + i;
+					}
+
+					lines++;
+					if(lines > Integer.MAX_VALUE)
+					{
+						throw new IOException("Wordlist has too many lines: " + file);
+					}
+
+					atLineStart = false;
+				}
+
+				if(buffer.get(i) == '\n')
+				{
+					atLineStart = true;
+				}
+			}
+		}
+
+		this.lineCount = (int) lines;
+		this.lineIndex = Arrays.copyOf(index, (int) ((lines + INDEX_INTERVAL - 1) / INDEX_INTERVAL));
+	}
+
+	public File getFile()
+	{
+		return file;
+	}
+
+	@Override
+	public int size()
+	{
+		return lineCount;
+	}
+
+	/**
+	 * Returns the line at the given (zero-based) index, without its line
+	 * terminator.
+	 */
+	@Override
+	public String get(int index)
+	{
+		if(index < 0 || index >= lineCount)
+		{
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + lineCount);
+		}
+
+		long start = lineIndex[index / INDEX_INTERVAL];
+		for(int skip = index % INDEX_INTERVAL; skip > 0; skip--)
+		{
+			while(byteAt(start++) != '\n')
+			{
+				// Skips to the start of the next line
+			}
+		}
+
+		long end = start;
+		while(end < length && byteAt(end) != '\n')
+		{
+			end++;
+		}
+
+		if(end > start && byteAt(end - 1) == '\r')
+		{
+			end--;
+		}
+
+		byte[] bytes = new byte[(int) (end - start)];
+		for(int i = 0; i < bytes.length; i++)
+		{
+			bytes[i] = byteAt(start + i);
+		}
+
+		return new String(bytes);
+	}
+
+	private byte byteAt(long position)
+	{
+		return chunks[(int) (position >>> CHUNK_SHIFT)].get((int) (position & CHUNK_MASK));
+	}
+}
@@ -0,0 +1,273 @@
+package fuzzer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Aho-Corasick automaton which finds every occurrence of every one of a set of
+ * patterns in a single pass over the text being searched. The automaton is
+ * immutable once built and may be shared between threads; the state of an
+ * individual search lives in a Search object, which allows text to be fed to
+ * the automaton incrementally (e.g. as a response is read from a stream).
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class MultiPatternMatcher
+{
+	/**
+	 * A single occurrence of a pattern in the searched text.
+	 */
+	public static class Match
+	{
+		private final String pattern;
+		private final long offset;
+
+		public Match(String pattern, long offset)
+		{
+			this.pattern = pattern;
+			this.offset = offset;
+		}
+
+		public String getPattern()
+		{
+			return pattern;
+		}
+
+		/**
+		 * Returns the (character) offset at which the match starts.
+		 */
+		public long getOffset()
+		{
+			return offset;
+		}
+
+		@Override
+		public String toString()
+		{
+			return pattern + "@" + offset;
+		}
+	}
+
+	/**
+	 * The state of one search through the automaton.
+	 */
+	public class Search
+	{
+		private int state;
+		private long position;
+		private final List<Match> matches;
+
+		private Search()
+		{
+			this.state = 0;
+			this.position = 0;
+			this.matches = new ArrayList<Match>();
+		}
+
+		/**
+		 * Continues the search over the given characters.
+		 */
+		public void feed(CharSequence text)
+		{
+			for(int i = 0; i < text.length(); i++)
+			{
+				step(text.charAt(i));
+			}
+		}
+
+		/**
+		 * Continues the search over the given range of characters.
+		 */
+		public void feed(char[] buffer, int offset, int length)
+		{
+			for(int i = offset; i < offset + length; i++)
+			{
+				step(buffer[i]);
+			}
+		}
+
+		private void step(char c)
+		{
+			state = nextState(state, c);
+			position++;
+
+			for(int pattern: outputs[state])
+			{
+				matches.add(new Match(patterns.get(pattern),
+						position - patterns.get(pattern).length()));
+			}
+		}
+
+		/**
+		 * Returns every match found so far, in the order the matches end.
+		 */
+		public List<Match> getMatches()
+		{
+			return matches;
+		}
+
+		/**
+		 * Returns the matches found since this method was last called and
+		 * forgets them, so that a long running search only holds on to the
+		 * matches its caller has not yet seen.
+		 */
+		public List<Match> drainMatches()
+		{
+			if(matches.isEmpty())
+			{
+				return Collections.emptyList();
+			}
+
+			List<Match> drained = new ArrayList<Match>(matches);
+			matches.clear();
+			return drained;
+		}
+	}
+
+	private final List<String> patterns;
+
+	/*
+	 * The automaton is stored as parallel arrays indexed by state number. State
+	 * 0 is the root. Goto transitions are kept in a map per state since the
+	 * alphabet (all of UTF-16) is far too large for a dense transition table.
+	 */
+	private final List<Map<Character, Integer>> transitions;
+	private final int[] failure;
+	private final int[][] outputs;
+
+	/**
+	 * Builds the automaton for the given patterns. Empty patterns and
+	 * duplicates are ignored.
+	 */
+	public MultiPatternMatcher(Iterable<String> patternSource)
+	{
+		List<String> uniquePatterns = new ArrayList<String>();
+		List<Map<Character, Integer>> gotoFunction = new ArrayList<Map<Character, Integer>>();
+		List<List<Integer>> outputLists = new ArrayList<List<Integer>>();
+
+		gotoFunction.add(new HashMap<Character, Integer>());
+		outputLists.add(new ArrayList<Integer>());
+
+		Map<String, Boolean> seen = new HashMap<String, Boolean>();
+		for(String pattern: patternSource)
+		{
+			if(pattern == null || pattern.length() == 0 || seen.containsKey(pattern))
+			{
+				continue;
+			}
+
+			seen.put(pattern, Boolean.TRUE);
+			uniquePatterns.add(pattern);
+
+			int state = 0;
+			for(int i = 0; i < pattern.length(); i++)
+			{
+				Character c = pattern.charAt(i);
+				Integer next = gotoFunction.get(state).get(c);
+
+				if(next == null)
+				{
+					next = gotoFunction.size();
+					gotoFunction.add(new HashMap<Character, Integer>());
+					outputLists.add(new ArrayList<Integer>());
+					gotoFunction.get(state).put(c, next);
+				}
+
+				state = next;
+			}
+
+			outputLists.get(state).add(uniquePatterns.size() - 1);
+		}
+
+		// Computes the failure function breadth first, merging the outputs of
+		// each state's failure state into its own outputs
+		int[] failureFunction = new int[gotoFunction.size()];
+		Queue<Integer> queue = new LinkedList<Integer>();
+
+		for(Integer child: gotoFunction.get(0).values())
+		{
+			failureFunction[child] = 0;
+			queue.add(child);
+		}
+
+		while(!queue.isEmpty())
+		{
+			int state = queue.remove();
+
+			for(Map.Entry<Character, Integer> edge: gotoFunction.get(state).entrySet())
+			{
+				int child = edge.getValue();
+				queue.add(child);
+
+				int fallback = failureFunction[state];
+				while(fallback != 0 && !gotoFunction.get(fallback).containsKey(edge.getKey()))
+				{
+					fallback = failureFunction[fallback];
+				}
+
+				Integer target = gotoFunction.get(fallback).get(edge.getKey());
+				failureFunction[child] = (target == null || target == child) ? 0 : target;
+				outputLists.get(child).addAll(outputLists.get(failureFunction[child]));
+			}
+		}
+
+		this.patterns = Collections.unmodifiableList(uniquePatterns);
+		this.transitions = gotoFunction;
+		this.failure = failureFunction;
+		this.outputs = new int[outputLists.size()][];
+
+		for(int state = 0; state < outputLists.size(); state++)
+		{
+			List<Integer> output = outputLists.get(state);
+			outputs[state] = new int[output.size()];
+
+			for(int i = 0; i < output.size(); i++)
+			{
+				outputs[state][i] = output.get(i);
+			}
+		}
+	}
+
+	public List<String> getPatterns()
+	{
+		return patterns;
+	}
+
+	/**
+	 * Starts a new incremental search.
+	 */
+	public Search newSearch()
+	{
+		return new Search();
+	}
+
+	/**
+	 * Returns every occurrence of every pattern in the given text.
+	 */
+	public List<Match> findAll(CharSequence text)
+	{
+		Search search = newSearch();
+		search.feed(text);
+		return search.getMatches();
+	}
+
+	private int nextState(int state, char c)
+	{
+		Integer next = transitions.get(state).get(c);
+
+		while(next == null && state != 0)
+		{
+			state = failure[state];
+			next = transitions.get(state).get(c);
+		}
+
+		return next == null ? 0 : next;
+	}
+}
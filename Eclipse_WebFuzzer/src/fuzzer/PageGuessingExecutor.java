@@ -0,0 +1,129 @@
+package fuzzer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tries a list of page guesses concurrently with a bounded number of guesses
+ * in flight. Each worker thread repeatedly takes the next untried guess off of
+ * the shared list, so the list is never copied into a task queue and a slow
+ * guess only holds up the worker trying it.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class PageGuessingExecutor
+{
+	/**
+	 * Tries a single page guess. Implementations must be thread-safe.
+	 */
+	public interface GuessRunner
+	{
+		void run(String pageGuess) throws Exception;
+	}
+
+	private final int concurrency;
+	private final long deadlineMillis;
+
+	/**
+	 * Creates an executor which tries at most the given number of guesses at
+	 * the same time.
+	 */
+	public PageGuessingExecutor(int concurrency)
+	{
+		this(concurrency, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Creates an executor as above which starts no more guesses once the given
+	 * deadline (in milliseconds since the epoch) has passed.
+	 */
+	public PageGuessingExecutor(int concurrency, long deadlineMillis)
+	{
+		this.concurrency = Math.max(1, concurrency);
+		this.deadlineMillis = deadlineMillis;
+	}
+
+	/**
+	 * Tries every one of the given guesses (until the deadline) and blocks
+	 * until they have all been tried. A guess which fails is reported and does
+	 * not prevent the remaining guesses from being tried.
+	 */
+	public void execute(final List<String> pageGuesses, final GuessRunner runner)
+		throws InterruptedException
+	{
+		if(pageGuesses.isEmpty())
+		{
+			return;
+		}
+
+		int workerCount = Math.min(concurrency, pageGuesses.size());
+		ExecutorService workers = Executors.newFixedThreadPool(workerCount, new ThreadFactory()
+		{
+			private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, "page-guesser-" + threadNumber.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		final AtomicInteger nextGuess = new AtomicInteger(0);
+
+		try
+		{
+			List<Future<?>> results = new ArrayList<Future<?>>(workerCount);
+			for(int i = 0; i < workerCount; i++)
+			{
+				results.add(workers.submit(new Runnable()
+				{
+					public void run()
+					{
+						int index;
+						while(!Thread.currentThread().isInterrupted() &&
+							  System.currentTimeMillis() < deadlineMillis &&
+							  (index = nextGuess.getAndIncrement()) < pageGuesses.size())
+						{
+							String pageGuess = pageGuesses.get(index);
+							try
+							{
+								runner.run(pageGuess);
+							}
+							catch(Exception e)
+							{
+								// Catches unexpected and undeclared exceptions
+								System.out.println("Page guess failed: " + pageGuess);
+								e.printStackTrace();
+							}
+						}
+					}
+				}));
+			}
+
+			for(Future<?> result: results)
+			{
+				try
+				{
+					result.get();
+				}
+				catch(ExecutionException e)
+				{
+					e.getCause().printStackTrace();
+				}
+			}
+		}
+		finally
+		{
+			workers.shutdownNow();
+		}
+	}
+}
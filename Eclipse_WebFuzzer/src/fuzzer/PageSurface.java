@@ -0,0 +1,159 @@
+package fuzzer;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.gargoylesoftware.htmlunit.util.Cookie;
+
+/**
+ * Immutable, compact record of the attack surface of a single web page: its
+ * URL, query parameters, forms and inputs, and the cookies set while it was
+ * discovered. Discovery distills every page into one of these as soon as it
+ * has been processed so that the page's DOM (and the client which loaded it)
+ * can be released; fuzzing and reporting work from these records alone.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class PageSurface
+{
+	private final String url;
+	private final String query;
+	private final List<FormSurface> forms;
+	private final List<Cookie> cookies;
+
+	public PageSurface(String url, String query, List<FormSurface> forms, List<Cookie> cookies)
+	{
+		this.url = url;
+		this.query = query;
+		this.forms = Collections.unmodifiableList(new ArrayList<FormSurface>(forms));
+		this.cookies = Collections.unmodifiableList(new ArrayList<Cookie>(cookies));
+	}
+
+	public String getUrl()
+	{
+		return url;
+	}
+
+	/**
+	 * Returns the query portion of the page's URL, or null if it has none.
+	 */
+	public String getQuery()
+	{
+		return query;
+	}
+
+	public List<FormSurface> getForms()
+	{
+		return forms;
+	}
+
+	public List<Cookie> getCookies()
+	{
+		return cookies;
+	}
+
+	/**
+	 * Returns this page as a record which can be encoded as JSON.
+	 */
+	public Map<String, Object> toRecord()
+	{
+		List<Map<String, Object>> formRecords = new ArrayList<Map<String, Object>>(forms.size());
+		for(FormSurface form: forms)
+		{
+			formRecords.add(form.toRecord());
+		}
+
+		List<Map<String, Object>> cookieRecords = new ArrayList<Map<String, Object>>(cookies.size());
+		for(Cookie cookie: cookies)
+		{
+			Map<String, Object> cookieRecord = new LinkedHashMap<String, Object>();
+			cookieRecord.put("domain", cookie.getDomain());
+			cookieRecord.put("name", cookie.getName());
+			cookieRecord.put("value", cookie.getValue());
+			cookieRecord.put("path", cookie.getPath());
+			cookieRecord.put("expires", cookie.getExpires() == null ? null : cookie.getExpires().getTime());
+			cookieRecord.put("secure", cookie.isSecure());
+			cookieRecord.put("httpOnly", cookie.isHttpOnly());
+			cookieRecords.add(cookieRecord);
+		}
+
+		Map<String, Object> record = new LinkedHashMap<String, Object>();
+		record.put("url", url);
+		record.put("query", query);
+		record.put("forms", formRecords);
+		record.put("cookies", cookieRecords);
+		return record;
+	}
+
+	/**
+	 * Recreates a page from a record made by toRecord().
+	 */
+	@SuppressWarnings("unchecked")
+	public static PageSurface fromRecord(Map<String, Object> record)
+	{
+		List<FormSurface> forms = new ArrayList<FormSurface>();
+		for(Object formRecord: (List<Object>) record.get("forms"))
+		{
+			forms.add(FormSurface.fromRecord((Map<String, Object>) formRecord));
+		}
+
+		List<Cookie> cookies = new ArrayList<Cookie>();
+		for(Object cookieObject: (List<Object>) record.get("cookies"))
+		{
+			Map<String, Object> cookieRecord = (Map<String, Object>) cookieObject;
+			Number expires = (Number) cookieRecord.get("expires");
+			cookies.add(new Cookie((String) cookieRecord.get("domain"), (String) cookieRecord.get("name"),
+					(String) cookieRecord.get("value"), (String) cookieRecord.get("path"),
+					expires == null ? null : new Date(expires.longValue()),
+					Boolean.TRUE.equals(cookieRecord.get("secure")),
+					Boolean.TRUE.equals(cookieRecord.get("httpOnly"))));
+		}
+
+		return new PageSurface((String) record.get("url"), (String) record.get("query"), forms, cookies);
+	}
+
+	public void writeReport(PrintStream outputStream)
+	{
+		for(FormSurface form: forms)
+		{
+			if(form.getId() == null)
+			{
+				outputStream.println("Inputs for an id-less form\n");
+			}
+			else
+			{
+				outputStream.println("Inputs for form id: " + form.getId() + "\n");
+			}
+			
+			for(InputSurface input: form.getInputs())
+			{
+				if(input.getId() == null)
+				{
+					outputStream.println("id-less input: " + input.getXml());
+				}
+				else
+				{
+					outputStream.println("input id: " + input.getId() + " => " + input.getXml());
+				}
+			}
+		}
+
+		// New line for formatting
+		outputStream.println("");
+
+		//Prints Query parameter in URL
+		outputStream.println("Url Query: " + query + "\n");
+
+		for(Cookie c: cookies)
+		{
+			outputStream.println(c.toString());
+		}
+	}
+}
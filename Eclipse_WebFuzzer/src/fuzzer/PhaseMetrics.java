@@ -0,0 +1,148 @@
+package fuzzer;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts, latencies and the number in flight for one phase of a scan (e.g.
+ * loading pages or submitting forms). A phase is timed with
+ *
+ *     long start = phase.start();
+ *     try { ... } finally { phase.stop(start); }
+ *
+ * which costs a few atomic updates, so it is cheap enough to leave on for
+ * every request.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class PhaseMetrics implements PhaseMetricsMBean
+{
+	private final String name;
+	private final AtomicLong count;
+	private final AtomicLong errorCount;
+	private final AtomicLong inFlight;
+	private final AtomicLong totalNanos;
+	private final AtomicLong maxNanos;
+	private final LatencyHistogram histogram;
+
+	public PhaseMetrics(String name)
+	{
+		this.name = name;
+		this.count = new AtomicLong();
+		this.errorCount = new AtomicLong();
+		this.inFlight = new AtomicLong();
+		this.totalNanos = new AtomicLong();
+		this.maxNanos = new AtomicLong();
+		this.histogram = new LatencyHistogram();
+	}
+
+	/**
+	 * Records that the phase has started and returns the start time to pass
+	 * to stop().
+	 */
+	public long start()
+	{
+		inFlight.incrementAndGet();
+		return System.nanoTime();
+	}
+
+	/**
+	 * Records that the phase which started at the given time has finished.
+	 */
+	public void stop(long startNanos)
+	{
+		stop(startNanos, true);
+	}
+
+	/**
+	 * Records that the phase which started at the given time has finished,
+	 * successfully or not.
+	 */
+	public void stop(long startNanos, boolean succeeded)
+	{
+		long elapsed = System.nanoTime() - startNanos;
+		inFlight.decrementAndGet();
+		count.incrementAndGet();
+		totalNanos.addAndGet(elapsed);
+		histogram.record(elapsed / 1000);
+
+		if(!succeeded)
+		{
+			errorCount.incrementAndGet();
+		}
+
+		long max = maxNanos.get();
+		while(elapsed > max && !maxNanos.compareAndSet(max, elapsed))
+		{
+			max = maxNanos.get();
+		}
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public long getCount()
+	{
+		return count.get();
+	}
+
+	public long getErrorCount()
+	{
+		return errorCount.get();
+	}
+
+	public long getInFlight()
+	{
+		return inFlight.get();
+	}
+
+	public double getMeanMillis()
+	{
+		long finished = count.get();
+		return finished == 0 ? 0 : totalNanos.get() / 1e6 / finished;
+	}
+
+	public double getP50Millis()
+	{
+		return getPercentileMillis(0.5);
+	}
+
+	public double getP90Millis()
+	{
+		return getPercentileMillis(0.9);
+	}
+
+	public double getP99Millis()
+	{
+		return getPercentileMillis(0.99);
+	}
+
+	public double getMaxMillis()
+	{
+		return maxNanos.get() / 1e6;
+	}
+
+	/**
+	 * Returns the given percentile, which is read from the histogram and so is
+	 * only approximate, but never more than the largest latency seen.
+	 */
+	private double getPercentileMillis(double fraction)
+	{
+		return Math.min(histogram.getPercentile(fraction) / 1e3, getMaxMillis());
+	}
+
+	/**
+	 * Clears everything but the number in flight.
+	 */
+	public void reset()
+	{
+		count.set(0);
+		errorCount.set(0);
+		totalNanos.set(0);
+		maxNanos.set(0);
+		histogram.reset();
+	}
+}
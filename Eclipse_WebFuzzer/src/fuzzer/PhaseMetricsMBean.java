@@ -0,0 +1,40 @@
+package fuzzer;
+
+/**
+ * JMX view of the metrics for one phase of a scan.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public interface PhaseMetricsMBean
+{
+	String getName();
+
+	/**
+	 * Returns the number of times the phase has finished.
+	 */
+	long getCount();
+
+	/**
+	 * Returns the number of times the phase has finished unsuccessfully.
+	 */
+	long getErrorCount();
+
+	/**
+	 * Returns the number of times the phase is running right now.
+	 */
+	long getInFlight();
+
+	double getMeanMillis();
+
+	double getP50Millis();
+
+	double getP90Millis();
+
+	double getP99Millis();
+
+	double getMaxMillis();
+
+	void reset();
+}
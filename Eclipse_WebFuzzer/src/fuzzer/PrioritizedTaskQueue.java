@@ -0,0 +1,327 @@
+package fuzzer;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Hands out fuzz tasks so that the vectors most likely to turn something up
+ * are sent first, learning from the tasks as they finish. The inputs being
+ * fuzzed take turns, and each time an input's turn comes up the task with the
+ * best scoring vector (see VectorStatistics) is taken from its queue; vectors
+ * with equal scores keep the order they were given in.
+ *
+ * Once a vector has led to a finding for an input, the input's remaining
+ * vectors of the same family (see VectorFamily) are pruned, since the input
+ * is already known to be open to that kind of injection. A response anomaly
+ * makes the rest of the vector's family more likely to be tried next for the
+ * input. Vectors of no known family are never pruned.
+ *
+ * Every vector's family is worked out once, when the queue is created. Each
+ * input keeps its tasks in a heap ordered by score, which is only scored
+ * again when a task of one of the families in it has finished (since until
+ * then none of its scores can have changed). The queue refers to its tasks by
+ * their position in the given list, which is only read for a task when it is
+ * scored or handed out, so payloads are not held for the tasks waiting.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class PrioritizedTaskQueue implements FuzzingExecutor.TaskQueue
+{
+	/*
+	 * How much more likely a family which caused an anomaly for an input is
+	 * to be tried next for that input.
+	 */
+	private static final double ANOMALY_BOOST = 2;
+
+	/*
+	 * Best score first, then the order the tasks were given in.
+	 */
+	private static final Comparator<QueuedTask> PRIORITY_ORDER = new Comparator<QueuedTask>()
+	{
+		public int compare(QueuedTask first, QueuedTask second)
+		{
+			int order = Double.compare(second.score, first.score);
+			if(order == 0)
+			{
+				order = first.index < second.index ? -1 : (first.index == second.index ? 0 : 1);
+			}
+
+			return order;
+		}
+	};
+
+	private final List<FuzzTask> tasks;
+	private final VectorStatistics statistics;
+
+	/*
+	 * Guarded by this queue. Inputs with tasks left wait their turn in order.
+	 * Only the tasks which have been handed out are queued tasks. Each
+	 * family's version is the number of its tasks which have finished.
+	 */
+	private final LinkedList<InputQueue> inputTurns;
+	private final Map<FuzzTask, QueuedTask> queuedTasks;
+	private final Map<String, Integer> familyVersions;
+	private final List<FuzzTask> prunedTasks;
+
+	/**
+	 * Creates a queue of the given tasks, prioritized by (and adding what it
+	 * learns to) the given statistics.
+	 */
+	public PrioritizedTaskQueue(List<FuzzTask> tasks, VectorStatistics statistics)
+	{
+		this.tasks = tasks;
+		this.statistics = statistics;
+		this.inputTurns = new LinkedList<InputQueue>();
+		this.queuedTasks = new IdentityHashMap<FuzzTask, QueuedTask>();
+		this.familyVersions = new HashMap<String, Integer>();
+		this.prunedTasks = new ArrayList<FuzzTask>();
+
+		Map<String, InputQueue> inputs = new HashMap<String, InputQueue>();
+		Map<String, String> familyKeys = new HashMap<String, String>();
+		for(int index = 0; index < tasks.size(); index++)
+		{
+			FuzzTask task = tasks.get(index);
+			String key = task.getPageUrl() + "#" + task.getFormIndex() + "#" + task.getInputIndex();
+			InputQueue input = inputs.get(key);
+			if(input == null)
+			{
+				input = new InputQueue();
+				inputs.put(key, input);
+				inputTurns.add(input);
+			}
+
+			// Every task of a family shares one key
+			VectorFamily family = VectorFamily.of(task.getPayload());
+			String familyKey = task.getKind() + ":" + family;
+			String sharedKey = familyKeys.get(familyKey);
+			if(sharedKey == null)
+			{
+				sharedKey = familyKey;
+				familyKeys.put(sharedKey, sharedKey);
+			}
+
+			input.add(new QueuedTask(index, input, family, sharedKey));
+		}
+	}
+
+	public synchronized FuzzTask next()
+	{
+		while(!inputTurns.isEmpty())
+		{
+			InputQueue input = inputTurns.poll();
+			FuzzTask task = input.takeBest();
+			if(!input.isEmpty())
+			{
+				inputTurns.add(input);
+			}
+
+			if(task != null)
+			{
+				return task;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Learns from the result of the given task, which was handed out by this
+	 * queue.
+	 */
+	public void taskFinished(FuzzTask task, FuzzTask.Result result)
+	{
+		QueuedTask queued;
+		synchronized(this)
+		{
+			queued = queuedTasks.remove(task);
+		}
+
+		if(queued == null || result == FuzzTask.Result.NOT_SUBMITTED)
+		{
+			return;
+		}
+
+		boolean finding = result == FuzzTask.Result.FINDING;
+		boolean anomaly = result == FuzzTask.Result.ANOMALY;
+		statistics.record(task.getKind(), task.getPayload(), queued.family, finding, anomaly);
+
+		synchronized(this)
+		{
+			Integer version = familyVersions.get(queued.familyKey);
+			familyVersions.put(queued.familyKey, version == null ? 1 : version + 1);
+
+			if(queued.family != VectorFamily.OTHER)
+			{
+				if(finding)
+				{
+					queued.input.confirmedFamilies.add(queued.familyKey);
+				}
+				else if(anomaly)
+				{
+					queued.input.anomalousFamilies.add(queued.familyKey);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the tasks which were pruned rather than handed out.
+	 */
+	public synchronized List<FuzzTask> getPrunedTasks()
+	{
+		return new ArrayList<FuzzTask>(prunedTasks);
+	}
+
+	/**
+	 * A task waiting in its input's queue (by its position in the list the
+	 * queue was given), with its vector's family and its score as of the last
+	 * time its input was scored.
+	 */
+	private static class QueuedTask
+	{
+		private final int index;
+		private final InputQueue input;
+		private final VectorFamily family;
+		private final String familyKey;
+		private double score;
+
+		public QueuedTask(int index, InputQueue input, VectorFamily family, String familyKey)
+		{
+			this.index = index;
+			this.input = input;
+			this.family = family;
+			this.familyKey = familyKey;
+			this.score = 0;
+		}
+	}
+
+	/**
+	 * The tasks left for a single input and what has been learned about it.
+	 * Only used while holding the queue's lock.
+	 */
+	private class InputQueue
+	{
+		private final List<QueuedTask> addedTasks;
+		private PriorityQueue<QueuedTask> queue;
+		private final Set<String> confirmedFamilies;
+		private final Set<String> anomalousFamilies;
+
+		/*
+		 * The version of each family in the queue as of the last scoring, or
+		 * null if the tasks have never been scored.
+		 */
+		private Map<String, Integer> scoredVersions;
+
+		public InputQueue()
+		{
+			this.addedTasks = new ArrayList<QueuedTask>();
+			this.confirmedFamilies = new HashSet<String>();
+			this.anomalousFamilies = new HashSet<String>();
+		}
+
+		public void add(QueuedTask task)
+		{
+			addedTasks.add(task);
+		}
+
+		public boolean isEmpty()
+		{
+			return queue != null && queue.isEmpty();
+		}
+
+		/**
+		 * Removes and returns the task with the best scoring vector, pruning
+		 * the tasks of confirmed families along the way. Returns null if every
+		 * task left was pruned.
+		 */
+		public FuzzTask takeBest()
+		{
+			if(scoresAreStale())
+			{
+				score();
+			}
+
+			QueuedTask best;
+			while((best = queue.poll()) != null)
+			{
+				FuzzTask task = tasks.get(best.index);
+				if(!confirmedFamilies.contains(best.familyKey))
+				{
+					queuedTasks.put(task, best);
+					return task;
+				}
+
+				prunedTasks.add(task);
+			}
+
+			return null;
+		}
+
+		/**
+		 * Returns true if a task of one of the families left in this queue
+		 * has finished since the tasks were last scored.
+		 */
+		private boolean scoresAreStale()
+		{
+			if(scoredVersions == null)
+			{
+				return true;
+			}
+
+			for(Map.Entry<String, Integer> scoredVersion: scoredVersions.entrySet())
+			{
+				Integer version = familyVersions.get(scoredVersion.getKey());
+				if(version != null && !version.equals(scoredVersion.getValue()))
+				{
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+		/**
+		 * Scores every task left (pruning those of confirmed families) and
+		 * rebuilds the heap.
+		 */
+		private void score()
+		{
+			List<QueuedTask> remainingTasks = queue == null ? addedTasks : new ArrayList<QueuedTask>(queue);
+			queue = new PriorityQueue<QueuedTask>(Math.max(1, remainingTasks.size()), PRIORITY_ORDER);
+			scoredVersions = new HashMap<String, Integer>();
+
+			for(QueuedTask queued: remainingTasks)
+			{
+				FuzzTask task = tasks.get(queued.index);
+				if(confirmedFamilies.contains(queued.familyKey))
+				{
+					prunedTasks.add(task);
+					continue;
+				}
+
+				queued.score = statistics.score(task.getKind(), task.getPayload(), queued.family);
+				if(anomalousFamilies.contains(queued.familyKey))
+				{
+					queued.score *= ANOMALY_BOOST;
+				}
+
+				queue.add(queued);
+
+				Integer version = familyVersions.get(queued.familyKey);
+				scoredVersions.put(queued.familyKey, version == null ? 0 : version);
+			}
+
+			addedTasks.clear();
+		}
+	}
+}
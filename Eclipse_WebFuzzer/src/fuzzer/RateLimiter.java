@@ -0,0 +1,138 @@
+package fuzzer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-host token bucket rate limiter shared by every thread which sends
+ * requests. Each host gets a bucket which refills at the configured number of
+ * requests per second and holds at most the configured burst size, so short
+ * bursts go out immediately while the sustained rate stays capped. A request
+ * reserves its slot while holding the bucket's lock but waits for that slot
+ * outside of it, so a thread only ever sleeps for exactly as long as its own
+ * request has to be delayed.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class RateLimiter
+{
+	private final double requestsPerSecond;
+	private final int burstSize;
+	private final ConcurrentMap<String, Bucket> buckets;
+
+	/**
+	 * Creates a limiter which allows the given number of requests per second
+	 * to each host, in bursts of up to the given size. A rate of zero (or
+	 * less) leaves requests unlimited.
+	 */
+	public RateLimiter(double requestsPerSecond, int burstSize)
+	{
+		this.requestsPerSecond = requestsPerSecond;
+		this.burstSize = Math.max(1, burstSize);
+		this.buckets = new ConcurrentHashMap<String, Bucket>();
+	}
+
+	public boolean isLimited()
+	{
+		return requestsPerSecond > 0;
+	}
+
+	public double getRequestsPerSecond()
+	{
+		return requestsPerSecond;
+	}
+
+	public int getBurstSize()
+	{
+		return burstSize;
+	}
+
+	/**
+	 * Blocks until a request may be sent to the host of the given URL.
+	 */
+	public void acquire(String url)
+		throws InterruptedException
+	{
+		acquireBucket(UrlCanonicalizer.hostKey(url));
+	}
+
+	/**
+	 * Blocks until a request counted against the bucket with the given key
+	 * may be sent, so that a single bucket can be shared by several hosts.
+	 */
+	public void acquireBucket(String key)
+		throws InterruptedException
+	{
+		if(!isLimited())
+		{
+			return;
+		}
+
+		long waitNanos = getBucket(key).reserve(System.nanoTime());
+		if(waitNanos > 0)
+		{
+			TimeUnit.NANOSECONDS.sleep(waitNanos);
+		}
+	}
+
+	private Bucket getBucket(String host)
+	{
+		Bucket bucket = buckets.get(host);
+		if(bucket == null)
+		{
+			Bucket newBucket = new Bucket();
+			bucket = buckets.putIfAbsent(host, newBucket);
+			if(bucket == null)
+			{
+				bucket = newBucket;
+			}
+		}
+
+		return bucket;
+	}
+
+	/**
+	 * A single host's bucket. Rather than counting tokens on a timer, the
+	 * bucket tracks the time at which the next request may be sent and the
+	 * number of tokens saved up before then.
+	 */
+	private class Bucket
+	{
+		private final long intervalNanos;
+		private double storedTokens;
+		private long nextFreeNanos;
+
+		Bucket()
+		{
+			this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond);
+			this.storedTokens = burstSize;
+			this.nextFreeNanos = System.nanoTime();
+		}
+
+		/**
+		 * Reserves a slot for one request and returns how long the caller must
+		 * wait before sending it.
+		 */
+		synchronized long reserve(long nowNanos)
+		{
+			if(nowNanos > nextFreeNanos)
+			{
+				// Tokens accrue while the bucket sits idle, up to the burst size
+				storedTokens = Math.min(burstSize,
+						storedTokens + (double) (nowNanos - nextFreeNanos) / intervalNanos);
+				nextFreeNanos = nowNanos;
+			}
+
+			long waitNanos = nextFreeNanos - nowNanos;
+
+			double tokensUsed = Math.min(1.0, storedTokens);
+			storedTokens -= tokensUsed;
+			nextFreeNanos += (long) ((1.0 - tokensUsed) * intervalNanos);
+
+			return waitNanos;
+		}
+	}
+}
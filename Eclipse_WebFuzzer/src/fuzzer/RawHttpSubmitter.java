@@ -0,0 +1,239 @@
+package fuzzer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.ProtocolException;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.RedirectStrategy;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.params.HttpClientParams;
+import org.apache.http.client.protocol.ClientContext;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.client.LaxRedirectStrategy;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+
+import com.gargoylesoftware.htmlunit.util.Cookie;
+
+/**
+ * Submits compiled form requests directly over HTTP, bypassing HtmlUnit's page
+ * loading (JavaScript, CSS and DOM construction) entirely. Connections are
+ * pooled and kept alive between requests. Every submission gets its own
+ * cookie store so that concurrent submissions never share session state.
+ * Redirects are followed here rather than by the HTTP client, so that every
+ * hop goes through the request governor like any other request, and a
+ * request's permit is held until its response body has been read.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class RawHttpSubmitter
+{
+	private static final int TIMEOUT_MILLIS = 60000;
+	private static final int MAX_REDIRECTS = 20;
+
+	/*
+	 * Follows redirects after POSTs as well, the same way a browser would.
+	 */
+	private static final RedirectStrategy REDIRECT_STRATEGY = new LaxRedirectStrategy();
+
+	private final PoolingClientConnectionManager connectionManager;
+	private final DefaultHttpClient httpClient;
+	private final RequestGovernor governor;
+
+	/**
+	 * Creates a submitter which keeps at most the given number of connections
+	 * open (to any single host as well as in total) and sends every request
+	 * through the given governor.
+	 */
+	public RawHttpSubmitter(int maxConnections, RequestGovernor governor)
+	{
+		this.governor = governor;
+
+		connectionManager = new PoolingClientConnectionManager();
+		connectionManager.setMaxTotal(Math.max(1, maxConnections));
+		connectionManager.setDefaultMaxPerRoute(Math.max(1, maxConnections));
+
+		httpClient = new DefaultHttpClient(connectionManager);
+		HttpParams params = httpClient.getParams();
+		HttpConnectionParams.setConnectionTimeout(params, TIMEOUT_MILLIS);
+		HttpConnectionParams.setSoTimeout(params, TIMEOUT_MILLIS);
+		HttpClientParams.setRedirecting(params, false);
+	}
+
+	/**
+	 * Submits the given template with the payload in place of the value of the
+	 * input at the given position, sending the given cookies along with it.
+	 * The response body is streamed through the given detectors as it arrives
+	 * and the connection is abandoned as soon as they are all satisfied.
+	 */
+	public RawResponse submit(RequestTemplate template, int inputIndex, String payload,
+			Collection<Cookie> cookies, List<? extends ResponseDetector> detectors)
+		throws IOException
+	{
+		HttpUriRequest request = template.toRequest(inputIndex, payload);
+
+		BasicCookieStore cookieStore = new BasicCookieStore();
+		if(cookies != null)
+		{
+			for(Cookie cookie: cookies)
+			{
+				cookieStore.addCookie(cookie.toHttpClient());
+			}
+		}
+
+		HttpContext context = new BasicHttpContext();
+		context.setAttribute(ClientContext.COOKIE_STORE, cookieStore);
+
+		long start = ScanMetrics.FORM_SUBMISSION.start();
+		boolean answered = false;
+		try
+		{
+			for(int redirects = 0; ; redirects++)
+			{
+				RequestGovernor.Permit permit = governor.begin(request.getURI().toString());
+				try
+				{
+					HttpResponse response;
+					try
+					{
+						response = httpClient.execute(request, context);
+						permit.received(response.getStatusLine().getStatusCode());
+					}
+					catch(IOException e)
+					{
+						permit.failed();
+						throw e;
+					}
+
+					HttpUriRequest redirect = getRedirect(request, response, context, redirects);
+					if(redirect != null)
+					{
+						// Releases the connection for the next hop to reuse
+						EntityUtils.consume(response.getEntity());
+						request = redirect;
+						continue;
+					}
+
+					answered = true;
+					boolean completelyRead = analyze(request, response.getEntity(), detectors);
+					return new RawResponse(response.getStatusLine().getStatusCode(),
+							request.getURI().toURL(), completelyRead);
+				}
+				finally
+				{
+					permit.release();
+				}
+			}
+		}
+		finally
+		{
+			ScanMetrics.FORM_SUBMISSION.stop(start, answered);
+		}
+	}
+
+	/**
+	 * Closes every pooled connection.
+	 */
+	public void close()
+	{
+		connectionManager.shutdown();
+	}
+
+	/**
+	 * Returns the name of the charset the given entity declares, or null if it
+	 * declares none (or one this JVM does not support).
+	 */
+	private static String getCharset(HttpEntity entity)
+	{
+		try
+		{
+			Charset charset = ContentType.getOrDefault(entity).getCharset();
+			return charset == null ? null : charset.name();
+		}
+		catch(RuntimeException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the request for the redirect the given response asks for, or
+	 * null if it is not a redirect (or too many redirects have been followed
+	 * already, in which case the redirect response itself is analyzed).
+	 */
+	private static HttpUriRequest getRedirect(HttpUriRequest request, HttpResponse response,
+			HttpContext context, int redirects)
+		throws IOException
+	{
+		if(redirects >= MAX_REDIRECTS)
+		{
+			return null;
+		}
+
+		try
+		{
+			if(!REDIRECT_STRATEGY.isRedirected(request, response, context))
+			{
+				return null;
+			}
+
+			return REDIRECT_STRATEGY.getRedirect(request, response, context);
+		}
+		catch(ProtocolException e)
+		{
+			throw new ClientProtocolException(e);
+		}
+	}
+
+	/**
+	 * Streams the given response body (if any) through the given detectors,
+	 * abandoning the connection if they were satisfied before the end of the
+	 * body. Returns true if the whole body was read.
+	 */
+	private static boolean analyze(HttpUriRequest request, HttpEntity entity,
+			List<? extends ResponseDetector> detectors)
+		throws IOException
+	{
+		if(entity == null)
+		{
+			return true;
+		}
+
+		boolean completelyRead = true;
+		InputStream content = entity.getContent();
+		try
+		{
+			completelyRead = ResponseAnalyzer.analyze(content, getCharset(entity), detectors);
+		}
+		finally
+		{
+			if(completelyRead)
+			{
+				// Releases the connection back to the pool for reuse
+				content.close();
+			}
+			else
+			{
+				// Drops the connection rather than reading the rest of an
+				// arbitrarily large body just to be able to reuse it
+				request.abort();
+			}
+		}
+
+		return completelyRead;
+	}
+}
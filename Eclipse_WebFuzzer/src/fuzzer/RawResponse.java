@@ -0,0 +1,47 @@
+package fuzzer;
+
+import java.net.URL;
+
+/**
+ * The status and final URL of a raw HTTP response. The body itself is not
+ * kept; it is streamed through the detectors as it is received.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class RawResponse
+{
+	private final int statusCode;
+	private final URL finalUrl;
+	private final boolean completelyRead;
+
+	public RawResponse(int statusCode, URL finalUrl, boolean completelyRead)
+	{
+		this.statusCode = statusCode;
+		this.finalUrl = finalUrl;
+		this.completelyRead = completelyRead;
+	}
+
+	public int getStatusCode()
+	{
+		return statusCode;
+	}
+
+	/**
+	 * Returns the URL of the response after any redirects were followed.
+	 */
+	public URL getFinalUrl()
+	{
+		return finalUrl;
+	}
+
+	/**
+	 * Returns false if reading the body stopped early because every detector
+	 * was already satisfied.
+	 */
+	public boolean wasCompletelyRead()
+	{
+		return completelyRead;
+	}
+}
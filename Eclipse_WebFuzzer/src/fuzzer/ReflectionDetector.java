@@ -0,0 +1,50 @@
+package fuzzer;
+
+import java.util.Collections;
+
+/**
+ * Checks whether a submitted payload is reflected back, unchanged, in the
+ * body of the response (i.e. the input was not sanitized).
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class ReflectionDetector implements ResponseDetector
+{
+	private final MultiPatternMatcher.Search search;
+	private long reflectionOffset;
+
+	public ReflectionDetector(String payload)
+	{
+		this.search = new MultiPatternMatcher(Collections.singletonList(payload)).newSearch();
+		this.reflectionOffset = -1;
+	}
+
+	public void feed(char[] buffer, int offset, int length)
+	{
+		search.feed(buffer, offset, length);
+
+		for(MultiPatternMatcher.Match match: search.drainMatches())
+		{
+			if(reflectionOffset == -1)
+			{
+				reflectionOffset = match.getOffset();
+			}
+		}
+	}
+
+	public boolean isSatisfied()
+	{
+		return reflectionOffset != -1;
+	}
+
+	/**
+	 * Returns the offset at which the payload was first reflected, or -1 if it
+	 * was not reflected.
+	 */
+	public long getReflectionOffset()
+	{
+		return reflectionOffset;
+	}
+}
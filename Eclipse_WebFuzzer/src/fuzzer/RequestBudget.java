@@ -0,0 +1,69 @@
+package fuzzer;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Caps the requests sent by several scans running side by side (e.g. one per
+ * configuration file), on top of the limits each scan applies to its own
+ * site. Every request takes a slot from a fixed number shared by all of the
+ * scans, and the scans' requests together are held to a single rate, so
+ * adding targets spreads the same load across them rather than adding to it.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class RequestBudget
+{
+	private static final String BUCKET_KEY = "budget";
+
+	private final int maxInFlight;
+	private final Semaphore slots;
+	private final RateLimiter rateLimiter;
+
+	/**
+	 * Creates a budget which allows at most the given number of requests in
+	 * flight at once and the given number of requests per second (in bursts
+	 * of up to the given size). Zero (or less) leaves either one unlimited.
+	 */
+	public RequestBudget(int maxInFlight, double requestsPerSecond, int burstSize)
+	{
+		this.maxInFlight = maxInFlight;
+		this.slots = maxInFlight > 0 ? new Semaphore(maxInFlight, true) : null;
+		this.rateLimiter = new RateLimiter(requestsPerSecond, burstSize);
+	}
+
+	public int getMaxInFlight()
+	{
+		return maxInFlight;
+	}
+
+	public double getRequestsPerSecond()
+	{
+		return rateLimiter.getRequestsPerSecond();
+	}
+
+	/**
+	 * Blocks until the budget allows one more request to be sent. Every call
+	 * which returns normally must be matched by a call to release().
+	 */
+	public void acquire()
+		throws InterruptedException
+	{
+		// Paced before a slot is taken, so that no slot is held while asleep
+		rateLimiter.acquireBucket(BUCKET_KEY);
+
+		if(slots != null)
+		{
+			slots.acquire();
+		}
+	}
+
+	public void release()
+	{
+		if(slots != null)
+		{
+			slots.release();
+		}
+	}
+}
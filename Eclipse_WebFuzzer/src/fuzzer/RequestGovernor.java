@@ -0,0 +1,208 @@
+package fuzzer;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single point of control for every request sent to the site being fuzzed,
+ * whichever client sends it. A request must begin() before it is sent, which
+ * waits (when adaptive concurrency is on) for a free slot in its host's
+ * ConcurrencyController, then for the rate limit and last, if the scan shares
+ * a RequestBudget with other scans, for the budget, and must report how it
+ * went and release its permit once the response has been received.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class RequestGovernor
+{
+	private static final int TOO_MANY_REQUESTS = 429;
+
+	private final RateLimiter rateLimiter;
+	private final boolean adaptiveConcurrency;
+	private final int initialConcurrency;
+	private final int maxConcurrency;
+	private final ConcurrentMap<String, ConcurrencyController> controllers;
+	private final RequestBudget budget;
+	private final AtomicLong requestCount;
+
+	/**
+	 * Creates a governor which applies the given rate limit and, if adaptive
+	 * concurrency is on, lets each host have between one and the given maximum
+	 * number of requests in flight (starting from the given initial number).
+	 */
+	public RequestGovernor(RateLimiter rateLimiter, boolean adaptiveConcurrency,
+			int initialConcurrency, int maxConcurrency)
+	{
+		this(rateLimiter, adaptiveConcurrency, initialConcurrency, maxConcurrency, null);
+	}
+
+	/**
+	 * Creates a governor as above whose requests also count against the given
+	 * budget (which may be null).
+	 */
+	public RequestGovernor(RateLimiter rateLimiter, boolean adaptiveConcurrency,
+			int initialConcurrency, int maxConcurrency, RequestBudget budget)
+	{
+		this.budget = budget;
+		this.rateLimiter = rateLimiter;
+		this.adaptiveConcurrency = adaptiveConcurrency;
+		this.initialConcurrency = initialConcurrency;
+		this.maxConcurrency = maxConcurrency;
+		this.controllers = new ConcurrentHashMap<String, ConcurrencyController>();
+		this.requestCount = new AtomicLong();
+	}
+
+	/**
+	 * Blocks until a request to the given URL may be sent and returns the
+	 * permit for sending it.
+	 */
+	public Permit begin(String url)
+		throws InterruptedIOException
+	{
+		ConcurrencyController controller = adaptiveConcurrency ? getController(url) : null;
+
+		try
+		{
+			if(controller != null)
+			{
+				controller.acquire();
+			}
+
+			// The budget's slot is only taken once the host's rate limit lets
+			// the request go, so that requests waiting on a slow host do not
+			// hold slots which other scans could be using
+			try
+			{
+				rateLimiter.acquire(url);
+				if(budget != null)
+				{
+					budget.acquire();
+				}
+			}
+			catch(InterruptedException e)
+			{
+				if(controller != null)
+				{
+					controller.release(ConcurrencyController.RequestOutcome.UNKNOWN, 0);
+				}
+				throw e;
+			}
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			InterruptedIOException exception = new InterruptedIOException(
+					"Interrupted while waiting to send a request to " + url);
+			exception.initCause(e);
+			throw exception;
+		}
+
+		requestCount.incrementAndGet();
+		return new Permit(controller, budget);
+	}
+
+	/**
+	 * Returns the number of requests which have been allowed to be sent.
+	 */
+	public long getRequestCount()
+	{
+		return requestCount.get();
+	}
+
+	/**
+	 * Returns the current concurrency limit for the host of the given URL, or
+	 * -1 if adaptive concurrency is off.
+	 */
+	public int getConcurrencyLimit(String url)
+	{
+		return adaptiveConcurrency ? getController(url).getLimit() : -1;
+	}
+
+	private ConcurrencyController getController(String url)
+	{
+		String host = UrlCanonicalizer.hostKey(url);
+		ConcurrencyController controller = controllers.get(host);
+		if(controller == null)
+		{
+			ConcurrencyController newController = new ConcurrencyController(initialConcurrency, maxConcurrency);
+			controller = controllers.putIfAbsent(host, newController);
+			if(controller == null)
+			{
+				controller = newController;
+			}
+		}
+
+		return controller;
+	}
+
+	/**
+	 * Permission to send a single request. Exactly one of received() or
+	 * failed() should be called once the request is over, and release() must
+	 * always be called (e.g. in a finally block), even if neither was.
+	 */
+	public static class Permit
+	{
+		private final ConcurrencyController controller;
+		private final RequestBudget budget;
+		private final long startNanos;
+		private ConcurrencyController.RequestOutcome outcome;
+		private long latencyNanos;
+		private boolean released;
+
+		private Permit(ConcurrencyController controller, RequestBudget budget)
+		{
+			this.controller = controller;
+			this.budget = budget;
+			this.startNanos = System.nanoTime();
+			this.outcome = ConcurrencyController.RequestOutcome.UNKNOWN;
+			this.latencyNanos = 0;
+			this.released = false;
+		}
+
+		/**
+		 * Records that a response with the given status code was received.
+		 */
+		public void received(int statusCode)
+		{
+			latencyNanos = System.nanoTime() - startNanos;
+			outcome = (statusCode >= 500 || statusCode == TOO_MANY_REQUESTS) ?
+					ConcurrencyController.RequestOutcome.OVERLOADED :
+					ConcurrencyController.RequestOutcome.SUCCESS;
+		}
+
+		/**
+		 * Records that the request failed with an I/O error. Timeouts and
+		 * connection failures count against the host; a request abandoned
+		 * because its thread was interrupted does not.
+		 */
+		public void failed()
+		{
+			latencyNanos = System.nanoTime() - startNanos;
+			outcome = Thread.currentThread().isInterrupted() ? 
+					ConcurrencyController.RequestOutcome.UNKNOWN :
+					ConcurrencyController.RequestOutcome.OVERLOADED;
+		}
+
+		public void release()
+		{
+			if(released)
+			{
+				return;
+			}
+
+			released = true;
+			if(budget != null)
+			{
+				budget.release();
+			}
+			if(controller != null)
+			{
+				controller.release(outcome, latencyNanos);
+			}
+		}
+	}
+}
@@ -0,0 +1,291 @@
+package fuzzer;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.http.NameValuePair;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.entity.mime.HttpMultipartMode;
+import org.apache.http.entity.mime.MultipartEntity;
+import org.apache.http.entity.mime.content.StringBody;
+import org.apache.http.message.BasicNameValuePair;
+
+import com.gargoylesoftware.htmlunit.FormEncodingType;
+import com.gargoylesoftware.htmlunit.HttpMethod;
+import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.html.HtmlElement;
+import com.gargoylesoftware.htmlunit.html.HtmlForm;
+
+/**
+ * A form submission compiled down to the data needed to replay it over raw
+ * HTTP: the action URL, method, encoding, charset and the names and default
+ * values of the fields which a browser would submit. Each of the form's inputs
+ * is mapped onto the field its value is submitted in so that a payload can be
+ * substituted for that one field while every other field keeps its default.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class RequestTemplate
+{
+	private static final String DEFAULT_CHARSET = "UTF-8";
+
+	private final String actionUrl;
+	private final String method;
+	private final String encoding;
+	private final String charset;
+	private final List<String> fieldNames;
+	private final List<String> fieldValues;
+
+	/*
+	 * For each of the form's inputs (in the same order as WebForm.getInputs()),
+	 * the index of the field that input is submitted in or -1 if a browser
+	 * would not submit it (e.g. an unnamed input or an unchecked checkbox).
+	 */
+	private final int[] inputFields;
+
+	public RequestTemplate(String actionUrl, String method, String encoding, String charset,
+			List<String> fieldNames, List<String> fieldValues, int[] inputFields)
+	{
+		this.actionUrl = actionUrl;
+		this.method = method;
+		this.encoding = encoding;
+		this.charset = charset == null ? DEFAULT_CHARSET : charset;
+		this.fieldNames = Collections.unmodifiableList(new ArrayList<String>(fieldNames));
+		this.fieldValues = Collections.unmodifiableList(new ArrayList<String>(fieldValues));
+		this.inputFields = inputFields.clone();
+	}
+
+	public String getActionUrl()
+	{
+		return actionUrl;
+	}
+
+	public String getMethod()
+	{
+		return method;
+	}
+
+	public String getEncoding()
+	{
+		return encoding;
+	}
+
+	public String getCharset()
+	{
+		return charset;
+	}
+
+	public List<String> getFieldNames()
+	{
+		return fieldNames;
+	}
+
+	public List<String> getFieldValues()
+	{
+		return fieldValues;
+	}
+
+	/**
+	 * Returns true if the input at the given position is submitted with the
+	 * form and can therefore carry a payload.
+	 */
+	public boolean canFuzzInput(int inputIndex)
+	{
+		return inputIndex >= 0 && inputIndex < inputFields.length && inputFields[inputIndex] >= 0;
+	}
+
+	/**
+	 * Returns this template as a record which can be encoded as JSON.
+	 */
+	public Map<String, Object> toRecord()
+	{
+		List<Integer> inputFieldList = new ArrayList<Integer>(inputFields.length);
+		for(int inputField: inputFields)
+		{
+			inputFieldList.add(inputField);
+		}
+
+		Map<String, Object> record = new LinkedHashMap<String, Object>();
+		record.put("actionUrl", actionUrl);
+		record.put("method", method);
+		record.put("encoding", encoding);
+		record.put("charset", charset);
+		record.put("fieldNames", fieldNames);
+		record.put("fieldValues", fieldValues);
+		record.put("inputFields", inputFieldList);
+		return record;
+	}
+
+	/**
+	 * Recreates a template from a record made by toRecord().
+	 */
+	@SuppressWarnings("unchecked")
+	public static RequestTemplate fromRecord(Map<String, Object> record)
+	{
+		List<Object> inputFieldList = (List<Object>) record.get("inputFields");
+		int[] inputFields = new int[inputFieldList.size()];
+		for(int i = 0; i < inputFields.length; i++)
+		{
+			inputFields[i] = ((Number) inputFieldList.get(i)).intValue();
+		}
+
+		return new RequestTemplate((String) record.get("actionUrl"), (String) record.get("method"),
+				(String) record.get("encoding"), (String) record.get("charset"),
+				(List<String>) record.get("fieldNames"), (List<String>) record.get("fieldValues"),
+				inputFields);
+	}
+
+	/**
+	 * Builds the request which submits the form with the given payload in place
+	 * of the value of the input at the given position. A negative input index
+	 * builds the request for the form's default values.
+	 */
+	public HttpUriRequest toRequest(int inputIndex, String payload)
+		throws UnsupportedEncodingException
+	{
+		List<NameValuePair> parameters = new ArrayList<NameValuePair>(fieldNames.size());
+		int payloadField = canFuzzInput(inputIndex) ? inputFields[inputIndex] : -1;
+
+		for(int i = 0; i < fieldNames.size(); i++)
+		{
+			String value = (i == payloadField) ? payload : fieldValues.get(i);
+			parameters.add(new BasicNameValuePair(fieldNames.get(i), value));
+		}
+
+		if(method.equals("GET"))
+		{
+			String query = URLEncodedUtils.format(parameters, charset);
+			return new HttpGet(query.length() == 0 ? actionUrl : actionUrl + "?" + query);
+		}
+
+		HttpPost post = new HttpPost(actionUrl);
+		if(encoding.equals(FormEncodingType.MULTIPART.getName()))
+		{
+			MultipartEntity entity = new MultipartEntity(HttpMultipartMode.BROWSER_COMPATIBLE);
+			for(NameValuePair parameter: parameters)
+			{
+				entity.addPart(parameter.getName(),
+						new StringBody(parameter.getValue(), Charset.forName(charset)));
+			}
+			post.setEntity(entity);
+		}
+		else
+		{
+			post.setEntity(new UrlEncodedFormEntity(parameters, charset));
+		}
+
+		return post;
+	}
+
+	/**
+	 * Compiles the given form into a request template, submitting it with the
+	 * form's submit field. Returns null if the form cannot be submitted.
+	 */
+	public static RequestTemplate compile(WebForm form)
+	{
+		if(!(form.getForm() instanceof HtmlForm) || form.getSubmitField() == null)
+		{
+			return null;
+		}
+
+		// HtmlUnit resolves the action, method, encoding and the set of
+		// successful controls exactly as it would for a click on the submit
+		// field, without actually sending anything
+		WebRequest request = ((HtmlForm) form.getForm()).getWebRequest(form.getSubmitField());
+		URL url = request.getUrl();
+		String charset = request.getCharset();
+
+		String actionUrl;
+		List<String> fieldNames = new ArrayList<String>();
+		List<String> fieldValues = new ArrayList<String>();
+
+		if(request.getHttpMethod() == HttpMethod.GET)
+		{
+			// For GET submissions the fields have already been encoded into the
+			// query of the request URL
+			String urlString = url.toString();
+			int queryStart = urlString.indexOf('?');
+			actionUrl = queryStart == -1 ? urlString : urlString.substring(0, queryStart);
+
+			try
+			{
+				for(NameValuePair pair: URLEncodedUtils.parse(url.toURI(), charset))
+				{
+					fieldNames.add(pair.getName());
+					fieldValues.add(pair.getValue() == null ? "" : pair.getValue());
+				}
+			}
+			catch(URISyntaxException e)
+			{
+				return null;
+			}
+		}
+		else
+		{
+			actionUrl = url.toString();
+
+			for(com.gargoylesoftware.htmlunit.util.NameValuePair pair: request.getRequestParameters())
+			{
+				fieldNames.add(pair.getName());
+				fieldValues.add(pair.getValue());
+			}
+		}
+
+		List<String> inputNames = new ArrayList<String>();
+		for(HtmlElement input: form.getInputs())
+		{
+			inputNames.add(input.getAttribute("name"));
+		}
+
+		return new RequestTemplate(actionUrl, request.getHttpMethod().name(),
+				request.getEncodingType().getName(), charset, fieldNames, fieldValues,
+				mapInputsToFields(inputNames, fieldNames));
+	}
+
+	/**
+	 * Returns the index of the field each of the inputs with the given names
+	 * is submitted in, or -1 for an input which is not submitted.
+	 */
+	static int[] mapInputsToFields(List<String> inputNames, List<String> fieldNames)
+	{
+		int[] inputFields = new int[inputNames.size()];
+		boolean[] claimed = new boolean[fieldNames.size()];
+
+		for(int i = 0; i < inputNames.size(); i++)
+		{
+			inputFields[i] = -1;
+
+			String name = inputNames.get(i);
+			if(name == null || name.length() == 0)
+			{
+				continue;
+			}
+
+			// Inputs sharing a name are matched to that name's fields in order
+			for(int field = 0; field < fieldNames.size(); field++)
+			{
+				if(!claimed[field] && fieldNames.get(field).equals(name))
+				{
+					claimed[field] = true;
+					inputFields[i] = field;
+					break;
+				}
+			}
+		}
+
+		return inputFields;
+	}
+}
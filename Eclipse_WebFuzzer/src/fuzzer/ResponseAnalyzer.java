@@ -0,0 +1,95 @@
+package fuzzer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.util.List;
+
+/**
+ * Streams a response body through a pipeline of detectors in fixed-size
+ * chunks, so the body is never held in memory as a whole. Reading stops early
+ * once every detector is satisfied.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class ResponseAnalyzer
+{
+	private static final int CHUNK_SIZE = 8192;
+	private static final String DEFAULT_CHARSET = "ISO-8859-1";
+
+	/**
+	 * Feeds the given stream, decoded with the given charset, to every one of
+	 * the given detectors. Returns true if the entire stream was read, or false
+	 * if reading stopped early because all of the detectors were satisfied.
+	 * The stream is not closed.
+	 */
+	public static boolean analyze(InputStream stream, String charset, List<? extends ResponseDetector> detectors)
+		throws IOException
+	{
+		long start = ScanMetrics.RESPONSE_ANALYSIS.start();
+		boolean analyzed = false;
+		try
+		{
+			boolean completelyRead = feed(stream, charset, detectors);
+			analyzed = true;
+			return completelyRead;
+		}
+		finally
+		{
+			ScanMetrics.RESPONSE_ANALYSIS.stop(start, analyzed);
+		}
+	}
+
+	private static boolean feed(InputStream stream, String charset, List<? extends ResponseDetector> detectors)
+		throws IOException
+	{
+		Reader reader;
+		try
+		{
+			reader = new InputStreamReader(stream, charset == null ? DEFAULT_CHARSET : charset);
+		}
+		catch(UnsupportedEncodingException e)
+		{
+			reader = new InputStreamReader(stream, DEFAULT_CHARSET);
+		}
+
+		char[] buffer = new char[CHUNK_SIZE];
+		int read;
+
+		while(!allSatisfied(detectors))
+		{
+			read = reader.read(buffer);
+			if(read == -1)
+			{
+				return true;
+			}
+
+			for(ResponseDetector detector: detectors)
+			{
+				if(!detector.isSatisfied())
+				{
+					detector.feed(buffer, 0, read);
+				}
+			}
+		}
+
+		return false;
+	}
+
+	private static boolean allSatisfied(List<? extends ResponseDetector> detectors)
+	{
+		for(ResponseDetector detector: detectors)
+		{
+			if(!detector.isSatisfied())
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+}
@@ -0,0 +1,99 @@
+package fuzzer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The responses which have already been analyzed for a single form, keyed by
+ * their fingerprints. Fuzzing a form tends to get the same few responses
+ * back (e.g. one error page for every rejected payload), so the result of
+ * running a detector over a response is kept and reused for every identical
+ * response afterward. The cache also holds the form's baseline response
+ * fingerprint, i.e. that of the response to submitting the form unchanged.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class ResponseCache
+{
+	/*
+	 * Limits the memory used by a form whose responses are all different
+	 * (e.g. because they echo the payload back); once full, new responses
+	 * are still analyzed but are no longer cached.
+	 */
+	private static final int MAX_ENTRIES = 4096;
+
+	private final ConcurrentMap<String, ResponseDetector> results;
+	private final ConcurrentMap<String, Boolean> distinctResponses;
+	private ResponseFingerprint baseline;
+	private boolean baselineLoaded;
+
+	public ResponseCache()
+	{
+		this.results = new ConcurrentHashMap<String, ResponseDetector>();
+		this.distinctResponses = new ConcurrentHashMap<String, Boolean>();
+		this.baseline = null;
+		this.baselineLoaded = false;
+	}
+
+	/**
+	 * Returns the detector which was run, under the given key, over a response
+	 * with the given fingerprint, or null if there is none.
+	 */
+	public ResponseDetector get(String detectorKey, ResponseFingerprint fingerprint)
+	{
+		return results.get(detectorKey + "@" + fingerprint.getKey());
+	}
+
+	/**
+	 * Keeps the given detector, which has been run over a response with the
+	 * given fingerprint, for reuse under the given key. The detector must not
+	 * be changed afterward.
+	 */
+	public void put(String detectorKey, ResponseFingerprint fingerprint, ResponseDetector detector)
+	{
+		if(results.size() < MAX_ENTRIES)
+		{
+			results.putIfAbsent(detectorKey + "@" + fingerprint.getKey(), detector);
+		}
+	}
+
+	/**
+	 * Returns true the first time it is called for a response with the given
+	 * fingerprint.
+	 */
+	public boolean isNewResponse(ResponseFingerprint fingerprint)
+	{
+		if(distinctResponses.size() >= MAX_ENTRIES)
+		{
+			return false;
+		}
+
+		return distinctResponses.putIfAbsent(fingerprint.getKey(), Boolean.TRUE) == null;
+	}
+
+	/**
+	 * Returns true once an attempt has been made to load the baseline, whether
+	 * or not it succeeded.
+	 */
+	public synchronized boolean isBaselineLoaded()
+	{
+		return baselineLoaded;
+	}
+
+	/**
+	 * Returns the fingerprint of the form's baseline response, or null if it
+	 * has not been (or could not be) loaded.
+	 */
+	public synchronized ResponseFingerprint getBaseline()
+	{
+		return baseline;
+	}
+
+	public synchronized void setBaseline(ResponseFingerprint baseline)
+	{
+		this.baseline = baseline;
+		this.baselineLoaded = true;
+	}
+}
@@ -0,0 +1,24 @@
+package fuzzer;
+
+/**
+ * A check which is run over the body of a response as it is read. Detectors
+ * are fed the body in chunks and must not retain more than a bounded amount of
+ * it, so that peak memory does not depend on the size of the response.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public interface ResponseDetector
+{
+	/**
+	 * Examines the next chunk of the response body.
+	 */
+	void feed(char[] buffer, int offset, int length);
+
+	/**
+	 * Returns true once the detector has found everything it is looking for,
+	 * at which point it no longer needs to see the rest of the response.
+	 */
+	boolean isSatisfied();
+}
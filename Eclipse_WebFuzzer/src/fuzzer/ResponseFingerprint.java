@@ -0,0 +1,177 @@
+package fuzzer;
+
+/**
+ * Fingerprint of a response body: an exact 64-bit hash of its text, used to
+ * recognize responses which are identical to one already seen, and a 64-bit
+ * SimHash of the words in it, used to measure how similar two responses
+ * which are not identical are. The SimHashes of two bodies which share most
+ * of their words differ in only a few bits, so the Hamming distance between
+ * them grows with how much of the text has changed.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class ResponseFingerprint
+{
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private final long hash;
+	private final long length;
+	private final long simHash;
+
+	public ResponseFingerprint(long hash, long length, long simHash)
+	{
+		this.hash = hash;
+		this.length = length;
+		this.simHash = simHash;
+	}
+
+	public long getHash()
+	{
+		return hash;
+	}
+
+	/**
+	 * Returns the length of the body in characters.
+	 */
+	public long getLength()
+	{
+		return length;
+	}
+
+	public long getSimHash()
+	{
+		return simHash;
+	}
+
+	/**
+	 * Returns the number of bits (out of 64) in which the SimHashes of this
+	 * and the given fingerprint differ.
+	 */
+	public int distanceTo(ResponseFingerprint other)
+	{
+		return Long.bitCount(simHash ^ other.simHash);
+	}
+
+	/**
+	 * Returns a key which is equal for the fingerprints of identical bodies.
+	 */
+	public String getKey()
+	{
+		return Long.toHexString(hash) + ":" + length;
+	}
+
+	@Override
+	public boolean equals(Object other)
+	{
+		if(!(other instanceof ResponseFingerprint))
+		{
+			return false;
+		}
+
+		ResponseFingerprint fingerprint = (ResponseFingerprint) other;
+		return hash == fingerprint.hash && length == fingerprint.length;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+	/**
+	 * Computes a fingerprint from a response body as it is read. Words are
+	 * hashed one character at a time, so nothing but the running totals is
+	 * kept no matter how long the body is. The builder is never satisfied,
+	 * since the fingerprint is only valid once the whole body has been seen.
+	 */
+	public static class Builder implements ResponseDetector
+	{
+		private long hash;
+		private long length;
+		private long wordHash;
+		private int wordLength;
+		private final int[] bitWeights;
+
+		public Builder()
+		{
+			this.hash = FNV_OFFSET_BASIS;
+			this.length = 0;
+			this.wordHash = FNV_OFFSET_BASIS;
+			this.wordLength = 0;
+			this.bitWeights = new int[64];
+		}
+
+		public void feed(char[] buffer, int offset, int length)
+		{
+			for(int i = offset; i < offset + length; i++)
+			{
+				char c = buffer[i];
+				hash = (hash ^ c) * FNV_PRIME;
+
+				if(Character.isLetterOrDigit(c))
+				{
+					wordHash = (wordHash ^ Character.toLowerCase(c)) * FNV_PRIME;
+					wordLength++;
+				}
+				else
+				{
+					endWord();
+				}
+			}
+
+			this.length += length;
+		}
+
+		public boolean isSatisfied()
+		{
+			return false;
+		}
+
+		/**
+		 * Returns the fingerprint of everything fed to the builder so far.
+		 */
+		public ResponseFingerprint build()
+		{
+			endWord();
+
+			long simHash = 0;
+			for(int bit = 0; bit < 64; bit++)
+			{
+				if(bitWeights[bit] > 0)
+				{
+					simHash |= 1L << bit;
+				}
+			}
+
+			return new ResponseFingerprint(hash, length, simHash);
+		}
+
+		private void endWord()
+		{
+			if(wordLength == 0)
+			{
+				return;
+			}
+
+			// Spreads the word's hash over all 64 bits (MurmurHash3's
+			// finalizer) so that every bit is equally likely to be set
+			long feature = wordHash;
+			feature ^= feature >>> 33;
+			feature *= 0xff51afd7ed558ccdL;
+			feature ^= feature >>> 33;
+			feature *= 0xc4ceb9fe1a85ec53L;
+			feature ^= feature >>> 33;
+
+			for(int bit = 0; bit < 64; bit++)
+			{
+				bitWeights[bit] += ((feature >>> bit) & 1) == 1 ? 1 : -1;
+			}
+
+			wordHash = FNV_OFFSET_BASIS;
+			wordLength = 0;
+		}
+	}
+}
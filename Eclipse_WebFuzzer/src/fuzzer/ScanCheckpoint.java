@@ -0,0 +1,391 @@
+package fuzzer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Append-only log of a scan's progress, from which an interrupted scan can be
+ * resumed without repeating the requests it had already made. The log is a
+ * JSON Lines file with one record per event: a URL being claimed by the
+ * crawl (placed on the frontier or marked as visited), discovery of a URL
+ * being finished, a page's attack surface being recorded, a page guess being
+ * probed, a fuzz task being completed, and discovery or fuzzing as a whole
+ * being completed. Findings are not repeated here since they are already
+ * streamed to the findings file, which is appended to when a scan resumes.
+ *
+ * Records are queued in memory and written out periodically by a background
+ * thread (and when the checkpoint is flushed or closed). Only the records
+ * queued before the findings sink was last flushed are written, so a fuzz
+ * task is never recorded as completed on disk before the findings it
+ * produced are.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class ScanCheckpoint implements CrawlEngine.CrawlLog
+{
+	private static final String CHARSET = "UTF-8";
+
+	private final File file;
+	private final FindingsSink findings;
+	private final Writer writer;
+	private final Thread flusherThread;
+	private final List<String> pendingLines;
+	private volatile boolean closed;
+
+	/*
+	 * The progress recovered from an earlier run. The crawl state is only
+	 * needed until it has been restored into a crawl engine.
+	 */
+	private Map<String, String> claimedUrls;
+	private Set<String> finishedUrls;
+	private Map<String, Boolean> probeResults;
+	private final Map<String, PageSurface> pages;
+	private final FingerprintUrlSet completedTasks;
+	private boolean discoveryComplete;
+	private boolean fuzzingComplete;
+
+	/**
+	 * Opens the checkpoint log in the given file, which is flushed (after the
+	 * given findings sink) every given number of milliseconds. If resume is
+	 * true then the progress recorded in the file (if it exists) is recovered
+	 * and new records are appended to it; otherwise the file is started over.
+	 */
+	public ScanCheckpoint(File file, boolean resume, long flushIntervalMillis, FindingsSink findings)
+		throws IOException
+	{
+		this.file = file;
+		this.findings = findings;
+		this.claimedUrls = new LinkedHashMap<String, String>();
+		this.finishedUrls = new HashSet<String>();
+		this.probeResults = new LinkedHashMap<String, Boolean>();
+		this.pages = new LinkedHashMap<String, PageSurface>();
+		this.completedTasks = new FingerprintUrlSet();
+		this.discoveryComplete = false;
+		this.fuzzingComplete = false;
+		this.closed = false;
+		this.pendingLines = new ArrayList<String>();
+
+		boolean append = resume && file.exists();
+		if(append)
+		{
+			recover();
+		}
+
+		this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, append), CHARSET));
+		if(append && FindingsSink.endsWithPartialLine(file))
+		{
+			// Keeps a record cut off by a crash from swallowing the next one
+			writer.write('\n');
+		}
+
+		final long interval = Math.max(1, flushIntervalMillis);
+		this.flusherThread = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				while(!closed)
+				{
+					try
+					{
+						Thread.sleep(interval);
+						flush();
+					}
+					catch(InterruptedException e)
+					{
+						return;
+					}
+					catch(IOException e)
+					{
+						System.out.println("Unable to write the checkpoint file: " + ScanCheckpoint.this.file);
+						e.printStackTrace();
+						return;
+					}
+				}
+			}
+		}, "checkpoint-writer");
+		this.flusherThread.setDaemon(true);
+		this.flusherThread.start();
+	}
+
+	public File getFile()
+	{
+		return file;
+	}
+
+	public boolean isDiscoveryComplete()
+	{
+		return discoveryComplete;
+	}
+
+	public boolean isFuzzingComplete()
+	{
+		return fuzzingComplete;
+	}
+
+	/**
+	 * Adds the attack surface of every page recorded by an earlier run to the
+	 * given map.
+	 */
+	public void restorePages(Map<String, PageSurface> webPages)
+	{
+		webPages.putAll(pages);
+	}
+
+	/**
+	 * Restores the crawl recorded by an earlier run into the given engine (so
+	 * that every URL it claimed is claimed again and every URL it did not
+	 * finish is placed back on the frontier) and the results of its page
+	 * guesses into the given prober, and starts logging the engine's progress.
+	 */
+	public void restoreCrawl(CrawlEngine crawler, UrlProber prober)
+	{
+		for(Map.Entry<String, String> claimedUrl: claimedUrls.entrySet())
+		{
+			crawler.restore(claimedUrl.getValue(), finishedUrls.contains(claimedUrl.getKey()));
+		}
+
+		for(Map.Entry<String, Boolean> probeResult: probeResults.entrySet())
+		{
+			prober.recordResult(probeResult.getKey(), probeResult.getValue().booleanValue());
+		}
+
+		// Only needed once
+		claimedUrls = new LinkedHashMap<String, String>();
+		finishedUrls = new HashSet<String>();
+		probeResults = new LinkedHashMap<String, Boolean>();
+
+		crawler.setCrawlLog(this);
+	}
+
+	/**
+	 * Returns true if the given fuzz task was completed by an earlier run.
+	 * The task's payload is not looked at unless some task was.
+	 */
+	public boolean isTaskCompleted(FuzzTask task)
+	{
+		return completedTasks.size() > 0 && completedTasks.contains(taskKey(task));
+	}
+
+	public void claimed(String url)
+	{
+		Map<String, Object> record = record("claim");
+		record.put("url", url);
+		write(record);
+	}
+
+	public void finished(String url)
+	{
+		Map<String, Object> record = record("finish");
+		record.put("url", url);
+		write(record);
+	}
+
+	public void pageDiscovered(String url, PageSurface page)
+	{
+		Map<String, Object> record = record("page");
+		record.put("url", url);
+		record.put("surface", page.toRecord());
+		write(record);
+	}
+
+	public void probed(String url, boolean exists)
+	{
+		Map<String, Object> record = record("probe");
+		record.put("url", url);
+		record.put("exists", exists);
+		write(record);
+	}
+
+	public void taskCompleted(FuzzTask task)
+	{
+		Map<String, Object> record = record("task");
+		record.putAll(task.toRecord());
+		write(record);
+	}
+
+	public void discoveryCompleted()
+	{
+		write(record("discovered"));
+	}
+
+	public void fuzzingCompleted()
+	{
+		write(record("fuzzed"));
+	}
+
+	/**
+	 * Writes every record made so far to disk, after first flushing the
+	 * findings sink.
+	 */
+	public void flush()
+		throws IOException
+	{
+		// Held throughout so that concurrent flushes write their records in
+		// the order they were made
+		synchronized(writer)
+		{
+			List<String> lines;
+			synchronized(pendingLines)
+			{
+				lines = new ArrayList<String>(pendingLines);
+				pendingLines.clear();
+			}
+
+			if(findings != null)
+			{
+				findings.flush();
+			}
+
+			for(String line: lines)
+			{
+				writer.write(line);
+				writer.write('\n');
+			}
+
+			writer.flush();
+		}
+	}
+
+	/**
+	 * Flushes and closes the log.
+	 */
+	public void close()
+		throws IOException
+	{
+		if(closed)
+		{
+			return;
+		}
+
+		closed = true;
+		flusherThread.interrupt();
+		flush();
+
+		synchronized(writer)
+		{
+			writer.close();
+		}
+	}
+
+	private static Map<String, Object> record(String type)
+	{
+		Map<String, Object> record = new LinkedHashMap<String, Object>();
+		record.put("type", type);
+		return record;
+	}
+
+	private void write(Map<String, Object> record)
+	{
+		String line = Json.toJson(record);
+
+		synchronized(pendingLines)
+		{
+			if(!closed)
+			{
+				pendingLines.add(line);
+			}
+		}
+	}
+
+	/**
+	 * Reads back the progress recorded in the log. Lines which cannot be
+	 * decoded (e.g. a record cut off by a crash) are skipped.
+	 */
+	@SuppressWarnings("unchecked")
+	private void recover()
+		throws IOException
+	{
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), CHARSET));
+
+		try
+		{
+			String line;
+			while((line = reader.readLine()) != null)
+			{
+				if(line.trim().length() == 0)
+				{
+					continue;
+				}
+
+				Map<String, Object> record;
+				try
+				{
+					record = Json.parseObject(line);
+				}
+				catch(IllegalArgumentException e)
+				{
+					System.out.println("Skipping malformed checkpoint record: " + line);
+					continue;
+				}
+
+				String type = String.valueOf(record.get("type"));
+				String url = (String) record.get("url");
+				String canonicalUrl = url == null ? null : UrlCanonicalizer.canonicalize(url);
+
+				if(type.equals("claim") && canonicalUrl != null)
+				{
+					if(!claimedUrls.containsKey(canonicalUrl))
+					{
+						claimedUrls.put(canonicalUrl, url);
+					}
+				}
+				else if(type.equals("finish") && canonicalUrl != null)
+				{
+					finishedUrls.add(canonicalUrl);
+				}
+				else if(type.equals("page"))
+				{
+					pages.put(url, PageSurface.fromRecord((Map<String, Object>) record.get("surface")));
+				}
+				else if(type.equals("probe"))
+				{
+					probeResults.put(url, Boolean.valueOf(Boolean.TRUE.equals(record.get("exists"))));
+				}
+				else if(type.equals("task"))
+				{
+					completedTasks.add(taskKey((String) record.get("kind"), (String) record.get("page"),
+							((Number) record.get("form")).intValue(), ((Number) record.get("input")).intValue(),
+							(String) record.get("payload")));
+				}
+				else if(type.equals("discovered"))
+				{
+					discoveryComplete = true;
+				}
+				else if(type.equals("fuzzed"))
+				{
+					fuzzingComplete = true;
+				}
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+
+	private static String taskKey(FuzzTask task)
+	{
+		return taskKey(task.getKind().name(), task.getPageUrl(), task.getFormIndex(), task.getInputIndex(),
+				task.getPayload());
+	}
+
+	private static String taskKey(String kind, String pageUrl, int formIndex, int inputIndex, String payload)
+	{
+		return kind + '\n' + pageUrl + '\n' + formIndex + '\n' + inputIndex + '\n' + payload;
+	}
+}
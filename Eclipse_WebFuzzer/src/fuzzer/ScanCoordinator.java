@@ -0,0 +1,489 @@
+package fuzzer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hands the fuzz tasks of a scan out to worker processes (see ScanWorker)
+ * and collects what they find. The tasks are split into leases, each of
+ * which holds consecutive tasks for a single form, so that a worker can reuse
+ * the baseline and responses it has cached for the form.
+ *
+ * Workers connect over TCP and exchange JSON Lines messages with the
+ * coordinator. A worker says hello and is sent the scan (its configuration,
+ * sensitive data and attack surface). It then repeatedly asks for a lease and
+ * is sent either a lease of tasks, a request to wait and ask again (while the
+ * remaining leases are held by other workers), or word that the scan is done.
+ * While it runs a lease the worker sends heartbeats, and once the lease is
+ * finished it reports the tasks which completed, the findings they made, the
+ * number of requests it sent and (if vectors are prioritized) what it learned
+ * about the vectors.
+ *
+ * A worker which disconnects or is not heard from for the worker timeout is
+ * considered dead, and its lease is handed to the next worker which asks.
+ * A lease is only ever reported once, so no finding is recorded twice. Leases
+ * which have not been handed out by the scan's deadline, or by the time the
+ * workers have reported sending the scan's request budget, are dropped.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class ScanCoordinator
+{
+	private static final String CHARSET = "UTF-8";
+	private static final long WAIT_RETRY_MILLIS = 1000;
+
+	/**
+	 * Receives the results of every lease run by a worker. Called from the
+	 * thread serving the worker, so it must be thread safe.
+	 */
+	public interface ResultHandler
+	{
+		void leaseCompleted(List<FuzzTask> completedTasks, List<Finding> findings,
+				List<Map<String, Object>> learnedVectorStatistics);
+	}
+
+	private final Map<String, Object> scan;
+	private final int port;
+	private final long workerTimeoutMillis;
+	private final long deadlineMillis;
+	private final long requestBudget;
+	private final ResultHandler handler;
+
+	/*
+	 * Guarded by this coordinator. Leases taken back from dead workers go to
+	 * the front of the queue.
+	 */
+	private final LinkedList<Lease> pendingLeases;
+	private final Map<Integer, Lease> outstandingLeases;
+	private int connectedWorkers;
+	private final int leaseCount;
+	private int droppedLeaseCount;
+	private long requestCount;
+
+	/**
+	 * Creates a coordinator which serves the given scan (as described by
+	 * SiteInformationManager.describeScan()) and its tasks on the given port,
+	 * in leases of at most the given number of tasks, until the given deadline
+	 * or until the workers have sent the given number of requests
+	 * (Long.MAX_VALUE for no limit).
+	 */
+	public ScanCoordinator(Map<String, Object> scan, List<FuzzTask> tasks, int port, int leaseSize,
+			long workerTimeoutMillis, long deadlineMillis, long requestBudget, ResultHandler handler)
+	{
+		this.scan = scan;
+		this.port = port;
+		this.workerTimeoutMillis = workerTimeoutMillis;
+		this.deadlineMillis = deadlineMillis;
+		this.requestBudget = requestBudget;
+		this.handler = handler;
+		this.pendingLeases = createLeases(tasks, leaseSize);
+		this.outstandingLeases = new HashMap<Integer, Lease>();
+		this.connectedWorkers = 0;
+		this.leaseCount = pendingLeases.size();
+		this.droppedLeaseCount = 0;
+		this.requestCount = 0;
+	}
+
+	/**
+	 * Serves leases to workers until every task has been run (or the deadline
+	 * has passed and the leases already handed out have been run). Workers which
+	 * are still connected once the last lease is reported are given a chance
+	 * to hear that the scan is done before the port is closed.
+	 */
+	public void run()
+		throws IOException, InterruptedException
+	{
+		final ServerSocket serverSocket = new ServerSocket(port);
+		System.out.println("Waiting for workers on port " + serverSocket.getLocalPort() + " to run " +
+				leaseCount + " leases");
+
+		Thread acceptThread = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				acceptWorkers(serverSocket);
+			}
+		}, "coordinator-accept");
+		acceptThread.setDaemon(true);
+		acceptThread.start();
+
+		try
+		{
+			synchronized(this)
+			{
+				while(!pendingLeases.isEmpty() || !outstandingLeases.isEmpty())
+				{
+					long untilDeadline = deadlineMillis - System.currentTimeMillis();
+					if(untilDeadline > 0)
+					{
+						wait(untilDeadline);
+					}
+					else if(!pendingLeases.isEmpty())
+					{
+						dropPendingLeases("The deadline has passed");
+					}
+					else
+					{
+						wait();
+					}
+				}
+
+				long deadline = System.currentTimeMillis() + WAIT_RETRY_MILLIS * 2;
+				long remaining;
+				while(connectedWorkers > 0 && (remaining = deadline - System.currentTimeMillis()) > 0)
+				{
+					wait(remaining);
+				}
+			}
+		}
+		finally
+		{
+			serverSocket.close();
+		}
+
+		System.out.println((leaseCount - droppedLeaseCount) + " of " + leaseCount + " leases have been run");
+	}
+	
+	/**
+	 * Returns the number of leases which were never handed out because the
+	 * deadline passed or the request budget was spent first.
+	 */
+	public synchronized int getDroppedLeaseCount()
+	{
+		return droppedLeaseCount;
+	}
+
+	/**
+	 * Gives up on the leases which have not been handed out, once the deadline
+	 * has passed or the request budget is spent. Must be called while holding
+	 * this coordinator's lock.
+	 */
+	private void dropPendingLeases(String reason)
+	{
+		System.out.println(reason + "; dropping " + pendingLeases.size() + " leases");
+		droppedLeaseCount += pendingLeases.size();
+		pendingLeases.clear();
+		notifyAll();
+	}
+
+	private void acceptWorkers(ServerSocket serverSocket)
+	{
+		while(!serverSocket.isClosed())
+		{
+			final Socket socket;
+			try
+			{
+				socket = serverSocket.accept();
+			}
+			catch(IOException e)
+			{
+				// Closed once the scan is done
+				return;
+			}
+
+			synchronized(this)
+			{
+				connectedWorkers++;
+			}
+
+			Thread workerThread = new Thread(new Runnable()
+			{
+				public void run()
+				{
+					serveWorker(socket);
+				}
+			}, "coordinator-worker-" + socket.getRemoteSocketAddress());
+			workerThread.setDaemon(true);
+			workerThread.start();
+		}
+	}
+
+	/**
+	 * Serves a single worker until it disconnects or the scan is done. The
+	 * lease the worker holds (if any) is given back if it stops responding.
+	 */
+	private void serveWorker(Socket socket)
+	{
+		String worker = String.valueOf(socket.getRemoteSocketAddress());
+		Lease lease = null;
+
+		try
+		{
+			socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, workerTimeoutMillis));
+			BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), CHARSET));
+			Writer writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), CHARSET));
+
+			Map<String, Object> hello = readMessage(reader);
+			if(hello != null && hello.get("worker") != null)
+			{
+				worker = hello.get("worker") + " (" + worker + ")";
+			}
+
+			synchronized(this)
+			{
+				if(pendingLeases.isEmpty() && outstandingLeases.isEmpty())
+				{
+					// Connected just as the scan finished
+					sendMessage(writer, message("done"));
+					return;
+				}
+			}
+
+			System.out.println("Worker connected: " + worker);
+
+			Map<String, Object> scanMessage = message("scan");
+			scanMessage.putAll(scan);
+			scanMessage.put("heartbeatInterval", Math.max(1, workerTimeoutMillis / 3));
+			sendMessage(writer, scanMessage);
+
+			Map<String, Object> request;
+			while((request = readMessage(reader)) != null)
+			{
+				String type = String.valueOf(request.get("type"));
+
+				if(type.equals("lease-request"))
+				{
+					Map<String, Object> reply;
+					synchronized(this)
+					{
+						if(!pendingLeases.isEmpty() && System.currentTimeMillis() >= deadlineMillis)
+						{
+							dropPendingLeases("The deadline has passed");
+						}
+						
+						lease = pendingLeases.poll();
+						if(lease != null)
+						{
+							outstandingLeases.put(lease.id, lease);
+							reply = lease.toMessage();
+						}
+						else if(outstandingLeases.isEmpty())
+						{
+							reply = message("done");
+						}
+						else
+						{
+							reply = message("wait");
+							reply.put("retry", WAIT_RETRY_MILLIS);
+						}
+					}
+
+					sendMessage(writer, reply);
+					if(reply.get("type").equals("done"))
+					{
+						return;
+					}
+				}
+				else if(type.equals("complete") && lease != null &&
+						lease.id == ((Number) request.get("lease")).intValue())
+				{
+					completeLease(lease, request);
+					lease = null;
+				}
+				// Heartbeats only need to be read to keep the worker alive
+			}
+
+			System.out.println("Worker disconnected: " + worker);
+		}
+		catch(IOException e)
+		{
+			System.out.println("Lost worker " + worker + ": " + e);
+		}
+		catch(RuntimeException e)
+		{
+			System.out.println("Dropping worker " + worker + " after a malformed message: " + e);
+		}
+		finally
+		{
+			synchronized(this)
+			{
+				if(lease != null && outstandingLeases.remove(lease.id) != null)
+				{
+					System.out.println("Reassigning lease " + lease.id + " of worker " + worker);
+					pendingLeases.addFirst(lease);
+				}
+
+				connectedWorkers--;
+				notifyAll();
+			}
+
+			try
+			{
+				socket.close();
+			}
+			catch(IOException e)
+			{
+				// Nothing more can be done with the connection
+			}
+		}
+	}
+
+	/**
+	 * Passes the results the worker reported for the given lease to the
+	 * handler, then marks the lease as done.
+	 */
+	@SuppressWarnings("unchecked")
+	private void completeLease(Lease lease, Map<String, Object> report)
+	{
+		List<FuzzTask> completedTasks = new ArrayList<FuzzTask>();
+		for(Object taskRecord: (List<Object>) report.get("tasks"))
+		{
+			completedTasks.add(FuzzTask.fromRecord((Map<String, Object>) taskRecord));
+		}
+
+		List<Finding> findings = new ArrayList<Finding>();
+		for(Object finding: (List<Object>) report.get("findings"))
+		{
+			try
+			{
+				findings.add(Finding.fromJson((String) finding));
+			}
+			catch(IllegalArgumentException e)
+			{
+				System.out.println("Skipping malformed finding: " + finding);
+			}
+		}
+
+		List<Map<String, Object>> learnedVectorStatistics = new ArrayList<Map<String, Object>>();
+		if(report.get("vectorStatistics") != null)
+		{
+			for(Object record: (List<Object>) report.get("vectorStatistics"))
+			{
+				learnedVectorStatistics.add((Map<String, Object>) record);
+			}
+		}
+
+		handler.leaseCompleted(completedTasks, findings, learnedVectorStatistics);
+
+		synchronized(this)
+		{
+			outstandingLeases.remove(lease.id);
+			if(report.get("requests") != null)
+			{
+				requestCount += ((Number) report.get("requests")).longValue();
+			}
+
+			if(!pendingLeases.isEmpty() && requestCount >= requestBudget)
+			{
+				dropPendingLeases("The request budget is spent");
+			}
+
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Splits the given tasks into leases of at most the given size, never
+	 * putting tasks for different forms in the same lease. Leases are views
+	 * of the given tasks rather than copies.
+	 */
+	private static LinkedList<Lease> createLeases(List<FuzzTask> tasks, int leaseSize)
+	{
+		LinkedList<Lease> leases = new LinkedList<Lease>();
+		int leaseStart = 0;
+		String leaseForm = null;
+
+		for(int index = 0; index < tasks.size(); index++)
+		{
+			FuzzTask task = tasks.get(index);
+			String form = task.getPageUrl() + "#" + task.getFormIndex();
+			if(index - leaseStart >= leaseSize || (leaseForm != null && !leaseForm.equals(form)))
+			{
+				leases.add(new Lease(leases.size(), tasks.subList(leaseStart, index)));
+				leaseStart = index;
+			}
+
+			leaseForm = form;
+		}
+
+		if(leaseStart < tasks.size())
+		{
+			leases.add(new Lease(leases.size(), tasks.subList(leaseStart, tasks.size())));
+		}
+
+		return leases;
+	}
+
+	static Map<String, Object> message(String type)
+	{
+		Map<String, Object> message = new LinkedHashMap<String, Object>();
+		message.put("type", type);
+		return message;
+	}
+
+	/**
+	 * Writes the given message as a line of JSON.
+	 */
+	static void sendMessage(Writer writer, Map<String, Object> message)
+		throws IOException
+	{
+		writer.write(Json.toJson(message));
+		writer.write('\n');
+		writer.flush();
+	}
+
+	/**
+	 * Reads the next message, or returns null if the other end has closed
+	 * the connection.
+	 */
+	static Map<String, Object> readMessage(BufferedReader reader)
+		throws IOException
+	{
+		String line;
+		try
+		{
+			line = reader.readLine();
+		}
+		catch(SocketException e)
+		{
+			// The other end reset the connection
+			return null;
+		}
+
+		return line == null ? null : Json.parseObject(line);
+	}
+
+	/**
+	 * A group of tasks handed to a worker at once.
+	 */
+	private static class Lease
+	{
+		private final int id;
+		private final List<FuzzTask> tasks;
+
+		public Lease(int id, List<FuzzTask> tasks)
+		{
+			this.id = id;
+			this.tasks = tasks;
+		}
+
+		public Map<String, Object> toMessage()
+		{
+			List<Map<String, Object>> taskRecords = new ArrayList<Map<String, Object>>(tasks.size());
+			for(FuzzTask task: tasks)
+			{
+				taskRecords.add(task.toRecord());
+			}
+
+			Map<String, Object> message = message("lease");
+			message.put("lease", id);
+			message.put("tasks", taskRecords);
+			return message;
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package fuzzer;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The metrics kept for each phase of a scan, shared by every scan in the
+ * JVM. Once registered, each phase can be watched over JMX (e.g. with
+ * JConsole) as fuzzer:type=ScanMetrics,name=<phase> while a scan runs.
+ * Phases may be nested: page discovery includes authentication, and a fuzz
+ * task includes submitting the form and analyzing the response.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class ScanMetrics
+{
+	public static final PhaseMetrics CONFIGURATION_LOADING = new PhaseMetrics("configuration-loading");
+	public static final PhaseMetrics PAGE_PROBE = new PhaseMetrics("page-probe");
+	public static final PhaseMetrics PAGE_FETCH = new PhaseMetrics("page-fetch");
+	public static final PhaseMetrics PAGE_DISCOVERY = new PhaseMetrics("page-discovery");
+	public static final PhaseMetrics AUTHENTICATION = new PhaseMetrics("authentication");
+	public static final PhaseMetrics FUZZ_TASK = new PhaseMetrics("fuzz-task");
+	public static final PhaseMetrics FORM_SUBMISSION = new PhaseMetrics("form-submission");
+	public static final PhaseMetrics RESPONSE_ANALYSIS = new PhaseMetrics("response-analysis");
+	public static final PhaseMetrics REPORT_WRITING = new PhaseMetrics("report-writing");
+
+	private static final List<PhaseMetrics> PHASES = Collections.unmodifiableList(Arrays.asList(
+			CONFIGURATION_LOADING, PAGE_PROBE, PAGE_FETCH, PAGE_DISCOVERY, AUTHENTICATION, FUZZ_TASK,
+			FORM_SUBMISSION, RESPONSE_ANALYSIS, REPORT_WRITING));
+
+	private static boolean registered = false;
+
+	private ScanMetrics()
+	{
+	}
+
+	public static List<PhaseMetrics> getPhases()
+	{
+		return PHASES;
+	}
+
+	/**
+	 * Registers the metrics of every phase with the platform MBean server.
+	 * Does nothing if they are already registered.
+	 */
+	public static synchronized void registerMBeans()
+	{
+		if(registered)
+		{
+			return;
+		}
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try
+		{
+			for(PhaseMetrics phase: PHASES)
+			{
+				ObjectName name = new ObjectName("fuzzer:type=ScanMetrics,name=" + phase.getName());
+				if(!server.isRegistered(name))
+				{
+					server.registerMBean(phase, name);
+				}
+			}
+
+			registered = true;
+		}
+		catch(JMException e)
+		{
+			System.out.println("Unable to register the scan metrics with JMX");
+			e.printStackTrace();
+		}
+	}
+
+	public static void reset()
+	{
+		for(PhaseMetrics phase: PHASES)
+		{
+			phase.reset();
+		}
+	}
+
+	/**
+	 * Writes a table of the metrics of every phase which has run.
+	 */
+	public static void writeSummary(PrintStream outputStream)
+	{
+		outputStream.println("********************************************************************************");
+		outputStream.println("Scan Metrics (times in milliseconds):\n");
+		outputStream.println(String.format(Locale.US, "%-22s %8s %6s %8s %8s %8s %8s %9s",
+				"Phase", "Count", "Errors", "Mean", "p50", "p90", "p99", "Max"));
+
+		for(PhaseMetrics phase: PHASES)
+		{
+			if(phase.getCount() == 0)
+			{
+				continue;
+			}
+
+			outputStream.println(String.format(Locale.US, "%-22s %8d %6d %8.1f %8.1f %8.1f %8.1f %9.1f",
+					phase.getName(), phase.getCount(), phase.getErrorCount(), phase.getMeanMillis(),
+					phase.getP50Millis(), phase.getP90Millis(), phase.getP99Millis(), phase.getMaxMillis()));
+		}
+
+		outputStream.println("********************************************************************************");
+	}
+}
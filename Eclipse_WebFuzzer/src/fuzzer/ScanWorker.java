@@ -0,0 +1,276 @@
+package fuzzer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs fuzz tasks leased from a ScanCoordinator (see there for the protocol)
+ * and reports the findings they make. Any number of workers may connect to
+ * the same coordinator, from this machine or others which can reach the site.
+ *
+ * A worker keeps trying to connect until it reaches a coordinator. Once it
+ * has taken part in a scan it serves the scans which follow (e.g. one for
+ * each configuration file given to the coordinator), and exits if no
+ * coordinator can be reached for a while.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class ScanWorker
+{
+	private static final String CHARSET = "UTF-8";
+	private static final long CONNECT_RETRY_MILLIS = 1000;
+	private static final long RECONNECT_WINDOW_MILLIS = 30000;
+
+	private final String host;
+	private final int port;
+	private final String name;
+
+	public ScanWorker(String host, int port)
+	{
+		this.host = host;
+		this.port = port;
+
+		// e.g. "12345@hostname"
+		this.name = ManagementFactory.getRuntimeMXBean().getName();
+	}
+
+	/**
+	 * Serves scans until no coordinator has been reachable for the reconnect
+	 * window since the last one.
+	 */
+	public void run()
+		throws InterruptedException
+	{
+		long deadline = Long.MAX_VALUE;
+
+		while(System.currentTimeMillis() < deadline)
+		{
+			Socket socket;
+			try
+			{
+				socket = new Socket(host, port);
+			}
+			catch(IOException e)
+			{
+				Thread.sleep(CONNECT_RETRY_MILLIS);
+				continue;
+			}
+
+			try
+			{
+				serveScan(socket);
+			}
+			catch(IOException e)
+			{
+				System.out.println("Lost the coordinator at " + host + ":" + port + ": " + e);
+			}
+			catch(RuntimeException e)
+			{
+				System.out.println("Leaving the scan after a malformed message: " + e);
+			}
+			finally
+			{
+				try
+				{
+					socket.close();
+				}
+				catch(IOException e)
+				{
+					// Nothing more can be done with the connection
+				}
+			}
+
+			deadline = System.currentTimeMillis() + RECONNECT_WINDOW_MILLIS;
+			
+			// Gives the coordinator time to close a finished scan
+			Thread.sleep(CONNECT_RETRY_MILLIS);
+		}
+	}
+
+	/**
+	 * Takes part in the scan served over the given connection until the
+	 * coordinator says it is done.
+	 */
+	private void serveScan(Socket socket)
+		throws IOException, InterruptedException
+	{
+		BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), CHARSET));
+		final Writer writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), CHARSET));
+
+		Map<String, Object> hello = ScanCoordinator.message("hello");
+		hello.put("worker", name);
+		send(writer, hello);
+
+		Map<String, Object> scan = ScanCoordinator.readMessage(reader);
+		if(scan != null && "done".equals(scan.get("type")))
+		{
+			return;
+		}
+		else if(scan == null || !"scan".equals(scan.get("type")))
+		{
+			throw new IOException("The coordinator did not send a scan");
+		}
+
+		System.out.println("Joined the scan at " + host + ":" + port);
+
+		File findingsFile = File.createTempFile("worker-findings", ".jsonl");
+		FindingsSink findings = new FindingsSink(findingsFile, false);
+		SiteInformationManager manager = new SiteInformationManager();
+		manager.loadScan(scan, findings);
+
+		final long heartbeatInterval = ((Number) scan.get("heartbeatInterval")).longValue();
+		Thread heartbeatThread = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					while(true)
+					{
+						Thread.sleep(heartbeatInterval);
+						send(writer, ScanCoordinator.message("heartbeat"));
+					}
+				}
+				catch(InterruptedException e)
+				{
+					return;
+				}
+				catch(IOException e)
+				{
+					// The lease loop will notice the connection is gone
+				}
+			}
+		}, "worker-heartbeat");
+		heartbeatThread.setDaemon(true);
+		heartbeatThread.start();
+
+		try
+		{
+			long findingsOffset = 0;
+
+			while(true)
+			{
+				send(writer, ScanCoordinator.message("lease-request"));
+				Map<String, Object> reply = ScanCoordinator.readMessage(reader);
+				if(reply == null)
+				{
+					throw new IOException("The coordinator closed the connection");
+				}
+
+				String type = String.valueOf(reply.get("type"));
+				if(type.equals("done"))
+				{
+					System.out.println("The scan at " + host + ":" + port + " is done");
+					return;
+				}
+				else if(type.equals("wait"))
+				{
+					Thread.sleep(((Number) reply.get("retry")).longValue());
+					continue;
+				}
+
+				List<FuzzTask> tasks = readTasks(reply);
+				long requestCount = manager.getRequestCount();
+				List<FuzzTask> completedTasks = manager.runFuzzTasks(tasks);
+				requestCount = manager.getRequestCount() - requestCount;
+
+				findings.flush();
+				List<String> newFindings = new ArrayList<String>();
+				findingsOffset = readFindings(findingsFile, findingsOffset, newFindings);
+
+				List<Object> taskRecords = new ArrayList<Object>(completedTasks.size());
+				for(FuzzTask task: completedTasks)
+				{
+					taskRecords.add(task.toRecord());
+				}
+
+				Map<String, Object> report = ScanCoordinator.message("complete");
+				report.put("lease", reply.get("lease"));
+				report.put("tasks", taskRecords);
+				report.put("findings", newFindings);
+				report.put("requests", requestCount);
+				report.put("vectorStatistics", manager.takeLearnedVectorStatistics());
+				send(writer, report);
+			}
+		}
+		finally
+		{
+			heartbeatThread.interrupt();
+			manager.shutdown();
+			findingsFile.delete();
+		}
+	}
+
+	/**
+	 * Sends the given message; the heartbeat thread shares the connection.
+	 */
+	private static void send(Writer writer, Map<String, Object> message)
+		throws IOException
+	{
+		synchronized(writer)
+		{
+			ScanCoordinator.sendMessage(writer, message);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<FuzzTask> readTasks(Map<String, Object> lease)
+	{
+		List<FuzzTask> tasks = new ArrayList<FuzzTask>();
+		for(Object taskRecord: (List<Object>) lease.get("tasks"))
+		{
+			tasks.add(FuzzTask.fromRecord((Map<String, Object>) taskRecord));
+		}
+
+		return tasks;
+	}
+
+	/**
+	 * Adds every complete line written to the given findings file after the
+	 * given offset to the given list, and returns the offset just past them.
+	 */
+	private static long readFindings(File findingsFile, long offset, List<String> findings)
+		throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(findingsFile, "r");
+		try
+		{
+			byte[] content = new byte[(int) (file.length() - offset)];
+			file.seek(offset);
+			file.readFully(content);
+
+			int lineStart = 0;
+			for(int i = 0; i < content.length; i++)
+			{
+				if(content[i] == '\n')
+				{
+					if(i > lineStart)
+					{
+						findings.add(new String(content, lineStart, i - lineStart, CHARSET));
+					}
+
+					lineStart = i + 1;
+				}
+			}
+
+			return offset + lineStart;
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+}
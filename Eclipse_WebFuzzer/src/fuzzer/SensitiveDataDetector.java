@@ -0,0 +1,67 @@
+package fuzzer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the sensitive data markers contained in a response. Every occurrence
+ * is recorded up to a fixed number per marker, and the detector is satisfied
+ * once every marker has been found at least once.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class SensitiveDataDetector implements ResponseDetector
+{
+	/*
+	 * Limits how many occurrences of a single marker are recorded so that a
+	 * response which repeats a marker endlessly cannot exhaust memory.
+	 */
+	private static final int MAX_MATCHES_PER_PATTERN = 32;
+
+	private final MultiPatternMatcher.Search search;
+	private final int patternCount;
+	private final Map<String, Integer> matchCounts;
+	private final List<MultiPatternMatcher.Match> matches;
+
+	public SensitiveDataDetector(MultiPatternMatcher matcher)
+	{
+		this.search = matcher.newSearch();
+		this.patternCount = matcher.getPatterns().size();
+		this.matchCounts = new HashMap<String, Integer>();
+		this.matches = new ArrayList<MultiPatternMatcher.Match>();
+	}
+
+	public void feed(char[] buffer, int offset, int length)
+	{
+		search.feed(buffer, offset, length);
+
+		for(MultiPatternMatcher.Match match: search.drainMatches())
+		{
+			Integer count = matchCounts.get(match.getPattern());
+			count = (count == null) ? 1 : count + 1;
+			matchCounts.put(match.getPattern(), count);
+
+			if(count <= MAX_MATCHES_PER_PATTERN)
+			{
+				matches.add(match);
+			}
+		}
+	}
+
+	public boolean isSatisfied()
+	{
+		return matchCounts.size() == patternCount;
+	}
+
+	/**
+	 * Returns the recorded occurrences, in the order the matches end.
+	 */
+	public List<MultiPatternMatcher.Match> getMatches()
+	{
+		return matches;
+	}
+}
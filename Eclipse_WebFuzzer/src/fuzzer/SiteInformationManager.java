@@ -6,27 +6,33 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.PrintStream;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
 import java.util.Scanner;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.gargoylesoftware.htmlunit.FailingHttpStatusCodeException;
 import com.gargoylesoftware.htmlunit.Page;
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.WebResponse;
 import com.gargoylesoftware.htmlunit.html.HtmlAnchor;
 import com.gargoylesoftware.htmlunit.html.HtmlElement;
 import com.gargoylesoftware.htmlunit.html.HtmlPage;
 import com.gargoylesoftware.htmlunit.html.HtmlSubmitInput;
+import com.gargoylesoftware.htmlunit.util.Cookie;
 
 /**
  * Provides a consolidated interface for accessing and managing vulnerability
@@ -40,25 +46,81 @@ import com.gargoylesoftware.htmlunit.html.HtmlSubmitInput;
 public class SiteInformationManager
 {
 	private String indexUrl, baseUrl;
-	private Map<String, WebPage> webPages;
+	private Map<String, PageSurface> webPages;
+	private UrlCanonicalizer urlCanonicalizer;
+	private WebClientPool clientPool;
+	private RawHttpSubmitter rawSubmitter;
+	private UrlProber urlProber;
+	private CredentialGuesser credentialGuesser;
+	private RequestGovernor requestGovernor;
+	
+	/*
+	 * Shared with the other scans running alongside this one, if any.
+	 */
+	private RequestBudget requestBudget;
 	public FuzzerData configurations;
 	
+	/*
+	 * Records the progress of the current scan. If resume is true then the
+	 * progress recorded by an earlier run of the same configuration is picked
+	 * up from its checkpoint.
+	 */
+	private volatile ScanCheckpoint checkpoint;
+	private Thread checkpointShutdownHook;
+	private boolean resume;
+	
+	/*
+	 * The configuration file last read, which is handed to the workers of a
+	 * distributed scan.
+	 */
+	private String configurationFileName;
+	
+	/*
+	 * When the current scan's configuration was loaded, from which its time
+	 * budget is counted.
+	 */
+	private long scanStartMillis;
+	
+	/*
+	 * What has been learned about the fuzz vectors, if they are prioritized.
+	 */
+	private VectorStatistics vectorStatistics;
+	
 	private List<String> vectors, sensitiveData, passwordDictionary, 
 								sanitationInputs, pageGuesses;
 	
 	/*
-	 * Used for logging potential vulnerabilities found by the fuzzer.
+	 * Marks a line of a data file section which includes a wordlist file.
+	 */
+	private static final String WORDLIST_FILE_PREFIX = "@file:";
+	
+	/*
+	 * Compiled from sensitiveData whenever the data file is loaded.
+	 */
+	private MultiPatternMatcher sensitiveDataMatcher;
+	
+	/*
+	 * Used for logging potential vulnerabilities found by the fuzzer. Findings
+	 * are streamed to disk as they are recorded rather than kept in memory.
+	 */
+	private FindingsSink findings;
+	
+	/*
+	 * The responses already analyzed for each form, keyed by page URL and 
+	 * form index.
 	 */
-	private StringBuilder vulnerabilityReport;
+	private ConcurrentMap<String, ResponseCache> responseCaches;
 	
 	/**
-	 * Private constructor for creating a SiteInformationManager for the site 
-	 * at the given URL.  
+	 * Constructor for creating a SiteInformationManager for the site at the 
+	 * given URL. Package-private so that the benchmarks can exercise a 
+	 * manager without scanning a site.
 	 */
-	private SiteInformationManager()
+	SiteInformationManager()
 	{
-		this.webPages = new HashMap<String, WebPage>();
-		this.vulnerabilityReport = new StringBuilder();
+		this.webPages = new ConcurrentHashMap<String, PageSurface>();
+		this.findings = null;
+		this.responseCaches = new ConcurrentHashMap<String, ResponseCache>();
 	}
 	
 	/**
@@ -74,6 +136,10 @@ public class SiteInformationManager
 	 * if a username was provided but no password was provided and password guessing
 	 * is turned off then authentication will not be attempted and password fields
 	 * will be treated the same as any other input.
+	 * 
+	 * Once the time budget has run out no more pages are crawled or guessed and
+	 * no more passwords are tried, and discovery is left incomplete so that
+	 * resuming the scan finishes it.
 	 */
 	public void performDiscovery() 
 		throws FailingHttpStatusCodeException, MalformedURLException, IOException
@@ -82,129 +148,315 @@ public class SiteInformationManager
 		// page discovery has been performed because otherwise the page guessing
 		// method may inaccurately report that there are no links to a page when
 		// in fact links do exist, they just haven't been explored yet.
-		performDiscoveryOnUrl(indexUrl);
-		performPageGuessing();
+		urlCanonicalizer = new UrlCanonicalizer(baseUrl != null ? baseUrl : getBaseUrl(indexUrl));
+		
+		// Pages discovered by an earlier run are never fetched again
+		checkpoint.restorePages(webPages);
+		if(checkpoint.isDiscoveryComplete())
+		{
+			return;
+		}
+		
+		CrawlEngine crawler = new CrawlEngine(new CrawlEngine.PageVisitor()
+		{
+			public void visit(CrawlEngine engine, String url) throws IOException
+			{
+				performDiscoveryOnUrl(engine, url);
+			}
+		}, createVisitedUrlSet(), configurations.discoveryThreads(), getDeadline());
+		checkpoint.restoreCrawl(crawler, getUrlProber());
+		
+		try
+		{
+			crawler.start();
+			crawler.submit(indexUrl);
+			crawler.awaitQuiescence();
+			
+			// Any links found from guessed pages are crawled by the same engine
+			// while guessing continues
+			performPageGuessing(crawler);
+			crawler.awaitQuiescence();
+		}
+		finally
+		{
+			crawler.shutdown();
+		}
+		
+		if(crawler.isPastDeadline())
+		{
+			// Left incomplete, so that resuming the scan finishes discovery
+			System.out.println("The time budget ran out during discovery");
+			return;
+		}
+		
+		checkpoint.discoveryCompleted();
 	}
 	
-	private void doTimeGap(){
-		// Implement time gap in between each page to be discovered
-		long sleeptime = configurations.timeGap();
-		try {
-			Thread.sleep(sleeptime);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
+	/**
+	 * Creates the set used to deduplicate crawled URLs, as configured.
+	 */
+	private VisitedUrlSet createVisitedUrlSet()
+	{
+		if(configurations.bloomFilterVisitedSetIsOn())
+		{
+			return new BloomFilterUrlSet(configurations.expectedUrlCount(), configurations.falsePositiveRate());
+		}
+		
+		return new FingerprintUrlSet();
+	}
+	
+	/**
+	 * Returns the governor which every request sent by this manager goes
+	 * through (applying the rate limit and adaptive concurrency limits),
+	 * creating it on first use.
+	 */
+	private synchronized RequestGovernor getRequestGovernor()
+	{
+		if(requestGovernor == null)
+		{
+			requestGovernor = new RequestGovernor(
+					new RateLimiter(configurations.requestsPerSecond(), configurations.burstSize()),
+					configurations.adaptiveConcurrencyIsOn(), configurations.initialConcurrency(),
+					configurations.maxConcurrency(), requestBudget);
 		}
+		
+		return requestGovernor;
 	}
 
 	/**
 	 * Attempts to enumerate the attack surface for the web page at the given URL. 
+	 * Any links to previously undiscovered pages on the site are submitted to
+	 * the given crawl engine rather than being followed recursively.
 	 */
-	private void performDiscoveryOnUrl(String pageUrl) 
+	private void performDiscoveryOnUrl(CrawlEngine crawler, String pageUrl) 
 		throws FailingHttpStatusCodeException, MalformedURLException, IOException
 	{
-		if(!urlExists(pageUrl))
+		if(Boolean.FALSE.equals(getUrlProber().getCachedResult(pageUrl)))
 		{
 			return;
 		}
-	
-		doTimeGap();
 		
-		WebPage webPage = WebPage.performDiscoveryOnPage(pageUrl);
+		if(configurations.fastDiscoveryIsOn())
+		{
+			performFastDiscoveryOnUrl(crawler, pageUrl, false);
+			return;
+		}
+		
+		// Checking that the page exists and fetching it are done with a single
+		// GET request rather than a HEAD request followed by a GET
+		WebPage webPage = WebPage.performDiscoveryOnPageIfExists(pageUrl, getClientPool());
 		if(webPage == null)
 		{
 			return;
 		}
 		
-		doTimeGap();
+		performDiscoveryOnPage(crawler, webPage, pageUrl, false);
+	}
+	
+	/**
+	 * Fetches the page at the given URL without rendering it, records its 
+	 * attack surface and submits the links found on it to the given crawl 
+	 * engine. A page which must be rendered to be discovered (i.e. it depends
+	 * on scripts or is a login page) is rendered by HtmlUnit from the content
+	 * already fetched rather than being fetched again.
+	 */
+	private void performFastDiscoveryOnUrl(CrawlEngine crawler, String pageUrl, boolean logNewLinks)
+		throws IOException
+	{
+		ExtractedPage page = getUrlProber().fetchPage(pageUrl);
+		if(page == null)
+		{
+			return;
+		}
 		
-		webPages.put(pageUrl, webPage);
+		if(page.needsRendering())
+		{
+			WebPage webPage = WebPage.performDiscoveryOnContent(pageUrl, page.getContent(), 
+					page.getContentType(), page.getSurface().getCookies(), getClientPool());
+			if(webPage != null)
+			{
+				performDiscoveryOnPage(crawler, webPage, pageUrl, logNewLinks);
+			}
+			
+			return;
+		}
 		
+		long start = ScanMetrics.PAGE_DISCOVERY.start();
+		boolean discovered = false;
+		try
+		{
+			for(String linkUrl: page.getLinks())
+			{
+				submitLink(crawler, linkUrl, logNewLinks);
+			}
+			
+			recordPage(pageUrl, page.getSurface());
+			discovered = true;
+		}
+		finally
+		{
+			ScanMetrics.PAGE_DISCOVERY.stop(start, discovered);
+		}
+	}
+	
+	/**
+	 * Records the attack surface of the given freshly loaded page and submits
+	 * the links found on it to the given crawl engine. The page is shut down
+	 * once discovery is finished.
+	 */
+	private void performDiscoveryOnPage(CrawlEngine crawler, WebPage webPage, String pageUrl, 
+			boolean logNewLinks)
+		throws FailingHttpStatusCodeException, MalformedURLException, IOException
+	{
+		long start = ScanMetrics.PAGE_DISCOVERY.start();
+		boolean discovered = false;
+		try
+		{
+			discoverFromPage(crawler, webPage, pageUrl, logNewLinks);
+			
+			// Only the compact attack surface record is kept; the page's DOM
+			// is released along with the WebPage
+			recordPage(pageUrl, webPage.toSurface());
+			discovered = true;
+		}
+		finally
+		{
+			ScanMetrics.PAGE_DISCOVERY.stop(start, discovered);
+			
+			// Returns the page's client to the pool now that every request
+			// which needed it (i.e. authentication attempts) has been made
+			webPage.shutdown();
+		}
+	}
+	
+	/**
+	 * Attempts authentication (if required) on the given freshly loaded page
+	 * and submits the links found on it to the given crawl engine.
+	 */
+	private void discoverFromPage(CrawlEngine crawler, WebPage webPage, String pageUrl,
+			boolean logNewLinks)
+		throws FailingHttpStatusCodeException, MalformedURLException, IOException
+	{
 		String username = configurations.getUsername();
 		if(webPage.requiresAuthentication() && 
 		   username != null && username.trim().length() > 0 &&
 		   configurations.getAuthenticationSuccessString() != null)
 		{
-			HtmlPage authenticationPage = null;
-
 			List<WebForm> authenticationForms = webPage.getFormsWithAuthentication();
-			String password; 
 					
 			if(configurations.passwordGuessingIsOn())
 			{
-				password = null;
-				
-				for(WebForm form: authenticationForms)
-				{
-					for(String word: passwordDictionary)
-					{
-						authenticationPage = (HtmlPage) webPage.attemptAuthentication(form, username, word);
-						checkAuthenticationPage(authenticationPage, pageUrl, username, word);
-					}
-				}
+				guessPasswords(crawler, pageUrl, username, authenticationForms.size());
 			}
 			else
 			{
-				password = configurations.getPassword();
+				String password = configurations.getPassword();
 				
 				for(WebForm form: authenticationForms)
 				{
-					authenticationPage = (HtmlPage) webPage.attemptAuthentication(form, username, password);
-					checkAuthenticationPage(authenticationPage, pageUrl, username, password);
+					Page authenticationPage = webPage.attemptAuthentication(form, username, password);
+					checkAuthenticationPage(crawler, 
+							authenticationPage instanceof HtmlPage ? (HtmlPage) authenticationPage : null, 
+							pageUrl, username, password, 
+							CredentialGuesser.isAuthenticated(authenticationPage, 
+									configurations.getAuthenticationSuccessString()));
 				}
 			}
 		}
 		
-		performDiscoveryOnLinks(webPage, false);
+		performDiscoveryOnLinks(crawler, webPage, logNewLinks);
 	}
 	
 	/**
-	 * Performs attack surface discovery on all the pages that are linked to from 
-	 * the given web page which are a part of the same web site (i.e. start with the
-	 * same base URL). If a value of true is passed into the logNewLinks parameter
+	 * Submits all of the pages that are linked to from the given web page which
+	 * are a part of the same web site (i.e. start with the same base URL) to the
+	 * given crawl engine. If a value of true is passed into the logNewLinks parameter
 	 * then any links which are found on this page which have not already been 
 	 * encountered will be logged (this is used when following links from a unlinked
 	 * page discovered through page guessing).   
 	 */
-	private void performDiscoveryOnLinks(WebPage webPage, boolean logNewLinks)
+	private void performDiscoveryOnLinks(CrawlEngine crawler, WebPage webPage, boolean logNewLinks)
 		throws FailingHttpStatusCodeException, IOException
 	{
 		List<HtmlAnchor> links = webPage.getPage().getAnchors(); 
 		for(HtmlAnchor link: links)
 		{
 			String linkUrl = webPage.getPage().getFullyQualifiedUrl(link.getHrefAttribute()).toString();
-
-			// If the page URL is not a part of the site being fuzzed of if this 
-			// page URL has already been discovered then nothing needs to be done
-			if(webPages.containsKey(linkUrl) || !linkUrl.startsWith(baseUrl))
+			submitLink(crawler, linkUrl, logNewLinks);
+		}
+	}
+	
+	/**
+	 * Submits the given link to the given crawl engine if it is a part of the
+	 * site being fuzzed, logging it if it is new and logNewLinks is true.
+	 */
+	private void submitLink(CrawlEngine crawler, String linkUrl, boolean logNewLinks)
+	{
+		// If the page URL is not a part of the site being fuzzed then 
+		// nothing needs to be done
+		if(!urlCanonicalizer.isInScope(linkUrl))
+		{
+			return;
+		}
+		
+		// The crawl engine only accepts URLs which have not already been
+		// discovered
+		if(crawler.submit(linkUrl) && logNewLinks)
+		{
+			findings.record(Finding.newLink(linkUrl));
+		}
+	}
+	
+	/**
+	 * Guesses the password for the given username on each of the given number
+	 * of login forms on the page at the given URL, using the password 
+	 * dictionary. Guessing on a form stops as soon as a password is found.
+	 */
+	private void guessPasswords(final CrawlEngine crawler, final String pageUrl, 
+			final String username, int formCount)
+		throws IOException
+	{
+		CredentialGuesser.AttemptListener listener = new CredentialGuesser.AttemptListener()
+		{
+			public void attempted(String password, HtmlPage resultPage, boolean authenticated)
+				throws IOException
 			{
-				continue;
+				checkAuthenticationPage(crawler, resultPage, pageUrl, username, password, authenticated);
 			}
-						
-			if(logNewLinks)
+		};
+		
+		for(int formIndex = 0; formIndex < formCount; formIndex++)
+		{
+			try
 			{
-				vulnerabilityReport.append("New link found: " + linkUrl + "\n\n");
+				getCredentialGuesser().guess(pageUrl, formIndex, username, passwordDictionary, 
+						getDeadline(), listener);
+			}
+			catch(InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while guessing passwords on page: " + pageUrl, e);
 			}
-			
-			performDiscoveryOnUrl(linkUrl);			
 		}
 	}
 	
-	private void checkAuthenticationPage(HtmlPage authenticationPage, String pageUrl, String username, String password)
+	private void checkAuthenticationPage(CrawlEngine crawler, HtmlPage authenticationPage, 
+			String pageUrl, String username, String password, boolean authenticated)
 		throws FailingHttpStatusCodeException, MalformedURLException, IOException
 	{
-		if(authenticationPage != null && authenticationPage.asText() != null &&
-		   authenticationPage.asText().contains(configurations.getAuthenticationSuccessString()))
+		if(authenticated && authenticationPage != null)
 		{
 			// Records that this was a successful combination
-			vulnerabilityReport.append("Successful authentication with username \"" + 
-					username + "\" and password \"" + password + "\" on page at " + 
-					pageUrl + "\n\n");
+			findings.record(Finding.authentication(true, pageUrl, username, password));
 			
 			String authenticationPageUrl = authenticationPage.getUrl().toString();
-			if(!webPages.containsKey(authenticationPageUrl))
+			if(crawler.markVisited(authenticationPageUrl))
 			{
+				// Captures the authenticated session's cookies before the
+				// shared client is released
 				WebPage discoveredPage = new WebPage(authenticationPage);
-				webPages.put(authenticationPageUrl, discoveredPage);
+				recordPage(authenticationPageUrl, discoveredPage.toSurface());
+				discoveredPage.shutdown();
 				
 				// Since the page reached after performing authentication has not
 				// already been encountered, perform discovery from the page 
@@ -213,64 +465,260 @@ public class SiteInformationManager
 				{
 					String linkUrl = discoveredPage.getPage().getFullyQualifiedUrl(link.getHrefAttribute()).toString();
 					
-					// If the page URL is not a part of the site being fuzzed of if this 
-					// page URL has already been discovered then nothing needs to be done
-					if(webPages.containsKey(linkUrl) || !linkUrl.contains(baseUrl))
+					// If the page URL is not a part of the site being fuzzed then
+					// nothing needs to be done
+					if(!urlCanonicalizer.isInScope(linkUrl))
 					{
 						continue;
-					}		
-					performDiscoveryOnUrl(linkUrl);			
+					}
+					crawler.submit(linkUrl);
 				}
+				
+				crawler.finished(authenticationPageUrl);
 			}
 		}
 		else
 		{
 			// Records that this was not a successful combination
-			vulnerabilityReport.append("Unable to authenticate with username \"" + 
-				username + "\" and password \"" + password + "\" on page at " + 
-				pageUrl + "\n\n");
+			findings.record(Finding.authentication(false, pageUrl, username, password));
+		}
+	}
+	
+	/**
+	 * Tries every page guess concurrently (with at most the configured number
+	 * of guesses in flight at once). Pages found by guessing are logged and
+	 * discovered like any other page, with the links on them submitted to the
+	 * given crawl engine straight away so that they are crawled while guessing
+	 * continues.
+	 */
+	private void performPageGuessing(final CrawlEngine crawler)
+		throws FailingHttpStatusCodeException, MalformedURLException, IOException
+	{
+		PageGuessingExecutor executor = new PageGuessingExecutor(configurations.guessingConcurrency(), 
+				getDeadline());
+		
+		try
+		{
+			executor.execute(pageGuesses, new PageGuessingExecutor.GuessRunner()
+			{
+				public void run(String pageGuess) throws IOException
+				{
+					performPageGuess(crawler, pageGuess);
+				}
+			});
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while guessing pages", e);
 		}
 	}
 	
-	private void performPageGuessing()
+	private void performPageGuess(CrawlEngine crawler, String pageGuess)
 		throws FailingHttpStatusCodeException, MalformedURLException, IOException
 	{
-		for(String pageGuess: pageGuesses)
+		String linkUrl;
+		
+		if(indexUrl.endsWith("/"))
+		{
+			linkUrl = indexUrl + pageGuess;
+		}
+		else
 		{
-			String linkUrl;
+			linkUrl = indexUrl + "/" + pageGuess;
+		}
+		
+		// If this page URL has already been discovered then nothing needs to
+		// be done
+		if(crawler.isVisited(linkUrl))
+		{
+			return;
+		}
+		
+		// Checks to see if the current guess URL is actually a valid URL
+		// and if so, the fact that an unlinked page was discovered for the
+		// site is logged and then discovery is performed from this page 
+		// (i.e. any links on the page are followed), logging any pages which can 
+		// only be reached from this unlinked page (i.e. any previously 
+		// undiscovered pages which are found by following links on the newly 
+		// found page). The page is claimed first since a concurrently running
+		// guess may have just found a link to it.
+		boolean exists = getUrlProber().exists(linkUrl);
+		checkpoint.probed(linkUrl, exists);
+		
+		if(exists && crawler.markVisited(linkUrl))
+		{
+			findings.record(Finding.unlinkedPage(linkUrl));
 			
-			if(indexUrl.endsWith("/"))
+			if(configurations.fastDiscoveryIsOn())
 			{
-				linkUrl = indexUrl + pageGuess;
+				performFastDiscoveryOnUrl(crawler, linkUrl, true);
 			}
 			else
 			{
-				linkUrl = indexUrl + "/" + pageGuess;
+				WebPage webPage = WebPage.performDiscoveryOnPageIfExists(linkUrl, getClientPool());
+				if(webPage != null)
+				{
+					performDiscoveryOnPage(crawler, webPage, linkUrl, true);
+				}
 			}
 			
-			// If this page URL has already been discovered then nothing needs to
-			// be done
-			if(webPages.containsKey(linkUrl))
+			crawler.finished(linkUrl);
+		}
+	}
+	
+	/**
+	 * Keeps the attack surface of the page at the given URL for fuzzing and
+	 * reporting, and records it in the checkpoint.
+	 */
+	private void recordPage(String pageUrl, PageSurface page)
+	{
+		addPage(pageUrl, page);
+		checkpoint.pageDiscovered(pageUrl, page);
+	}
+	
+	/**
+	 * Keeps the attack surface of the page at the given URL without recording
+	 * it in the checkpoint.
+	 */
+	void addPage(String pageUrl, PageSurface page)
+	{
+		webPages.put(pageUrl, page);
+	}
+	
+	/**
+	 * Returns the prober used to check page guesses, creating it on first use.
+	 */
+	private synchronized UrlProber getUrlProber()
+	{
+		if(urlProber == null)
+		{
+			// Pages are fetched over the prober's connections in fast discovery
+			int connections = configurations.guessingConcurrency();
+			if(configurations.fastDiscoveryIsOn())
 			{
-				continue;
+				connections = Math.max(connections, configurations.discoveryThreads());
+			}
+			
+			urlProber = new UrlProber(connections, getRequestGovernor());
+		}
+		
+		return urlProber;
+	}
+	
+	/**
+	 * Returns the WebClient pool used for every page fetch made by this
+	 * manager, creating it on first use.
+	 */
+	private synchronized WebClientPool getClientPool()
+	{
+		if(clientPool == null)
+		{
+			clientPool = new WebClientPool(configurations.clientPoolSize(), getRequestGovernor());
+		}
+		
+		return clientPool;
+	}
+	
+	/**
+	 * Returns the engine used for password guessing, creating it on first use.
+	 * The guesser has its own WebClients so that guessing never competes with
+	 * discovery for pooled clients.
+	 */
+	private synchronized CredentialGuesser getCredentialGuesser()
+	{
+		if(credentialGuesser == null)
+		{
+			credentialGuesser = new CredentialGuesser(configurations.passwordGuessingThreads(), 
+					getRequestGovernor(), configurations.getAuthenticationSuccessString(),
+					configurations.getLockoutMarkers());
+		}
+		
+		return credentialGuesser;
+	}
+	
+	/**
+	 * Returns the submitter used for raw HTTP fuzzing, creating it on first use.
+	 */
+	private synchronized RawHttpSubmitter getRawSubmitter()
+	{
+		if(rawSubmitter == null)
+		{
+			rawSubmitter = new RawHttpSubmitter(configurations.fuzzingThreads(), getRequestGovernor());
+		}
+		
+		return rawSubmitter;
+	}
+	
+	/**
+	 * Closes every WebClient and connection used by this manager. Should be 
+	 * called once fuzzing and reporting are finished.
+	 */
+	public synchronized void shutdown()
+	{
+		closeCheckpoint();
+		
+		if(checkpointShutdownHook != null)
+		{
+			try
+			{
+				Runtime.getRuntime().removeShutdownHook(checkpointShutdownHook);
+			}
+			catch(IllegalStateException e)
+			{
+				// The JVM is already shutting down
 			}
 			
-			// Checks to see if the current guess URL is actually a valid URL
-			// and if so, the fact that an unlinked page was discovered for the
-			// site is logged and then discovery is performed from this page 
-			// (i.e. any links on the page are followed), logging any pages which can 
-			// only be reached from this unlinked page (i.e. any previously 
-			// undiscovered pages which are found by following links on the newly 
-			// found page).
-			if(urlExists(linkUrl))
+			checkpointShutdownHook = null;
+		}
+		
+		if(findings != null)
+		{
+			try
 			{
-				vulnerabilityReport.append("Page guessing found an unlinked page at " +	linkUrl + "\n");
-				
-				WebPage webPage = WebPage.performDiscoveryOnPage(linkUrl);
-				performDiscoveryOnLinks(webPage, true);
+				findings.close();
+			}
+			catch(IOException e)
+			{
+				e.printStackTrace();
 			}
-			doTimeGap();
 		}
+		
+		closeRequestSenders();
+	}
+	
+	/**
+	 * Closes the prober, client pool, password guesser and raw submitter, and
+	 * forgets them and the request governor so that they are created again
+	 * (with the settings then loaded) on next use.
+	 */
+	private synchronized void closeRequestSenders()
+	{
+		if(rawSubmitter != null)
+		{
+			rawSubmitter.close();
+			rawSubmitter = null;
+		}
+		
+		if(urlProber != null)
+		{
+			urlProber.close();
+			urlProber = null;
+		}
+		
+		if(credentialGuesser != null)
+		{
+			credentialGuesser.close();
+			credentialGuesser = null;
+		}
+		
+		if(clientPool != null)
+		{
+			clientPool.close();
+			clientPool = null;
+		}
+		
+		requestGovernor = null;
 	}
 	
 	public Set<String> getSiteUrls()
@@ -283,7 +731,7 @@ public class SiteInformationManager
 		return indexUrl;
 	}
 	
-	public WebPage getPage(String url)
+	public PageSurface getPage(String url)
 	{
 		return webPages.get(url);
 	}
@@ -313,134 +761,371 @@ public class SiteInformationManager
 	 */
 	public boolean loadConfigurations(String configurationFileName)
 	{
-		configurations = new FuzzerData();
+		long start = ScanMetrics.CONFIGURATION_LOADING.start();
+		boolean loaded = false;
+		scanStartMillis = System.currentTimeMillis();
 		
-		try 
+		// Whatever was created for an earlier configuration was sized and
+		// rate limited by that configuration's settings
+		closeRequestSenders();
+		
+		try
 		{
-			Scanner inputScanner = new Scanner(new File(configurationFileName));
-			StringTokenizer tokenizer;
-			String nextToken;
-			
-			while(inputScanner.hasNextLine())
-			{
-				tokenizer = new StringTokenizer(inputScanner.nextLine());
-				
-				nextToken = tokenizer.nextToken();
+			loaded = loadConfigurationsAndData(configurationFileName);
+			return loaded;
+		}
+		finally
+		{
+			ScanMetrics.CONFIGURATION_LOADING.stop(start, loaded);
+		}
+	}
+	
+	private boolean loadConfigurationsAndData(String configurationFileName)
+	{
+		try 
+		{
+			readConfigurations(configurationFileName);
+			
+			// Checked once every setting has been read so that the prober is
+			// created with the configured number of connections
+			if(indexUrl == null)
+			{
+				return false;
+			}
+			
+			if(!getUrlProber().exists(indexUrl))
+			{
+				return false;
+			}
+		} 
+		catch (FileNotFoundException e) 
+		{
+			System.out.println("Configuration File Not Found");
+			e.printStackTrace();
+			return false;
+		}
+		catch (NumberFormatException e) 
+		{
+			e.printStackTrace();
+			return false;
+		}
+
+		if(configurations.getDataFileName() != null && 
+		   !configurations.getDataFileName().isEmpty())
+		{
+			try
+			{
+				openFindingsSink(configurationFileName);
+			}
+			catch(IOException e)
+			{
+				System.out.println("Unable to open the findings file");
+				e.printStackTrace();
+				return false;
+			}
+			
+			try
+			{
+				openCheckpoint(configurationFileName);
+			}
+			catch(IOException e)
+			{
+				System.out.println("Unable to open the checkpoint file");
+				e.printStackTrace();
+				return false;
+			}
+			
+			return loadData();
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Reads the settings in the configuration file with the given file name 
+	 * into a new set of configurations, without checking the site or opening
+	 * any of the files they refer to.
+	 */
+	void readConfigurations(String configurationFileName)
+		throws FileNotFoundException
+	{
+		this.configurationFileName = configurationFileName;
+		readConfigurations(new Scanner(new File(configurationFileName)), configurationFileName);
+	}
+	
+	/**
+	 * Reads the settings from the given scanner (which is closed once every
+	 * line has been read) into a new set of configurations. The source names
+	 * where the settings came from in error messages.
+	 */
+	private void readConfigurations(Scanner inputScanner, String source)
+	{
+		configurations = new FuzzerData();
+		
+		StringTokenizer tokenizer;
+		String nextToken;
+		
+		while(inputScanner.hasNextLine())
+		{
+			tokenizer = new StringTokenizer(inputScanner.nextLine());
+			
+			nextToken = tokenizer.nextToken();
+			
+			if(nextToken.equals("app_data_file:"))
+			{
+				configurations.setDataFileName(tokenizer.nextToken());
+			}
+			else if(nextToken.equals("username:"))
+			{
+				configurations.setUsername(tokenizer.nextToken().replaceAll(" ", "\0"));
+			}
+			else if(nextToken.equals("password:"))
+			{
+				configurations.setPassword(tokenizer.nextToken().replaceAll(" ", "\0"));
+			}
+			else if(nextToken.equals("password_guessing:"))
+			{
+				String guessing = tokenizer.nextToken();
+				if((guessing.equalsIgnoreCase("on")))
+				{
+					configurations.setPasswordGuessing(true);
+				}
+				else if((guessing.equalsIgnoreCase("off")))
+				{
+					configurations.setPasswordGuessing(false);
+				}
+			}
+			else if(nextToken.equals("authentication_success_string:"))
+			{
+				String authenticationSuccessString = "";
+				while(tokenizer.hasMoreTokens())
+				{
+					authenticationSuccessString = authenticationSuccessString.concat(" " + tokenizer.nextToken());
+				}
 				
-				if(nextToken.equals("app_data_file:"))
+				authenticationSuccessString = authenticationSuccessString.trim();
+				if(authenticationSuccessString.length() > 0)
 				{
-					configurations.setDataFileName(tokenizer.nextToken());
+					configurations.setAuthenticationSuccessString(authenticationSuccessString);
 				}
-				else if(nextToken.equals("username:"))
+				else
 				{
-					configurations.setUsername(tokenizer.nextToken().replaceAll(" ", "\0"));
+					// If no authentication success string is provided that
+					// configuration field is set to null, in which case 
+					// authenticaiton will not be attempted since there would
+					// be no way to determine if authentication was successful
+					configurations.setAuthenticationSuccessString(null);
 				}
-				else if(nextToken.equals("password:"))
+			}
+			else if(nextToken.equals("lockout_marker:"))
+			{
+				String lockoutMarker = "";
+				while(tokenizer.hasMoreTokens())
 				{
-					configurations.setPassword(tokenizer.nextToken().replaceAll(" ", "\0"));
+					lockoutMarker = lockoutMarker.concat(" " + tokenizer.nextToken());
 				}
-				else if(nextToken.equals("password_guessing:"))
+				
+				lockoutMarker = lockoutMarker.trim();
+				if(lockoutMarker.length() > 0)
 				{
-					String guessing = tokenizer.nextToken();
-					if((guessing.equalsIgnoreCase("on")))
-					{
-						configurations.setPasswordGuessing(true);
-					}
-					else if((guessing.equalsIgnoreCase("off")))
-					{
-						configurations.setPasswordGuessing(false);
-					}
+					configurations.addLockoutMarker(lockoutMarker);
 				}
-				else if(nextToken.equals("authentication_success_string:"))
+			}
+			else if(nextToken.equals("site_url:"))
+			{
+				indexUrl = tokenizer.nextToken();
+			}
+			else if(nextToken.equals("base_url:"))
+			{
+				baseUrl = tokenizer.nextToken();
+			}
+			else if(nextToken.equals("discovery_threads:"))
+			{
+				configurations.setDiscoveryThreads(Integer.parseInt(tokenizer.nextToken()));
+			}
+			else if(nextToken.equals("client_pool_size:"))
+			{
+				configurations.setClientPoolSize(Integer.parseInt(tokenizer.nextToken()));
+			}
+			else if(nextToken.equals("guessing_concurrency:"))
+			{
+				configurations.setGuessingConcurrency(Integer.parseInt(tokenizer.nextToken()));
+			}
+			else if(nextToken.equals("password_guessing_threads:"))
+			{
+				configurations.setPasswordGuessingThreads(Integer.parseInt(tokenizer.nextToken()));
+			}
+			else if(nextToken.equals("fuzzing_threads:"))
+			{
+				configurations.setFuzzingThreads(Integer.parseInt(tokenizer.nextToken()));
+			}
+			else if(nextToken.equals("fuzzing_mode:"))
+			{
+				String mode = tokenizer.nextToken();
+				if(mode.equalsIgnoreCase("raw"))
 				{
-					String authenticationSuccessString = "";
-					while(tokenizer.hasMoreTokens())
-					{
-						authenticationSuccessString = authenticationSuccessString.concat(" " + tokenizer.nextToken());
-					}
-					
-					authenticationSuccessString = authenticationSuccessString.trim();
-					if(authenticationSuccessString.length() > 0)
-					{
-						configurations.setAuthenticationSuccessString(authenticationSuccessString);
-					}
-					else
-					{
-						// If no authentication success string is provided that
-						// configuration field is set to null, in which case 
-						// authenticaiton will not be attempted since there would
-						// be no way to determine if authentication was successful
-						configurations.setAuthenticationSuccessString(null);
-					}
+					configurations.setRawHttpFuzzing(true);
 				}
-				else if(nextToken.equals("site_url:"))
+				else if(mode.equalsIgnoreCase("browser"))
 				{
-					indexUrl = tokenizer.nextToken();
-					
-					boolean urlExists = urlExists(indexUrl);
-					doTimeGap();
-					if(indexUrl == null || !urlExists)
-					{
-						return false;
-					}
+					configurations.setRawHttpFuzzing(false);
 				}
-				else if(nextToken.equals("base_url:"))
+			}
+			else if(nextToken.equals("discovery_mode:"))
+			{
+				String mode = tokenizer.nextToken();
+				if(mode.equalsIgnoreCase("fast"))
 				{
-					baseUrl = tokenizer.nextToken();
+					configurations.setFastDiscovery(true);
 				}
-				else if(nextToken.equals("time_gap:"))
+				else if(mode.equalsIgnoreCase("browser"))
 				{
-					configurations.setTimeGap(Integer.parseInt(tokenizer.nextToken()));
+					configurations.setFastDiscovery(false);
 				}
-				else if(nextToken.equals("completeness:"))
+			}
+			else if(nextToken.equals("visited_set:"))
+			{
+				String visitedSet = tokenizer.nextToken();
+				if(visitedSet.equalsIgnoreCase("bloom"))
 				{
-					String complete = tokenizer.nextToken();
+					configurations.setBloomFilterVisitedSet(true);
 					
-					if(complete == null)
+					if(tokenizer.hasMoreTokens())
 					{
-						//Defaults to full completeness
-						configurations.setCompleteness(100); 
+						configurations.setExpectedUrlCount(Long.parseLong(tokenizer.nextToken()));
 					}
-					else
+					
+					if(tokenizer.hasMoreTokens())
 					{
-						int completeness = Integer.parseInt(complete);
+						double falsePositiveRate = Double.parseDouble(tokenizer.nextToken());
 						
-						if(completeness <= 0 || completeness > 100)
+						if(falsePositiveRate <= 0 || falsePositiveRate >= 1)
 						{
-							System.out.println("Configuration error in " + configurationFileName +
-									": completeness must be an integer value between 1 and 100 inclusively");
+							System.out.println("Configuration error in " + source +
+									": the visited set false positive rate must be between 0 and 1 exclusively");
+						}
+						else
+						{
+							configurations.setFalsePositiveRate(falsePositiveRate);
 						}
-						
-						configurations.setCompleteness(completeness);
 					}
 				}
+				else if(visitedSet.equalsIgnoreCase("exact"))
+				{
+					configurations.setBloomFilterVisitedSet(false);
+				}
+			}
+			else if(nextToken.equals("findings_file:"))
+			{
+				configurations.setFindingsFileName(tokenizer.nextToken());
+			}
+			else if(nextToken.equals("anomaly_distance:"))
+			{
+				configurations.setAnomalyDistance(Integer.parseInt(tokenizer.nextToken()));
+			}
+			else if(nextToken.equals("coordinator_port:"))
+			{
+				configurations.setCoordinatorPort(Integer.parseInt(tokenizer.nextToken()));
+			}
+			else if(nextToken.equals("lease_size:"))
+			{
+				configurations.setLeaseSize(Integer.parseInt(tokenizer.nextToken()));
+			}
+			else if(nextToken.equals("worker_timeout:"))
+			{
+				configurations.setWorkerTimeoutMillis(Long.parseLong(tokenizer.nextToken()));
+			}
+			else if(nextToken.equals("checkpoint_file:"))
+			{
+				configurations.setCheckpointFileName(tokenizer.nextToken());
+			}
+			else if(nextToken.equals("checkpoint_interval:"))
+			{
+				configurations.setCheckpointIntervalMillis(Long.parseLong(tokenizer.nextToken()));
+			}
+			else if(nextToken.equals("rate_limit:"))
+			{
+				double requestsPerSecond = Double.parseDouble(tokenizer.nextToken());
+				int burstSize = tokenizer.hasMoreTokens() ? Integer.parseInt(tokenizer.nextToken()) : 1;
+				configurations.setRateLimit(requestsPerSecond, burstSize);
+			}
+			else if(nextToken.equals("adaptive_concurrency:"))
+			{
+				String adaptive = tokenizer.nextToken();
+				if(adaptive.equalsIgnoreCase("on"))
+				{
+					configurations.setAdaptiveConcurrency(true);
+				}
+				else if(adaptive.equalsIgnoreCase("off"))
+				{
+					configurations.setAdaptiveConcurrency(false);
+				}
+			}
+			else if(nextToken.equals("max_concurrency:"))
+			{
+				configurations.setMaxConcurrency(Integer.parseInt(tokenizer.nextToken()));
+			}
+			else if(nextToken.equals("time_gap:"))
+			{
+				configurations.setTimeGap(Integer.parseInt(tokenizer.nextToken()));
+			}
+			else if(nextToken.equals("vector_prioritization:"))
+			{
+				String prioritization = tokenizer.nextToken();
+				if(prioritization.equalsIgnoreCase("on"))
+				{
+					configurations.setVectorPrioritization(true);
+				}
+				else if(prioritization.equalsIgnoreCase("off"))
+				{
+					configurations.setVectorPrioritization(false);
+				}
+			}
+			else if(nextToken.equals("vector_stats_file:"))
+			{
+				configurations.setVectorStatisticsFileName(tokenizer.nextToken());
+			}
+			else if(nextToken.equals("sampling_seed:"))
+			{
+				configurations.setSamplingSeed(Long.parseLong(tokenizer.nextToken()));
+			}
+			else if(nextToken.equals("request_budget:"))
+			{
+				configurations.setRequestBudget(Long.parseLong(tokenizer.nextToken()));
+			}
+			else if(nextToken.equals("time_budget:"))
+			{
+				configurations.setTimeBudgetSeconds(Long.parseLong(tokenizer.nextToken()));
+			}
+			else if(nextToken.equals("completeness:"))
+			{
+				String complete = tokenizer.nextToken();
+				
+				if(complete == null)
+				{
+					//Defaults to full completeness
+					configurations.setCompleteness(100); 
+				}
 				else
 				{
-					System.out.println("Unknown configuration option encountered: " + nextToken);
+					int completeness = Integer.parseInt(complete);
+					
+					if(completeness <= 0 || completeness > 100)
+					{
+						System.out.println("Configuration error in " + source +
+								": completeness must be an integer value between 1 and 100 inclusively");
+					}
+					
+					configurations.setCompleteness(completeness);
 				}
 			}
-			
-			inputScanner.close();
-		} 
-		catch (FileNotFoundException e) 
-		{
-			System.out.println("Configuration File Not Found");
-			e.printStackTrace();
-			return false;
-		}
-		catch (NumberFormatException e) 
-		{
-			e.printStackTrace();
-			return false;
-		}
-
-		if(configurations.getDataFileName() != null && 
-		   !configurations.getDataFileName().isEmpty())
-		{
-			return loadData();
+			else
+			{
+				System.out.println("Unknown configuration option encountered: " + nextToken);
+			}
 		}
 		
-		return false;
+		inputScanner.close();
 	}
 	
 	/**
@@ -457,6 +1142,7 @@ public class SiteInformationManager
 		FileInputStream fstream;
 		try 
 		{
+			File dataDirectory = new File(configurations.getDataFileName()).getAbsoluteFile().getParentFile();
 			fstream = new FileInputStream(configurations.getDataFileName());
 			DataInputStream in = new DataInputStream(fstream);
 			BufferedReader br = new BufferedReader(new InputStreamReader(in));
@@ -465,260 +1151,947 @@ public class SiteInformationManager
 			while((line = br.readLine()) != null){
 				if(line.equals("external fuzz vectors:"))
 				{
-					vectors = readDataSectionIntoList(vectors, br);
+					vectors = readDataSectionIntoList(vectors, br, dataDirectory);
 				}
 				else if(line.equals("sensitive data:"))
 				{
-					sensitiveData = readDataSectionIntoList(sensitiveData, br);
+					sensitiveData = readDataSectionIntoList(sensitiveData, br, dataDirectory);
 				}
 				else if(line.equals("password dictionary:"))
 				{
-					passwordDictionary = readDataSectionIntoList(passwordDictionary, br);
+					passwordDictionary = readDataSectionIntoList(passwordDictionary, br, dataDirectory);
 				}
 				else if(line.equals("sanitization checking inputs:"))
 				{
-					sanitationInputs = readDataSectionIntoList(sanitationInputs, br);
+					sanitationInputs = readDataSectionIntoList(sanitationInputs, br, dataDirectory);
 				}
 				else if(line.equals("page guessing:"))
 				{
-					pageGuesses = readDataSectionIntoList(pageGuesses, br);
+					pageGuesses = readDataSectionIntoList(pageGuesses, br, dataDirectory);
 				}
 			}
 			
 			br.close();
 			
+			sensitiveDataMatcher = new MultiPatternMatcher(sensitiveData);
 		} 
 		catch (FileNotFoundException e) 
 		{
-			System.out.println("Data File Not Found");
-			e.printStackTrace();
+			System.out.println("Data File Not Found");
+			e.printStackTrace();
+			return false;
+		}
+		catch (IOException e) 
+		{
+			e.printStackTrace();
+			return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Reads the next section of the data file into the given list. A line of
+	 * the form "@file: <path> [<first line> [<line count>]]" stands for every
+	 * line of the given wordlist file (or for the given slice of its lines),
+	 * which is memory-mapped rather than read into memory. Relative paths are
+	 * resolved against the data file's directory. Returns the resulting list,
+	 * which is a read-only view if any wordlist files were included.
+	 */
+	private List<String> readDataSectionIntoList(List<String> dataList, BufferedReader br, 
+			File dataDirectory)
+		throws IOException
+	{
+		List<List<String>> parts = new ArrayList<List<String>>();
+		if(!dataList.isEmpty())
+		{
+			parts.add(dataList);
+		}
+		
+		List<String> inlineEntries = null;
+		String line;
+		while((line = br.readLine()) != null)
+		{
+			if(line.trim().length() == 0)
+			{
+				// If an empty line is encountered then continue 
+				// processing the file (the next line read in will
+				// be the header for the next data section
+				break;
+			}
+			
+			if(line.startsWith(WORDLIST_FILE_PREFIX))
+			{
+				parts.add(openWordlist(line.substring(WORDLIST_FILE_PREFIX.length()), dataDirectory));
+				inlineEntries = null;
+				continue;
+			}
+			
+			if(inlineEntries == null)
+			{
+				inlineEntries = new ArrayList<String>();
+				parts.add(inlineEntries);
+			}
+			
+			inlineEntries.add(line);
+		}
+		
+		if(parts.isEmpty())
+		{
+			return dataList;
+		}
+		
+		return parts.size() == 1 ? parts.get(0) : new ConcatenatedList<String>(parts);
+	}
+	
+	/**
+	 * Maps the wordlist file named by the given "@file:" reference (a path
+	 * optionally followed by the first line and the number of lines to use).
+	 */
+	private List<String> openWordlist(String reference, File dataDirectory)
+		throws IOException
+	{
+		StringTokenizer tokenizer = new StringTokenizer(reference);
+		if(!tokenizer.hasMoreTokens())
+		{
+			throw new IOException("Missing wordlist file name: " + reference);
+		}
+		
+		File file = new File(tokenizer.nextToken());
+		if(!file.isAbsolute() && dataDirectory != null)
+		{
+			file = new File(dataDirectory, file.getPath());
+		}
+		
+		MappedWordlist wordlist;
+		try
+		{
+			wordlist = new MappedWordlist(file);
+		}
+		catch(FileNotFoundException e)
+		{
+			// Keeps a missing wordlist from being reported as a missing data file
+			throw new IOException("Wordlist file not found: " + file, e);
+		}
+		
+		try
+		{
+			int first = tokenizer.hasMoreTokens() ? Integer.parseInt(tokenizer.nextToken()) : 0;
+			int count = tokenizer.hasMoreTokens() ? Integer.parseInt(tokenizer.nextToken()) : wordlist.size();
+			
+			first = Math.max(0, Math.min(first, wordlist.size()));
+			count = Math.max(0, Math.min(count, wordlist.size() - first));
+			return first == 0 && count == wordlist.size() ? wordlist : wordlist.subList(first, first + count);
+		}
+		catch(NumberFormatException e)
+		{
+			throw new IOException("Invalid wordlist slice: " + reference, e);
+		}
+	}
+	
+	/**
+	 * Performs fuzz testing on the currently discovered attack surface using 
+	 * the currently loaded configurations and logs the results. Every (page,
+	 * form, input, payload) combination is turned into an independent task
+	 * and the tasks are run concurrently, either in this process or (if a
+	 * coordinator port is configured) by the worker processes which connect
+	 * to it.
+	 *
+	 * Only the tasks sampled for the configured completeness are run. No task
+	 * is started once the requests sent while fuzzing have used up the request
+	 * budget, or once the time budget has run out; since the tasks are handed
+	 * out in priority order (see PrioritizedTaskQueue), the ones left are the
+	 * least promising. A scan which is stopped by its budget is not marked as
+	 * complete, so resuming it runs the tasks which are left.
+	 */
+	public void performFuzzing()
+		throws IOException
+	{
+		if(checkpoint.isFuzzingComplete())
+		{
+			return;
+		}
+		
+		// Detector results from an earlier configuration may not hold for
+		// this one (e.g. the sensitive data may have changed)
+		responseCaches.clear();
+		
+		List<FuzzTask> tasks = createFuzzTasks();
+		
+		long requestBudget = configurations.requestBudget();
+		long deadline = getDeadline();
+		
+		File vectorStatisticsFile = getVectorStatisticsFile();
+		vectorStatistics = vectorStatisticsFile != null ? VectorStatistics.load(vectorStatisticsFile) : null;
+		boolean allTasksStarted;
+		try
+		{
+			if(configurations.coordinatorPort() > 0)
+			{
+				allTasksStarted = coordinateFuzzing(tasks, deadline, 
+						requestBudget > 0 ? requestBudget : Long.MAX_VALUE);
+			}
+			else
+			{
+				long requestLimit = requestBudget > 0 ? getRequestCount() + requestBudget : Long.MAX_VALUE;
+				allTasksStarted = runFuzzTasks(tasks, Collections.synchronizedList(new ArrayList<FuzzTask>()), 
+						deadline, requestLimit);
+			}
+		}
+		finally
+		{
+			// What was learned is kept even if fuzzing fails part way
+			if(vectorStatistics != null)
+			{
+				vectorStatistics.save(vectorStatisticsFile);
+			}
+		}
+		
+		// A budget which runs out only once every task has been started has
+		// not left anything to resume
+		if(allTasksStarted)
+		{
+			checkpoint.fuzzingCompleted();
+		}
+		else
+		{
+			System.out.println("Fuzzing stopped at its budget; run the scan with --resume to continue it");
+		}
+	}
+	
+	/**
+	 * Returns the time (in milliseconds since the epoch) at which the time
+	 * budget runs out, or Long.MAX_VALUE if there is none.
+	 */
+	private long getDeadline()
+	{
+		return configurations.timeBudgetSeconds() > 0 ? 
+				scanStartMillis + configurations.timeBudgetSeconds() * 1000 : Long.MAX_VALUE;
+	}
+	
+	/**
+	 * Returns the file fuzz vector statistics are kept in (by default, next to
+	 * the configuration file), or null if vectors are not prioritized.
+	 */
+	private File getVectorStatisticsFile()
+	{
+		if(!configurations.vectorPrioritizationIsOn())
+		{
+			return null;
+		}
+		
+		String fileName = configurations.getVectorStatisticsFileName();
+		return new File(fileName != null ? fileName : configurationFileName + ".vectors.jsonl");
+	}
+	
+	/**
+	 * Returns a task for every (page, form, input, payload) combination which
+	 * is sampled for the configured completeness (see FuzzTaskSampler) and was
+	 * not completed by an earlier run of this scan. The tasks are a view of the
+	 * vector lists, so their payloads are only decoded when they are used.
+	 */
+	private List<FuzzTask> createFuzzTasks()
+	{
+		List<List<FuzzTask>> inputTasks = new ArrayList<List<FuzzTask>>();
+		
+		for(String pageName: webPages.keySet())
+		{
+			PageSurface page = webPages.get(pageName);
+			List<FormSurface> forms = page.getForms();
+			
+			for(int index = 0; index < forms.size(); index++)
+			{
+				FormSurface form = forms.get(index);
+				
+				// Note: Certain submit inputs will cause errors when submitting
+				if(!form.isSubmittable())
+				{
+					// If the form cannot be submitted then nothing can be done
+					// with this form
+					continue;
+				}
+				
+				RequestTemplate template = null;
+				if(configurations.rawHttpFuzzingIsOn())
+				{
+					// Every submission of this form is replayed from the
+					// request template compiled when the form was discovered
+					template = form.getRequestTemplate();
+					if(template == null)
+					{
+						continue;
+					}
+				}
+				
+				for(int inputIndex = 0; inputIndex < form.getInputs().size(); inputIndex++)
+				{
+					if(template != null && !template.canFuzzInput(inputIndex))
+					{
+						// Inputs which are never submitted cannot carry a payload
+						continue;
+					}
+					
+					inputTasks.add(FuzzTask.forPayloads(pageName, index, inputIndex, vectors, 
+							FuzzTask.Kind.SENSITIVE_DATA));
+					inputTasks.add(FuzzTask.forPayloads(pageName, index, inputIndex, sanitationInputs, 
+							FuzzTask.Kind.SANITIZATION));
+				}
+			}
+		}
+		
+		List<FuzzTask> tasks = new ConcatenatedList<FuzzTask>(inputTasks);
+		
+		// The whole of the attack surface is sampled (before completed tasks
+		// are left out) so that a resumed scan samples the same tasks
+		List<FuzzTask> sample = new FuzzTaskSampler(configurations.samplingSeed()).sample(tasks, 
+				configurations.completeness(), configurations.hasBudget());
+		if(sample.size() < tasks.size())
+		{
+			System.out.println("Sampled " + sample.size() + " of " + tasks.size() + " fuzz tasks (seed " + 
+					configurations.samplingSeed() + ")");
+		}
+		
+		int[] remainingTasks = new int[sample.size()];
+		int remaining = 0;
+		for(int index = 0; index < sample.size(); index++)
+		{
+			if(!checkpoint.isTaskCompleted(sample.get(index)))
+			{
+				remainingTasks[remaining++] = index;
+			}
+		}
+		
+		return remaining == sample.size() ? sample : new IndexedList<FuzzTask>(sample, remainingTasks, remaining);
+	}
+	
+	/**
+	 * Runs the given tasks in this process and returns the ones which 
+	 * completed. Tasks which failed are left out (and are left to be retried
+	 * if the scan is resumed).
+	 */
+	List<FuzzTask> runFuzzTasks(List<FuzzTask> tasks)
+		throws IOException
+	{
+		List<FuzzTask> completedTasks = Collections.synchronizedList(new ArrayList<FuzzTask>());
+		runFuzzTasks(tasks, completedTasks, Long.MAX_VALUE, Long.MAX_VALUE);
+		return completedTasks;
+	}
+	
+	/**
+	 * Runs the given tasks as runFuzzTasks(tasks) does, adding the ones which
+	 * completed to the given (synchronized) list, except that no more tasks
+	 * are started once the given deadline has passed or once this manager has
+	 * sent the given number of requests in all (see getRequestCount()). 
+	 * Returns false if that left any task unstarted.
+	 */
+	private boolean runFuzzTasks(List<FuzzTask> tasks, final List<FuzzTask> completedTasks, 
+			final long deadline, final long requestLimit)
+		throws IOException
+	{
+		final AtomicBoolean tasksLeft = new AtomicBoolean(false);
+		final PrioritizedTaskQueue prioritizedQueue = vectorStatistics != null ? 
+				new PrioritizedTaskQueue(tasks, vectorStatistics) : null;
+		final FuzzingExecutor.TaskQueue queue = prioritizedQueue != null ? 
+				prioritizedQueue : FuzzingExecutor.queueOf(tasks);
+		
+		// The budget is checked as each task is handed out, after the queue
+		// has put the most promising tasks first
+		FuzzingExecutor.TaskQueue budgetedQueue = new FuzzingExecutor.TaskQueue()
+		{
+			public FuzzTask next()
+			{
+				if(tasksLeft.get())
+				{
+					return null;
+				}
+				
+				boolean pastDeadline = System.currentTimeMillis() >= deadline;
+				if(pastDeadline || getRequestCount() >= requestLimit)
+				{
+					// A budget which runs out just as the last task is started
+					// has not cut fuzzing short
+					if(queue.next() != null && !tasksLeft.getAndSet(true))
+					{
+						System.out.println(pastDeadline ? "The time budget ran out while fuzzing" :
+								"The request budget ran out while fuzzing");
+					}
+					
+					return null;
+				}
+				
+				return queue.next();
+			}
+		};
+		
+		FuzzingExecutor.TaskRunner runner = new FuzzingExecutor.TaskRunner()
+		{
+			public void run(FuzzTask task) throws Exception
+			{
+				long start = ScanMetrics.FUZZ_TASK.start();
+				FuzzTask.Result result = null;
+				try
+				{
+					if(configurations.rawHttpFuzzingIsOn())
+					{
+						result = performRawFuzzTask(task);
+					}
+					else
+					{
+						result = performFuzzTask(task);
+					}
+				}
+				finally
+				{
+					ScanMetrics.FUZZ_TASK.stop(start, result != null);
+				}
+				
+				if(prioritizedQueue != null)
+				{
+					prioritizedQueue.taskFinished(task, result);
+				}
+				
+				taskCompleted(completedTasks, task);
+			}
+		};
+		
+		FuzzingExecutor executor = new FuzzingExecutor(configurations.fuzzingThreads());
+		try
+		{
+			executor.execute(budgetedQueue, runner);
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while fuzzing", e);
+		}
+		
+		if(prioritizedQueue != null && !prioritizedQueue.getPrunedTasks().isEmpty())
+		{
+			// Pruned tasks are done with, so a resumed scan does not run them
+			List<FuzzTask> prunedTasks = prioritizedQueue.getPrunedTasks();
+			System.out.println("Pruned " + prunedTasks.size() + " fuzz tasks whose vector family had " +
+					"already led to a finding for their input");
+			for(FuzzTask task: prunedTasks)
+			{
+				taskCompleted(completedTasks, task);
+			}
+		}
+		
+		return !tasksLeft.get();
+	}
+	
+	private void taskCompleted(List<FuzzTask> completedTasks, FuzzTask task)
+	{
+		completedTasks.add(task);
+		
+		// Workers of a distributed scan do not keep a checkpoint
+		if(checkpoint != null)
+		{
+			checkpoint.taskCompleted(task);
+		}
+	}
+	
+	/**
+	 * Hands the given tasks out to the worker processes which connect to the
+	 * configured coordinator port, recording the findings and completed tasks
+	 * they report, and returns once every task has been run (or the tasks 
+	 * still to be handed out at the given deadline, or once the workers have
+	 * sent the given number of requests, have been dropped). Returns false if
+	 * any tasks were dropped.
+	 */
+	private boolean coordinateFuzzing(List<FuzzTask> tasks, long deadline, long requestBudget)
+		throws IOException
+	{
+		ScanCoordinator coordinator = new ScanCoordinator(describeScan(), tasks, 
+				configurations.coordinatorPort(), configurations.leaseSize(), 
+				configurations.workerTimeoutMillis(), deadline, requestBudget, new ScanCoordinator.ResultHandler()
+		{
+			public void leaseCompleted(List<FuzzTask> completedTasks, List<Finding> leaseFindings, 
+					List<Map<String, Object>> learnedVectorStatistics)
+			{
+				for(Finding finding: leaseFindings)
+				{
+					findings.record(finding);
+				}
+				
+				if(vectorStatistics != null)
+				{
+					vectorStatistics.addRecords(learnedVectorStatistics, true);
+				}
+				
+				for(FuzzTask task: completedTasks)
+				{
+					checkpoint.taskCompleted(task);
+				}
+			}
+		});
+		
+		try
+		{
+			coordinator.run();
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while coordinating fuzzing", e);
+		}
+		
+		return coordinator.getDroppedLeaseCount() == 0;
+	}
+	
+	/**
+	 * Returns everything a worker needs to run fuzz tasks for the current 
+	 * scan: the configuration file's settings, the sensitive data and the
+	 * discovered attack surface.
+	 */
+	Map<String, Object> describeScan()
+		throws IOException
+	{
+		List<String> configurationLines = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(configurationFileName)));
+		try
+		{
+			String line;
+			while((line = reader.readLine()) != null)
+			{
+				configurationLines.add(line);
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+		
+		List<Map<String, Object>> pageRecords = new ArrayList<Map<String, Object>>();
+		for(Map.Entry<String, PageSurface> entry: webPages.entrySet())
+		{
+			Map<String, Object> pageRecord = new LinkedHashMap<String, Object>();
+			pageRecord.put("url", entry.getKey());
+			pageRecord.put("page", entry.getValue().toRecord());
+			pageRecords.add(pageRecord);
+		}
+		
+		Map<String, Object> scan = new LinkedHashMap<String, Object>();
+		scan.put("configuration", configurationLines);
+		scan.put("sensitiveData", sensitiveData);
+		scan.put("pages", pageRecords);
+		
+		if(vectorStatistics != null)
+		{
+			scan.put("vectorStatistics", vectorStatistics.toRecords());
+		}
+		
+		return scan;
+	}
+	
+	/**
+	 * Returns the number of requests this manager has sent to the site (for
+	 * the current configuration).
+	 */
+	long getRequestCount()
+	{
+		return getRequestGovernor().getRequestCount();
+	}
+	
+	/**
+	 * Returns what has been learned about the fuzz vectors since the last call
+	 * (as VectorStatistics records), to be reported to the coordinator.
+	 */
+	List<Map<String, Object>> takeLearnedVectorStatistics()
+	{
+		if(vectorStatistics == null)
+		{
+			return Collections.emptyList();
+		}
+		
+		return vectorStatistics.getLearnedRecords(true);
+	}
+	
+	/**
+	 * Prepares this manager to run fuzz tasks for the scan described by
+	 * describeScan() (in another process), recording findings to the given
+	 * sink. Neither the site nor the data file is read, and no checkpoint is
+	 * kept.
+	 */
+	@SuppressWarnings("unchecked")
+	void loadScan(Map<String, Object> scan, FindingsSink findings)
+	{
+		StringBuilder configuration = new StringBuilder();
+		for(Object line: (List<Object>) scan.get("configuration"))
+		{
+			configuration.append(line).append('\n');
+		}
+		
+		readConfigurations(new Scanner(configuration.toString()), "the coordinator's configuration");
+		
+		sensitiveData = new ArrayList<String>();
+		for(Object pattern: (List<Object>) scan.get("sensitiveData"))
+		{
+			sensitiveData.add((String) pattern);
+		}
+		sensitiveDataMatcher = new MultiPatternMatcher(sensitiveData);
+		
+		for(Object pageObject: (List<Object>) scan.get("pages"))
+		{
+			Map<String, Object> pageRecord = (Map<String, Object>) pageObject;
+			addPage((String) pageRecord.get("url"), 
+					PageSurface.fromRecord((Map<String, Object>) pageRecord.get("page")));
+		}
+		
+		// Workers learn from the vectors they run, starting from what the 
+		// coordinator knows, and report it back
+		vectorStatistics = null;
+		if(configurations.vectorPrioritizationIsOn())
+		{
+			vectorStatistics = new VectorStatistics();
+			if(scan.get("vectorStatistics") != null)
+			{
+				vectorStatistics.addRecords((List<Map<String, Object>>) scan.get("vectorStatistics"), false);
+			}
+		}
+		
+		responseCaches.clear();
+		setFindingsSink(findings);
+	}
+	
+	/**
+	 * Submits the payload for a single fuzz task. The task's page is loaded into
+	 * a freshly leased client (carrying over any cookies captured when the page
+	 * was discovered) so that the form state is not shared with any other task.
+	 */
+	private FuzzTask.Result performFuzzTask(FuzzTask task)
+		throws IOException
+	{
+		PageSurface discoveredPage = webPages.get(task.getPageUrl());
+		FormSurface formSurface = discoveredPage.getForms().get(task.getFormIndex());
+		InputSurface inputSurface = formSurface.getInputs().get(task.getInputIndex());
+		WebClient client = getClientPool().lease();
+		
+		try
+		{
+			for(Cookie cookie: discoveredPage.getCookies())
+			{
+				client.getCookieManager().addCookie(cookie);
+			}
+			
+			Page page = client.getPage(task.getPageUrl());
+			if(!(page instanceof HtmlPage))
+			{
+				return FuzzTask.Result.NOT_SUBMITTED;
+			}
+			
+			List<WebForm> forms = WebForm.toWebForms(((HtmlPage) page).getElementsByTagName("form"));
+			
+			// The page may have changed since it was discovered, in which case
+			// the form or input for this task may no longer exist
+			if(task.getFormIndex() >= forms.size())
+			{
+				return FuzzTask.Result.NOT_SUBMITTED;
+			}
+			
+			WebForm form = forms.get(task.getFormIndex());
+			HtmlSubmitInput submitField = form.getSubmitField();
+			if(submitField == null || task.getInputIndex() >= form.getInputs().size())
+			{
+				return FuzzTask.Result.NOT_SUBMITTED;
+			}
+			
+			HtmlElement input = form.getInputs().get(task.getInputIndex());
+			input.type(task.getPayload());
+			
+			// Submits the form
+			Page resultingPage;
+			long start = ScanMetrics.FORM_SUBMISSION.start();
+			boolean submitted = false;
+			try
+			{
+				resultingPage = submitField.click();
+				submitted = true;
+			}
+			finally
+			{
+				ScanMetrics.FORM_SUBMISSION.stop(start, submitted);
+			}
+			
+			ResponseCache cache = getResponseCache(task);
+			if(task.getKind() == FuzzTask.Kind.SENSITIVE_DATA)
+			{
+				FingerprintingDetector<SensitiveDataDetector> analysis = newSensitiveDataAnalysis(cache);
+				analyzeResponse(resultingPage.getWebResponse(), analysis);
+				boolean finding = checkForSensitiveData(task, formSurface, inputSurface, analysis.finish());
+				boolean anomaly = checkForAnomaly(task, discoveredPage, formSurface, inputSurface, 
+						analysis.getFingerprint(), cache);
+				return toResult(finding, anomaly);
+			}
+			else
+			{
+				FingerprintingDetector<ReflectionDetector> analysis = newReflectionAnalysis(task, cache);
+				analyzeResponse(resultingPage.getWebResponse(), analysis);
+				boolean finding = checkSanitization(task, formSurface, inputSurface, analysis.finish(), 
+						resultingPage.getUrl());
+				boolean anomaly = checkForAnomaly(task, discoveredPage, formSurface, inputSurface, 
+						analysis.getFingerprint(), cache);
+				return toResult(finding, anomaly);
+			}
+		}
+		finally
+		{
+			getClientPool().release(client);
+		}
+	}
+	
+	/**
+	 * Submits the payload for a single fuzz task directly over HTTP using the
+	 * form's compiled request template, without loading or rendering any page.
+	 */
+	private FuzzTask.Result performRawFuzzTask(FuzzTask task)
+		throws IOException
+	{
+		PageSurface discoveredPage = webPages.get(task.getPageUrl());
+		FormSurface form = discoveredPage.getForms().get(task.getFormIndex());
+		InputSurface input = form.getInputs().get(task.getInputIndex());
+		RequestTemplate template = form.getRequestTemplate();
+		
+		ResponseCache cache = getResponseCache(task);
+		if(task.getKind() == FuzzTask.Kind.SENSITIVE_DATA)
+		{
+			FingerprintingDetector<SensitiveDataDetector> analysis = newSensitiveDataAnalysis(cache);
+			getRawSubmitter().submit(template, task.getInputIndex(), task.getPayload(), 
+					discoveredPage.getCookies(), Collections.singletonList(analysis));
+			boolean finding = checkForSensitiveData(task, form, input, analysis.finish());
+			boolean anomaly = checkForAnomaly(task, discoveredPage, form, input, analysis.getFingerprint(), cache);
+			return toResult(finding, anomaly);
+		}
+		else
+		{
+			FingerprintingDetector<ReflectionDetector> analysis = newReflectionAnalysis(task, cache);
+			RawResponse response = getRawSubmitter().submit(template, task.getInputIndex(), 
+					task.getPayload(), discoveredPage.getCookies(), Collections.singletonList(analysis));
+			boolean finding = checkSanitization(task, form, input, analysis.finish(), response.getFinalUrl());
+			boolean anomaly = checkForAnomaly(task, discoveredPage, form, input, analysis.getFingerprint(), cache);
+			return toResult(finding, anomaly);
+		}
+	}
+	
+	private static FuzzTask.Result toResult(boolean finding, boolean anomaly)
+	{
+		if(finding)
+		{
+			return FuzzTask.Result.FINDING;
+		}
+		
+		return anomaly ? FuzzTask.Result.ANOMALY : FuzzTask.Result.NOTHING_FOUND;
+	}
+	
+	/**
+	 * Returns the cache of analyzed responses for the form the given task
+	 * submits, creating it on first use.
+	 */
+	private ResponseCache getResponseCache(FuzzTask task)
+	{
+		String formKey = task.getPageUrl() + "#" + task.getFormIndex();
+		ResponseCache cache = responseCaches.get(formKey);
+		if(cache == null)
+		{
+			ResponseCache newCache = new ResponseCache();
+			cache = responseCaches.putIfAbsent(formKey, newCache);
+			if(cache == null)
+			{
+				cache = newCache;
+			}
+		}
+		
+		return cache;
+	}
+	
+	private FingerprintingDetector<SensitiveDataDetector> newSensitiveDataAnalysis(ResponseCache cache)
+	{
+		// The matches found in a response do not depend on the payload
+		return new FingerprintingDetector<SensitiveDataDetector>(
+				new SensitiveDataDetector(sensitiveDataMatcher), "sensitive-data", cache);
+	}
+	
+	private FingerprintingDetector<ReflectionDetector> newReflectionAnalysis(FuzzTask task, ResponseCache cache)
+	{
+		return new FingerprintingDetector<ReflectionDetector>(
+				new ReflectionDetector(task.getPayload()), "reflection:" + task.getPayload(), cache);
+	}
+	
+	/**
+	 * Records an anomaly if the response with the given fingerprint (which is
+	 * null if the response was not read in full) has not been seen before for
+	 * its form and is far enough from the form's baseline response. Returns
+	 * true if an anomaly was recorded.
+	 */
+	private boolean checkForAnomaly(FuzzTask task, PageSurface page, FormSurface form, InputSurface input, 
+			ResponseFingerprint fingerprint, ResponseCache cache)
+	{
+		if(fingerprint == null || configurations.anomalyDistance() <= 0 || !cache.isNewResponse(fingerprint))
+		{
 			return false;
 		}
-		catch (IOException e) 
+		
+		ResponseFingerprint baseline = getBaseline(page, form, cache);
+		if(baseline == null || baseline.equals(fingerprint))
 		{
-			e.printStackTrace();
 			return false;
 		}
 		
-		return true;
-	}
-	
-	private List<String> readDataSectionIntoList(List<String> dataList, BufferedReader br)
-		throws IOException
-	{
-		String line;
-		while((line = br.readLine()) != null)
+		int distance = fingerprint.distanceTo(baseline);
+		if(distance >= configurations.anomalyDistance())
 		{
-			if(line.trim().length() == 0)
-			{
-				// If an empty line is encountered then continue 
-				// processing the file (the next line read in will
-				// be the header for the next data section
-				break;
-			}
-			
-			dataList.add(line);
+			findings.record(Finding.responseAnomaly(task.getPageUrl(), describeId(form.getId()), 
+					describeId(input.getId()), task.getPayload(), distance));
+			return true;
 		}
 		
-		return dataList;
+		return false;
 	}
 	
 	/**
-	 * Performs fuzz testing on the currently discovered attack surface using 
-	 * the currently loaded configurations and logs the results.
+	 * Returns the fingerprint of the response to submitting the given form
+	 * with its default values, fetching it the first time it is needed. 
+	 * Returns null if the form has no request template or the request failed.
 	 */
-	public void performFuzzing()
-		throws IOException
+	private ResponseFingerprint getBaseline(PageSurface page, FormSurface form, ResponseCache cache)
 	{
-		for(String pageName: webPages.keySet())
+		synchronized(cache)
 		{
-			WebPage page = webPages.get(pageName);
-			List<WebForm> forms = page.getForms();
-
-			Set<Integer> formIndices;
-			if(configurations.completeness() == 100)
-			{
-				// Adds all of the indices since every form is going to be tested
-				formIndices = new HashSet<Integer>();
-				for(int i = 0; i < forms.size(); i++)
-				{
-					formIndices.add(i);	
-				}
-			}
-			else
-			{
-				formIndices = generateTestIndices(forms.size(), configurations.completeness());
-			}
-			
-			for(Integer index: formIndices)
+			if(!cache.isBaselineLoaded())
 			{
-				WebForm form = forms.get(index);
-				HtmlSubmitInput submitField = form.getSubmitField();
-				
-				// Note: Certain submit inputs will cause errors when submitting
-				if(submitField == null)
-				{
-					// If the form cannot be submitted then nothing can be done
-					// with this form
-					break;
-				}
+				ResponseFingerprint baseline = null;
+				RequestTemplate template = form.getRequestTemplate();
 				
-				Page resultingPage = null;
-				String pageAsString;
-				for(HtmlElement input: form.getInputs())
+				if(template != null)
 				{
-					for(String vector: vectors)
-					{
-						String sensitiveDataFound = "";
-						input.type(vector);
-						
-						// Submits the form
-						try
-						{
-							resultingPage = submitField.click();
-						}
-						catch (FailingHttpStatusCodeException f)
-						{
-							f.printStackTrace();
-							break;
-						}
-						catch(IOException e)
-						{
-							e.printStackTrace();
-							break;
-						}
-						catch(Exception e)
-						{
-							// Catches unexpected and undeclared exceptions
-							e.printStackTrace();
-							break;
-						}
-						
-						pageAsString = resultingPage.getWebResponse().getContentAsString();
-						
-						// Checks for sensitive data in response page
-						for(String s: sensitiveData)
-						{
-							if(pageAsString.contains(s))
-							{
-								sensitiveDataFound.concat(s + ", ");
-							}
-						}
-						
-						if(!sensitiveDataFound.equals(""))
-						{
-						
-							if(form.getForm().getId() == null && input.getId() == null)
-							{
-								vulnerabilityReport.append("Page: " + pageName + "| Form: ID-less" + " | Input: ID=less\n" +
-										"	Sensitive Data Found: " + sensitiveDataFound + "\n");
-							}
-							else if(form.getForm().getId() == null)
-							{
-								vulnerabilityReport.append("Page: " + pageName + "| Form: ID-less" + " | Input: " + input.getId() + "\n" +
-										"	Sensitive Data Found: " + sensitiveDataFound + "\n");
-							}
-							else if(input.getId() == null)
-							{
-								vulnerabilityReport.append("Page: " + pageName + "| Form: " + form.getForm().getId() + " | Input: ID=less\n" +
-										"	Sensitive Data Found: " + sensitiveDataFound + "\n");
-							}
-							else
-							{
-								vulnerabilityReport.append("Page: " + pageName + "| Form: " + form.getForm().getId() + " | Input: " + input.getId() + "\n" +
-										"	Sensitive Data Found: " + sensitiveDataFound + "\n");
-							}
-						}
-					}
-					
-					String unsanitizedInputs = "";
-					
-					for(String inputToSanitize: sanitationInputs)
+					try
 					{
-						// Submit input and then check the url params to ensure
-						// that the input has been changed
-						input.type(inputToSanitize);
-						
-						// Submits the form
-						try
-						{
-							resultingPage = submitField.click();
-						}
-						catch (FailingHttpStatusCodeException f)
-						{
-							f.printStackTrace();
-							break;
-						}
-						catch(IOException e)
-						{
-							e.printStackTrace();
-							break;
-						}
-						catch(Exception e)
-						{
-							// Catches unexpected and undeclared exceptions
-							e.printStackTrace();
-							break;
-						}
-						
-						// Checks if the input was sanitized (changed) at all
-						if(resultingPage.getUrl().getQuery() != null)
-						{
-							if(resultingPage.getUrl().getQuery().contains(inputToSanitize))
-							{
-								unsanitizedInputs.concat(inputToSanitize + ", ");
-							}
-						}
-							
+						ResponseFingerprint.Builder fingerprintBuilder = new ResponseFingerprint.Builder();
+						getRawSubmitter().submit(template, -1, null, page.getCookies(), 
+								Collections.singletonList(fingerprintBuilder));
+						baseline = fingerprintBuilder.build();
 					}
-					
-					if(!unsanitizedInputs.equals(""))
+					catch(IOException e)
 					{
-						if(form.getForm().getId() == null && input.getId() == null)
-						{
-							vulnerabilityReport.append("Page: " + pageName + "| Form: ID-less" + " | Input: ID=less\n" +
-									"	Unsanitized Inputs Found: " + unsanitizedInputs + "\n");
-						}
-						else if(form.getForm().getId() == null)
-						{
-							vulnerabilityReport.append("Page: " + pageName + "| Form: ID-less" + " | Input: " + input.getId() + "\n" +
-									"	Unsanitized Inputs Found: " + unsanitizedInputs + "\n");
-						}
-						else if(input.getId() == null)
-						{
-							vulnerabilityReport.append("Page: " + pageName + "| Form: " + form.getForm().getId() + " | Input: ID=less\n" +
-									"	Unsanitized Inputs Found: " + unsanitizedInputs + "\n");
-						}
-						else
-						{
-							vulnerabilityReport.append("Page: " + pageName + "| Form: " + form.getForm().getId() + " | Input: " + input.getId() + "\n" +
-									"	Unsanitized Inputs Found: " + unsanitizedInputs + "\n");
-						}
+						System.out.println("Unable to load the baseline response for a form on page: " + 
+								page.getUrl());
+						e.printStackTrace();
 					}
-					
 				}
+				
+				cache.setBaseline(baseline);
 			}
+			
+			return cache.getBaseline();
+		}
+	}
+	
+	/**
+	 * Streams the body of an HtmlUnit response through the given detector
+	 * rather than copying the whole body into a String first.
+	 */
+	private static void analyzeResponse(WebResponse response, ResponseDetector detector)
+		throws IOException
+	{
+		InputStream content = response.getContentAsStream();
+		if(content == null)
+		{
+			return;
+		}
+		
+		try
+		{
+			ResponseAnalyzer.analyze(content, response.getContentCharset(), 
+					Collections.singletonList(detector));
+		}
+		finally
+		{
+			content.close();
+		}
+	}
+	
+	private boolean checkForSensitiveData(FuzzTask task, FormSurface form, InputSurface input, 
+			SensitiveDataDetector detector)
+	{
+		List<MultiPatternMatcher.Match> matches = detector.getMatches();
+		
+		if(!matches.isEmpty())
+		{
+			findings.record(Finding.sensitiveData(task.getPageUrl(), describeId(form.getId()), 
+					describeId(input.getId()), task.getPayload(), describeMatches(matches)));
+			return true;
+		}
+		
+		return false;
+	}
+	
+	private boolean checkSanitization(FuzzTask task, FormSurface form, InputSurface input, 
+			ReflectionDetector detector, URL resultingUrl)
+	{
+		String inputToSanitize = task.getPayload();
+		
+		// Checks if the input was sanitized (changed) at all, either in the
+		// resulting URL's parameters or in the body of the response
+		if(resultingUrl.getQuery() != null && resultingUrl.getQuery().contains(inputToSanitize))
+		{
+			findings.record(Finding.unsanitizedInput(task.getPageUrl(), describeId(form.getId()), 
+					describeId(input.getId()), inputToSanitize, null));
+			return true;
+		}
+		else if(detector.isSatisfied())
+		{
+			findings.record(Finding.unsanitizedInput(task.getPageUrl(), describeId(form.getId()), 
+					describeId(input.getId()), inputToSanitize, 
+					"reflected in response at " + detector.getReflectionOffset()));
+			return true;
 		}
+		
+		return false;
 	}
 	
-	private Set<Integer> generateTestIndices(int total, int completeness)
+	/**
+	 * Groups the given matches by pattern, listing the offset of every
+	 * occurrence (e.g. "admin (at 12, 80), version (at 40)").
+	 */
+	private static String describeMatches(List<MultiPatternMatcher.Match> matches)
 	{
-		Set<Integer> testIndices = new HashSet<Integer>();
-		Random random = new Random();
+		Map<String, StringBuilder> offsetsByPattern = new LinkedHashMap<String, StringBuilder>();
+		for(MultiPatternMatcher.Match match: matches)
+		{
+			StringBuilder offsets = offsetsByPattern.get(match.getPattern());
+			if(offsets == null)
+			{
+				offsetsByPattern.put(match.getPattern(), new StringBuilder("at " + match.getOffset()));
+			}
+			else
+			{
+				offsets.append(", " + match.getOffset());
+			}
+		}
 		
-		int index;
-		for(int i = 0; i < total; i++)
+		StringBuilder description = new StringBuilder();
+		for(Map.Entry<String, StringBuilder> entry: offsetsByPattern.entrySet())
 		{
-			do
+			if(description.length() > 0)
 			{
-				index = random.nextInt(total);
+				description.append(", ");
 			}
-			while(testIndices.contains(index));
+			
+			description.append(entry.getKey() + " (" + entry.getValue() + ")");
 		}
 		
-		return testIndices;
+		return description.toString();
 	}
-
+	
+	/**
+	 * Returns the id of a form or input as it appears in findings.
+	 */
+	private static String describeId(String id)
+	{
+		return (id == null || id.length() == 0) ? "ID-less" : id;
+	}
+	
 	/**
 	 * Writes a detailed report on the vulnerability and attack surface 
 	 * information which has been discovered for the site being examined.
@@ -726,6 +2099,19 @@ public class SiteInformationManager
 	 * @param outputStream	The PrintStream to write the report to
 	 */
 	public void writeReport(PrintStream outputStream)
+	{
+		long start = ScanMetrics.REPORT_WRITING.start();
+		try
+		{
+			writeReportSections(outputStream);
+		}
+		finally
+		{
+			ScanMetrics.REPORT_WRITING.stop(start);
+		}
+	}
+	
+	private void writeReportSections(PrintStream outputStream)
 	{
 		outputStream.println("********************************************************************************");
 		outputStream.println("Report for site based at " + indexUrl + "\n");
@@ -744,11 +2130,130 @@ public class SiteInformationManager
 		
 		outputStream.println("Fuzzing Results:\n");
 		outputStream.println("--------------------------------------------------------------------------------");
-		outputStream.println(vulnerabilityReport.toString());
+		renderFindings(outputStream);
 		outputStream.println("--------------------------------------------------------------------------------");
 		outputStream.println("********************************************************************************");
 	}
 
+	/**
+	 * Renders every finding recorded so far from the findings stream.
+	 */
+	private void renderFindings(PrintStream outputStream)
+	{
+		if(findings == null)
+		{
+			return;
+		}
+		
+		try
+		{
+			findings.flush();
+			FindingsSink.render(findings.getFile(), outputStream);
+		}
+		catch(IOException e)
+		{
+			System.out.println("Unable to read findings from " + findings.getFile());
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Opens the findings stream for the given configuration file if one is not
+	 * already open (a manager which is reconfigured keeps writing to the stream
+	 * opened for its first configuration).
+	 */
+	private void openFindingsSink(String configurationFileName)
+		throws IOException
+	{
+		if(findings != null)
+		{
+			return;
+		}
+		
+		String findingsFileName = configurations.getFindingsFileName();
+		if(findingsFileName == null)
+		{
+			findingsFileName = configurationFileName + ".findings.jsonl";
+		}
+		
+		findings = new FindingsSink(new File(findingsFileName), resume);
+	}
+	
+	/**
+	 * Records findings to, and renders them from, the given stream rather 
+	 * than the one opened for the configuration file.
+	 */
+	void setFindingsSink(FindingsSink findings)
+	{
+		this.findings = findings;
+	}
+	
+	/**
+	 * Opens the checkpoint for the configuration file with the given name
+	 * (closing the checkpoint of the previous configuration, if any). The 
+	 * first time a checkpoint is opened a shutdown hook is registered which 
+	 * flushes the current checkpoint, so that a scan which is interrupted 
+	 * (e.g. with Ctrl-C) can be resumed from where it stopped.
+	 */
+	private synchronized void openCheckpoint(String configurationFileName)
+		throws IOException
+	{
+		closeCheckpoint();
+		
+		String checkpointFileName = configurations.getCheckpointFileName();
+		if(checkpointFileName == null)
+		{
+			checkpointFileName = configurationFileName + ".checkpoint.jsonl";
+		}
+		
+		checkpoint = new ScanCheckpoint(new File(checkpointFileName), resume, 
+				configurations.checkpointIntervalMillis(), findings);
+		
+		if(checkpointShutdownHook == null)
+		{
+			checkpointShutdownHook = new Thread(new Runnable()
+			{
+				public void run()
+				{
+					ScanCheckpoint currentCheckpoint = checkpoint;
+					if(currentCheckpoint == null)
+					{
+						return;
+					}
+					
+					try
+					{
+						currentCheckpoint.flush();
+					}
+					catch(IOException e)
+					{
+						e.printStackTrace();
+					}
+				}
+			}, "checkpoint-shutdown");
+			Runtime.getRuntime().addShutdownHook(checkpointShutdownHook);
+		}
+	}
+	
+	private synchronized void closeCheckpoint()
+	{
+		if(checkpoint == null)
+		{
+			return;
+		}
+		
+		try
+		{
+			checkpoint.close();
+		}
+		catch(IOException e)
+		{
+			e.printStackTrace();
+		}
+		
+		checkpoint = null;
+	}
+	
 	/**
 	 * Prints the current configurations to standard out (for debuggin purposes).
 	 */
@@ -756,24 +2261,56 @@ public class SiteInformationManager
 	{
 		System.out.println("\nLoaded Configurations:\n");
 		System.out.println("Seach Complete: " + configurations.completeness());
+		System.out.println("Sampling Seed: " + configurations.samplingSeed());
+		System.out.println("Request Budget: " + configurations.requestBudget());
+		System.out.println("Time Budget: " + configurations.timeBudgetSeconds());
+		System.out.println("Vector Prioritization Is On: " + configurations.vectorPrioritizationIsOn());
+		System.out.println("Vector Statistics File Name: " + configurations.getVectorStatisticsFileName());
 		System.out.println("Time Gap: " + configurations.timeGap());
+		System.out.println("Rate Limit: " + configurations.requestsPerSecond() + 
+				" requests/s (burst " + configurations.burstSize() + ")");
+		System.out.println("Adaptive Concurrency Is On: " + configurations.adaptiveConcurrencyIsOn());
+		System.out.println("Max Concurrency: " + configurations.maxConcurrency());
+		System.out.println("Discovery Threads: " + configurations.discoveryThreads());
+		System.out.println("Fuzzing Threads: " + configurations.fuzzingThreads());
+		System.out.println("Page Guessing Concurrency: " + configurations.guessingConcurrency());
+		System.out.println("Raw HTTP Fuzzing Is On: " + configurations.rawHttpFuzzingIsOn());
+		System.out.println("Fast Discovery Is On: " + configurations.fastDiscoveryIsOn());
+		System.out.println("Anomaly Distance: " + configurations.anomalyDistance());
+		System.out.println("Client Pool Size: " + configurations.clientPoolSize());
+		System.out.println("Coordinator Port: " + configurations.coordinatorPort());
+		System.out.println("Lease Size: " + configurations.leaseSize());
+		System.out.println("Worker Timeout: " + configurations.workerTimeoutMillis());
+		System.out.println("Bloom Filter Visited Set Is On: " + configurations.bloomFilterVisitedSetIsOn());
 		System.out.println("Username: " + configurations.getUsername());
 		System.out.println("Password: " + configurations.getPassword());
 		System.out.println("Password Guessing Is On: " + configurations.passwordGuessingIsOn());
+		System.out.println("Password Guessing Threads: " + configurations.passwordGuessingThreads());
 		System.out.println("Data File Name: " + configurations.getDataFileName());
+		System.out.println("Findings File Name: " + configurations.getFindingsFileName());
+		System.out.println("Checkpoint File Name: " + configurations.getCheckpointFileName());
+		System.out.println("Checkpoint Interval: " + configurations.checkpointIntervalMillis());
 		System.out.println("Authentication Success String: " + configurations.getAuthenticationSuccessString());
+		System.out.println("Lockout Markers: " + configurations.getLockoutMarkers());
 		System.out.println();
 	}
 	
 	/**
 	 * Initializes and returns a new SiteInformationManager using the configurations contained in 
 	 * the configuration file with the given file name after performing attack surface discovery. 
+	 * Returns null if the configurations could not be loaded.
 	 */
 	public static SiteInformationManager initSiteInformationManager(String configurationFileName)
 		throws FailingHttpStatusCodeException, MalformedURLException, IOException
 	{
 		SiteInformationManager informationManager = new SiteInformationManager();
-		informationManager.loadConfigurations(configurationFileName);
+		if(!informationManager.loadConfigurations(configurationFileName))
+		{
+			// Checking the site URL may already have opened connections
+			informationManager.shutdown();
+			return null;
+		}
+		
 		informationManager.performDiscovery();
 		return informationManager;
 	}
@@ -785,17 +2322,61 @@ public class SiteInformationManager
 	 */
 	public static SiteInformationManager loadConfigurationAndFuzz(String configurationFileName)
 		throws FailingHttpStatusCodeException, MalformedURLException, IOException
+	{
+		return loadConfigurationAndFuzz(configurationFileName, false);
+	}
+	
+	/**
+	 * Initializes and returns a new SiteInformationManager as above. If resume
+	 * is true then scans pick up from the checkpoints left by earlier runs of
+	 * the same configurations rather than starting over, and findings are
+	 * appended to the existing findings file.
+	 */
+	public static SiteInformationManager loadConfigurationAndFuzz(String configurationFileName, 
+			boolean resume)
+		throws FailingHttpStatusCodeException, MalformedURLException, IOException
+	{
+		return loadConfigurationAndFuzz(configurationFileName, resume, null);
+	}
+	
+	/**
+	 * Initializes and returns a new SiteInformationManager as above, whose
+	 * requests also count against the given budget (which may be null) so 
+	 * that several sites can be scanned at once without overloading the 
+	 * network or the machine the scans run on. Returns null if the 
+	 * configurations could not be loaded; the manager is shut down if it is
+	 * not returned.
+	 */
+	public static SiteInformationManager loadConfigurationAndFuzz(String configurationFileName, 
+			boolean resume, RequestBudget requestBudget)
+		throws FailingHttpStatusCodeException, MalformedURLException, IOException
 	{
 		SiteInformationManager informationManager = new SiteInformationManager();
+		informationManager.resume = resume;
+		informationManager.requestBudget = requestBudget;
 		
-		if(!informationManager.loadConfigurations(configurationFileName))
+		boolean scanned = false;
+		try
 		{
-			return null;
+			if(!informationManager.loadConfigurations(configurationFileName))
+			{
+				return null;
+			}
+			
+			informationManager.performDiscovery();
+			informationManager.performFuzzing();
+			scanned = true;
+			return informationManager;
+		}
+		finally
+		{
+			// Nothing else can shut down a manager which is not returned
+			// (checking the site URL alone may have opened connections)
+			if(!scanned)
+			{
+				informationManager.shutdown();
+			}
 		}
-		
-		informationManager.performDiscovery();
-		informationManager.performFuzzing();
-		return informationManager;
 	}
 	
 	public static String getBaseUrl(String url)
@@ -828,24 +2409,4 @@ public class SiteInformationManager
 		
 		return url.substring(0, baseUrlEnd);
 	}
-	
-	/**
-	 * Method for checking whether or not a given URL exists on the web.
-	 * Taken from a response on stackoverflow 
-	 * (http://stackoverflow.com/questions/4177864/checking-a-url-exist-or-not) 
-	 */
-	public static boolean urlExists(String url)
-	{
-	    try {
-	      HttpURLConnection.setFollowRedirects(false);
-	      HttpURLConnection con =
-	         (HttpURLConnection) new URL(url).openConnection();
-	      con.setInstanceFollowRedirects(false);
-	      con.setRequestMethod("HEAD");
-	      return (con.getResponseCode() == HttpURLConnection.HTTP_OK);
-	    }
-	    catch (Exception e) {
-	       return false;
-	    }
-	}
 }
@@ -0,0 +1,634 @@
+package fuzzer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.cyberneko.html.parsers.SAXParser;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import com.gargoylesoftware.htmlunit.FormEncodingType;
+import com.gargoylesoftware.htmlunit.util.Cookie;
+
+/**
+ * Pulls the links, forms and inputs out of a page's raw HTML as it streams
+ * in, without building a DOM or running any scripts. The page is parsed with
+ * NekoHTML (the same parser HtmlUnit uses) and only the elements discovery
+ * needs are kept, so extracting a page takes a fraction of the time and
+ * memory of rendering it.
+ *
+ * Forms are described the way HtmlUnit would describe them (see WebPage and
+ * RequestTemplate.compile()), so that a page's attack surface is the same
+ * whichever way it was discovered. A page is flagged as depending on scripts
+ * if it has a script element, an event handler attribute or a javascript: URL,
+ * since its links and forms may then not be what the HTML says.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class StreamingHtmlExtractor extends DefaultHandler
+{
+	/*
+	 * The charset HtmlUnit assumes for a page which does not declare one.
+	 */
+	private static final String DEFAULT_CHARSET = "ISO-8859-1";
+
+	/*
+	 * The value HtmlUnit submits for a submit input without a value attribute.
+	 */
+	private static final String SUBMIT_DEFAULT_VALUE = "Submit Query";
+
+	private final URL pageUrl;
+	private final String responseCharset;
+
+	private URL baseUrl;
+	private String declaredCharset;
+	private final List<String> hrefs;
+	private final List<FormBuilder> forms;
+	private FormBuilder currentForm;
+	private boolean scriptDependent;
+	private boolean passwordInputFound;
+
+	/*
+	 * The select, option or textarea whose content is being read, if any.
+	 */
+	private Control currentSelect;
+	private Option currentOption;
+	private Control currentTextArea;
+	private StringBuilder text;
+
+	private StreamingHtmlExtractor(URL pageUrl, String responseCharset)
+	{
+		this.pageUrl = pageUrl;
+		this.responseCharset = responseCharset;
+		this.baseUrl = pageUrl;
+		this.hrefs = new ArrayList<String>();
+		this.forms = new ArrayList<FormBuilder>();
+		this.scriptDependent = false;
+		this.passwordInputFound = false;
+	}
+
+	/**
+	 * Extracts the page at the given URL from its content, which is in the
+	 * given charset (or null if the response did not give one). The cookies
+	 * the response set are kept with the page.
+	 */
+	public static ExtractedPage extract(InputStream content, String charset, URL pageUrl, List<Cookie> cookies)
+		throws IOException
+	{
+		StreamingHtmlExtractor extractor = new StreamingHtmlExtractor(pageUrl, charset);
+
+		SAXParser parser = new SAXParser();
+		InputSource source = new InputSource(content);
+		try
+		{
+			parser.setProperty("http://cyberneko.org/html/properties/names/elems", "lower");
+			parser.setProperty("http://cyberneko.org/html/properties/names/attrs", "lower");
+			if(charset != null)
+			{
+				// As in a browser, the response's charset wins over the page's
+				parser.setFeature("http://cyberneko.org/html/features/scanner/ignore-specified-charset", true);
+				source.setEncoding(charset);
+			}
+
+			parser.setContentHandler(extractor);
+			parser.parse(source);
+		}
+		catch(SAXException e)
+		{
+			throw new IOException("Unable to parse " + pageUrl, e);
+		}
+
+		return extractor.toPage(cookies);
+	}
+
+	@Override
+	public void startElement(String uri, String localName, String qName, Attributes attributes)
+	{
+		String element = qName.toLowerCase(Locale.ENGLISH);
+		Map<String, String> attributeMap = toMap(attributes);
+
+		for(Map.Entry<String, String> attribute: attributeMap.entrySet())
+		{
+			if(attribute.getKey().startsWith("on") ||
+			   ((attribute.getKey().equals("href") || attribute.getKey().equals("action")) &&
+			    attribute.getValue().trim().toLowerCase(Locale.ENGLISH).startsWith("javascript:")))
+			{
+				scriptDependent = true;
+			}
+		}
+
+		if(element.equals("script"))
+		{
+			scriptDependent = true;
+		}
+		else if(element.equals("base") && attributeMap.containsKey("href") && baseUrl == pageUrl)
+		{
+			URL url = resolve(pageUrl, attributeMap.get("href"));
+			if(url != null)
+			{
+				baseUrl = url;
+			}
+		}
+		else if(element.equals("meta") && declaredCharset == null)
+		{
+			declaredCharset = charsetOf(attributeMap);
+		}
+		else if(element.equals("a") && attributeMap.containsKey("href"))
+		{
+			hrefs.add(attributeMap.get("href"));
+		}
+		else if(element.equals("form") && currentForm == null)
+		{
+			currentForm = new FormBuilder(attributeMap);
+			forms.add(currentForm);
+		}
+		else if(element.equals("input"))
+		{
+			String type = attributeMap.get("type");
+			if(type != null && type.equalsIgnoreCase("password"))
+			{
+				passwordInputFound = true;
+			}
+
+			if(currentForm != null)
+			{
+				currentForm.addInput(normalizeInput(attributeMap));
+			}
+		}
+		else if(element.equals("select") && currentForm != null)
+		{
+			currentSelect = currentForm.addControl(element, attributeMap);
+		}
+		else if(element.equals("option") && currentSelect != null)
+		{
+			finishOption();
+			currentOption = new Option(attributeMap.get("value"), attributeMap.containsKey("selected"));
+			currentSelect.options.add(currentOption);
+			text = new StringBuilder();
+		}
+		else if(element.equals("textarea") && currentForm != null)
+		{
+			currentTextArea = currentForm.addControl(element, attributeMap);
+			text = new StringBuilder();
+		}
+	}
+
+	@Override
+	public void endElement(String uri, String localName, String qName)
+	{
+		String element = qName.toLowerCase(Locale.ENGLISH);
+
+		if(element.equals("form"))
+		{
+			currentForm = null;
+		}
+		else if(element.equals("option"))
+		{
+			finishOption();
+		}
+		else if(element.equals("select"))
+		{
+			finishOption();
+			currentSelect = null;
+		}
+		else if(element.equals("textarea") && currentTextArea != null)
+		{
+			String value = text.toString();
+			if(value.startsWith("\r\n"))
+			{
+				value = value.substring(2);
+			}
+			else if(value.startsWith("\n"))
+			{
+				value = value.substring(1);
+			}
+
+			// Browsers submit every line break as CRLF
+			currentTextArea.value = value.replace("\r\n", "\n").replace('\r', '\n').replace("\n", "\r\n");
+			currentTextArea = null;
+			text = null;
+		}
+	}
+
+	@Override
+	public void characters(char[] characters, int start, int length)
+	{
+		if(text != null)
+		{
+			text.append(characters, start, length);
+		}
+	}
+
+	private void finishOption()
+	{
+		if(currentOption != null)
+		{
+			if(currentOption.value == null)
+			{
+				currentOption.value = text.toString().trim();
+			}
+
+			currentOption = null;
+			text = null;
+		}
+	}
+
+	private ExtractedPage toPage(List<Cookie> cookies)
+	{
+		List<String> links = new ArrayList<String>();
+		for(String href: hrefs)
+		{
+			URL url = resolve(baseUrl, href);
+			if(url != null)
+			{
+				links.add(url.toString());
+			}
+		}
+
+		String charset = responseCharset != null ? responseCharset :
+				(declaredCharset != null ? declaredCharset : DEFAULT_CHARSET);
+
+		List<FormSurface> formSurfaces = new ArrayList<FormSurface>();
+		for(int i = 0; i < forms.size(); i++)
+		{
+			formSurfaces.add(forms.get(i).toSurface(i, charset));
+		}
+
+		return new ExtractedPage(new PageSurface(pageUrl.toString(), pageUrl.getQuery(), formSurfaces, cookies),
+				links, scriptDependent, passwordInputFound);
+	}
+
+	/**
+	 * Returns the given URL resolved against the given base URL, or null if it
+	 * is not a valid URL.
+	 */
+	private static URL resolve(URL base, String url)
+	{
+		try
+		{
+			return new URL(base, url.trim());
+		}
+		catch(MalformedURLException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the charset declared by a meta element with the given attributes,
+	 * or null if it does not declare one.
+	 */
+	private static String charsetOf(Map<String, String> meta)
+	{
+		if(meta.containsKey("charset"))
+		{
+			return meta.get("charset").trim();
+		}
+
+		String httpEquiv = meta.get("http-equiv");
+		String content = meta.get("content");
+		if(httpEquiv != null && httpEquiv.equalsIgnoreCase("content-type") && content != null)
+		{
+			int charsetStart = content.toLowerCase(Locale.ENGLISH).indexOf("charset=");
+			if(charsetStart >= 0)
+			{
+				String charset = content.substring(charsetStart + "charset=".length()).trim();
+				int charsetEnd = charset.indexOf(';');
+				return charsetEnd == -1 ? charset : charset.substring(0, charsetEnd).trim();
+			}
+		}
+
+		return null;
+	}
+
+	private static Map<String, String> toMap(Attributes attributes)
+	{
+		Map<String, String> map = new LinkedHashMap<String, String>();
+		for(int i = 0; i < attributes.getLength(); i++)
+		{
+			String name = attributes.getQName(i).toLowerCase(Locale.ENGLISH);
+			if(!map.containsKey(name))
+			{
+				map.put(name, attributes.getValue(i));
+			}
+		}
+
+		return map;
+	}
+
+	/**
+	 * Fills in the attributes HtmlUnit sets on an input when it is created:
+	 * the type is lower case (text if none was given), checkboxes and radio
+	 * buttons have a value of "on" unless given one, file inputs have an empty
+	 * value and a checked radio button is marked checked="checked".
+	 */
+	private static Map<String, String> normalizeInput(Map<String, String> attributes)
+	{
+		String type = attributes.get("type");
+		type = type == null ? "text" : type.toLowerCase(Locale.ENGLISH);
+		attributes.put("type", type);
+
+		if(type.equals("checkbox") || type.equals("radio"))
+		{
+			if(!attributes.containsKey("value"))
+			{
+				attributes.put("value", "on");
+			}
+
+			if(type.equals("radio") && attributes.containsKey("checked"))
+			{
+				attributes.put("checked", "checked");
+			}
+		}
+		else if(type.equals("file") && !attributes.containsKey("value"))
+		{
+			attributes.put("value", "");
+		}
+
+		return attributes;
+	}
+
+	/**
+	 * Writes the given input as HtmlUnit's asXml() would.
+	 */
+	private static String toXml(Map<String, String> attributes)
+	{
+		StringBuilder xml = new StringBuilder("<input");
+		for(Map.Entry<String, String> attribute: attributes.entrySet())
+		{
+			xml.append(' ').append(attribute.getKey()).append("=\"");
+			String value = attribute.getValue();
+			for(int i = 0; i < value.length(); i++)
+			{
+				char c = value.charAt(i);
+				if(c == '&')
+				{
+					xml.append("&amp;");
+				}
+				else if(c == '<')
+				{
+					xml.append("&lt;");
+				}
+				else if(c == '"')
+				{
+					xml.append("&quot;");
+				}
+				else
+				{
+					xml.append(c);
+				}
+			}
+			xml.append('"');
+		}
+
+		return xml.append("/>\n").toString();
+	}
+
+	/**
+	 * A form as it is read: its attributes and, in document order, its inputs
+	 * and the other controls which may be submitted with it.
+	 */
+	private class FormBuilder
+	{
+		private final Map<String, String> attributes;
+		private final List<Map<String, String>> inputs;
+		private final List<Control> controls;
+		private Control submitField;
+
+		FormBuilder(Map<String, String> attributes)
+		{
+			this.attributes = attributes;
+			this.inputs = new ArrayList<Map<String, String>>();
+			this.controls = new ArrayList<Control>();
+		}
+
+		void addInput(Map<String, String> inputAttributes)
+		{
+			inputs.add(inputAttributes);
+			Control control = addControl("input", inputAttributes);
+
+			// As in WebForm, the last submit input is the one the form is
+			// submitted with
+			if("submit".equals(inputAttributes.get("type")))
+			{
+				submitField = control;
+			}
+		}
+
+		Control addControl(String element, Map<String, String> controlAttributes)
+		{
+			Control control = new Control(element, controlAttributes);
+			controls.add(control);
+			return control;
+		}
+
+		FormSurface toSurface(int index, String pageCharset)
+		{
+			List<InputSurface> inputSurfaces = new ArrayList<InputSurface>();
+			List<String> inputNames = new ArrayList<String>();
+			boolean authenticationRequired = false;
+			for(Map<String, String> input: inputs)
+			{
+				inputSurfaces.add(new InputSurface(input.get("name"), input.get("id"), input.get("type"),
+						toXml(input)));
+				inputNames.add(input.get("name"));
+				authenticationRequired |= "password".equals(input.get("type"));
+			}
+
+			return new FormSurface(index, attributes.get("id"), attributes.get("action"),
+					attributes.get("method"), submitField != null, authenticationRequired, inputSurfaces,
+					toRequestTemplate(pageCharset, inputNames));
+		}
+
+		/**
+		 * Compiles the form into a request template the way HtmlUnit builds the
+		 * request for a click on the submit field.
+		 */
+		private RequestTemplate toRequestTemplate(String pageCharset, List<String> inputNames)
+		{
+			if(submitField == null)
+			{
+				return null;
+			}
+
+			List<String> fieldNames = new ArrayList<String>();
+			List<String> fieldValues = new ArrayList<String>();
+			for(Control control: controls)
+			{
+				control.addSubmittedValues(control == submitField, fieldNames, fieldValues);
+			}
+
+			String method = "post".equalsIgnoreCase(attributes.get("method")) ? "POST" : "GET";
+			String enctype = attributes.get("enctype");
+			String encoding = FormEncodingType.MULTIPART.getName().equalsIgnoreCase(enctype) ?
+					FormEncodingType.MULTIPART.getName() : FormEncodingType.URL_ENCODED.getName();
+
+			String charset = pageCharset;
+			String acceptCharset = attributes.get("accept-charset");
+			if(acceptCharset != null && acceptCharset.trim().length() > 0)
+			{
+				charset = acceptCharset.trim().split("[ ,]")[0];
+			}
+
+			String action = attributes.get("action");
+			URL actionUrl = resolve(baseUrl, action == null ? "" : action);
+			if(actionUrl == null)
+			{
+				return null;
+			}
+
+			String actionUrlString = actionUrl.toString();
+			if(method.equals("GET"))
+			{
+				// The fields replace the action's query (and fragment)
+				int queryStart = actionUrlString.indexOf('?');
+				int fragmentStart = actionUrlString.indexOf('#');
+				int end = queryStart >= 0 ? queryStart : fragmentStart;
+				if(end >= 0)
+				{
+					actionUrlString = actionUrlString.substring(0, end);
+				}
+			}
+
+			return new RequestTemplate(actionUrlString, method, encoding, charset, fieldNames, fieldValues,
+					RequestTemplate.mapInputsToFields(inputNames, fieldNames));
+		}
+	}
+
+	/**
+	 * An input, select or textarea in a form.
+	 */
+	private static class Control
+	{
+		private final String element;
+		private final Map<String, String> attributes;
+		private final List<Option> options;
+		private String value;
+
+		Control(String element, Map<String, String> attributes)
+		{
+			this.element = element;
+			this.attributes = attributes;
+			this.options = new ArrayList<Option>();
+			this.value = "";
+		}
+
+		/**
+		 * Adds the name and value of every field this control is submitted as
+		 * to the given lists (nothing, if it is not submitted). Only the one
+		 * submit input which was clicked is submitted.
+		 */
+		void addSubmittedValues(boolean clicked, List<String> names, List<String> values)
+		{
+			String name = attributes.get("name");
+			if(attributes.containsKey("disabled") || name == null || name.length() == 0)
+			{
+				return;
+			}
+
+			if(element.equals("textarea"))
+			{
+				names.add(name);
+				values.add(value);
+				return;
+			}
+
+			if(element.equals("select"))
+			{
+				addSelectedOptions(name, names, values);
+				return;
+			}
+
+			// Inputs have been normalized, so the type is always set
+			String type = attributes.get("type");
+			String inputValue = attributes.get("value");
+
+			if(type.equals("submit") || type.equals("image") || type.equals("reset") || type.equals("button"))
+			{
+				if(!clicked)
+				{
+					return;
+				}
+
+				if(type.equals("submit") && inputValue == null)
+				{
+					inputValue = SUBMIT_DEFAULT_VALUE;
+				}
+			}
+			else if(type.equals("checkbox") || type.equals("radio"))
+			{
+				if(!attributes.containsKey("checked"))
+				{
+					return;
+				}
+			}
+			else if(type.equals("file"))
+			{
+				inputValue = "";
+			}
+
+			names.add(name);
+			values.add(inputValue == null ? "" : inputValue);
+		}
+
+		private void addSelectedOptions(String name, List<String> names, List<String> values)
+		{
+			boolean multiple = attributes.containsKey("multiple");
+			Option selected = null;
+
+			for(Option option: options)
+			{
+				if(option.selected)
+				{
+					if(multiple)
+					{
+						names.add(name);
+						values.add(option.value);
+					}
+					else
+					{
+						// Selecting an option deselects the one selected before
+						selected = option;
+					}
+				}
+			}
+
+			if(!multiple)
+			{
+				if(selected == null && !options.isEmpty())
+				{
+					selected = options.get(0);
+				}
+
+				if(selected != null)
+				{
+					names.add(name);
+					values.add(selected.value);
+				}
+			}
+		}
+	}
+
+	private static class Option
+	{
+		private String value;
+		private final boolean selected;
+
+		Option(String value, boolean selected)
+		{
+			this.value = value;
+			this.selected = selected;
+		}
+	}
+}
@@ -0,0 +1,333 @@
+package fuzzer;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Reduces URLs to a canonical form so that trivially different spellings of
+ * the same page (a fragment, a trailing slash, "." and ".." path segments,
+ * reordered query parameters, upper case schemes and hosts or an explicit
+ * default port) are only crawled once, and decides whether a URL is a part of
+ * the site being fuzzed (i.e. is under the site's base URL).
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class UrlCanonicalizer
+{
+	private static final String UNRESERVED_CHARACTERS =
+			"ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-._~";
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private final String canonicalBaseUrl;
+
+	/**
+	 * Creates a canonicalizer which treats every URL under the given base URL
+	 * as being in scope.
+	 */
+	public UrlCanonicalizer(String baseUrl)
+		throws MalformedURLException
+	{
+		canonicalBaseUrl = canonicalize(baseUrl);
+		if(canonicalBaseUrl == null)
+		{
+			throw new MalformedURLException("Invalid base URL: " + baseUrl);
+		}
+	}
+
+	public String getCanonicalBaseUrl()
+	{
+		return canonicalBaseUrl;
+	}
+
+	/**
+	 * Returns true if the given URL is a part of the site being fuzzed. Unlike
+	 * a plain prefix check, a base URL of http://host/app does not match
+	 * http://host/application.
+	 */
+	public boolean isInScope(String url)
+	{
+		String canonicalUrl = canonicalize(url);
+		if(canonicalUrl == null || !canonicalUrl.startsWith(canonicalBaseUrl))
+		{
+			return false;
+		}
+
+		if(canonicalUrl.length() == canonicalBaseUrl.length() || canonicalBaseUrl.endsWith("/"))
+		{
+			return true;
+		}
+
+		char next = canonicalUrl.charAt(canonicalBaseUrl.length());
+		return next == '/' || next == '?';
+	}
+
+	/**
+	 * Returns the canonical form of the given HTTP(S) URL, or null if it is not
+	 * a valid HTTP(S) URL.
+	 */
+	public static String canonicalize(String url)
+	{
+		if(url == null)
+		{
+			return null;
+		}
+
+		URL parsedUrl;
+		try
+		{
+			parsedUrl = new URL(url.trim());
+		}
+		catch(MalformedURLException e)
+		{
+			return null;
+		}
+
+		String scheme = parsedUrl.getProtocol().toLowerCase();
+		if(!scheme.equals("http") && !scheme.equals("https"))
+		{
+			return null;
+		}
+
+		String host = parsedUrl.getHost().toLowerCase();
+		if(host.endsWith("."))
+		{
+			host = host.substring(0, host.length() - 1);
+		}
+
+		if(host.length() == 0)
+		{
+			return null;
+		}
+
+		StringBuilder canonicalUrl = new StringBuilder(url.length());
+		canonicalUrl.append(scheme).append("://");
+
+		if(parsedUrl.getUserInfo() != null)
+		{
+			canonicalUrl.append(parsedUrl.getUserInfo()).append('@');
+		}
+
+		canonicalUrl.append(host);
+
+		int port = parsedUrl.getPort();
+		if(port != -1 && port != parsedUrl.getDefaultPort())
+		{
+			canonicalUrl.append(':').append(port);
+		}
+
+		canonicalUrl.append(normalizePath(parsedUrl.getPath()));
+
+		String query = normalizeQuery(parsedUrl.getQuery());
+		if(query != null)
+		{
+			canonicalUrl.append('?').append(query);
+		}
+
+		return canonicalUrl.toString();
+	}
+
+	/**
+	 * Returns the given URL without its fragment (which is never sent to the
+	 * server), leaving the rest of the URL exactly as it was written.
+	 */
+	public static String stripFragment(String url)
+	{
+		int fragmentStart = url.indexOf('#');
+		return fragmentStart == -1 ? url : url.substring(0, fragmentStart);
+	}
+
+	/**
+	 * Returns the key identifying the host (and port) of the given URL, which
+	 * is used to keep per-host state. URLs which cannot be parsed all share the
+	 * empty key.
+	 */
+	public static String hostKey(String url)
+	{
+		try
+		{
+			URL parsedUrl = new URL(url);
+			int port = parsedUrl.getPort() == -1 ? parsedUrl.getDefaultPort() : parsedUrl.getPort();
+			return parsedUrl.getHost().toLowerCase() + ":" + port;
+		}
+		catch(MalformedURLException e)
+		{
+			return "";
+		}
+	}
+
+	/**
+	 * Computes a well-mixed 64-bit fingerprint of the given (canonical) URL.
+	 */
+	public static long fingerprint(String canonicalUrl)
+	{
+		// FNV-1a, followed by the MurmurHash3 finalizer so that every bit of
+		// the result depends on every character of the URL
+		long hash = FNV_OFFSET_BASIS;
+		for(int i = 0; i < canonicalUrl.length(); i++)
+		{
+			hash ^= canonicalUrl.charAt(i);
+			hash *= FNV_PRIME;
+		}
+
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	/**
+	 * Resolves "." and ".." segments, normalizes percent-escapes and removes
+	 * any trailing slash (other than the one making up the root path).
+	 */
+	private static String normalizePath(String path)
+	{
+		if(path == null || path.length() == 0)
+		{
+			return "/";
+		}
+
+		LinkedList<String> segments = new LinkedList<String>();
+		for(String segment: path.split("/"))
+		{
+			if(segment.length() == 0 || segment.equals("."))
+			{
+				continue;
+			}
+			else if(segment.equals(".."))
+			{
+				if(!segments.isEmpty())
+				{
+					segments.removeLast();
+				}
+			}
+			else
+			{
+				segments.add(normalizeEscapes(segment));
+			}
+		}
+
+		if(segments.isEmpty())
+		{
+			return "/";
+		}
+
+		StringBuilder normalizedPath = new StringBuilder(path.length());
+		for(String segment: segments)
+		{
+			normalizedPath.append('/').append(segment);
+		}
+
+		return normalizedPath.toString();
+	}
+
+	/**
+	 * Sorts the query parameters (keeping the relative order of repeated
+	 * parameters with the same name) and drops empty ones. Returns null if
+	 * nothing is left of the query.
+	 */
+	private static String normalizeQuery(String query)
+	{
+		if(query == null || query.length() == 0)
+		{
+			return null;
+		}
+
+		List<String> parameters = new ArrayList<String>();
+		for(String parameter: query.split("&"))
+		{
+			if(parameter.length() > 0)
+			{
+				parameters.add(normalizeEscapes(parameter));
+			}
+		}
+
+		if(parameters.isEmpty())
+		{
+			return null;
+		}
+
+		String[] sortedParameters = parameters.toArray(new String[parameters.size()]);
+
+		// Arrays.sort is stable for objects, so "a=2&a=1" keeps its order
+		Arrays.sort(sortedParameters, new Comparator<String>()
+		{
+			public int compare(String first, String second)
+			{
+				return parameterName(first).compareTo(parameterName(second));
+			}
+		});
+
+		StringBuilder normalizedQuery = new StringBuilder(query.length());
+		for(int i = 0; i < sortedParameters.length; i++)
+		{
+			if(i > 0)
+			{
+				normalizedQuery.append('&');
+			}
+			normalizedQuery.append(sortedParameters[i]);
+		}
+
+		return normalizedQuery.toString();
+	}
+
+	private static String parameterName(String parameter)
+	{
+		int separator = parameter.indexOf('=');
+		return separator == -1 ? parameter : parameter.substring(0, separator);
+	}
+
+	/**
+	 * Upper cases the hex digits of every percent-escape and decodes escapes of
+	 * unreserved characters (e.g. "%7e" and "%7E" both become "~").
+	 */
+	private static String normalizeEscapes(String component)
+	{
+		if(component.indexOf('%') == -1)
+		{
+			return component;
+		}
+
+		StringBuilder normalized = new StringBuilder(component.length());
+		for(int i = 0; i < component.length(); i++)
+		{
+			char c = component.charAt(i);
+			if(c == '%' && i + 2 < component.length() && isHexDigit(component.charAt(i + 1)) &&
+			   isHexDigit(component.charAt(i + 2)))
+			{
+				char decoded = (char) Integer.parseInt(component.substring(i + 1, i + 3), 16);
+				if(UNRESERVED_CHARACTERS.indexOf(decoded) != -1)
+				{
+					normalized.append(decoded);
+				}
+				else
+				{
+					normalized.append('%').append(component.substring(i + 1, i + 3).toUpperCase());
+				}
+
+				i += 2;
+			}
+			else
+			{
+				normalized.append(c);
+			}
+		}
+
+		return normalized.toString();
+	}
+
+	private static boolean isHexDigit(char c)
+	{
+		return Character.digit(c, 16) != -1;
+	}
+}
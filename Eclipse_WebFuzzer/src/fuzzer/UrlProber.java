@@ -0,0 +1,446 @@
+package fuzzer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.client.params.HttpClientParams;
+import org.apache.http.client.protocol.ClientContext;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.entity.ContentType;
+import org.apache.http.util.EntityUtils;
+
+import com.gargoylesoftware.htmlunit.util.Cookie;
+
+/**
+ * Checks whether URLs exist by sending HEAD requests over pooled keep-alive
+ * connections, so that probing a long list of URLs on the same site does not
+ * pay for a new TCP (and TLS) handshake per URL. Redirects are not followed
+ * and no cookies are sent or kept. Results are cached for the lifetime of the
+ * prober (i.e. a single run) by the fingerprint of the canonical URL, and each
+ * URL is probed at most once even when several threads ask about it at the
+ * same time. Results learned by other means (e.g. from an earlier run) can be
+ * recorded in the cache as well. Pages can also be fetched over the same
+ * connections for fast discovery, in which case the cookies the page sets are
+ * kept with it.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class UrlProber
+{
+	private static final int TIMEOUT_MILLIS = 60000;
+
+	private final PoolingClientConnectionManager connectionManager;
+	private final DefaultHttpClient httpClient;
+	private final RequestGovernor governor;
+	/*
+	 * Keyed by the fingerprint of the canonical URL. A probe which is still
+	 * running is in the map too, so that other threads wait for its result
+	 * instead of sending the same request.
+	 */
+	private final ConcurrentMap<Long, FutureTask<Boolean>> results;
+
+	/**
+	 * Creates a prober which keeps at most the given number of connections
+	 * open (to any single host as well as in total) and sends every request
+	 * through the given governor.
+	 */
+	public UrlProber(int maxConnections, RequestGovernor governor)
+	{
+		this.governor = governor;
+
+		connectionManager = new PoolingClientConnectionManager();
+		connectionManager.setMaxTotal(Math.max(1, maxConnections));
+		connectionManager.setDefaultMaxPerRoute(Math.max(1, maxConnections));
+
+		httpClient = new DefaultHttpClient(connectionManager);
+		HttpParams params = httpClient.getParams();
+		HttpConnectionParams.setConnectionTimeout(params, TIMEOUT_MILLIS);
+		HttpConnectionParams.setSoTimeout(params, TIMEOUT_MILLIS);
+		HttpClientParams.setRedirecting(params, false);
+
+		results = new ConcurrentHashMap<Long, FutureTask<Boolean>>();
+	}
+
+	/**
+	 * Returns true if a HEAD request for the given URL is answered with a
+	 * 200 (OK) status. Any failure to make the request counts as the URL not
+	 * existing. No request is made if the result is already known, and if
+	 * another thread is probing the URL its result is waited for.
+	 */
+	public boolean exists(final String url)
+	{
+		String canonicalUrl = UrlCanonicalizer.canonicalize(url);
+		if(canonicalUrl == null)
+		{
+			return false;
+		}
+
+		Long key = Long.valueOf(UrlCanonicalizer.fingerprint(canonicalUrl));
+		FutureTask<Boolean> result = results.get(key);
+		if(result == null)
+		{
+			FutureTask<Boolean> probe = new FutureTask<Boolean>(new Callable<Boolean>()
+			{
+				public Boolean call()
+				{
+					return Boolean.valueOf(probe(url));
+				}
+			});
+
+			result = results.putIfAbsent(key, probe);
+			if(result == null)
+			{
+				result = probe;
+				probe.run();
+			}
+		}
+
+		return getResult(result).booleanValue();
+	}
+
+	/**
+	 * Returns the known result for the given URL, or null if it has not been
+	 * probed (or is still being probed) or recorded.
+	 */
+	public Boolean getCachedResult(String url)
+	{
+		String canonicalUrl = UrlCanonicalizer.canonicalize(url);
+		if(canonicalUrl == null)
+		{
+			return Boolean.FALSE;
+		}
+
+		FutureTask<Boolean> result = results.get(Long.valueOf(UrlCanonicalizer.fingerprint(canonicalUrl)));
+		return result == null || !result.isDone() ? null : getResult(result);
+	}
+
+	/**
+	 * Records whether the given URL exists, as learned from an earlier run.
+	 */
+	public void recordResult(String url, final boolean exists)
+	{
+		String canonicalUrl = UrlCanonicalizer.canonicalize(url);
+		if(canonicalUrl != null)
+		{
+			FutureTask<Boolean> result = new FutureTask<Boolean>(new Callable<Boolean>()
+			{
+				public Boolean call()
+				{
+					return Boolean.valueOf(exists);
+				}
+			});
+
+			result.run();
+			results.put(Long.valueOf(UrlCanonicalizer.fingerprint(canonicalUrl)), result);
+		}
+	}
+
+	/**
+	 * Waits for the given probe to finish. A probe which cannot be waited for
+	 * counts as the URL not existing.
+	 */
+	private static Boolean getResult(FutureTask<Boolean> result)
+	{
+		try
+		{
+			return result.get();
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return Boolean.FALSE;
+		}
+		catch(ExecutionException e)
+		{
+			return Boolean.FALSE;
+		}
+	}
+
+	private boolean probe(String url)
+	{
+		HttpHead request;
+		try
+		{
+			request = new HttpHead(url);
+		}
+		catch(IllegalArgumentException e)
+		{
+			return false;
+		}
+
+		HttpContext context = new BasicHttpContext();
+		context.setAttribute(ClientContext.COOKIE_STORE, new BasicCookieStore());
+
+		RequestGovernor.Permit permit;
+		try
+		{
+			permit = governor.begin(url);
+		}
+		catch(InterruptedIOException e)
+		{
+			return false;
+		}
+
+		long start = ScanMetrics.PAGE_PROBE.start();
+		boolean answered = false;
+		try
+		{
+			HttpResponse response = httpClient.execute(request, context);
+			permit.received(response.getStatusLine().getStatusCode());
+			answered = true;
+
+			// Releases the connection back to the pool (HEAD responses have no
+			// body, but a misbehaving server might send one anyway)
+			EntityUtils.consume(response.getEntity());
+			return response.getStatusLine().getStatusCode() == HttpStatus.SC_OK;
+		}
+		catch(IOException e)
+		{
+			permit.failed();
+			request.abort();
+			return false;
+		}
+		finally
+		{
+			ScanMetrics.PAGE_PROBE.stop(start, answered);
+			permit.release();
+		}
+	}
+
+	/**
+	 * Fetches the page at the given URL with a GET request and streams it
+	 * through a StreamingHtmlExtractor, provided that it exists (i.e. is an
+	 * HTML page which is served with a 200 status without any redirects).
+	 * Returns null if it does not. If the page needs rendering then its
+	 * content is kept with it, so that it can be rendered without being
+	 * fetched again.
+	 */
+	public ExtractedPage fetchPage(String url)
+		throws IOException
+	{
+		HttpGet request;
+		try
+		{
+			request = new HttpGet(url);
+		}
+		catch(IllegalArgumentException e)
+		{
+			return null;
+		}
+
+		BasicCookieStore cookieStore = new BasicCookieStore();
+		HttpContext context = new BasicHttpContext();
+		context.setAttribute(ClientContext.COOKIE_STORE, cookieStore);
+
+		RequestGovernor.Permit permit = governor.begin(url);
+		long start = ScanMetrics.PAGE_FETCH.start();
+		boolean fetched = false;
+		try
+		{
+			HttpResponse response = httpClient.execute(request, context);
+			permit.received(response.getStatusLine().getStatusCode());
+
+			HttpEntity entity = response.getEntity();
+			try
+			{
+				ExtractedPage page = null;
+				ContentType contentType = getContentType(entity);
+				if(response.getStatusLine().getStatusCode() == HttpStatus.SC_OK && entity != null && 
+				   isHtml(contentType))
+				{
+					Charset charset = contentType == null ? null : contentType.getCharset();
+					RecordingInputStream content = new RecordingInputStream(entity.getContent());
+					page = StreamingHtmlExtractor.extract(content, charset == null ? null : charset.name(), 
+							new URL(url), toCookies(cookieStore));
+					
+					if(page.needsRendering())
+					{
+						Header contentTypeHeader = entity.getContentType();
+						page = page.withContent(content.readAll(), 
+								contentTypeHeader == null ? null : contentTypeHeader.getValue());
+					}
+				}
+
+				fetched = true;
+				return page;
+			}
+			finally
+			{
+				// Releases the connection back to the pool
+				EntityUtils.consume(entity);
+			}
+		}
+		catch(IOException e)
+		{
+			permit.failed();
+			request.abort();
+			throw e;
+		}
+		finally
+		{
+			ScanMetrics.PAGE_FETCH.stop(start, fetched);
+			permit.release();
+		}
+	}
+
+	/**
+	 * Returns the content type of the given entity, or null if it has none or
+	 * names a charset this JVM does not support.
+	 */
+	private static ContentType getContentType(HttpEntity entity)
+	{
+		try
+		{
+			return entity == null ? null : ContentType.get(entity);
+		}
+		catch(RuntimeException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Returns true if a response with the given content type would be loaded
+	 * as an HTML page by HtmlUnit (a response without one is sniffed there,
+	 * and is assumed to be HTML here).
+	 */
+	private static boolean isHtml(ContentType contentType)
+	{
+		if(contentType == null)
+		{
+			return true;
+		}
+
+		String mimeType = contentType.getMimeType();
+		return mimeType.equalsIgnoreCase("text/html") || mimeType.equalsIgnoreCase("application/xhtml+xml");
+	}
+
+	private static List<Cookie> toCookies(BasicCookieStore cookieStore)
+	{
+		List<Cookie> cookies = new ArrayList<Cookie>();
+		for(org.apache.http.cookie.Cookie cookie: cookieStore.getCookies())
+		{
+			cookies.add(new Cookie(cookie.getDomain(), cookie.getName(), cookie.getValue(), cookie.getPath(),
+					cookie.getExpiryDate(), cookie.isSecure(), false));
+		}
+
+		return cookies;
+	}
+
+	/**
+	 * Keeps a copy of everything read through it.
+	 */
+	private static class RecordingInputStream extends FilterInputStream
+	{
+		private final ByteArrayOutputStream recorded;
+		private boolean closed;
+
+		public RecordingInputStream(InputStream in)
+		{
+			super(in);
+			this.recorded = new ByteArrayOutputStream();
+			this.closed = false;
+		}
+
+		@Override
+		public int read()
+			throws IOException
+		{
+			int b = super.read();
+			if(b != -1)
+			{
+				recorded.write(b);
+			}
+
+			return b;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length)
+			throws IOException
+		{
+			int count = super.read(buffer, offset, length);
+			if(count > 0)
+			{
+				recorded.write(buffer, offset, count);
+			}
+
+			return count;
+		}
+
+		@Override
+		public long skip(long count)
+			throws IOException
+		{
+			// Skipped bytes are read so that they are recorded too
+			byte[] buffer = new byte[(int) Math.min(count, 8192)];
+			int read = read(buffer, 0, buffer.length);
+			return Math.max(0, read);
+		}
+
+		@Override
+		public boolean markSupported()
+		{
+			return false;
+		}
+
+		@Override
+		public void close()
+			throws IOException
+		{
+			closed = true;
+			super.close();
+		}
+
+		/**
+		 * Reads whatever is left of the stream (unless whoever read it closed
+		 * it, having read it to the end) and returns everything which was read
+		 * through it.
+		 */
+		public byte[] readAll()
+			throws IOException
+		{
+			byte[] buffer = new byte[8192];
+			while(!closed && read(buffer, 0, buffer.length) != -1)
+			{
+				// Records the rest of the stream
+			}
+
+			return recorded.toByteArray();
+		}
+	}
+
+	/**
+	 * Closes every pooled connection.
+	 */
+	public void close()
+	{
+		connectionManager.shutdown();
+	}
+}
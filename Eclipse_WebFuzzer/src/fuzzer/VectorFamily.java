@@ -0,0 +1,54 @@
+package fuzzer;
+
+import java.util.regex.Pattern;
+
+/**
+ * The kind of injection a fuzz vector attempts, as far as can be told from
+ * the vector itself. Vectors of the same family tend to succeed (or fail)
+ * against the same inputs, so what is learned from one is applied to the
+ * rest of its family.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public enum VectorFamily
+{
+	CROSS_SITE_SCRIPTING(
+			"<\\s*/?\\s*[a-z!]|javascript:|\\bon[a-z]+\\s*=|alert\\s*\\(|%3c"),
+	SQL_INJECTION(
+			"['\"`]\\s*(or|and|union|having|order|group|;|--|#|\\))|\\bunion\\b.*\\bselect\\b|" +
+			"\\b(sleep|benchmark|pg_sleep)\\s*\\(|waitfor\\s+delay|;\\s*(drop|delete|insert|update|select|shutdown)\\b|" +
+			"\\d+\\s*=\\s*\\d+|--\\s*$|/\\*"),
+	PATH_TRAVERSAL(
+			"\\.\\.[/\\\\]|%2e%2e|/etc/passwd|\\bboot\\.ini\\b|c:\\\\windows|file:"),
+	COMMAND_INJECTION(
+			"(;|\\||&&|`|\\$\\()\\s*(ls|cat|id|whoami|uname|ping|echo|sleep|dir|type|nc|curl|wget)\\b"),
+	FORMAT_STRING(
+			"(%[0-9]*[nsxdp]){2,}"),
+	OTHER(null);
+
+	private final Pattern pattern;
+
+	private VectorFamily(String regex)
+	{
+		this.pattern = regex == null ? null : Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
+	}
+
+	/**
+	 * Returns the family of the given vector: the first of the families above
+	 * whose signature it contains, or OTHER if it contains none of them.
+	 */
+	public static VectorFamily of(String vector)
+	{
+		for(VectorFamily family: values())
+		{
+			if(family.pattern != null && family.pattern.matcher(vector).find())
+			{
+				return family;
+			}
+		}
+
+		return OTHER;
+	}
+}
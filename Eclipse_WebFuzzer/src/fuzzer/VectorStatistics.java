@@ -0,0 +1,365 @@
+package fuzzer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * How often each fuzz vector has been tried, and how often it led to a
+ * finding or a response anomaly, across this and earlier scans. Vectors are
+ * told apart by the kind of check made on their responses as well as by
+ * their text, since a sanitization input and a fuzz vector with the same text
+ * are looking for different things. The same counts summed over each vector
+ * family (see VectorFamily) stand in for vectors which have little history.
+ *
+ * Statistics are kept in a JSON Lines file with one record per vector. When
+ * they are saved the file is read again and only what this scan learned is
+ * added to it, so scans which share the file (e.g. several configuration files
+ * run side by side) do not overwrite each other's counts.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class VectorStatistics
+{
+	private static final String CHARSET = "UTF-8";
+
+	/*
+	 * How many tries of its own a vector needs before its history counts for
+	 * as much as its family's.
+	 */
+	private static final double FAMILY_WEIGHT = 5;
+
+	/*
+	 * An anomaly is weaker evidence than a finding that a vector works.
+	 */
+	private static final double ANOMALY_WEIGHT = 0.5;
+
+	/*
+	 * Held while the statistics file is read and rewritten, since scans in
+	 * this process may share it.
+	 */
+	private static final Object FILE_LOCK = new Object();
+
+	/*
+	 * Guarded by this object. The counts learned in this scan are kept apart
+	 * from the totals so that they alone are added to the file.
+	 */
+	private final Map<String, Counts> vectorTotals;
+	private final Map<String, Counts> familyTotals;
+	private final Map<String, Counts> learnedCounts;
+
+	public VectorStatistics()
+	{
+		this.vectorTotals = new LinkedHashMap<String, Counts>();
+		this.familyTotals = new LinkedHashMap<String, Counts>();
+		this.learnedCounts = new LinkedHashMap<String, Counts>();
+	}
+
+	/**
+	 * Returns the statistics saved in the given file, or empty statistics if
+	 * the file does not exist yet.
+	 */
+	public static VectorStatistics load(File file)
+		throws IOException
+	{
+		VectorStatistics statistics = new VectorStatistics();
+		synchronized(FILE_LOCK)
+		{
+			for(Map<String, Object> record: readRecords(file))
+			{
+				statistics.add(record, false);
+			}
+		}
+
+		return statistics;
+	}
+
+	/**
+	 * Adds what was learned in this scan (since the statistics were loaded,
+	 * or since they were last saved) to the counts in the given file.
+	 */
+	public void save(File file)
+		throws IOException
+	{
+		synchronized(FILE_LOCK)
+		{
+			Map<String, Counts> counts = new LinkedHashMap<String, Counts>();
+			for(Map<String, Object> record: readRecords(file))
+			{
+				addCounts(counts, vectorKey(record), Counts.fromRecord(record));
+			}
+
+			List<Map<String, Object>> learned = getLearnedRecords(true);
+			for(Map<String, Object> record: learned)
+			{
+				addCounts(counts, vectorKey(record), Counts.fromRecord(record));
+			}
+
+			File temporaryFile = new File(file.getPath() + ".tmp");
+			Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temporaryFile), CHARSET));
+			try
+			{
+				for(Map<String, Object> record: toRecords(counts))
+				{
+					writer.write(Json.toJson(record));
+					writer.write('\n');
+				}
+			}
+			finally
+			{
+				writer.close();
+			}
+
+			if(!temporaryFile.renameTo(file))
+			{
+				// Windows will not rename over an existing file
+				file.delete();
+				if(!temporaryFile.renameTo(file))
+				{
+					// The learned counts are kept to be saved again
+					restoreLearnedRecords(learned);
+					throw new IOException("Unable to replace " + file);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Records the outcome of trying the given vector, whose family is already
+	 * known, once.
+	 */
+	public synchronized void record(FuzzTask.Kind kind, String vector, VectorFamily family,
+			boolean finding, boolean anomaly)
+	{
+		Counts counts = new Counts(1, finding ? 1 : 0, anomaly ? 1 : 0);
+		String key = vectorKey(kind, vector);
+		addCounts(vectorTotals, key, counts);
+		addCounts(familyTotals, familyKey(kind, family), counts);
+		addCounts(learnedCounts, key, counts);
+	}
+
+	/**
+	 * Returns how likely the given vector, whose family is already known, is
+	 * to lead to something worth reporting, between 0 and 1. A vector's own
+	 * history is weighed against its family's, and counts for more the more
+	 * often it has been tried. Vectors of which nothing is known all score
+	 * the same.
+	 */
+	public synchronized double score(FuzzTask.Kind kind, String vector, VectorFamily family)
+	{
+		double familyRate = yieldOf(familyTotals.get(familyKey(kind, family)));
+		Counts vectorCounts = vectorTotals.get(vectorKey(kind, vector));
+		if(vectorCounts == null)
+		{
+			return familyRate;
+		}
+
+		return (vectorCounts.attempts * yieldOf(vectorCounts) + FAMILY_WEIGHT * familyRate) /
+				(vectorCounts.attempts + FAMILY_WEIGHT);
+	}
+
+	/**
+	 * Returns all of the counts as records like those in the statistics file.
+	 */
+	public synchronized List<Map<String, Object>> toRecords()
+	{
+		return toRecords(vectorTotals);
+	}
+
+	/**
+	 * Returns the counts learned in this scan as records like those in the
+	 * statistics file, and forgets them if clear is true.
+	 */
+	public synchronized List<Map<String, Object>> getLearnedRecords(boolean clear)
+	{
+		List<Map<String, Object>> records = toRecords(learnedCounts);
+		if(clear)
+		{
+			learnedCounts.clear();
+		}
+
+		return records;
+	}
+
+	/**
+	 * Adds the given records (as returned by getLearnedRecords(), e.g. by
+	 * another process running part of the same scan) to these statistics. If
+	 * learned is true they are saved with what this scan learned.
+	 */
+	public synchronized void addRecords(List<Map<String, Object>> records, boolean learned)
+	{
+		for(Map<String, Object> record: records)
+		{
+			add(record, learned);
+		}
+	}
+
+	private synchronized void restoreLearnedRecords(List<Map<String, Object>> records)
+	{
+		for(Map<String, Object> record: records)
+		{
+			addCounts(learnedCounts, vectorKey(record), Counts.fromRecord(record));
+		}
+	}
+
+	private synchronized void add(Map<String, Object> record, boolean learned)
+	{
+		Counts counts = Counts.fromRecord(record);
+		String key = vectorKey(record);
+		addCounts(vectorTotals, key, counts);
+		addCounts(familyTotals, familyKey(FuzzTask.Kind.valueOf((String) record.get("kind")),
+				VectorFamily.of((String) record.get("vector"))), counts);
+
+		if(learned)
+		{
+			addCounts(learnedCounts, key, counts);
+		}
+	}
+
+	/**
+	 * Returns the rate at which the given counts led to findings (with
+	 * anomalies counted for less), smoothed so that untried vectors and
+	 * families start out at an even chance.
+	 */
+	private static double yieldOf(Counts counts)
+	{
+		if(counts == null)
+		{
+			return 0.5;
+		}
+
+		double hits = Math.min(counts.attempts, counts.findings + ANOMALY_WEIGHT * counts.anomalies);
+		return (hits + 1) / (counts.attempts + 2.0);
+	}
+
+	private static void addCounts(Map<String, Counts> countsByKey, String key, Counts counts)
+	{
+		Counts total = countsByKey.get(key);
+		if(total == null)
+		{
+			total = new Counts(0, 0, 0);
+			countsByKey.put(key, total);
+		}
+
+		total.attempts += counts.attempts;
+		total.findings += counts.findings;
+		total.anomalies += counts.anomalies;
+	}
+
+	private static List<Map<String, Object>> toRecords(Map<String, Counts> countsByKey)
+	{
+		List<Map<String, Object>> records = new ArrayList<Map<String, Object>>(countsByKey.size());
+		for(Map.Entry<String, Counts> entry: countsByKey.entrySet())
+		{
+			int separator = entry.getKey().indexOf(':');
+			records.add(entry.getValue().toRecord(entry.getKey().substring(0, separator),
+					entry.getKey().substring(separator + 1)));
+		}
+
+		return records;
+	}
+
+	private static List<Map<String, Object>> readRecords(File file)
+		throws IOException
+	{
+		List<Map<String, Object>> records = new ArrayList<Map<String, Object>>();
+		if(!file.exists())
+		{
+			return records;
+		}
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), CHARSET));
+		try
+		{
+			String line;
+			while((line = reader.readLine()) != null)
+			{
+				if(line.trim().length() == 0)
+				{
+					continue;
+				}
+
+				try
+				{
+					Map<String, Object> record = Json.parseObject(line);
+					FuzzTask.Kind.valueOf((String) record.get("kind"));
+					Counts.fromRecord(record);
+					records.add(record);
+				}
+				catch(RuntimeException e)
+				{
+					System.out.println("Skipping malformed vector statistics in " + file + ": " + line);
+				}
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+
+		return records;
+	}
+
+	private static String vectorKey(FuzzTask.Kind kind, String vector)
+	{
+		return kind.name() + ":" + vector;
+	}
+
+	private static String vectorKey(Map<String, Object> record)
+	{
+		return record.get("kind") + ":" + record.get("vector");
+	}
+
+	private static String familyKey(FuzzTask.Kind kind, VectorFamily family)
+	{
+		return kind.name() + ":" + family.name();
+	}
+
+	/**
+	 * The number of times a vector (or family) has been tried, and the number
+	 * of those which led to a finding and to a response anomaly.
+	 */
+	private static class Counts
+	{
+		private long attempts;
+		private long findings;
+		private long anomalies;
+
+		public Counts(long attempts, long findings, long anomalies)
+		{
+			this.attempts = attempts;
+			this.findings = findings;
+			this.anomalies = anomalies;
+		}
+
+		public Map<String, Object> toRecord(String kind, String vector)
+		{
+			Map<String, Object> record = new LinkedHashMap<String, Object>();
+			record.put("kind", kind);
+			record.put("vector", vector);
+			record.put("attempts", attempts);
+			record.put("findings", findings);
+			record.put("anomalies", anomalies);
+			return record;
+		}
+
+		public static Counts fromRecord(Map<String, Object> record)
+		{
+			return new Counts(((Number) record.get("attempts")).longValue(),
+					((Number) record.get("findings")).longValue(),
+					((Number) record.get("anomalies")).longValue());
+		}
+	}
+}
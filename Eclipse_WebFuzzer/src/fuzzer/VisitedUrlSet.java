@@ -0,0 +1,26 @@
+package fuzzer;
+
+/**
+ * Thread-safe record of the (canonical) URLs which have been claimed by a
+ * crawl. Implementations only store compact fingerprints of the URLs rather
+ * than the URLs themselves.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public interface VisitedUrlSet
+{
+	/**
+	 * Records the given canonical URL. Returns true if it had not already been
+	 * recorded.
+	 */
+	boolean add(String canonicalUrl);
+
+	boolean contains(String canonicalUrl);
+
+	/**
+	 * Returns the number of URLs which have been recorded.
+	 */
+	long size();
+}
@@ -0,0 +1,145 @@
+package fuzzer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import com.gargoylesoftware.htmlunit.WebClient;
+
+/**
+ * A bounded pool of preconfigured WebClients. Clients are created lazily, up
+ * to the maximum pool size, and are leased out for the duration of a single
+ * fetch (or a short sequence of related requests such as an authentication
+ * attempt) and then released back into the pool. Cookies are cleared when a
+ * client is released so that no session state leaks between leases. Every
+ * request made by a pooled client goes through the pool's RequestGovernor.
+ * All of the clients created by the pool are closed when the pool is closed.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class WebClientPool
+{
+	private final int maxSize;
+	private final RequestGovernor governor;
+	private final BlockingQueue<WebClient> idleClients;
+	private final List<WebClient> allClients;
+	private volatile boolean closed;
+
+	public WebClientPool(int maxSize, RequestGovernor governor)
+	{
+		this.maxSize = Math.max(1, maxSize);
+		this.governor = governor;
+		this.idleClients = new LinkedBlockingQueue<WebClient>();
+		this.allClients = new ArrayList<WebClient>();
+		this.closed = false;
+	}
+
+	/**
+	 * Leases a client from the pool, creating a new one if the pool has not
+	 * yet reached its maximum size and otherwise blocking until a client is
+	 * released.
+	 */
+	public WebClient lease()
+		throws IOException
+	{
+		if(closed)
+		{
+			throw new IOException("The WebClient pool has been closed");
+		}
+
+		WebClient client = idleClients.poll();
+		if(client != null)
+		{
+			return client;
+		}
+
+		synchronized(allClients)
+		{
+			if(allClients.size() < maxSize)
+			{
+				client = createClient();
+				allClients.add(client);
+				return client;
+			}
+		}
+
+		try
+		{
+			return idleClients.take();
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for a WebClient", e);
+		}
+	}
+
+	/**
+	 * Returns a previously leased client to the pool.
+	 */
+	public void release(WebClient client)
+	{
+		if(client == null)
+		{
+			return;
+		}
+
+		client.getCookieManager().clearCookies();
+
+		if(closed)
+		{
+			client.closeAllWindows();
+		}
+		else
+		{
+			idleClients.add(client);
+		}
+	}
+
+	public int getMaxSize()
+	{
+		return maxSize;
+	}
+
+	/**
+	 * Closes every client created by this pool. Clients which are still leased
+	 * out are closed as well, so this should only be called once all of the
+	 * work using the pool has finished.
+	 */
+	public void close()
+	{
+		closed = true;
+		idleClients.clear();
+
+		synchronized(allClients)
+		{
+			for(WebClient client: allClients)
+			{
+				client.closeAllWindows();
+			}
+
+			allClients.clear();
+		}
+	}
+
+	private WebClient createClient()
+	{
+		WebClient client = new WebClient();
+
+		// Stylesheets are never needed for attack surface discovery or
+		// fuzzing, so they are not downloaded or parsed
+		client.getOptions().setCssEnabled(false);
+		client.getOptions().setPrintContentOnFailingStatusCode(false);
+
+		// A reflected script payload is exactly what the fuzzer is looking
+		// for, so broken scripts on a page must not abort loading it
+		client.getOptions().setThrowExceptionOnScriptError(false);
+		
+		new GovernedWebConnection(client, governor);
+		return client;
+	}
+}
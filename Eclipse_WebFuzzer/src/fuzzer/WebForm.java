@@ -100,7 +100,19 @@ public class WebForm
 		{
 			usernameField.setValueAttribute(username);
 			passwordField.setValueAttribute(password);
-			return submitField.click();
+			
+			long start = ScanMetrics.AUTHENTICATION.start();
+			boolean submitted = false;
+			try
+			{
+				Page result = submitField.click();
+				submitted = true;
+				return result;
+			}
+			finally
+			{
+				ScanMetrics.AUTHENTICATION.stop(start, submitted);
+			}
 		}
 		
 		return null;
@@ -1,21 +1,27 @@
 package fuzzer;
 
 import java.io.IOException;
-import java.io.PrintStream;
+import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
-import com.gargoylesoftware.htmlunit.CookieManager;
 import com.gargoylesoftware.htmlunit.FailingHttpStatusCodeException;
+import com.gargoylesoftware.htmlunit.HttpMethod;
 import com.gargoylesoftware.htmlunit.Page;
 import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.WebClientOptions;
+import com.gargoylesoftware.htmlunit.WebResponse;
+import com.gargoylesoftware.htmlunit.WebResponseData;
 import com.gargoylesoftware.htmlunit.html.DomAttr;
 import com.gargoylesoftware.htmlunit.html.DomElement;
 import com.gargoylesoftware.htmlunit.html.HtmlPage;
 import com.gargoylesoftware.htmlunit.util.Cookie;
+import com.gargoylesoftware.htmlunit.util.NameValuePair;
 
 /**
  * Provides an interface for managing and interacting with vulnerability
@@ -28,7 +34,8 @@ import com.gargoylesoftware.htmlunit.util.Cookie;
 public class WebPage
 {
 	private WebClient client;
-	private CookieManager cookieMgmt;
+	private WebClientPool clientPool;
+	private Set<Cookie> cookies;
 	private HtmlPage page;
 	private URL url;
 	private List<WebForm> webForms;
@@ -36,44 +43,33 @@ public class WebPage
 	private boolean authenticationRequired;
 	
 	/**
-	 * Private constructor for creating a WebPage for the page at the given URL. 
+	 * Private constructor for creating a WebPage for the page at the given URL
+	 * using a client which has been leased from the given pool. 
 	 */
-	private WebPage(String pageUrl) 
+	private WebPage(String pageUrl, WebClient client, WebClientPool clientPool) 
 		throws FailingHttpStatusCodeException, MalformedURLException, IOException
 	{
-		this.client = new WebClient();
-		this.cookieMgmt = client.getCookieManager();
-		this.page = client.getPage(pageUrl);
-		this.url = new URL(pageUrl);
-				
-		this.webForms = WebForm.toWebForms(page.getElementsByTagName("form"));
-		this.formsWithAuthentication = new ArrayList<WebForm>();
-		
-		// Authentication is considered to be required if any form on this web 
-		// page contains at least one password input field.
-		this.authenticationRequired = false;
-		
-		for(WebForm form: webForms)
-		{
-			if(form.requiresAuthentication())
-			{
-				this.authenticationRequired = true;
-				formsWithAuthentication.add(form);
-			}
-		}
+		this((HtmlPage) client.getPage(pageUrl), new URL(pageUrl), client, clientPool);
 	}
 	
 	/**
-	 * Public constructor for creating a WebPage from an HtmlPage.
+	 * Public constructor for creating a WebPage from an HtmlPage. The page 
+	 * shares the client which loaded the given HtmlPage and does not release
+	 * it when it is shut down.
 	 */
 	public WebPage(HtmlPage page) 
 		throws FailingHttpStatusCodeException, MalformedURLException, IOException
 	{
-		this.client = new WebClient();
-		this.cookieMgmt = client.getCookieManager();
+		this(page, page.getUrl(), page.getWebClient(), null);
+	}
+	
+	private WebPage(HtmlPage page, URL url, WebClient client, WebClientPool clientPool)
+	{
+		this.client = client;
+		this.clientPool = clientPool;
 		this.page = page;
-		this.url = page.getUrl();
-		
+		this.url = url;
+				
 		this.webForms = WebForm.toWebForms(page.getElementsByTagName("form"));
 		this.formsWithAuthentication = new ArrayList<WebForm>();
 		
@@ -91,9 +87,18 @@ public class WebPage
 		}
 	}
 
-	public CookieManager getCookieMgmt()
+	/**
+	 * Returns the cookies which were set while this page was being discovered
+	 * (the cookies are captured when the page is shut down).
+	 */
+	public Set<Cookie> getCookies()
 	{
-		return cookieMgmt;
+		if(cookies == null && client != null)
+		{
+			return client.getCookieManager().getCookies();
+		}
+		
+		return cookies;
 	}
 
 	public HtmlPage getPage()
@@ -132,65 +137,201 @@ public class WebPage
 		return null;
 	}
 	
+	/**
+	 * Captures the cookies set while discovering this page and then releases
+	 * the client which loaded it back to the pool it was leased from. The page
+	 * itself remains usable afterward.
+	 */
 	public void shutdown()
 	{
-		client.closeAllWindows();
+		if(client == null)
+		{
+			return;
+		}
+		
+		cookies = new HashSet<Cookie>(client.getCookieManager().getCookies());
+		
+		if(clientPool != null)
+		{
+			clientPool.release(client);
+			clientPool = null;
+		}
+		
 		client = null;
 	}
 	
-	@Override
-	public void finalize()
+	/**
+	 * Distills this page into a compact, immutable attack surface record which
+	 * holds no references to the page's DOM or client.
+	 */
+	public PageSurface toSurface()
 	{
-		shutdown();
+		List<FormSurface> forms = new ArrayList<FormSurface>();
+		
+		for(int i = 0; i < webForms.size(); i++)
+		{
+			WebForm form = webForms.get(i);
+			List<InputSurface> inputs = new ArrayList<InputSurface>();
+			
+			for(DomElement e: form.getInputs())
+			{
+				inputs.add(new InputSurface(getAttribute(e, "name"), getAttribute(e, "id"), 
+						getAttribute(e, "type"), e.asXml()));
+			}
+			
+			forms.add(new FormSurface(i, getAttribute(form.getForm(), "id"), 
+					getAttribute(form.getForm(), "action"), getAttribute(form.getForm(), "method"),
+					form.getSubmitField() != null, form.requiresAuthentication(), inputs, 
+					RequestTemplate.compile(form)));
+		}
+		
+		return new PageSurface(url.toString(), url.getQuery(), forms, 
+				new ArrayList<Cookie>(getCookies()));
 	}
 	
-	public void writeReport(PrintStream outputStream)
+	/**
+	 * Returns the value of the given attribute, or null if the element does not
+	 * have that attribute.
+	 */
+	private static String getAttribute(DomElement element, String name)
 	{
-		for(WebForm form: webForms)
+		DomAttr attrNode = element.getAttributeNode(name);
+		return attrNode == null ? null : attrNode.getValue();
+	}
+
+	/**
+	 * Loads the page at the given URL using a client leased from the given pool.
+	 * The client stays leased to the returned page until it is shut down. 
+	 */
+	public static WebPage performDiscoveryOnPage(String url, WebClientPool clientPool) 
+		throws FailingHttpStatusCodeException, MalformedURLException, IOException
+	{
+		WebClient client = clientPool.lease();
+		
+		try
 		{
-			DomAttr formAttrNode = form.getForm().getAttributeNode("id");
+			return new WebPage(url, client, clientPool);
+		}
+		catch(IOException e)
+		{
+			clientPool.release(client);
+			throw e;
+		}
+		catch(RuntimeException e)
+		{
+			clientPool.release(client);
+			throw e;
+		}
+	}
+	
+	/**
+	 * Loads the page at the given URL using a client leased from the given
+	 * pool, provided that it exists (i.e. is an HTML page which is served with
+	 * a 200 status without any redirects). This makes a single GET request
+	 * rather than checking for the page with a HEAD request first. Returns
+	 * null, without keeping the client leased, if the page does not exist.
+	 */
+	public static WebPage performDiscoveryOnPageIfExists(String url, WebClientPool clientPool) 
+		throws FailingHttpStatusCodeException, MalformedURLException, IOException
+	{
+		WebClient client = clientPool.lease();
+		
+		try
+		{
+			WebClientOptions options = client.getOptions();
+			boolean redirectEnabled = options.isRedirectEnabled();
+			boolean throwExceptionOnFailingStatusCode = options.isThrowExceptionOnFailingStatusCode();
+			Page page;
 			
-			if(formAttrNode == null)
+			options.setRedirectEnabled(false);
+			options.setThrowExceptionOnFailingStatusCode(false);
+			long start = ScanMetrics.PAGE_FETCH.start();
+			boolean fetched = false;
+			try
 			{
-				outputStream.println("Inputs for an id-less form\n");
+				page = client.getPage(url);
+				fetched = true;
 			}
-			else
+			finally
 			{
-				outputStream.println("Inputs for form id: " + formAttrNode.getValue() + "\n");
+				ScanMetrics.PAGE_FETCH.stop(start, fetched);
+				
+				// Later requests on this page (i.e. authentication attempts)
+				// must behave the same way that they would in a browser
+				options.setRedirectEnabled(redirectEnabled);
+				options.setThrowExceptionOnFailingStatusCode(throwExceptionOnFailingStatusCode);
 			}
 			
-			for(DomElement e: form.getInputs())
+			if(page.getWebResponse().getStatusCode() != HttpURLConnection.HTTP_OK ||
+			   !(page instanceof HtmlPage))
 			{
-				DomAttr attrNode = e.getAttributeNode("id");
-				
-				if(attrNode == null)
-				{
-					outputStream.println("id-less input: " + e.asXml());
-				}
-				else
-				{
-					outputStream.println("input id: " + attrNode.getValue() + " => " + e.asXml());
-				}
+				clientPool.release(client);
+				return null;
 			}
+			
+			return new WebPage((HtmlPage) page, new URL(url), client, clientPool);
 		}
-		
-		// New line for formatting
-		outputStream.println("");
-		
-		//Prints Query parameter in URL
-		outputStream.println("Url Query: " + url.getQuery() + "\n");
-		
-		Set<Cookie> cookies = cookieMgmt.getCookies();
-		for(Cookie c: cookies)
+		catch(IOException e)
+		{
+			clientPool.release(client);
+			throw e;
+		}
+		catch(RuntimeException e)
 		{
-			outputStream.println(c.toString());
-		}		
+			clientPool.release(client);
+			throw e;
+		}
 	}
-
-	public static WebPage performDiscoveryOnPage(String url) 
+	
+	/**
+	 * Renders the page at the given URL from content which has already been
+	 * fetched (with a 200 status) instead of fetching it again, using a client
+	 * leased from the given pool. The given cookies, which the response set, 
+	 * are put in the client first so that the page's scripts and forms see 
+	 * them. Returns null, without keeping the client leased, if the content
+	 * is not an HTML page.
+	 */
+	public static WebPage performDiscoveryOnContent(String url, byte[] content, String contentType, 
+			Collection<Cookie> cookies, WebClientPool clientPool) 
 		throws FailingHttpStatusCodeException, MalformedURLException, IOException
 	{
-		WebPage webPage = new WebPage(url);
-		return webPage;
+		WebClient client = clientPool.lease();
+		
+		try
+		{
+			for(Cookie cookie: cookies)
+			{
+				client.getCookieManager().addCookie(cookie);
+			}
+			
+			List<NameValuePair> headers = new ArrayList<NameValuePair>();
+			if(contentType != null)
+			{
+				headers.add(new NameValuePair("Content-Type", contentType));
+			}
+			
+			URL pageUrl = new URL(url);
+			WebResponse response = new WebResponse(new WebResponseData(content, HttpURLConnection.HTTP_OK, 
+					"OK", headers), pageUrl, HttpMethod.GET, 0);
+			Page page = client.loadWebResponseInto(response, client.getCurrentWindow());
+			
+			if(!(page instanceof HtmlPage))
+			{
+				clientPool.release(client);
+				return null;
+			}
+			
+			return new WebPage((HtmlPage) page, pageUrl, client, clientPool);
+		}
+		catch(IOException e)
+		{
+			clientPool.release(client);
+			throw e;
+		}
+		catch(RuntimeException e)
+		{
+			clientPool.release(client);
+			throw e;
+		}
 	}
 }
@@ -0,0 +1,380 @@
+package fuzzer;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.gargoylesoftware.htmlunit.StringWebResponse;
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.html.HTMLParser;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+
+/**
+ * Generates the inputs used by the benchmarks: pages, configuration and data
+ * files, response bodies, URLs and findings. Every generator is driven by a
+ * fixed seed, so each run of a benchmark (on any commit) measures exactly the
+ * same work and the results can be compared directly.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class BenchmarkFixtures
+{
+	public static final long SEED = 20130128L;
+	public static final String SITE_URL = "http://bench.example.com/app/";
+
+	private static final String[] WORDS = {
+		"account", "balance", "catalog", "checkout", "customer", "delivery", "details", "email",
+		"history", "invoice", "login", "message", "order", "product", "profile", "search",
+		"settings", "shipping", "status", "support", "the", "and", "your", "for", "with", "from"
+	};
+
+	private static final String[] INPUT_TYPES = {
+		"text", "text", "text", "hidden", "checkbox", "radio", "file", "text"
+	};
+
+	private BenchmarkFixtures()
+	{
+	}
+
+	/**
+	 * Returns a client configured the way the fuzzer's clients are, for
+	 * parsing generated pages.
+	 */
+	public static WebClient newClient()
+	{
+		WebClient client = new WebClient();
+		client.getOptions().setJavaScriptEnabled(false);
+		client.getOptions().setCssEnabled(false);
+		return client;
+	}
+
+	/**
+	 * Parses the given HTML as though it had been loaded from the given URL.
+	 */
+	public static HtmlPage parsePage(WebClient client, String html, String url)
+		throws IOException
+	{
+		return HTMLParser.parseHtml(new StringWebResponse(html, new URL(url)), client.getCurrentWindow());
+	}
+
+	/**
+	 * Returns the HTML of a page with the given number of forms, each with the
+	 * given number of inputs (plus a submit button). Every fourth form is a
+	 * login form with a username and a password field.
+	 */
+	public static String page(int pageIndex, int formCount, int inputsPerForm)
+	{
+		Random random = new Random(SEED + pageIndex);
+		StringBuilder html = new StringBuilder();
+
+		html.append("<html><head><title>Page ").append(pageIndex).append("</title></head><body>\n");
+		html.append("<div id=\"nav\">");
+		for(int i = 0; i < 20; i++)
+		{
+			html.append("<a href=\"").append(SITE_URL).append("page").append(random.nextInt(1000))
+				.append(".html\">").append(words(random, 2)).append("</a> ");
+		}
+		html.append("</div>\n");
+
+		for(int form = 0; form < formCount; form++)
+		{
+			html.append("<p>").append(words(random, 40)).append("</p>\n");
+			html.append("<form id=\"form").append(form).append("\" action=\"").append(SITE_URL)
+				.append("submit").append(form).append("\" method=\"").append(form % 2 == 0 ? "post" : "get")
+				.append("\">\n");
+
+			boolean login = form % 4 == 0;
+			if(login)
+			{
+				html.append("<input type=\"text\" name=\"username\" id=\"user").append(form).append("\"/>\n");
+				html.append("<input type=\"password\" name=\"password\"/>\n");
+			}
+
+			for(int input = login ? 2 : 0; input < inputsPerForm; input++)
+			{
+				String type = INPUT_TYPES[random.nextInt(INPUT_TYPES.length)];
+				html.append("<label>").append(words(random, 2)).append("</label>");
+				html.append("<input type=\"").append(type).append("\" name=\"field").append(input)
+					.append("\" id=\"f").append(form).append('_').append(input).append("\" value=\"")
+					.append(WORDS[random.nextInt(WORDS.length)]).append("\"/>\n");
+			}
+
+			html.append("<input type=\"submit\" value=\"Submit\"/>\n</form>\n");
+		}
+
+		html.append("</body></html>\n");
+		return html.toString();
+	}
+
+	/**
+	 * Writes a configuration file which sets every option the fuzzer knows,
+	 * referring to the given data file.
+	 */
+	public static File writeConfiguration(File directory, File dataFile)
+		throws IOException
+	{
+		File file = new File(directory, "bench_config.txt");
+		Writer writer = open(file);
+
+		try
+		{
+			writer.write("app_data_file: " + dataFile.getPath() + "\n");
+			writer.write("username: admin\n");
+			writer.write("password: password\n");
+			writer.write("password_guessing: off\n");
+			writer.write("authentication_success_string: Welcome back to the site\n");
+			writer.write("site_url: " + SITE_URL + "index.html\n");
+			writer.write("base_url: " + SITE_URL + "\n");
+			writer.write("discovery_threads: 4\n");
+			writer.write("client_pool_size: 8\n");
+			writer.write("guessing_concurrency: 16\n");
+			writer.write("password_guessing_threads: 4\n");
+			writer.write("fuzzing_threads: 4\n");
+			writer.write("fuzzing_mode: raw\n");
+			writer.write("visited_set: bloom 1000000\n");
+			writer.write("findings_file: " + new File(directory, "bench.findings.jsonl").getPath() + "\n");
+			writer.write("anomaly_distance: 12\n");
+			writer.write("checkpoint_file: " + new File(directory, "bench.checkpoint.jsonl").getPath() + "\n");
+			writer.write("checkpoint_interval: 5000\n");
+			writer.write("rate_limit: 50 5\n");
+			writer.write("adaptive_concurrency: on\n");
+			writer.write("max_concurrency: 16\n");
+			writer.write("time_gap: 0\n");
+			writer.write("completeness: 100\n");
+		}
+		finally
+		{
+			writer.close();
+		}
+
+		return file;
+	}
+
+	/**
+	 * Writes a data file with the given number of entries in each of its
+	 * sections.
+	 */
+	public static File writeData(File directory, int entriesPerSection)
+		throws IOException
+	{
+		Random random = new Random(SEED);
+		File file = new File(directory, "bench_data.txt");
+		Writer writer = open(file);
+
+		try
+		{
+			String[] sections = {
+				"external fuzz vectors:", "sensitive data:", "password dictionary:",
+				"sanitization checking inputs:", "page guessing:"
+			};
+
+			for(String section: sections)
+			{
+				writer.write(section + "\n");
+				for(int i = 0; i < entriesPerSection; i++)
+				{
+					writer.write(WORDS[random.nextInt(WORDS.length)] + "_" + i + "\n");
+				}
+				writer.write("\n");
+			}
+		}
+		finally
+		{
+			writer.close();
+		}
+
+		return file;
+	}
+
+	/**
+	 * Returns the given number of sensitive data markers, some of which are
+	 * prefixes of one another like real marker lists.
+	 */
+	public static List<String> sensitiveMarkers(int count)
+	{
+		Random random = new Random(SEED);
+		List<String> markers = new ArrayList<String>();
+		String[] seeds = { "password", "passwd", "user", "username", "admin", "sql", "mysql", "version",
+			"secret", "token", "ssn", "credit_card", "api_key", "session" };
+
+		for(int i = 0; i < count; i++)
+		{
+			String marker = seeds[i % seeds.length];
+			markers.add(i < seeds.length ? marker : marker + "_" + WORDS[random.nextInt(WORDS.length)] + i);
+		}
+
+		return markers;
+	}
+
+	/**
+	 * Returns an HTML response body of roughly the given length in which a
+	 * few of the given markers occur, scattered through ordinary text.
+	 */
+	public static String responseBody(int length, List<String> markers)
+	{
+		Random random = new Random(SEED + length);
+		StringBuilder body = new StringBuilder(length + 256);
+
+		body.append("<html><head><title>Results</title></head><body><table>\n");
+		while(body.length() < length)
+		{
+			body.append("<tr><td>").append(words(random, 6)).append("</td><td>")
+				.append(random.nextInt(100000)).append("</td></tr>\n");
+
+			if(random.nextInt(200) == 0)
+			{
+				body.append("<!-- ").append(markers.get(random.nextInt(markers.size()))).append(" -->\n");
+			}
+		}
+		body.append("</table></body></html>\n");
+
+		return body.toString();
+	}
+
+	/**
+	 * Returns the given number of URLs as a crawl would meet them: the same
+	 * pages written differently (case, default ports, reordered query
+	 * parameters, fragments, dot segments and escapes), with many repeats,
+	 * and some links off the site.
+	 */
+	public static List<String> crawledUrls(int count)
+	{
+		Random random = new Random(SEED);
+		List<String> urls = new ArrayList<String>(count);
+		int distinctPages = Math.max(1, count / 4);
+
+		for(int i = 0; i < count; i++)
+		{
+			int page = random.nextInt(distinctPages);
+			switch(random.nextInt(6))
+			{
+				case 0:
+					urls.add(SITE_URL + "page" + page + ".html");
+					break;
+				case 1:
+					urls.add("HTTP://Bench.Example.com:80/app/./page" + page + ".html#top");
+					break;
+				case 2:
+					urls.add(SITE_URL + "search?q=" + page + "&sort=asc&page=" + (page % 7));
+					break;
+				case 3:
+					urls.add(SITE_URL + "search?page=" + (page % 7) + "&q=" + page + "&sort=asc");
+					break;
+				case 4:
+					urls.add(SITE_URL + "dir/../%70age" + page + ".html");
+					break;
+				default:
+					urls.add("http://elsewhere.example.org/page" + page + ".html");
+					break;
+			}
+		}
+
+		return urls;
+	}
+
+	/**
+	 * Writes the given number of findings of every kind to a findings file.
+	 */
+	public static File writeFindings(File directory, int count)
+		throws IOException
+	{
+		Random random = new Random(SEED);
+		File file = new File(directory, "bench_report.findings.jsonl");
+		FindingsSink sink = new FindingsSink(file, false);
+
+		try
+		{
+			for(int i = 0; i < count; i++)
+			{
+				String page = SITE_URL + "page" + random.nextInt(1000) + ".html";
+				String form = "form" + random.nextInt(10);
+				String input = "field" + random.nextInt(10);
+				String payload = "' OR 1=1-- " + i;
+
+				switch(i % 4)
+				{
+					case 0:
+						sink.record(Finding.sensitiveData(page, form, input, payload, "password at offset " + i));
+						break;
+					case 1:
+						sink.record(Finding.unsanitizedInput(page, form, input, payload, "<td>" + payload + "</td>"));
+						break;
+					case 2:
+						sink.record(Finding.responseAnomaly(page, form, input, payload, 12 + random.nextInt(20)));
+						break;
+					default:
+						sink.record(Finding.unlinkedPage(page));
+						break;
+				}
+			}
+		}
+		finally
+		{
+			sink.close();
+		}
+
+		return file;
+	}
+
+	/**
+	 * Creates an empty directory for a benchmark's files.
+	 */
+	public static File createDirectory(String prefix)
+		throws IOException
+	{
+		File directory = File.createTempFile(prefix, "");
+		if(!directory.delete() || !directory.mkdir())
+		{
+			throw new IOException("Unable to create the directory " + directory);
+		}
+
+		return directory;
+	}
+
+	/**
+	 * Deletes the given directory and the files in it.
+	 */
+	public static void deleteDirectory(File directory)
+	{
+		File[] files = directory.listFiles();
+		if(files != null)
+		{
+			for(File file: files)
+			{
+				file.delete();
+			}
+		}
+
+		directory.delete();
+	}
+
+	private static String words(Random random, int count)
+	{
+		StringBuilder words = new StringBuilder();
+		for(int i = 0; i < count; i++)
+		{
+			if(i > 0)
+			{
+				words.append(' ');
+			}
+			words.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+
+		return words.toString();
+	}
+
+	private static Writer open(File file)
+		throws IOException
+	{
+		return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+	}
+}
@@ -0,0 +1,49 @@
+package fuzzer;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and writes the results as JSON, so that the results
+ * recorded for two commits can be compared. The warmup, measurement and fork
+ * settings are the ones declared on each benchmark, which should not be
+ * changed when comparing against results recorded earlier.
+ *
+ * Usage: BenchmarkRunner <results file> [<benchmark name pattern> ...]
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class BenchmarkRunner
+{
+	public static void main(String[] args)
+		throws RunnerException
+	{
+		if(args.length == 0)
+		{
+			System.out.println("Usage: BenchmarkRunner <results file> [<benchmark name pattern> ...]");
+			return;
+		}
+
+		ChainedOptionsBuilder options = new OptionsBuilder()
+			.resultFormat(ResultFormatType.JSON)
+			.result(args[0])
+			.shouldFailOnError(true);
+
+		if(args.length == 1)
+		{
+			options.include(BenchmarkRunner.class.getPackage().getName() + "\\..*Benchmark\\..*");
+		}
+
+		for(int i = 1; i < args.length; i++)
+		{
+			options.include(args[i]);
+		}
+
+		new Runner(options.build()).run();
+	}
+}
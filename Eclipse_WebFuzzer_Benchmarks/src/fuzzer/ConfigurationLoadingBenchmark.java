@@ -0,0 +1,75 @@
+package fuzzer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures parsing configuration and data files. Only the parsing is
+ * measured: checking that the site exists and opening the findings and
+ * checkpoint files (the rest of loadConfigurations) are left out.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class ConfigurationLoadingBenchmark
+{
+	@Param({"100", "10000"})
+	public int entriesPerSection;
+
+	private File directory;
+	private String configurationFileName;
+	private SiteInformationManager manager;
+
+	@Setup
+	public void setUp()
+		throws IOException
+	{
+		directory = BenchmarkFixtures.createDirectory("config-bench");
+		File dataFile = BenchmarkFixtures.writeData(directory, entriesPerSection);
+		configurationFileName = BenchmarkFixtures.writeConfiguration(directory, dataFile).getPath();
+
+		manager = new SiteInformationManager();
+		manager.readConfigurations(configurationFileName);
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		BenchmarkFixtures.deleteDirectory(directory);
+	}
+
+	@Benchmark
+	public FuzzerData readConfigurations()
+		throws IOException
+	{
+		manager.readConfigurations(configurationFileName);
+		return manager.configurations;
+	}
+
+	@Benchmark
+	public boolean loadData()
+	{
+		return manager.loadData();
+	}
+}
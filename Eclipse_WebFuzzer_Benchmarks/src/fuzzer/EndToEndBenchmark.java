@@ -0,0 +1,350 @@
+package fuzzer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Scans a generated target site served from this JVM and reports how fast
+ * discovery and fuzzing ran and how much heap they needed. Nothing leaves
+ * the machine, so the numbers are repeatable without a live DVWA or BodgeIt
+ * install. Discovery and fuzzing are run the way Fuzzer runs them, from a
+ * generated configuration file; the fuzzer's own output is discarded unless
+ * --verbose is given.
+ *
+ * Usage: EndToEndBenchmark [--pages n] [--fan-out n] [--forms n] [--inputs n]
+ *        [--login-pages n] [--latency millis] [--setting "option: value"] ...
+ *        [--verbose]
+ *
+ * Settings are added to the configuration file as given, e.g.
+ * --setting "fuzzing_mode: raw" or --setting "discovery_threads: 16".
+ *
+ * Peak heap is sampled while the scan runs and includes the target site,
+ * which only keeps its request count. The time spent in each phase of the
+ * scan is reported as well.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class EndToEndBenchmark
+{
+	private static final long HEAP_SAMPLE_INTERVAL_MILLIS = 10;
+
+	private static final String[] FUZZ_VECTORS = {
+		"' OR 1=1-- ", "<script>alert(1)</script>", "\"><img src=x>", "../../etc/passwd", "%00"
+	};
+
+	private static final String[] SENSITIVE_DATA = {
+		"mysql", "password", "nuclear_launch_codes"
+	};
+
+	private static final String[] SANITIZATION_INPUTS = {
+		"<b>bold</b>", "'quoted'"
+	};
+
+	private static final String[] PAGE_GUESSES = {
+		"admin.html", "backup.html", "page1.html", "login0.html", "secret.html"
+	};
+
+	public static void main(String[] args)
+		throws Exception
+	{
+		int pageCount = 100;
+		int fanOut = 4;
+		int formsPerPage = 2;
+		int inputsPerForm = 3;
+		int loginPages = 1;
+		long latencyMillis = 0;
+		boolean verbose = false;
+		List<String> settings = new ArrayList<String>();
+
+		for(int i = 0; i < args.length; i++)
+		{
+			String arg = args[i];
+			if(arg.equals("--verbose"))
+			{
+				verbose = true;
+				continue;
+			}
+
+			if(i + 1 >= args.length)
+			{
+				usage();
+				return;
+			}
+
+			String value = args[++i];
+			if(arg.equals("--pages"))
+			{
+				pageCount = Integer.parseInt(value);
+			}
+			else if(arg.equals("--fan-out"))
+			{
+				fanOut = Integer.parseInt(value);
+			}
+			else if(arg.equals("--forms"))
+			{
+				formsPerPage = Integer.parseInt(value);
+			}
+			else if(arg.equals("--inputs"))
+			{
+				inputsPerForm = Integer.parseInt(value);
+			}
+			else if(arg.equals("--login-pages"))
+			{
+				loginPages = Integer.parseInt(value);
+			}
+			else if(arg.equals("--latency"))
+			{
+				latencyMillis = Long.parseLong(value);
+			}
+			else if(arg.equals("--setting"))
+			{
+				settings.add(value);
+			}
+			else
+			{
+				usage();
+				return;
+			}
+		}
+
+		TargetSite site = new TargetSite(pageCount, fanOut, formsPerPage, inputsPerForm, loginPages,
+				latencyMillis);
+		site.start();
+
+		File directory = BenchmarkFixtures.createDirectory("end-to-end");
+		PrintStream standardOut = System.out;
+
+		try
+		{
+			String configurationFileName = writeConfiguration(directory, site, settings).getPath();
+			HeapSampler heap = new HeapSampler();
+
+			if(!verbose)
+			{
+				System.setOut(new PrintStream(new OutputStream()
+				{
+					@Override
+					public void write(int b)
+					{
+					}
+
+					@Override
+					public void write(byte[] b, int off, int len)
+					{
+					}
+				}));
+			}
+
+			SiteInformationManager manager = new SiteInformationManager();
+			long discoveryRequests;
+			long discoveryNanos;
+			long fuzzingRequests;
+			long fuzzingNanos;
+			int discoveredPages;
+
+			heap.start();
+			try
+			{
+				if(!manager.loadConfigurations(configurationFileName))
+				{
+					throw new IOException("Unable to load the generated configuration " + configurationFileName);
+				}
+
+				long requestsBefore = site.getRequestCount();
+				long start = System.nanoTime();
+				manager.performDiscovery();
+				discoveryNanos = System.nanoTime() - start;
+				discoveryRequests = site.getRequestCount() - requestsBefore;
+				discoveredPages = manager.getSiteUrls().size();
+
+				requestsBefore = site.getRequestCount();
+				start = System.nanoTime();
+				manager.performFuzzing();
+				fuzzingNanos = System.nanoTime() - start;
+				fuzzingRequests = site.getRequestCount() - requestsBefore;
+			}
+			finally
+			{
+				manager.shutdown();
+				heap.stop();
+				System.setOut(standardOut);
+			}
+
+			standardOut.println("Target site: " + site.getPageCount() + " pages (fan-out " + fanOut + ", " +
+					formsPerPage + " forms of " + inputsPerForm + " inputs, " + loginPages + " login pages, " +
+					latencyMillis + " ms latency)");
+			standardOut.println("Settings: " + (settings.isEmpty() ? "defaults" : settings.toString()));
+			standardOut.println();
+			report(standardOut, "Discovery", discoveryNanos, discoveryRequests);
+			standardOut.println(String.format(Locale.US, "  %d pages, %.1f pages/s", discoveredPages,
+					discoveredPages / seconds(discoveryNanos)));
+			report(standardOut, "Fuzzing", fuzzingNanos, fuzzingRequests);
+			report(standardOut, "Total", discoveryNanos + fuzzingNanos, discoveryRequests + fuzzingRequests);
+			standardOut.println();
+			standardOut.println(String.format(Locale.US, "Peak heap: %.1f MB", heap.getPeakBytes() / 1048576.0));
+			standardOut.println();
+			ScanMetrics.writeSummary(standardOut);
+		}
+		finally
+		{
+			System.setOut(standardOut);
+			site.stop();
+			BenchmarkFixtures.deleteDirectory(directory);
+		}
+
+		// The fuzzer's pools may leave non-daemon threads behind
+		System.exit(0);
+	}
+
+	private static void report(PrintStream output, String phase, long nanos, long requests)
+	{
+		output.println(String.format(Locale.US, "%s: %.2f s, %d requests, %.1f requests/s", phase,
+				seconds(nanos), requests, requests / seconds(nanos)));
+	}
+
+	private static double seconds(long nanos)
+	{
+		return Math.max(nanos, 1) / 1e9;
+	}
+
+	private static File writeConfiguration(File directory, TargetSite site, List<String> settings)
+		throws IOException
+	{
+		File dataFile = new File(directory, "end_to_end_data.txt");
+		Writer writer = new OutputStreamWriter(new FileOutputStream(dataFile), "UTF-8");
+		try
+		{
+			writeSection(writer, "external fuzz vectors:", FUZZ_VECTORS);
+			writeSection(writer, "sensitive data:", SENSITIVE_DATA);
+			writeSection(writer, "password dictionary:", new String[] { "123456", TargetSite.PASSWORD });
+			writeSection(writer, "sanitization checking inputs:", SANITIZATION_INPUTS);
+			writeSection(writer, "page guessing:", PAGE_GUESSES);
+		}
+		finally
+		{
+			writer.close();
+		}
+
+		File configurationFile = new File(directory, "end_to_end_config.txt");
+		writer = new OutputStreamWriter(new FileOutputStream(configurationFile), "UTF-8");
+		try
+		{
+			writer.write("app_data_file: " + dataFile.getPath() + "\n");
+			writer.write("username: " + TargetSite.USERNAME + "\n");
+			writer.write("password: " + TargetSite.PASSWORD + "\n");
+			writer.write("password_guessing: off\n");
+			writer.write("authentication_success_string: " + TargetSite.AUTHENTICATION_SUCCESS_STRING + "\n");
+			writer.write("site_url: " + site.getIndexUrl() + "\n");
+			writer.write("base_url: " + site.getBaseUrl() + "\n");
+			writer.write("time_gap: 0\n");
+			writer.write("completeness: 100\n");
+
+			// Later settings override the defaults above
+			for(String setting: settings)
+			{
+				writer.write(setting + "\n");
+			}
+		}
+		finally
+		{
+			writer.close();
+		}
+
+		return configurationFile;
+	}
+
+	private static void writeSection(Writer writer, String header, String[] entries)
+		throws IOException
+	{
+		writer.write(header + "\n");
+		for(String entry: entries)
+		{
+			writer.write(entry + "\n");
+		}
+		writer.write("\n");
+	}
+
+	private static void usage()
+	{
+		System.out.println("Usage: EndToEndBenchmark [--pages n] [--fan-out n] [--forms n] [--inputs n] " +
+				"[--login-pages n] [--latency millis] [--setting \"option: value\"] ... [--verbose]");
+	}
+
+	/**
+	 * Samples the heap in use on a background thread and keeps the largest
+	 * sample.
+	 */
+	private static class HeapSampler implements Runnable
+	{
+		private final MemoryMXBean memory;
+		private volatile long peakBytes;
+		private volatile boolean stopped;
+		private Thread thread;
+
+		public HeapSampler()
+		{
+			this.memory = ManagementFactory.getMemoryMXBean();
+			this.peakBytes = 0;
+			this.stopped = false;
+		}
+
+		public void start()
+		{
+			System.gc();
+			thread = new Thread(this, "heap-sampler");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		public void stop()
+			throws InterruptedException
+		{
+			stopped = true;
+			thread.join();
+			sample();
+		}
+
+		public long getPeakBytes()
+		{
+			return peakBytes;
+		}
+
+		public void run()
+		{
+			while(!stopped)
+			{
+				sample();
+
+				try
+				{
+					Thread.sleep(HEAP_SAMPLE_INTERVAL_MILLIS);
+				}
+				catch(InterruptedException e)
+				{
+					return;
+				}
+			}
+		}
+
+		private void sample()
+		{
+			long used = memory.getHeapMemoryUsage().getUsed();
+			if(used > peakBytes)
+			{
+				peakBytes = used;
+			}
+		}
+	}
+}
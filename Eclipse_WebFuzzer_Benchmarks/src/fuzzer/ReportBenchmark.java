@@ -0,0 +1,112 @@
+package fuzzer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gargoylesoftware.htmlunit.WebClient;
+
+/**
+ * Measures rendering the report for a scanned site: the attack surface of
+ * every page followed by every finding, read back from the findings file.
+ * The report is written to a stream which only counts its length.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class ReportBenchmark
+{
+	@Param({"10", "500"})
+	public int pageCount;
+
+	@Param({"100", "10000"})
+	public int findingCount;
+
+	private File directory;
+	private FindingsSink findings;
+	private SiteInformationManager manager;
+
+	@Setup
+	public void setUp()
+		throws IOException
+	{
+		directory = BenchmarkFixtures.createDirectory("report-bench");
+		manager = new SiteInformationManager();
+
+		WebClient client = BenchmarkFixtures.newClient();
+		try
+		{
+			for(int i = 0; i < pageCount; i++)
+			{
+				String url = BenchmarkFixtures.SITE_URL + "page" + i + ".html";
+				WebPage page = new WebPage(BenchmarkFixtures.parsePage(client,
+						BenchmarkFixtures.page(i, 3, 8), url));
+				manager.addPage(url, page.toSurface());
+			}
+		}
+		finally
+		{
+			client.closeAllWindows();
+		}
+
+		// Reopened for appending so the findings already written are kept
+		File findingsFile = BenchmarkFixtures.writeFindings(directory, findingCount);
+		findings = new FindingsSink(findingsFile, true);
+		manager.setFindingsSink(findings);
+	}
+
+	@TearDown
+	public void tearDown()
+		throws IOException
+	{
+		findings.close();
+		BenchmarkFixtures.deleteDirectory(directory);
+	}
+
+	@Benchmark
+	public long writeReport()
+	{
+		CountingOutputStream output = new CountingOutputStream();
+		manager.writeReport(new PrintStream(output));
+		return output.count;
+	}
+
+	private static class CountingOutputStream extends OutputStream
+	{
+		private long count;
+
+		@Override
+		public void write(int b)
+		{
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len)
+		{
+			count += len;
+		}
+	}
+}
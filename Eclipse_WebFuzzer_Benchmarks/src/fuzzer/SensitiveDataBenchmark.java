@@ -0,0 +1,92 @@
+package fuzzer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures looking for sensitive data markers in response bodies the way
+ * fuzzing does: streaming the encoded body through the response analyzer,
+ * with and without the response cache in front of the detector.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class SensitiveDataBenchmark
+{
+	private static final String CHARSET = "UTF-8";
+
+	@Param({"16", "256"})
+	public int markerCount;
+
+	@Param({"16384", "1048576"})
+	public int bodyLength;
+
+	private List<String> markers;
+	private MultiPatternMatcher matcher;
+	private byte[] body;
+	private ResponseCache cache;
+
+	@Setup
+	public void setUp()
+		throws IOException
+	{
+		markers = BenchmarkFixtures.sensitiveMarkers(markerCount);
+		matcher = new MultiPatternMatcher(markers);
+		body = BenchmarkFixtures.responseBody(bodyLength, markers).getBytes(CHARSET);
+
+		// Primed so that every measured response is a repeat, as most are
+		cache = new ResponseCache();
+		analyzeCached();
+	}
+
+	@Benchmark
+	public MultiPatternMatcher compileMarkers()
+	{
+		return new MultiPatternMatcher(markers);
+	}
+
+	@Benchmark
+	public List<MultiPatternMatcher.Match> analyze()
+		throws IOException
+	{
+		SensitiveDataDetector detector = new SensitiveDataDetector(matcher);
+		ResponseAnalyzer.analyze(new ByteArrayInputStream(body), CHARSET, Collections.singletonList(detector));
+		return detector.getMatches();
+	}
+
+	/**
+	 * Analyzes a response identical to one already analyzed, so only the
+	 * fingerprint is computed.
+	 */
+	@Benchmark
+	public List<MultiPatternMatcher.Match> analyzeCached()
+		throws IOException
+	{
+		FingerprintingDetector<SensitiveDataDetector> detector = new FingerprintingDetector<SensitiveDataDetector>(
+				new SensitiveDataDetector(matcher), "sensitive-data", cache);
+		ResponseAnalyzer.analyze(new ByteArrayInputStream(body), CHARSET, Collections.singletonList(detector));
+		return detector.finish().getMatches();
+	}
+}
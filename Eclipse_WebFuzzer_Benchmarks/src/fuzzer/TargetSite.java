@@ -0,0 +1,379 @@
+package fuzzer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Generated web site served from an embedded HTTP server on the loopback
+ * interface, used as the target of the end-to-end benchmark. Pages are
+ * numbered from 0 (the index page) and each links to a fixed number of
+ * others so that every page can be reached by crawling. Every page has the
+ * same number of forms with the same number of text inputs; submitting a
+ * form echoes its inputs back, so fuzzing finds unsanitized inputs, and
+ * mentions "mysql" whenever an input contains a quote. Each login page has a
+ * form which accepts the username admin with the password password and then
+ * leads to a members page with forms of its own. Every response can be
+ * delayed by a fixed latency to stand in for a remote server.
+ *
+ * The site is generated without any randomness, so the same options always
+ * give the same site.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+public class TargetSite
+{
+	public static final String USERNAME = "admin";
+	public static final String PASSWORD = "password";
+	public static final String AUTHENTICATION_SUCCESS_STRING = "Welcome back";
+
+	private static final String CHARSET = "UTF-8";
+	private static final String CONTEXT = "/site/";
+	private static final int SERVER_THREADS = 64;
+
+	private final int pageCount;
+	private final int fanOut;
+	private final int formsPerPage;
+	private final int inputsPerForm;
+	private final int loginPages;
+	private final long latencyMillis;
+
+	private final AtomicLong requestCount;
+	private HttpServer server;
+	private ExecutorService executor;
+
+	public TargetSite(int pageCount, int fanOut, int formsPerPage, int inputsPerForm, int loginPages,
+			long latencyMillis)
+	{
+		this.pageCount = Math.max(1, pageCount);
+		this.fanOut = Math.max(1, fanOut);
+		this.formsPerPage = Math.max(0, formsPerPage);
+		this.inputsPerForm = Math.max(1, inputsPerForm);
+		this.loginPages = Math.max(0, Math.min(loginPages, this.pageCount));
+		this.latencyMillis = Math.max(0, latencyMillis);
+		this.requestCount = new AtomicLong();
+	}
+
+	/**
+	 * Starts serving the site on a free port.
+	 */
+	public synchronized void start()
+		throws IOException
+	{
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 256);
+		executor = Executors.newFixedThreadPool(SERVER_THREADS);
+		server.setExecutor(executor);
+		server.createContext(CONTEXT, new HttpHandler()
+		{
+			public void handle(HttpExchange exchange) throws IOException
+			{
+				try
+				{
+					serve(exchange);
+				}
+				finally
+				{
+					exchange.close();
+				}
+			}
+		});
+		server.start();
+	}
+
+	public synchronized void stop()
+	{
+		if(server != null)
+		{
+			server.stop(0);
+			executor.shutdownNow();
+			server = null;
+		}
+	}
+
+	/**
+	 * Returns the URL of the site's index page.
+	 */
+	public String getIndexUrl()
+	{
+		return getBaseUrl() + "index.html";
+	}
+
+	public String getBaseUrl()
+	{
+		return "http://127.0.0.1:" + server.getAddress().getPort() + CONTEXT;
+	}
+
+	/**
+	 * Returns the number of requests served so far (including those for pages
+	 * which do not exist).
+	 */
+	public long getRequestCount()
+	{
+		return requestCount.get();
+	}
+
+	/**
+	 * Returns the number of distinct pages on the site, including the members
+	 * pages reached by logging in.
+	 */
+	public int getPageCount()
+	{
+		return pageCount + 2 * loginPages;
+	}
+
+	private void serve(HttpExchange exchange)
+		throws IOException
+	{
+		requestCount.incrementAndGet();
+
+		if(latencyMillis > 0)
+		{
+			try
+			{
+				Thread.sleep(latencyMillis);
+			}
+			catch(InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+
+		String path = exchange.getRequestURI().getPath().substring(CONTEXT.length());
+		Map<String, String> parameters = parseParameters(exchange.getRequestURI().getRawQuery());
+		if(exchange.getRequestMethod().equalsIgnoreCase("POST"))
+		{
+			parameters.putAll(parseParameters(readBody(exchange.getRequestBody())));
+		}
+
+		String body;
+		if(path.equals("index.html"))
+		{
+			body = page(0);
+		}
+		else if(path.startsWith("page") && path.endsWith(".html"))
+		{
+			int index = parseIndex(path.substring("page".length(), path.length() - ".html".length()), pageCount);
+			body = index < 0 ? null : page(index);
+		}
+		else if(path.startsWith("login") && path.endsWith(".html"))
+		{
+			int index = parseIndex(path.substring("login".length(), path.length() - ".html".length()), loginPages);
+			body = index < 0 ? null : loginPage(index);
+		}
+		else if(path.startsWith("member") && path.endsWith(".html"))
+		{
+			int index = parseIndex(path.substring("member".length(), path.length() - ".html".length()), loginPages);
+			body = index < 0 ? null : memberPage(index);
+		}
+		else if(path.equals("dologin"))
+		{
+			body = loginResult(parameters);
+		}
+		else if(path.equals("submit"))
+		{
+			body = submitResult(parameters);
+		}
+		else
+		{
+			body = null;
+		}
+
+		if(body == null)
+		{
+			respond(exchange, 404, "<html><body>Not found</body></html>");
+		}
+		else
+		{
+			respond(exchange, 200, body);
+		}
+	}
+
+	private String page(int index)
+	{
+		StringBuilder html = new StringBuilder();
+		html.append("<html><head><title>Page ").append(index).append("</title></head><body>\n");
+		html.append("<h1>Page ").append(index).append("</h1>\n");
+
+		for(int i = 1; i <= fanOut; i++)
+		{
+			// Wraps around, so every page is reachable from the index page
+			// through a chain of links no longer than the page count
+			int target = (int) (((long) index * fanOut + i) % pageCount);
+			html.append("<a href=\"page").append(target).append(".html\">Page ").append(target).append("</a>\n");
+		}
+
+		if(index < loginPages)
+		{
+			html.append("<a href=\"login").append(index).append(".html\">Log in</a>\n");
+		}
+
+		appendForms(html, "page" + index);
+		html.append("</body></html>\n");
+		return html.toString();
+	}
+
+	private String loginPage(int index)
+	{
+		StringBuilder html = new StringBuilder();
+		html.append("<html><head><title>Log in</title></head><body>\n");
+		html.append("<form id=\"login\" action=\"dologin?page=").append(index).append("\" method=\"post\">\n");
+		html.append("<input type=\"text\" name=\"username\" id=\"username\"/>\n");
+		html.append("<input type=\"password\" name=\"password\" id=\"password\"/>\n");
+		html.append("<input type=\"submit\" value=\"Log in\"/>\n");
+		html.append("</form>\n</body></html>\n");
+		return html.toString();
+	}
+
+	private String loginResult(Map<String, String> parameters)
+	{
+		if(!USERNAME.equals(parameters.get("username")) || !PASSWORD.equals(parameters.get("password")))
+		{
+			return "<html><body>Incorrect username or password</body></html>";
+		}
+
+		String page = parameters.get("page");
+		return "<html><body>" + AUTHENTICATION_SUCCESS_STRING + ", " + USERNAME + ". " +
+			"<a href=\"member" + page + ".html\">Members area</a></body></html>";
+	}
+
+	private String memberPage(int index)
+	{
+		StringBuilder html = new StringBuilder();
+		html.append("<html><head><title>Members ").append(index).append("</title></head><body>\n");
+		html.append("<a href=\"index.html\">Home</a>\n");
+		appendForms(html, "member" + index);
+		html.append("</body></html>\n");
+		return html.toString();
+	}
+
+	private void appendForms(StringBuilder html, String pageName)
+	{
+		for(int form = 0; form < formsPerPage; form++)
+		{
+			html.append("<form id=\"").append(pageName).append("_form").append(form)
+				.append("\" action=\"submit\" method=\"").append(form % 2 == 0 ? "get" : "post").append("\">\n");
+			html.append("<input type=\"hidden\" name=\"form\" value=\"").append(pageName).append('_')
+				.append(form).append("\"/>\n");
+
+			for(int input = 0; input < inputsPerForm; input++)
+			{
+				html.append("<input type=\"text\" name=\"field").append(input).append("\" id=\"")
+					.append(pageName).append("_field").append(form).append('_').append(input).append("\"/>\n");
+			}
+
+			html.append("<input type=\"submit\" value=\"Submit\"/>\n</form>\n");
+		}
+	}
+
+	private static String submitResult(Map<String, String> parameters)
+	{
+		StringBuilder html = new StringBuilder();
+		html.append("<html><body><h1>Results</h1>\n<table>\n");
+
+		boolean quoted = false;
+		for(Map.Entry<String, String> parameter: parameters.entrySet())
+		{
+			// Deliberately unescaped
+			html.append("<tr><td>").append(parameter.getKey()).append("</td><td>")
+				.append(parameter.getValue()).append("</td></tr>\n");
+			quoted |= parameter.getValue().indexOf('\'') >= 0;
+		}
+
+		html.append("</table>\n");
+		if(quoted)
+		{
+			html.append("<p>You have an error in your SQL syntax; check the manual that corresponds " +
+				"to your mysql server version</p>\n");
+		}
+		html.append("</body></html>\n");
+		return html.toString();
+	}
+
+	private static void respond(HttpExchange exchange, int status, String body)
+		throws IOException
+	{
+		byte[] bytes = body.getBytes(CHARSET);
+		exchange.getResponseHeaders().set("Content-Type", "text/html; charset=" + CHARSET);
+		exchange.sendResponseHeaders(status, bytes.length);
+
+		OutputStream output = exchange.getResponseBody();
+		output.write(bytes);
+		output.close();
+	}
+
+	private static String readBody(InputStream input)
+		throws IOException
+	{
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while((read = input.read(buffer)) != -1)
+		{
+			body.write(buffer, 0, read);
+		}
+
+		return body.toString(CHARSET);
+	}
+
+	private static Map<String, String> parseParameters(String query)
+		throws UnsupportedEncodingException
+	{
+		Map<String, String> parameters = new LinkedHashMap<String, String>();
+		if(query == null || query.length() == 0)
+		{
+			return parameters;
+		}
+
+		for(String pair: query.split("&"))
+		{
+			int separator = pair.indexOf('=');
+			String name = separator < 0 ? pair : pair.substring(0, separator);
+			String value = separator < 0 ? "" : pair.substring(separator + 1);
+
+			try
+			{
+				parameters.put(URLDecoder.decode(name, CHARSET), URLDecoder.decode(value, CHARSET));
+			}
+			catch(IllegalArgumentException e)
+			{
+				// Malformed escapes (which fuzz vectors are full of) are kept as is
+				parameters.put(name, value);
+			}
+		}
+
+		return parameters;
+	}
+
+	/**
+	 * Returns the page number in the given text, or -1 if it is not the number
+	 * of one of the given number of pages.
+	 */
+	private static int parseIndex(String text, int count)
+	{
+		try
+		{
+			int index = Integer.parseInt(text);
+			return index >= 0 && index < count ? index : -1;
+		}
+		catch(NumberFormatException e)
+		{
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package fuzzer;
+
+import java.net.MalformedURLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the per-link work of a crawl: canonicalizing a URL, checking that
+ * it is in scope and claiming it in the visited set. Each invocation handles
+ * the same list of links, so results are reported per link.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class UrlDedupeBenchmark
+{
+	private static final int URL_COUNT = 10000;
+
+	@Param({"exact", "bloom"})
+	public String visitedSet;
+
+	private List<String> urls;
+	private UrlCanonicalizer canonicalizer;
+
+	@Setup
+	public void setUp()
+		throws MalformedURLException
+	{
+		urls = BenchmarkFixtures.crawledUrls(URL_COUNT);
+		canonicalizer = new UrlCanonicalizer(BenchmarkFixtures.SITE_URL);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(URL_COUNT)
+	public void canonicalize(Blackhole blackhole)
+	{
+		for(String url: urls)
+		{
+			blackhole.consume(UrlCanonicalizer.canonicalize(url));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(URL_COUNT)
+	public void isInScope(Blackhole blackhole)
+	{
+		for(String url: urls)
+		{
+			blackhole.consume(canonicalizer.isInScope(url));
+		}
+	}
+
+	/**
+	 * Claims every in-scope link in a new visited set, as discovery does.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(URL_COUNT)
+	public long dedupe()
+	{
+		VisitedUrlSet visitedUrls = visitedSet.equals("bloom") ?
+				new BloomFilterUrlSet(URL_COUNT) : new FingerprintUrlSet();
+
+		for(String url: urls)
+		{
+			if(canonicalizer.isInScope(url))
+			{
+				visitedUrls.add(UrlCanonicalizer.canonicalize(url));
+			}
+		}
+
+		return visitedUrls.size();
+	}
+}
@@ -0,0 +1,88 @@
+package fuzzer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+
+/**
+ * Measures building WebForms from a parsed page and classifying their fields
+ * (username, password and submit), and distilling a page into its attack
+ * surface, which is what discovery does with every page it loads.
+ *
+ * @author Eric Newman (edn6266)
+ * @author Ross Kahn (rtk1865)
+ * @author Timothy Heard (tjh2430)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class WebFormBenchmark
+{
+	@Param({"1", "10"})
+	public int formCount;
+
+	@Param({"5", "25"})
+	public int inputsPerForm;
+
+	private WebClient client;
+	private String html;
+	private HtmlPage page;
+
+	@Setup
+	public void setUp()
+		throws IOException
+	{
+		client = BenchmarkFixtures.newClient();
+		html = BenchmarkFixtures.page(0, formCount, inputsPerForm);
+		page = BenchmarkFixtures.parsePage(client, html, BenchmarkFixtures.SITE_URL + "index.html");
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		client.closeAllWindows();
+	}
+
+	@Benchmark
+	public List<WebForm> constructForms()
+	{
+		return WebForm.toWebForms(page.getElementsByTagName("form"));
+	}
+
+	@Benchmark
+	public PageSurface toSurface()
+		throws IOException
+	{
+		return new WebPage(page).toSurface();
+	}
+
+	/**
+	 * Includes parsing the page, for comparison with the cost of the forms.
+	 */
+	@Benchmark
+	public PageSurface parseAndToSurface()
+		throws IOException
+	{
+		HtmlPage parsedPage = BenchmarkFixtures.parsePage(client, html, BenchmarkFixtures.SITE_URL + "index.html");
+		return new WebPage(parsedPage).toSurface();
+	}
+}